@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.benchmarks;
+
+import java.io.File;
+import java.io.IOException;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xith3d.io.Archive;
+import org.xith3d.io.InvalidFormat;
+import org.xith3d.io.Scribable;
+import org.xith3d.io.UnscribableNodeEncountered;
+import org.xith3d.scenegraph.Geometry;
+import org.xith3d.utility.geometry.GeometryUtils;
+
+/**
+ * Measures writing and reading meshes to and from an {@link Archive} in a temporary file.
+ * The meshes are merged from the prop geometries of a {@link SyntheticScene}.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 10, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class ArchiveBenchmark
+{
+    private static final int NUM_ENTRIES = 16;
+    
+    /**
+     * The number of props merged into one mesh.
+     */
+    @Param( { "10", "100" } )
+    public int meshSize;
+    
+    @Param( { "false", "true" } )
+    public boolean compress;
+    
+    private File writeFile;
+    private File readFile;
+    private Archive writeArchive;
+    private Archive readArchive;
+    private GeometryScribable mesh;
+    private int entry = 0;
+    
+    @Setup
+    public void setUp() throws IOException, UnscribableNodeEncountered
+    {
+        final SyntheticScene scene = new SyntheticScene( meshSize, 1 );
+        final Geometry[] geoms = new Geometry[ meshSize ];
+        for ( int i = 0; i < meshSize; i++ )
+        {
+            geoms[ i ] = scene.getShape( i ).getGeometry();
+        }
+        
+        mesh = new GeometryScribable( GeometryUtils.mergeGeometriesTA( geoms ) );
+        
+        writeFile = File.createTempFile( "xith3d-bench-write", ".archive" );
+        readFile = File.createTempFile( "xith3d-bench-read", ".archive" );
+        // The Archive initializes new files only.
+        writeFile.delete();
+        readFile.delete();
+        
+        Archive archive = new Archive( readFile.getAbsolutePath(), false );
+        for ( int i = 0; i < NUM_ENTRIES; i++ )
+        {
+            archive.write( "mesh" + i, mesh, compress );
+        }
+        archive.close();
+        
+        readArchive = new Archive( readFile.getAbsolutePath(), true );
+        writeArchive = new Archive( writeFile.getAbsolutePath(), false );
+    }
+    
+    @TearDown
+    public void tearDown() throws IOException
+    {
+        writeArchive.close();
+        readArchive.close();
+        
+        writeFile.delete();
+        readFile.delete();
+    }
+    
+    @Benchmark
+    public void write() throws IOException, UnscribableNodeEncountered
+    {
+        // Rewriting an entry puts its old block on the free list.
+        writeArchive.write( "mesh" + entry, mesh, compress );
+        
+        entry = ( entry + 1 ) % NUM_ENTRIES;
+    }
+    
+    @Benchmark
+    public Scribable read() throws IOException, InvalidFormat
+    {
+        final Scribable result = readArchive.read( "mesh" + entry );
+        
+        entry = ( entry + 1 ) % NUM_ENTRIES;
+        
+        return ( result );
+    }
+}
@@ -0,0 +1,122 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.xith3d.scenegraph.BranchGroup;
+import org.xith3d.scenegraph.GroupNode;
+import org.xith3d.scenegraph.Transform3D;
+import org.xith3d.scenegraph.TransformGroup;
+
+/**
+ * Measures {@link GroupNode#updateBounds(boolean)} on a {@link SyntheticScene}.
+ * "full" recomputes all bounds including the geometries' ones,
+ * "moved" moves a part of the props before updating the dirty bounds only.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 10, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class BoundsUpdateBenchmark
+{
+    @Param( { "1000", "10000", "50000" } )
+    public int numShapes;
+    
+    @Param( { "full", "moved" } )
+    public String mode;
+    
+    @Param( { "0.01" } )
+    public float movedFraction;
+    
+    private SyntheticScene scene;
+    private BranchGroup root;
+    private int[] movedIndices;
+    private final Transform3D t = new Transform3D();
+    private final Random random = new Random( SyntheticScene.DEFAULT_SEED );
+    
+    @Setup
+    public void setUp()
+    {
+        scene = new SyntheticScene( numShapes, 16 );
+        root = scene.getRoot();
+        root.updateBounds( false );
+        
+        movedIndices = new int[ Math.max( 1, (int)( numShapes * movedFraction ) ) ];
+        for ( int i = 0; i < movedIndices.length; i++ )
+        {
+            movedIndices[ i ] = random.nextInt( numShapes );
+        }
+    }
+    
+    @Benchmark
+    public BranchGroup updateBounds()
+    {
+        if ( mode.equals( "full" ) )
+        {
+            root.updateBounds( false );
+        }
+        else
+        {
+            final float extent = scene.getExtent();
+            
+            for ( int i = 0; i < movedIndices.length; i++ )
+            {
+                final TransformGroup tg = scene.getTransformGroup( movedIndices[ i ] );
+                
+                tg.getTransform( t );
+                t.setTranslation( ( random.nextFloat() * 2f - 1f ) * extent, ( random.nextFloat() * 2f - 1f ) * extent, ( random.nextFloat() * 2f - 1f ) * extent );
+                tg.setTransform( t );
+            }
+            
+            root.updateBounds( true );
+        }
+        
+        return ( root );
+    }
+}
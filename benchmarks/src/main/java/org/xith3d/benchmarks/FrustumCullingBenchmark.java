@@ -0,0 +1,103 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmali.vecmath2.Point3f;
+import org.xith3d.render.preprocessing.FrustumCuller;
+
+/**
+ * Measures {@link FrustumCuller#cullAtoms(org.xith3d.render.RenderPass, org.xith3d.scenegraph.GroupNode, org.xith3d.render.Canvas3D, Point3f, org.xith3d.render.OpenGLCapabilities, long, long, long, org.xith3d.render.PickRequest)}
+ * for one perspective pass over a {@link SyntheticScene}.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 10, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class FrustumCullingBenchmark
+{
+    @Param( { "1000", "10000", "50000" } )
+    public int numShapes;
+    
+    @Param( { "false", "true" } )
+    public boolean cullingCache;
+    
+    @Param( { "false", "true" } )
+    public boolean parallel;
+    
+    private HeadlessScene headless;
+    private FrustumCuller culler;
+    private final Point3f viewPosition = new Point3f();
+    private long frameId = 1000L;
+    
+    @Setup
+    public void setUp()
+    {
+        headless = new HeadlessScene( new SyntheticScene( numShapes, 16 ) );
+        
+        headless.getRenderer().setCullingCacheEnabled( cullingCache );
+        
+        culler = headless.getRenderer().getFrustumCuller();
+        culler.setParallelCullingEnabled( parallel );
+        
+        headless.getCanvas().getView().getPosition( viewPosition );
+    }
+    
+    @TearDown
+    public void tearDown()
+    {
+        headless.destroy();
+    }
+    
+    @Benchmark
+    public int cullAtoms()
+    {
+        return ( culler.cullAtoms( headless.getRenderPass(), headless.getRenderPass().getBranchGroup(), headless.getCanvas(), viewPosition, headless.getOpenGLCapabilities(), frameId++, 0L, 0L, null ) );
+    }
+}
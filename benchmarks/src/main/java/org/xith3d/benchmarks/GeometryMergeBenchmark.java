@@ -0,0 +1,111 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.benchmarks;
+
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmali.vecmath2.Matrix4f;
+import org.openmali.vecmath2.Vector3f;
+import org.xith3d.scenegraph.Geometry;
+import org.xith3d.scenegraph.IndexedTriangleArray;
+import org.xith3d.scenegraph.TriangleArray;
+import org.xith3d.utility.geometry.GeometryUtils;
+
+/**
+ * Measures the GeometryUtils.merge* methods on the prop geometries of a {@link SyntheticScene}.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MILLISECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 10, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class GeometryMergeBenchmark
+{
+    @Param( { "10", "100", "1000" } )
+    public int numGeometries;
+    
+    private Geometry[] geometries;
+    private Matrix4f[] transforms;
+    
+    @Setup
+    public void setUp()
+    {
+        final SyntheticScene scene = new SyntheticScene( numGeometries, 1 );
+        
+        geometries = new Geometry[ numGeometries ];
+        transforms = new Matrix4f[ numGeometries ];
+        
+        final Random random = new Random( SyntheticScene.DEFAULT_SEED );
+        
+        for ( int i = 0; i < numGeometries; i++ )
+        {
+            geometries[ i ] = scene.getShape( i ).getGeometry();
+            
+            transforms[ i ] = new Matrix4f();
+            transforms[ i ].setIdentity();
+            transforms[ i ].setTranslation( new Vector3f( random.nextFloat() * 100f, random.nextFloat() * 100f, random.nextFloat() * 100f ) );
+        }
+    }
+    
+    @Benchmark
+    public TriangleArray mergeGeometriesTA()
+    {
+        return ( GeometryUtils.mergeGeometriesTA( geometries ) );
+    }
+    
+    @Benchmark
+    public IndexedTriangleArray mergeGeometriesITA()
+    {
+        return ( GeometryUtils.mergeGeometriesITA( geometries ) );
+    }
+    
+    @Benchmark
+    public IndexedTriangleArray mergeGeometriesITATransformed()
+    {
+        return ( GeometryUtils.mergeGeometriesITA( transforms, geometries ) );
+    }
+}
@@ -0,0 +1,79 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.benchmarks;
+
+import java.io.IOException;
+
+import org.xith3d.io.InvalidFormat;
+import org.xith3d.io.Scribable;
+import org.xith3d.io.ScribeGeometryArray;
+import org.xith3d.io.ScribeInputStream;
+import org.xith3d.io.ScribeOutputStream;
+import org.xith3d.scenegraph.Geometry;
+
+/**
+ * A {@link Scribable} holding a single triangle Geometry, like the meshes
+ * stored in an {@link org.xith3d.io.Archive}.
+ */
+public class GeometryScribable implements Scribable
+{
+    private Geometry geometry;
+    
+    public final Geometry getGeometry()
+    {
+        return ( geometry );
+    }
+    
+    public void save( ScribeOutputStream out ) throws IOException
+    {
+        ScribeGeometryArray.writeGeometryArray( out, geometry );
+    }
+    
+    public void load( ScribeInputStream in ) throws InvalidFormat, IOException
+    {
+        geometry = ScribeGeometryArray.readGeometryArray( in );
+    }
+    
+    public GeometryScribable( Geometry geometry )
+    {
+        this.geometry = geometry;
+    }
+    
+    /**
+     * Used by the {@link ScribeInputStream}.
+     */
+    public GeometryScribable()
+    {
+    }
+}
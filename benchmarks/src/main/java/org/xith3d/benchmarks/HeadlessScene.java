@@ -0,0 +1,115 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.benchmarks;
+
+import org.xith3d.base.Xith3DEnvironment;
+import org.xith3d.render.Canvas3D;
+import org.xith3d.render.Canvas3DFactory;
+import org.xith3d.render.DefaultRenderer;
+import org.xith3d.render.OpenGLCapabilities;
+import org.xith3d.render.RenderPass;
+import org.xith3d.render.config.DisplayMode;
+import org.xith3d.render.config.DisplayMode.FullscreenMode;
+import org.xith3d.render.config.FSAA;
+import org.xith3d.render.config.OpenGLLayer;
+
+/**
+ * Renders a {@link SyntheticScene} through the headless OpenGL layer,
+ * so that the render-preprocessing can be benchmarked without a GPU.
+ * The camera looks at the scene's center from outside of it, so that
+ * a part of the props is outside of the frustum.
+ */
+public class HeadlessScene
+{
+    private final SyntheticScene scene;
+    private final Xith3DEnvironment env;
+    private final Canvas3D canvas;
+    private final RenderPass renderPass;
+    
+    public final SyntheticScene getScene()
+    {
+        return ( scene );
+    }
+    
+    public final Xith3DEnvironment getEnvironment()
+    {
+        return ( env );
+    }
+    
+    public final Canvas3D getCanvas()
+    {
+        return ( canvas );
+    }
+    
+    public final DefaultRenderer getRenderer()
+    {
+        return ( (DefaultRenderer)canvas.getRenderer() );
+    }
+    
+    public final RenderPass getRenderPass()
+    {
+        return ( renderPass );
+    }
+    
+    public final OpenGLCapabilities getOpenGLCapabilities()
+    {
+        return ( canvas.getPeer().getOpenGLCapabilities() );
+    }
+    
+    public void renderFrame()
+    {
+        env.render( 0L, 16000000L );
+    }
+    
+    public void destroy()
+    {
+        env.destroy();
+    }
+    
+    public HeadlessScene( SyntheticScene scene )
+    {
+        this.scene = scene;
+        
+        final float distance = scene.getExtent() * 1.5f;
+        
+        this.env = new Xith3DEnvironment( distance * 0.3f, distance * 0.2f, distance, 0f, 0f, 0f, 0f, 1f, 0f );
+        this.canvas = Canvas3DFactory.create( OpenGLLayer.HEADLESS, new DisplayMode( OpenGLLayer.HEADLESS, null, 1024, 768, 32, 60 ), FullscreenMode.WINDOWED, false, FSAA.OFF, "Benchmark" );
+        env.addCanvas( canvas );
+        
+        this.renderPass = env.addPerspectiveBranch( scene.getRoot() );
+        
+        // initializes the atoms, bounds and OpenGL capabilities
+        renderFrame();
+    }
+}
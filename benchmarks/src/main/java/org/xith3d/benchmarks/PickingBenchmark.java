@@ -0,0 +1,134 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.benchmarks;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.jagatoo.input.devices.components.MouseButtons;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmali.vecmath2.Ray3f;
+import org.xith3d.picking.NearestPickListener;
+import org.xith3d.picking.PickResult;
+import org.xith3d.picking.PickingLibrary;
+import org.xith3d.scenegraph.GroupNode;
+import org.xith3d.scenegraph.Node;
+
+/**
+ * Measures {@link PickingLibrary#pickNearest(List, Ray3f, org.jagatoo.input.devices.components.MouseButton, NearestPickListener)}
+ * with a fixed set of random rays through a {@link SyntheticScene}.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 10, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class PickingBenchmark implements NearestPickListener
+{
+    private static final int NUM_RAYS = 256;
+    
+    @Param( { "1000", "10000" } )
+    public int numShapes;
+    
+    @Param( { "false", "true" } )
+    public boolean geometryIgnored;
+    
+    private final List< GroupNode > groups = new ArrayList< GroupNode >();
+    private final Ray3f[] rays = new Ray3f[ NUM_RAYS ];
+    private int rayIndex = 0;
+    
+    private Node pickedNode;
+    
+    public void onObjectPicked( PickResult nearest, Object userObject, long pickTime )
+    {
+        pickedNode = nearest.getNode();
+    }
+    
+    public void onPickingMissed( Object userObject, long pickTime )
+    {
+        pickedNode = null;
+    }
+    
+    @Setup
+    public void setUp()
+    {
+        Node.setDefaultPickable( true );
+        PickingLibrary.setGeometryIgnored( geometryIgnored );
+        
+        final SyntheticScene scene = new SyntheticScene( numShapes, 16 );
+        scene.getRoot().updateBounds( false );
+        groups.add( scene.getRoot() );
+        
+        final Random random = new Random( SyntheticScene.DEFAULT_SEED );
+        final float extent = scene.getExtent();
+        
+        for ( int i = 0; i < NUM_RAYS; i++ )
+        {
+            // from outside of the scene to a point in its inner half
+            final float ox = ( random.nextFloat() * 2f - 1f ) * extent;
+            final float oy = ( random.nextFloat() * 2f - 1f ) * extent;
+            final float oz = extent * 2f;
+            
+            float dx = ( random.nextFloat() - 0.5f ) * extent - ox;
+            float dy = ( random.nextFloat() - 0.5f ) * extent - oy;
+            float dz = ( random.nextFloat() - 0.5f ) * extent - oz;
+            final float length = (float)Math.sqrt( dx * dx + dy * dy + dz * dz );
+            
+            rays[ i ] = new Ray3f( ox, oy, oz, dx / length, dy / length, dz / length );
+        }
+    }
+    
+    @Benchmark
+    public Node pickNearest()
+    {
+        PickingLibrary.pickNearest( groups, rays[ rayIndex ], MouseButtons.LEFT_BUTTON, this );
+        
+        rayIndex = ( rayIndex + 1 ) % NUM_RAYS;
+        
+        return ( pickedNode );
+    }
+}
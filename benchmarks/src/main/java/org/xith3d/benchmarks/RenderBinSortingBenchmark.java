@@ -0,0 +1,151 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.benchmarks;
+
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openmali.vecmath2.Point3f;
+import org.xith3d.render.preprocessing.RenderBin;
+import org.xith3d.render.preprocessing.sorting.BackToFrontByBoundingSphereAndEyeRayIntersectionRenderBinSorter;
+import org.xith3d.render.preprocessing.sorting.BackToFrontRenderBinSorter;
+import org.xith3d.render.preprocessing.sorting.FrontToBackRenderBinSorter;
+import org.xith3d.render.preprocessing.sorting.FrontToBackRenderBinSorter2;
+import org.xith3d.render.preprocessing.sorting.OrderedBackToFrontRenderBinSorter;
+import org.xith3d.render.preprocessing.sorting.OrderedStateRenderBinSorter;
+import org.xith3d.render.preprocessing.sorting.RenderBinSorter;
+import org.xith3d.render.preprocessing.sorting.StateRenderBinSorter;
+import org.xith3d.render.preprocessing.sorting.TU2StateRenderBinSorter;
+import org.xith3d.render.preprocessing.sorting.ZValueRenderBinSorter;
+import org.xith3d.scenegraph.Transform3D;
+
+/**
+ * Measures each {@link RenderBinSorter} on the opaque {@link RenderBin} of a culled {@link SyntheticScene}.
+ * The bin is refilled in culling order before each invocation, so that every sorter
+ * starts from the same unsorted input.<br>
+ * <br>
+ * The CustomRenderBinSorter is not covered, since it depends on user-defined comparables.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 10, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class RenderBinSortingBenchmark
+{
+    @Param( { "1000", "10000" } )
+    public int numShapes;
+    
+    @Param( { "State", "OrderedState", "TU2State", "ZValue", "BackToFront", "BackToFrontByBoundingSphere", "OrderedBackToFront", "FrontToBack", "FrontToBack2" } )
+    public String sorterName;
+    
+    private HeadlessScene headless;
+    private RenderBinSorter sorter;
+    private RenderBin renderBin;
+    private Transform3D viewTransform;
+    private final Point3f viewPosition = new Point3f();
+    private long frameId = 1000L;
+    
+    private static RenderBinSorter createSorter( String name )
+    {
+        if ( name.equals( "State" ) )
+            return ( new StateRenderBinSorter() );
+        if ( name.equals( "OrderedState" ) )
+            return ( new OrderedStateRenderBinSorter() );
+        if ( name.equals( "TU2State" ) )
+            return ( new TU2StateRenderBinSorter() );
+        if ( name.equals( "ZValue" ) )
+            return ( new ZValueRenderBinSorter() );
+        if ( name.equals( "BackToFront" ) )
+            return ( new BackToFrontRenderBinSorter() );
+        if ( name.equals( "BackToFrontByBoundingSphere" ) )
+            return ( new BackToFrontByBoundingSphereAndEyeRayIntersectionRenderBinSorter() );
+        if ( name.equals( "OrderedBackToFront" ) )
+            return ( new OrderedBackToFrontRenderBinSorter() );
+        if ( name.equals( "FrontToBack" ) )
+            return ( new FrontToBackRenderBinSorter() );
+        if ( name.equals( "FrontToBack2" ) )
+            return ( new FrontToBackRenderBinSorter2() );
+        
+        throw new IllegalArgumentException( "Unknown sorter " + name );
+    }
+    
+    @Setup
+    public void setUp()
+    {
+        headless = new HeadlessScene( new SyntheticScene( numShapes, 16 ) );
+        
+        // The culling cache and persistent bins would keep the sorted order.
+        headless.getRenderer().setCullingCacheEnabled( false );
+        headless.getRenderPass().getRenderBinProvider().setPersistentBinsEnabled( false );
+        
+        sorter = createSorter( sorterName );
+        renderBin = headless.getRenderPass().getRenderBinProvider().getOpaqueBin();
+        viewTransform = headless.getCanvas().getView().getTransform();
+        headless.getCanvas().getView().getPosition( viewPosition );
+    }
+    
+    @Setup( Level.Invocation )
+    public void fillRenderBin()
+    {
+        headless.getRenderer().getFrustumCuller().cullAtoms( headless.getRenderPass(), headless.getRenderPass().getBranchGroup(), headless.getCanvas(), viewPosition, headless.getOpenGLCapabilities(), frameId++, 0L, 0L, null );
+    }
+    
+    @TearDown
+    public void tearDown()
+    {
+        headless.destroy();
+    }
+    
+    @Benchmark
+    public RenderBin sortRenderBin()
+    {
+        sorter.sortRenderBin( renderBin, viewTransform );
+        
+        return ( renderBin );
+    }
+}
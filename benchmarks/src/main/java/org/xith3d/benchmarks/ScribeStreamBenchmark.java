@@ -0,0 +1,145 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.benchmarks;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.util.Random;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Fork;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.Warmup;
+import org.openjdk.jmh.infra.Blackhole;
+import org.openmali.vecmath2.Vector3f;
+import org.xith3d.io.ScribeInputStream;
+import org.xith3d.io.ScribeOutputStream;
+
+/**
+ * Measures the array methods of {@link ScribeInputStream} and {@link ScribeOutputStream}
+ * on in-memory streams.
+ */
+@BenchmarkMode( Mode.AverageTime )
+@OutputTimeUnit( TimeUnit.MICROSECONDS )
+@Warmup( iterations = 5, time = 1 )
+@Measurement( iterations = 10, time = 1 )
+@Fork( 1 )
+@State( Scope.Thread )
+public class ScribeStreamBenchmark
+{
+    @Param( { "1024", "65536" } )
+    public int arrayLength;
+    
+    private float[] floats;
+    private int[] ints;
+    private short[] shorts;
+    private Vector3f[] vectors;
+    
+    private byte[] data;
+    private ByteArrayOutputStream bout;
+    
+    @Setup
+    public void setUp() throws IOException
+    {
+        final Random random = new Random( SyntheticScene.DEFAULT_SEED );
+        
+        floats = new float[ arrayLength ];
+        ints = new int[ arrayLength ];
+        shorts = new short[ arrayLength ];
+        vectors = new Vector3f[ arrayLength ];
+        
+        for ( int i = 0; i < arrayLength; i++ )
+        {
+            floats[ i ] = random.nextFloat();
+            ints[ i ] = random.nextInt();
+            shorts[ i ] = (short)random.nextInt();
+            vectors[ i ] = new Vector3f( random.nextFloat(), random.nextFloat(), random.nextFloat() );
+        }
+        
+        bout = new ByteArrayOutputStream( arrayLength * 24 + 64 );
+        fillOutputStream();
+        data = bout.toByteArray();
+    }
+    
+    private void fillOutputStream() throws IOException
+    {
+        bout.reset();
+        
+        final ScribeOutputStream out = new ScribeOutputStream( bout );
+        out.writeFloatArray( floats );
+        out.writeIntArray( ints );
+        out.writeShortArray( shorts );
+        out.writeVectorArray( vectors );
+        out.flush();
+    }
+    
+    @Benchmark
+    public int writeArrays() throws IOException
+    {
+        fillOutputStream();
+        
+        return ( bout.size() );
+    }
+    
+    @Benchmark
+    public void readArrays( Blackhole bh ) throws IOException
+    {
+        final ScribeInputStream in = new ScribeInputStream( new ByteArrayInputStream( data ) );
+        
+        bh.consume( in.readFloatArray() );
+        bh.consume( in.readIntArray() );
+        bh.consume( in.readShortArray() );
+        bh.consume( in.readVectorArray() );
+    }
+    
+    @Benchmark
+    public void readArraysIntoExisting( Blackhole bh ) throws IOException
+    {
+        final ScribeInputStream in = new ScribeInputStream( new ByteArrayInputStream( data ) );
+        
+        bh.consume( in.readFloatArray( floats ) );
+        bh.consume( in.readIntArray( ints ) );
+        bh.consume( in.readShortArray( shorts ) );
+        bh.consume( in.readVectorArray( vectors ) );
+    }
+}
@@ -0,0 +1,164 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.benchmarks;
+
+import java.util.Random;
+
+import org.openmali.vecmath2.Colorf;
+import org.xith3d.scenegraph.Appearance;
+import org.xith3d.scenegraph.BranchGroup;
+import org.xith3d.scenegraph.Geometry;
+import org.xith3d.scenegraph.Material;
+import org.xith3d.scenegraph.Shape3D;
+import org.xith3d.scenegraph.Transform3D;
+import org.xith3d.scenegraph.TransformGroup;
+import org.xith3d.scenegraph.primitives.Cube;
+import org.xith3d.scenegraph.primitives.Sphere;
+
+/**
+ * A reproducible scene of many small props for the benchmarks.
+ * The props are randomly (but seeded) placed and rotated in a cube,
+ * whose extent grows with the number of props, so that the density stays
+ * the same. They share a few geometries and appearances like level props do.
+ */
+public class SyntheticScene
+{
+    public static final long DEFAULT_SEED = 4711L;
+    
+    private final BranchGroup root;
+    private final TransformGroup[] transformGroups;
+    private final Shape3D[] shapes;
+    private final float extent;
+    
+    public final BranchGroup getRoot()
+    {
+        return ( root );
+    }
+    
+    public final int getNumShapes()
+    {
+        return ( shapes.length );
+    }
+    
+    public final TransformGroup getTransformGroup( int index )
+    {
+        return ( transformGroups[ index ] );
+    }
+    
+    public final Shape3D getShape( int index )
+    {
+        return ( shapes[ index ] );
+    }
+    
+    /**
+     * @return the half edge length of the cube, that contains all props.
+     */
+    public final float getExtent()
+    {
+        return ( extent );
+    }
+    
+    private static Geometry[] createGeometries()
+    {
+        return ( new Geometry[]
+        {
+            new Cube( 0.5f ).getGeometry(),
+            new Sphere( 0.5f, 8, 6, Geometry.COORDINATES | Geometry.NORMALS, false, 2 ).getGeometry(),
+            new Sphere( 0.5f, 16, 12, Geometry.COORDINATES | Geometry.NORMALS, false, 2 ).getGeometry(),
+        } );
+    }
+    
+    private static Appearance[] createAppearances( int numAppearances, Random random )
+    {
+        Appearance[] appearances = new Appearance[ numAppearances ];
+        
+        for ( int i = 0; i < numAppearances; i++ )
+        {
+            Material material = new Material();
+            material.setDiffuseColor( new Colorf( random.nextFloat(), random.nextFloat(), random.nextFloat() ) );
+            
+            appearances[ i ] = new Appearance();
+            appearances[ i ].setMaterial( material );
+        }
+        
+        return ( appearances );
+    }
+    
+    /**
+     * Creates a new SyntheticScene.
+     * 
+     * @param numShapes the number of props
+     * @param numAppearances the number of distinct Appearances
+     * @param seed the random seed
+     */
+    public SyntheticScene( int numShapes, int numAppearances, long seed )
+    {
+        final Random random = new Random( seed );
+        
+        final Geometry[] geometries = createGeometries();
+        final Appearance[] appearances = createAppearances( numAppearances, random );
+        
+        this.root = new BranchGroup();
+        this.transformGroups = new TransformGroup[ numShapes ];
+        this.shapes = new Shape3D[ numShapes ];
+        this.extent = 2f * (float)Math.cbrt( numShapes );
+        
+        final Transform3D t = new Transform3D();
+        
+        for ( int i = 0; i < numShapes; i++ )
+        {
+            t.setIdentity();
+            t.rotXYZ( random.nextFloat() * 6.28f, random.nextFloat() * 6.28f, random.nextFloat() * 6.28f );
+            t.setTranslation( ( random.nextFloat() * 2f - 1f ) * extent, ( random.nextFloat() * 2f - 1f ) * extent, ( random.nextFloat() * 2f - 1f ) * extent );
+            
+            shapes[ i ] = new Shape3D( geometries[ random.nextInt( geometries.length ) ], appearances[ random.nextInt( numAppearances ) ] );
+            
+            transformGroups[ i ] = new TransformGroup( t );
+            transformGroups[ i ].addChild( shapes[ i ] );
+            
+            root.addChild( transformGroups[ i ] );
+        }
+    }
+    
+    /**
+     * Creates a new SyntheticScene.
+     * 
+     * @param numShapes the number of props
+     * @param numAppearances the number of distinct Appearances
+     */
+    public SyntheticScene( int numShapes, int numAppearances )
+    {
+        this( numShapes, numAppearances, DEFAULT_SEED );
+    }
+}
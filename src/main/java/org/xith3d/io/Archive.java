@@ -187,7 +187,9 @@ public class Archive implements Comparator<String>
             file.writeLong( CLEAN );
         }
         
-        file.close();
+        // read-only archives may be memory mapped
+        if ( file != null )
+            file.close();
     }
     
     /**
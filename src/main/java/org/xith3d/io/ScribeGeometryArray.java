@@ -152,6 +152,7 @@ public class ScribeGeometryArray extends Scribe
     {
         in.readByte(); // for compatibility;
         
+        in.readInt(); // version
         int geomType = in.readInt();
         int format = in.readInt();
         int vertexCount = in.readInt();
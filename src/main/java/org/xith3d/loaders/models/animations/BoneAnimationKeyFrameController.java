@@ -56,6 +56,7 @@ public class BoneAnimationKeyFrameController extends KeyFrameController
     private final Shape3D shape;
     private final float[] coords;
     private final float[] normals;
+    private final Vector3f tmp = new Vector3f();
     
     private final BoneWeight[][] weights;
     
@@ -86,8 +87,6 @@ public class BoneAnimationKeyFrameController extends KeyFrameController
         float vecABy;
         float vecABz;
         
-        Vector3f tmp = new Vector3f();
-        
         //geom.getCoordinates( 0, coords );
         int[] index = ( (IndexedGeometryArray)geom ).getIndex();
         int numTriangles = index.length / 3;
@@ -48,6 +48,7 @@ import org.xith3d.scenegraph.Shape3D;
 public class MeshDeformationKeyFrameController extends KeyFrameController
 {
     private final Shape3D shape;
+    private final float[] buffer = new float[ 3 ];
     
     public final MeshDeformationKeyFrame getFrame( int index )
     {
@@ -79,7 +80,6 @@ public class MeshDeformationKeyFrameController extends KeyFrameController
         //int numVertices = geom.getVertexCount();
         
         int j;
-        float[] buffer = new float[ 3 ];
         
         if ( baseFrame == nextFrame )
         {
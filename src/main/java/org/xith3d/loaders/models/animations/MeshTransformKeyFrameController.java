@@ -49,6 +49,7 @@ import org.xith3d.scenegraph.TransformGroup;
 public class MeshTransformKeyFrameController extends KeyFrameController
 {
     private final TransformGroup tg;
+    private final Transform3D form = new Transform3D();
     
     public final MeshTransformKeyFrame getFrame( int index )
     {
@@ -117,11 +118,11 @@ public class MeshTransformKeyFrameController extends KeyFrameController
         
         float delta = ( time - prevFrame.getTime() ) / deltaTime;
         
-        Transform3D form = new Transform3D();
         Matrix4f m = Matrix4f.fromPool();
         m.interpolate( prevFrame.getTransform(), nextFrame.getTransform(), delta, false );
         m.m33( 1f );
         form.set( m );
+        Matrix4f.toPool( m );
         
         tg.setTransform( form );
     }
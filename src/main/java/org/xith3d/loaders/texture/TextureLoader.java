@@ -98,6 +98,8 @@ public class TextureLoader extends AbstractTextureLoader
     
     private static final TextureLoader instance = new TextureLoader();
     
+    private boolean streamingEnabled = false;
+    
     /**
      * @return the fallback Texture 
      */
@@ -131,6 +133,39 @@ public class TextureLoader extends AbstractTextureLoader
         return ( instance );
     }
     
+    /**
+     * Enables or disables the streaming mode. In streaming mode all mipmapped
+     * Texture2Ds are returned with progressive mipmap streaming enabled.
+     * So only their smallest levels are uploaded, when they are rendered for
+     * the first time, and the finer levels follow as they are needed.
+     * 
+     * @param enabled
+     * 
+     * @see Texture2D#setStreaming(boolean)
+     */
+    public void setStreamingEnabled( boolean enabled )
+    {
+        this.streamingEnabled = enabled;
+    }
+    
+    /**
+     * @return true, if mipmapped Texture2Ds are returned with progressive mipmap streaming enabled.
+     */
+    public final boolean isStreamingEnabled()
+    {
+        return ( streamingEnabled );
+    }
+    
+    private final Texture2D applyStreamingMode( Texture2D texture )
+    {
+        if ( streamingEnabled && ( texture.getImagesCount() > 1 ) )
+        {
+            texture.setStreaming( true );
+        }
+        
+        return ( texture );
+    }
+    
     /*
      * @return another instance of the TextureLoader.
      */
@@ -207,7 +242,7 @@ public class TextureLoader extends AbstractTextureLoader
         if ( tex == null )
             return ( getFallbackTexture() );
         
-        return ( (Texture2D)tex );
+        return ( applyStreamingMode( (Texture2D)tex ) );
     }
     
     /**
@@ -397,7 +432,7 @@ public class TextureLoader extends AbstractTextureLoader
         if ( tex == null )
             return ( getFallbackTexture() );
         
-        return ( (Texture2D)tex );
+        return ( applyStreamingMode( (Texture2D)tex ) );
     }
     
     /**
@@ -525,7 +560,7 @@ public class TextureLoader extends AbstractTextureLoader
         if ( tex == null )
             return ( getFallbackTexture() );
         
-        return ( (Texture2D)tex );
+        return ( applyStreamingMode( (Texture2D)tex ) );
     }
     
     /**
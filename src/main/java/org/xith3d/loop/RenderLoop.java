@@ -40,6 +40,7 @@ import org.xith3d.base.Xith3DEnvironment;
 import org.xith3d.loop.opscheduler.Animator;
 import org.xith3d.loop.opscheduler.OperationScheduler;
 import org.xith3d.loop.opscheduler.impl.OperationSchedulerImpl;
+import org.xith3d.render.FrameTimeline;
 import org.xith3d.scenegraph.utils.LODWorkerThread;
 
 /**
@@ -588,6 +589,10 @@ public class RenderLoop extends UpdatingThread implements GameTimeHost, Updater,
      */
     protected void prepareNextFrame( long gameTime, long frameTime, TimingMode timingMode )
     {
+        final FrameTimeline timeline = ( x3dEnv != null ) ? x3dEnv.getRenderer().getFrameTimeline() : null;
+        
+        long t0 = System.nanoTime();
+        
         if ( x3dEnv != null )
         {
             x3dEnv.updatePhysicsEngine( gameTime, frameTime, timingMode );
@@ -598,13 +603,28 @@ public class RenderLoop extends UpdatingThread implements GameTimeHost, Updater,
         final OperationScheduler opScheder = getOperationScheduler();
         if ( opScheder != null )
         {
+            final long t1 = System.nanoTime();
+            
             opScheder.update( gameTime, frameTime, timingMode );
+            
+            final long t2 = System.nanoTime();
+            if ( timeline != null )
+            {
+                timeline.addPhaseTime( FrameTimeline.Phase.UPDATERS, t1 - t0 );
+                timeline.addPhaseTime( FrameTimeline.Phase.OPERATION_SCHEDULER, t2 - t1 );
+            }
+            t0 = t2;
         }
         
         if ( ( updater != null ) && ( updater != opScheder ) )
         {
             updater.update( gameTime, frameTime, timingMode );
         }
+        
+        if ( timeline != null )
+        {
+            timeline.addPhaseTime( FrameTimeline.Phase.UPDATERS, System.nanoTime() - t0 );
+        }
     }
     
     /**
@@ -643,6 +663,11 @@ public class RenderLoop extends UpdatingThread implements GameTimeHost, Updater,
         {
             renderNextFrame( gameTime, frameTime, timingMode );
         }
+        else if ( x3dEnv != null )
+        {
+            // Don't account the updates of a paused frame to the next rendered one.
+            x3dEnv.getRenderer().getFrameTimeline().discardFrame();
+        }
     }
     
     /**
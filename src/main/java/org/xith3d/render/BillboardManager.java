@@ -53,6 +53,7 @@ final class BillboardManager
     private static Matrix3f billboardScale = null;
     private static Transform3D viewTransform = null;
     private static Vector3f tmpVector = new Vector3f();
+    private static Point3f tmpPoint = new Point3f();
     
     /**
      * @return the rotation matrix for the View.
@@ -90,9 +91,8 @@ final class BillboardManager
     private static float computeZDistance( RenderAtom< ? > atom, View view )
     {
         final Point3f viewPosition = view.getPosition();
-        final Point3f atomPosition = new Point3f();
-        atom.getPosition( atomPosition );
-        tmpVector.sub( atomPosition, viewPosition );
+        atom.getPosition( tmpPoint );
+        tmpVector.sub( tmpPoint, viewPosition );
         
         return ( view.getFacingDirection().dot( tmpVector ) );
     }
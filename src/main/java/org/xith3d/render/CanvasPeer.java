@@ -88,6 +88,7 @@ public abstract class CanvasPeer implements InputSourceWindow
     protected OpenGLInfo oglInfo = null;
     
     private long triangles = 0;
+    private long swapTime = 0L;
     
     private float gamma = 1.0f;
     private float brightness = 0.0f;
@@ -103,6 +104,9 @@ public abstract class CanvasPeer implements InputSourceWindow
     
     private final HashSet< SceneGraphOpenGLReference > destroyableReferences = new HashSet< SceneGraphOpenGLReference >();
     
+    private final GPUMemoryBudget gpuMemoryBudget = new GPUMemoryBudget();
+    private final TextureStreamer textureStreamer = new TextureStreamer();
+    
     protected abstract RenderPeer createRenderPeer();
     
     public CanvasPeer( DisplayMode displayMode, FullscreenMode fullscreen, boolean vsync, FSAA fsaa, int depthBufferSize )
@@ -424,6 +428,25 @@ public abstract class CanvasPeer implements InputSourceWindow
         return ( triangles );
     }
     
+    /**
+     * Sets the nanoseconds spent swapping the buffers in the last rendered frame.
+     * 
+     * @param nanos
+     */
+    protected final void setSwapTime( long nanos )
+    {
+        swapTime = nanos;
+    }
+    
+    /**
+     * @return the nanoseconds spent swapping the buffers in the last rendered frame
+     *         or 0, if the implementation doesn't swap synchronously while rendering.
+     */
+    public final long getSwapTime()
+    {
+        return ( swapTime );
+    }
+    
     /**
      * @return the number of frames already rendered
      */
@@ -688,6 +711,53 @@ public abstract class CanvasPeer implements InputSourceWindow
         }
     }
     
+    /**
+     * @return the GPUMemoryBudget tracking the VBOs, display lists and textures of this context.
+     */
+    public final GPUMemoryBudget getGPUMemoryBudget()
+    {
+        return ( gpuMemoryBudget );
+    }
+    
+    /**
+     * @return the TextureStreamer driving the mipmap streaming of the streaming Textures rendered on this context.
+     */
+    public final TextureStreamer getTextureStreamer()
+    {
+        return ( textureStreamer );
+    }
+    
+    /**
+     * Upgrades and downgrades the streaming Textures observed in the previous frame.
+     */
+    protected final void updateTextureStreaming()
+    {
+        textureStreamer.update( gpuMemoryBudget );
+    }
+    
+    /**
+     * Starts a new frame of the GPUMemoryBudget and evicts the least recently
+     * rendered resources, if the budget is exceeded.
+     * This must be invoked with the OpenGL context current.
+     */
+    protected final void enforceGPUMemoryBudget()
+    {
+        if ( gpuMemoryBudget.beginFrame() > 0 )
+        {
+            // The evicted names may still be cached as the currently bound ones.
+            final RenderPeer renderPeer = getRenderPeer();
+            
+            if ( renderPeer != null )
+            {
+                final OpenGLStatesCache statesCache = renderPeer.getStatesCache();
+                
+                statesCache.currentBoundArrayVBO = -1;
+                statesCache.currentBoundElementVBO = -1;
+                java.util.Arrays.fill( statesCache.currentBoundTexture, null );
+            }
+        }
+    }
+    
     /**
      * Clears the screen (BLACK) and destroys the display.
      */
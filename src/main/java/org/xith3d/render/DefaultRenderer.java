@@ -44,6 +44,7 @@ import org.openmali.vecmath2.Point3f;
 import org.xith3d.picking.PickPool;
 import org.xith3d.picking.PickRequest;
 import org.xith3d.picking.PickResult;
+import org.xith3d.render.preprocessing.CullingCache;
 import org.xith3d.render.preprocessing.FrustumCuller;
 import org.xith3d.render.preprocessing.sorting.FrontToBackRenderBinSorter;
 import org.xith3d.render.preprocessing.sorting.OrderedStateRenderBinSorter;
@@ -76,6 +77,11 @@ public class DefaultRenderer extends Renderer
 {
     private static final FrontToBackRenderBinSorter frontToBackSorter = new FrontToBackRenderBinSorter();
     
+    /**
+     * Passed as a prebuilt varargs array, so that logging it doesn't allocate every frame.
+     */
+    private static final Object[] STARTING_FRAME_MESSAGE = new Object[] { "\nSTARTING FRAME\n" };
+    
     private RenderBinSorter opaqueRenderBinSorter = new OrderedStateRenderBinSorter();
     private RenderBinSorter transparentRenderBinSorter = new FrontToBackRenderBinSorter();
     
@@ -111,6 +117,9 @@ public class DefaultRenderer extends Renderer
     private long shapesRendered = 0;
     private long trianglesRendered = 0;
     
+    private final StateChangeStatistics stateChangeStatistics = new StateChangeStatistics();
+    private final FrameTimeline frameTimeline;
+    
     /**
      * {@inheritDoc}
      */
@@ -125,6 +134,50 @@ public class DefaultRenderer extends Renderer
         return ( modManager );
     }
     
+    /**
+     * @return the FrustumCuller used to collect the RenderAtoms
+     *         (e.g. to enable parallel culling).
+     */
+    public final FrustumCuller getFrustumCuller()
+    {
+        return ( frustumCuller );
+    }
+    
+    /**
+     * Enables or disables the culling cache, that keeps the culling results
+     * of unchanged subtrees between frames.
+     * 
+     * @see CullingCache
+     * 
+     * @param enabled
+     */
+    public final void setCullingCacheEnabled( boolean enabled )
+    {
+        if ( enabled == isCullingCacheEnabled() )
+            return;
+        
+        if ( enabled )
+        {
+            final CullingCache cache = new CullingCache();
+            
+            addScenegraphModificationListener( cache );
+            frustumCuller.setCullingCache( cache );
+        }
+        else
+        {
+            removeScenegraphModificationListener( frustumCuller.getCullingCache() );
+            frustumCuller.setCullingCache( null );
+        }
+    }
+    
+    /**
+     * @return whether the culling cache is enabled.
+     */
+    public final boolean isCullingCacheEnabled()
+    {
+        return ( frustumCuller.getCullingCache() != null );
+    }
+    
     /**
      * {@inheritDoc}
      */
@@ -504,7 +557,7 @@ public class DefaultRenderer extends Renderer
             transparentSorter = this.getTransparentSorter();
         }
         
-        pass.getRenderBinProvider().sortAllAtoms( opaqueSorter, transparentSorter, viewTransform );
+        pass.getRenderBinProvider().sortAllAtoms( opaqueSorter, transparentSorter, viewTransform, frameTimeline );
     }
     
     protected Object doRender( List< RenderPass > renderPasses, Canvas3D canvas, long frameId, long nanoTime, long nanoStep, PickRequest pickRequest )
@@ -534,13 +587,14 @@ public class DefaultRenderer extends Renderer
     private Object renderOnceInternal( List< RenderPass > renderPasses, List< ? extends List< GroupNode > > groupLists, Canvas3D canvas, long nanoTime, long nanoStep, PickRequest pickRequest )
     {
         Object result;
+        int atoms = 0;
         synchronized ( canvas.getPeer().getRenderLock() )
         {
             frameId++;
             
             canvas.checkForResized();
             
-            X3DLog.println("\nSTARTING FRAME\n" );
+            X3DLog.println( STARTING_FRAME_MESSAGE );
             
             shapesRendered = 0L;
             trianglesRendered = 0L;
@@ -550,6 +604,8 @@ public class DefaultRenderer extends Renderer
             
             ProfileTimer.startProfile( X3DLog.LOG_CHANNEL, "Renderer:renderOnce" );
             
+            long t0 = System.nanoTime();
+            
             if ( ( groupLists != null ) && modManager.hasAnythingChanged() )
             {
                 for ( int i = 0; i < groupLists.size(); i++ )
@@ -595,6 +651,17 @@ public class DefaultRenderer extends Renderer
             
             if ( pickRequest == null )
             {
+                for ( int i = 0; i < renderPasses.size(); i++ )
+                {
+                    final BranchGroup bg = renderPasses.get( i ).getBranchGroup();
+                    if ( bg != null )
+                        _SG_PrivilegedAccess.validateWorldBounds( bg );
+                }
+                
+                long t1 = System.nanoTime();
+                frameTimeline.addPhaseTime( FrameTimeline.Phase.BOUNDS_UPDATE, t1 - t0 );
+                t0 = t1;
+                
                 if ( renderTargets.size() > 0 )
                 {
                     effectiveRenderPasses.clear();
@@ -618,7 +685,9 @@ public class DefaultRenderer extends Renderer
                             viewPos = viewPosition2;
                         }
                         
+                        final long t2 = System.nanoTime();
                         frustumCuller.cullAtoms( renderPass, renderTarget.getGroup(), canvas, viewPos, glCaps, frameId, nanoTime, nanoStep, null );
+                        frameTimeline.addRenderPassCullTime( System.nanoTime() - t2 );
                         
                         effectiveRenderPasses.add( renderPass );
                         
@@ -638,6 +707,10 @@ public class DefaultRenderer extends Renderer
                 shapesRendered = frustumCuller.cullAtoms( renderPasses, groupLists, canvas, glCaps, frameId, nanoTime, nanoStep, null );
                 trianglesRendered = canvas.getPeer().getTriangles();
                 
+                t1 = System.nanoTime();
+                frameTimeline.addPhaseTime( FrameTimeline.Phase.CULL, t1 - t0 );
+                t0 = t1;
+                
                 // sort
                 for ( int i = 0; i < rps.size(); i++ )
                 {
@@ -649,7 +722,8 @@ public class DefaultRenderer extends Renderer
                     else
                         viewTransform = renderPass.getConfig().getViewTransform();
                     
-                    sortAllAtoms( renderPass, viewTransform );
+                    if ( !frustumCuller.isRenderPassReused( renderPass ) )
+                        sortAllAtoms( renderPass, viewTransform );
                 }
                 
                 modManager.resetAnythingChanged();
@@ -685,7 +759,18 @@ public class DefaultRenderer extends Renderer
             
             
             if ( pickRequest == null )
+            {
+                t0 = System.nanoTime();
                 result = doRender( rps, canvas, frameId, nanoTime, nanoStep, pickRequest );
+                final long swapTime = canvas.getPeer().getSwapTime();
+                frameTimeline.addPhaseTime( FrameTimeline.Phase.DRAW, System.nanoTime() - t0 - swapTime );
+                frameTimeline.addPhaseTime( FrameTimeline.Phase.SWAP, swapTime );
+                
+                for ( int i = 0; i < rps.size(); i++ )
+                {
+                    atoms += rps.get( i ).getRenderBinProvider().getAtomsCount();
+                }
+            }
             else
                 result = doRender( pickRequest.getRenderPasses(), canvas, frameId, nanoTime, nanoStep, pickRequest );
             
@@ -693,10 +778,26 @@ public class DefaultRenderer extends Renderer
             
             isRendering = false;
         }
+        
+        final long t0 = System.nanoTime();
         canvas.getPeer().finish();
-
-            return ( result );
         
+        if ( pickRequest == null )
+        {
+            final RenderPeer renderPeer = canvas.getPeer().getRenderPeer();
+            if ( renderPeer != null )
+                stateChangeStatistics.set( renderPeer.getStateChangeStatistics() );
+            
+            if ( frameTimeline.isEnabled() )
+            {
+                // Peers, that draw asynchronously, actually draw and swap here.
+                frameTimeline.addPhaseTime( FrameTimeline.Phase.SWAP, System.nanoTime() - t0 );
+                
+                frameTimeline.endFrame( frameId, nanoTime, atoms, canvas.getPeer().getTriangles(), stateChangeStatistics.getNumIssued() );
+            }
+        }
+        
+        return ( result );
     }
     
     @SuppressWarnings( "unchecked" )
@@ -930,6 +1031,33 @@ public class DefaultRenderer extends Renderer
         return ( trianglesRendered );
     }
     
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final int getNumStateChanges()
+    {
+        return ( stateChangeStatistics.getNumIssued() );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final int getNumSkippedStateChanges()
+    {
+        return ( stateChangeStatistics.getNumSkipped() );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final StateChangeStatistics getStateChangeStatistics()
+    {
+        return ( stateChangeStatistics );
+    }
+    
     /**
      * {@inheritDoc}
      */
@@ -939,12 +1067,23 @@ public class DefaultRenderer extends Renderer
         return ( isRendering );
     }
     
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final FrameTimeline getFrameTimeline()
+    {
+        return ( frameTimeline );
+    }
+    
     /**
      * Creates a new Renderer.
      */
     public DefaultRenderer()
     {
         this.frustumCuller = new FrustumCuller();
+        this.frameTimeline = new FrameTimeline();
+        this.frustumCuller.setFrameTimeline( frameTimeline );
         this.modManager = new ScenegraphModificationsManager( this );
         this.modListeners = new ArrayList< ScenegraphModificationsListener >( 1 );
         
@@ -0,0 +1,589 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.render;
+
+import java.io.IOException;
+import java.io.Writer;
+
+/**
+ * Records the timings of the phases of the last frames in a fixed-size ring buffer.<br>
+ * Each frame holds the nanoseconds spent in every {@link Phase}, the cull time of each
+ * RenderPass as well as the number of rendered atoms, triangles and state changes.<br>
+ * <br>
+ * The timings are accumulated for the current frame through {@link #addPhaseTime(Phase, long)}
+ * and {@link #addRenderPassCullTime(long)} and committed to the ring buffer by
+ * {@link #endFrame(long, long, int, long, int)}, which the {@link DefaultRenderer} calls after
+ * each rendered frame. Phases, that are measured outside of the Renderer (like the updaters of
+ * the RenderLoop), are accounted to the next frame being committed.<br>
+ * <br>
+ * Frame indices passed to the getters are relative to the oldest frame still retained, so that
+ * <code>0</code> is the oldest and <code>getNumFrames() - 1</code> the most recent frame.
+ */
+public class FrameTimeline
+{
+    /**
+     * The phases of a frame.
+     */
+    public static enum Phase
+    {
+        /**
+         * The Updater of the RenderLoop, the physics engine and the input system.
+         */
+        UPDATERS,
+        
+        /**
+         * The OperationScheduler of the RenderLoop.
+         */
+        OPERATION_SCHEDULER,
+        
+        /**
+         * Handling of the scenegraph modifications and the world bounds of the root groups.
+         * The world bounds of all other nodes are lazily validated while culling
+         * and therefore accounted to {@link #CULL}.
+         */
+        BOUNDS_UPDATE,
+        
+        /**
+         * Frustum culling of all RenderPasses.
+         */
+        CULL,
+        
+        /**
+         * Sorting of the opaque RenderBins.
+         */
+        SORT_OPAQUE,
+        
+        /**
+         * Sorting of the transparent RenderBins.
+         */
+        SORT_TRANSPARENT,
+        
+        /**
+         * Sorting of the shadow RenderBins.
+         */
+        SORT_SHADOWS,
+        
+        /**
+         * Drawing of all RenderPasses.
+         */
+        DRAW,
+        
+        /**
+         * Swapping the buffers, if the CanvasPeer measures it separately from {@link #DRAW}.
+         */
+        SWAP,
+        ;
+    }
+    
+    private static final Phase[] PHASES = Phase.values();
+    private static final int NUM_PHASES = PHASES.length;
+    
+    /**
+     * The default number of frames retained.
+     */
+    public static final int DEFAULT_CAPACITY = 256;
+    
+    /**
+     * The default number of RenderPasses, whose cull times are recorded per frame.
+     */
+    public static final int DEFAULT_MAX_RENDER_PASSES = 16;
+    
+    private final int capacity;
+    private final int maxRenderPasses;
+    
+    private final long[] frameIds;
+    private final long[] nanoTimes;
+    private final long[] phaseTimes;
+    private final int[] numRenderPasses;
+    private final long[] passCullTimes;
+    private final int[] atoms;
+    private final long[] triangles;
+    private final int[] stateChanges;
+    
+    private final long[] currPhaseTimes;
+    private final long[] currPassCullTimes;
+    private int currNumRenderPasses = 0;
+    
+    private int head = 0;
+    private int numFrames = 0;
+    private long totalFrames = 0L;
+    
+    private boolean enabled = true;
+    
+    /**
+     * Enables or disables recording. A disabled timeline ignores all timings.
+     * 
+     * @param enabled
+     */
+    public void setEnabled( boolean enabled )
+    {
+        this.enabled = enabled;
+        
+        if ( !enabled )
+        {
+            discardFrame();
+        }
+    }
+    
+    /**
+     * @return whether the timeline records the frames.
+     */
+    public final boolean isEnabled()
+    {
+        return ( enabled );
+    }
+    
+    /**
+     * @return the maximum number of frames retained.
+     */
+    public final int getCapacity()
+    {
+        return ( capacity );
+    }
+    
+    /**
+     * @return the maximum number of RenderPasses, whose cull times are recorded per frame.
+     */
+    public final int getMaxRenderPasses()
+    {
+        return ( maxRenderPasses );
+    }
+    
+    /**
+     * Adds the given time to a phase of the current frame.
+     * 
+     * @param phase
+     * @param nanos
+     */
+    public final void addPhaseTime( Phase phase, long nanos )
+    {
+        if ( enabled )
+        {
+            currPhaseTimes[ phase.ordinal() ] += nanos;
+        }
+    }
+    
+    /**
+     * Records the cull time of the next RenderPass of the current frame.
+     * The cull time is not added to {@link Phase#CULL}.
+     * 
+     * @param nanos
+     */
+    public final void addRenderPassCullTime( long nanos )
+    {
+        if ( enabled && ( currNumRenderPasses < maxRenderPasses ) )
+        {
+            currPassCullTimes[ currNumRenderPasses++ ] = nanos;
+        }
+    }
+    
+    /**
+     * Drops all timings accumulated for the current frame.
+     */
+    public final void discardFrame()
+    {
+        for ( int i = 0; i < NUM_PHASES; i++ )
+        {
+            currPhaseTimes[ i ] = 0L;
+        }
+        
+        currNumRenderPasses = 0;
+    }
+    
+    /**
+     * Commits the current frame to the ring buffer, overwriting the oldest frame, if it is full.
+     * 
+     * @param frameId the frame's id
+     * @param nanoTime the frame's (game) time
+     * @param numAtoms the number of rendered atoms
+     * @param numTriangles the number of rendered triangles
+     * @param numStateChanges the number of applied state changes
+     */
+    public final void endFrame( long frameId, long nanoTime, int numAtoms, long numTriangles, int numStateChanges )
+    {
+        if ( !enabled )
+            return;
+        
+        synchronized ( this )
+        {
+            final int slot = head;
+            
+            frameIds[ slot ] = frameId;
+            nanoTimes[ slot ] = nanoTime;
+            System.arraycopy( currPhaseTimes, 0, phaseTimes, slot * NUM_PHASES, NUM_PHASES );
+            numRenderPasses[ slot ] = currNumRenderPasses;
+            System.arraycopy( currPassCullTimes, 0, passCullTimes, slot * maxRenderPasses, currNumRenderPasses );
+            atoms[ slot ] = numAtoms;
+            triangles[ slot ] = numTriangles;
+            stateChanges[ slot ] = numStateChanges;
+            
+            head = ( head + 1 ) % capacity;
+            if ( numFrames < capacity )
+                numFrames++;
+            totalFrames++;
+        }
+        
+        discardFrame();
+    }
+    
+    /**
+     * Removes all recorded frames.
+     */
+    public synchronized void clear()
+    {
+        head = 0;
+        numFrames = 0;
+        totalFrames = 0L;
+        
+        discardFrame();
+    }
+    
+    /**
+     * @return the number of frames currently retained.
+     */
+    public final synchronized int getNumFrames()
+    {
+        return ( numFrames );
+    }
+    
+    /**
+     * @return the number of frames recorded since creation or the last {@link #clear()}.
+     */
+    public final synchronized long getTotalFrames()
+    {
+        return ( totalFrames );
+    }
+    
+    private final int getSlot( int frame )
+    {
+        if ( ( frame < 0 ) || ( frame >= numFrames ) )
+            throw new IndexOutOfBoundsException( "frame " + frame + " is not in [0, " + numFrames + ")" );
+        
+        return ( ( head - numFrames + frame + capacity ) % capacity );
+    }
+    
+    /**
+     * @param frame
+     * 
+     * @return the id of the frame.
+     */
+    public final synchronized long getFrameId( int frame )
+    {
+        return ( frameIds[ getSlot( frame ) ] );
+    }
+    
+    /**
+     * @param frame
+     * 
+     * @return the (game) time of the frame in nanoseconds.
+     */
+    public final synchronized long getNanoTime( int frame )
+    {
+        return ( nanoTimes[ getSlot( frame ) ] );
+    }
+    
+    /**
+     * @param frame
+     * @param phase
+     * 
+     * @return the nanoseconds spent in the given phase of the frame.
+     */
+    public final synchronized long getPhaseTime( int frame, Phase phase )
+    {
+        return ( phaseTimes[ getSlot( frame ) * NUM_PHASES + phase.ordinal() ] );
+    }
+    
+    /**
+     * @param frame
+     * 
+     * @return the nanoseconds spent in all phases of the frame.
+     */
+    public final synchronized long getFrameTime( int frame )
+    {
+        final int offset = getSlot( frame ) * NUM_PHASES;
+        
+        long sum = 0L;
+        for ( int i = 0; i < NUM_PHASES; i++ )
+        {
+            sum += phaseTimes[ offset + i ];
+        }
+        
+        return ( sum );
+    }
+    
+    /**
+     * @param frame
+     * 
+     * @return the number of RenderPasses, whose cull times have been recorded for the frame.
+     */
+    public final synchronized int getNumRenderPasses( int frame )
+    {
+        return ( numRenderPasses[ getSlot( frame ) ] );
+    }
+    
+    /**
+     * @param frame
+     * @param renderPass the index of the RenderPass in the order of culling
+     * 
+     * @return the nanoseconds spent culling the given RenderPass of the frame.
+     */
+    public final synchronized long getRenderPassCullTime( int frame, int renderPass )
+    {
+        final int slot = getSlot( frame );
+        
+        if ( ( renderPass < 0 ) || ( renderPass >= numRenderPasses[ slot ] ) )
+            throw new IndexOutOfBoundsException( "renderPass " + renderPass + " is not in [0, " + numRenderPasses[ slot ] + ")" );
+        
+        return ( passCullTimes[ slot * maxRenderPasses + renderPass ] );
+    }
+    
+    /**
+     * @param frame
+     * 
+     * @return the number of atoms rendered in the frame.
+     */
+    public final synchronized int getAtoms( int frame )
+    {
+        return ( atoms[ getSlot( frame ) ] );
+    }
+    
+    /**
+     * @param frame
+     * 
+     * @return the number of triangles rendered in the frame.
+     */
+    public final synchronized long getTriangles( int frame )
+    {
+        return ( triangles[ getSlot( frame ) ] );
+    }
+    
+    /**
+     * @param frame
+     * 
+     * @return the number of state changes applied in the frame.
+     */
+    public final synchronized int getStateChanges( int frame )
+    {
+        return ( stateChanges[ getSlot( frame ) ] );
+    }
+    
+    /**
+     * @param phase
+     * 
+     * @return the average nanoseconds spent in the given phase over all retained frames.
+     */
+    public final synchronized long getAveragePhaseTime( Phase phase )
+    {
+        if ( numFrames == 0 )
+            return ( 0L );
+        
+        long sum = 0L;
+        for ( int i = 0; i < numFrames; i++ )
+        {
+            sum += phaseTimes[ getSlot( i ) * NUM_PHASES + phase.ordinal() ];
+        }
+        
+        return ( sum / numFrames );
+    }
+    
+    /**
+     * @return the average nanoseconds spent in all phases over all retained frames.
+     */
+    public final synchronized long getAverageFrameTime()
+    {
+        if ( numFrames == 0 )
+            return ( 0L );
+        
+        long sum = 0L;
+        for ( int i = 0; i < numFrames; i++ )
+        {
+            sum += getFrameTime( i );
+        }
+        
+        return ( sum / numFrames );
+    }
+    
+    private static String getColumnName( Phase phase )
+    {
+        return ( phase.name().toLowerCase() + "_ns" );
+    }
+    
+    /**
+     * Writes all retained frames as CSV with a header line, one frame per line,
+     * oldest first. The per-RenderPass cull times are written as columns
+     * <code>cull_pass0_ns</code>, <code>cull_pass1_ns</code>, ...
+     * 
+     * @param out
+     * 
+     * @throws IOException
+     */
+    public synchronized void dumpCSV( Writer out ) throws IOException
+    {
+        int maxPasses = 0;
+        for ( int i = 0; i < numFrames; i++ )
+        {
+            maxPasses = Math.max( maxPasses, numRenderPasses[ getSlot( i ) ] );
+        }
+        
+        out.write( "frame_id,nano_time" );
+        for ( int p = 0; p < NUM_PHASES; p++ )
+        {
+            out.write( ',' );
+            out.write( getColumnName( PHASES[ p ] ) );
+        }
+        out.write( ",atoms,triangles,state_changes" );
+        for ( int j = 0; j < maxPasses; j++ )
+        {
+            out.write( ",cull_pass" + j + "_ns" );
+        }
+        out.write( '\n' );
+        
+        final StringBuilder sb = new StringBuilder();
+        for ( int i = 0; i < numFrames; i++ )
+        {
+            final int slot = getSlot( i );
+            
+            sb.setLength( 0 );
+            sb.append( frameIds[ slot ] ).append( ',' ).append( nanoTimes[ slot ] );
+            for ( int p = 0; p < NUM_PHASES; p++ )
+            {
+                sb.append( ',' ).append( phaseTimes[ slot * NUM_PHASES + p ] );
+            }
+            sb.append( ',' ).append( atoms[ slot ] ).append( ',' ).append( triangles[ slot ] ).append( ',' ).append( stateChanges[ slot ] );
+            for ( int j = 0; j < maxPasses; j++ )
+            {
+                sb.append( ',' );
+                if ( j < numRenderPasses[ slot ] )
+                    sb.append( passCullTimes[ slot * maxRenderPasses + j ] );
+            }
+            sb.append( '\n' );
+            
+            out.write( sb.toString() );
+        }
+        
+        out.flush();
+    }
+    
+    /**
+     * Writes all retained frames as a JSON array of frame objects, oldest first.
+     * 
+     * @param out
+     * 
+     * @throws IOException
+     */
+    public synchronized void dumpJSON( Writer out ) throws IOException
+    {
+        final StringBuilder sb = new StringBuilder();
+        
+        out.write( "[" );
+        for ( int i = 0; i < numFrames; i++ )
+        {
+            final int slot = getSlot( i );
+            
+            sb.setLength( 0 );
+            if ( i > 0 )
+                sb.append( ',' );
+            sb.append( "\n  {\"frame_id\": " ).append( frameIds[ slot ] );
+            sb.append( ", \"nano_time\": " ).append( nanoTimes[ slot ] );
+            for ( int p = 0; p < NUM_PHASES; p++ )
+            {
+                sb.append( ", \"" ).append( getColumnName( PHASES[ p ] ) ).append( "\": " ).append( phaseTimes[ slot * NUM_PHASES + p ] );
+            }
+            sb.append( ", \"atoms\": " ).append( atoms[ slot ] );
+            sb.append( ", \"triangles\": " ).append( triangles[ slot ] );
+            sb.append( ", \"state_changes\": " ).append( stateChanges[ slot ] );
+            sb.append( ", \"cull_passes_ns\": [" );
+            for ( int j = 0; j < numRenderPasses[ slot ]; j++ )
+            {
+                if ( j > 0 )
+                    sb.append( ", " );
+                sb.append( passCullTimes[ slot * maxRenderPasses + j ] );
+            }
+            sb.append( "]}" );
+            
+            out.write( sb.toString() );
+        }
+        out.write( ( numFrames > 0 ) ? "\n]\n" : "]\n" );
+        
+        out.flush();
+    }
+    
+    /**
+     * Creates a new FrameTimeline.
+     * 
+     * @param capacity the maximum number of frames retained
+     * @param maxRenderPasses the maximum number of RenderPasses, whose cull times are recorded per frame
+     */
+    public FrameTimeline( int capacity, int maxRenderPasses )
+    {
+        if ( capacity < 1 )
+            throw new IllegalArgumentException( "capacity must be at least 1." );
+        
+        if ( maxRenderPasses < 0 )
+            throw new IllegalArgumentException( "maxRenderPasses must not be negative." );
+        
+        this.capacity = capacity;
+        this.maxRenderPasses = maxRenderPasses;
+        
+        this.frameIds = new long[ capacity ];
+        this.nanoTimes = new long[ capacity ];
+        this.phaseTimes = new long[ capacity * NUM_PHASES ];
+        this.numRenderPasses = new int[ capacity ];
+        this.passCullTimes = new long[ capacity * maxRenderPasses ];
+        this.atoms = new int[ capacity ];
+        this.triangles = new long[ capacity ];
+        this.stateChanges = new int[ capacity ];
+        
+        this.currPhaseTimes = new long[ NUM_PHASES ];
+        this.currPassCullTimes = new long[ maxRenderPasses ];
+    }
+    
+    /**
+     * Creates a new FrameTimeline.
+     * 
+     * @param capacity the maximum number of frames retained
+     */
+    public FrameTimeline( int capacity )
+    {
+        this( capacity, DEFAULT_MAX_RENDER_PASSES );
+    }
+    
+    /**
+     * Creates a new FrameTimeline retaining {@link #DEFAULT_CAPACITY} frames.
+     */
+    public FrameTimeline()
+    {
+        this( DEFAULT_CAPACITY );
+    }
+}
@@ -0,0 +1,445 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.render;
+
+import org.xith3d.scenegraph.Geometry;
+import org.xith3d.scenegraph.Texture;
+import org.xith3d.scenegraph.Texture2D;
+import org.xith3d.scenegraph.TextureCubeMap;
+import org.xith3d.scenegraph.TextureImage;
+import org.xith3d.scenegraph.TextureImage3D;
+
+/**
+ * Tracks the GPU memory of the VBOs, display lists and textures of one
+ * OpenGL context and keeps it within a configurable budget.<br>
+ * <br>
+ * The peers report each upload and each use of a resource through its
+ * {@link SceneGraphOpenGLReference}. The references are kept in a list
+ * ordered by the frame, they have last been rendered in. When a frame starts
+ * and the budget is exceeded, the least recently rendered resources are
+ * deleted from the GPU. Their references lose their OpenGL names, so that
+ * the peers upload them again, when they are rendered the next time.<br>
+ * Resources, that have been rendered in the previous frame, are never
+ * evicted, and neither are resources, whose data only lives on the GPU
+ * (e.g. textures with freed local data).<br>
+ * <br>
+ * The sizes of display lists and textures are estimated from their
+ * Geometry's and images' data.<br>
+ * The budget is only accessed from the rendering thread.
+ * 
+ * @see CanvasPeer#getGPUMemoryBudget()
+ */
+public class GPUMemoryBudget
+{
+    public static enum ResourceType
+    {
+        VBO,
+        DISPLAY_LIST,
+        TEXTURE;
+    }
+    
+    private static final int NUM_TYPES = ResourceType.values().length;
+    
+    private long budget = 0L;
+    private long frame = 0L;
+    
+    /**
+     * the least recently rendered reference
+     */
+    private SceneGraphOpenGLReference lruHead = null;
+    
+    /**
+     * the most recently rendered reference
+     */
+    private SceneGraphOpenGLReference lruTail = null;
+    
+    private long totalResidentBytes = 0L;
+    private final long[] residentBytes = new long[ NUM_TYPES ];
+    private final int[] numResident = new int[ NUM_TYPES ];
+    private final int[] numEvictions = new int[ NUM_TYPES ];
+    private final long[] evictedBytes = new long[ NUM_TYPES ];
+    private final int[] numReuploads = new int[ NUM_TYPES ];
+    
+    /**
+     * Sets the maximum number of bytes, the resources of this context may occupy.
+     * 
+     * @param budget the budget in bytes. 0 (the default) means unlimited.
+     */
+    public void setBudget( long budget )
+    {
+        if ( budget < 0L )
+            throw new IllegalArgumentException( "budget must not be negative" );
+        
+        this.budget = budget;
+    }
+    
+    /**
+     * @return the maximum number of bytes, the resources of this context may occupy (0 for unlimited).
+     */
+    public final long getBudget()
+    {
+        return ( budget );
+    }
+    
+    /**
+     * @return the number of frames started by this budget.
+     */
+    public final long getFrame()
+    {
+        return ( frame );
+    }
+    
+    /**
+     * @return the bytes of all resident resources.
+     */
+    public final long getResidentBytes()
+    {
+        return ( totalResidentBytes );
+    }
+    
+    /**
+     * @param type
+     * 
+     * @return the bytes of the resident resources of the given type.
+     */
+    public final long getResidentBytes( ResourceType type )
+    {
+        return ( residentBytes[ type.ordinal() ] );
+    }
+    
+    /**
+     * @return the number of resident resources.
+     */
+    public final int getNumResidentResources()
+    {
+        int sum = 0;
+        for ( int i = 0; i < NUM_TYPES; i++ )
+        {
+            sum += numResident[ i ];
+        }
+        
+        return ( sum );
+    }
+    
+    /**
+     * @param type
+     * 
+     * @return the number of resident resources of the given type.
+     */
+    public final int getNumResidentResources( ResourceType type )
+    {
+        return ( numResident[ type.ordinal() ] );
+    }
+    
+    /**
+     * @return the number of evictions since the creation of this budget.
+     */
+    public final int getEvictionCount()
+    {
+        int sum = 0;
+        for ( int i = 0; i < NUM_TYPES; i++ )
+        {
+            sum += numEvictions[ i ];
+        }
+        
+        return ( sum );
+    }
+    
+    /**
+     * @param type
+     * 
+     * @return the number of evictions of resources of the given type.
+     */
+    public final int getEvictionCount( ResourceType type )
+    {
+        return ( numEvictions[ type.ordinal() ] );
+    }
+    
+    /**
+     * @return the bytes freed by evictions since the creation of this budget.
+     */
+    public final long getEvictedBytes()
+    {
+        long sum = 0L;
+        for ( int i = 0; i < NUM_TYPES; i++ )
+        {
+            sum += evictedBytes[ i ];
+        }
+        
+        return ( sum );
+    }
+    
+    /**
+     * @return the number of evicted resources, that have been uploaded again.
+     */
+    public final int getReuploadCount()
+    {
+        int sum = 0;
+        for ( int i = 0; i < NUM_TYPES; i++ )
+        {
+            sum += numReuploads[ i ];
+        }
+        
+        return ( sum );
+    }
+    
+    /**
+     * @param type
+     * 
+     * @return the number of evicted resources of the given type, that have been uploaded again.
+     */
+    public final int getReuploadCount( ResourceType type )
+    {
+        return ( numReuploads[ type.ordinal() ] );
+    }
+    
+    private final void unlink( SceneGraphOpenGLReference ref )
+    {
+        if ( ref.lruPrev == null )
+            lruHead = ref.lruNext;
+        else
+            ref.lruPrev.lruNext = ref.lruNext;
+        
+        if ( ref.lruNext == null )
+            lruTail = ref.lruPrev;
+        else
+            ref.lruNext.lruPrev = ref.lruPrev;
+        
+        ref.lruPrev = null;
+        ref.lruNext = null;
+    }
+    
+    private final void append( SceneGraphOpenGLReference ref )
+    {
+        ref.lruPrev = lruTail;
+        ref.lruNext = null;
+        
+        if ( lruTail == null )
+            lruHead = ref;
+        else
+            lruTail.lruNext = ref;
+        
+        lruTail = ref;
+    }
+    
+    /**
+     * Registers the (re-)upload of a resource.
+     * 
+     * @param ref the resource's reference
+     * @param type
+     * @param bytes the number of bytes occupied on the GPU
+     * @param evictable false, if the resource can't be uploaded again after an eviction
+     */
+    public final void markResident( SceneGraphOpenGLReference ref, ResourceType type, long bytes, boolean evictable )
+    {
+        if ( ref.residentType != null )
+        {
+            final int oldType = ref.residentType.ordinal();
+            residentBytes[ oldType ] -= ref.residentBytes;
+            numResident[ oldType ]--;
+            totalResidentBytes -= ref.residentBytes;
+            
+            unlink( ref );
+        }
+        else if ( ref.evicted )
+        {
+            numReuploads[ type.ordinal() ]++;
+            ref.evicted = false;
+        }
+        
+        ref.residentType = type;
+        ref.residentBytes = bytes;
+        ref.evictable = evictable;
+        ref.lastUsedFrame = frame;
+        
+        residentBytes[ type.ordinal() ] += bytes;
+        numResident[ type.ordinal() ]++;
+        totalResidentBytes += bytes;
+        
+        append( ref );
+    }
+    
+    /**
+     * Registers the use of a resource in the current frame.
+     * 
+     * @param ref the resource's reference
+     */
+    public final void markUsed( SceneGraphOpenGLReference ref )
+    {
+        if ( ( ref.residentType == null ) || ( ref.lastUsedFrame == frame ) )
+            return;
+        
+        ref.lastUsedFrame = frame;
+        
+        if ( ref != lruTail )
+        {
+            unlink( ref );
+            append( ref );
+        }
+    }
+    
+    /**
+     * Unregisters a resource, that has been deleted from the GPU.
+     * 
+     * @param ref the resource's reference
+     */
+    public final void release( SceneGraphOpenGLReference ref )
+    {
+        if ( ref.residentType == null )
+            return;
+        
+        final int type = ref.residentType.ordinal();
+        residentBytes[ type ] -= ref.residentBytes;
+        numResident[ type ]--;
+        totalResidentBytes -= ref.residentBytes;
+        
+        unlink( ref );
+        
+        ref.residentType = null;
+        ref.residentBytes = 0L;
+    }
+    
+    /**
+     * Starts a new frame and evicts the least recently rendered resources,
+     * until the budget is met. This must be invoked with the OpenGL context current.
+     * 
+     * @return the number of evicted resources
+     */
+    public final int beginFrame()
+    {
+        frame++;
+        
+        if ( ( budget == 0L ) || ( totalResidentBytes <= budget ) )
+            return ( 0 );
+        
+        int numEvicted = 0;
+        
+        SceneGraphOpenGLReference ref = lruHead;
+        while ( ( ref != null ) && ( totalResidentBytes > budget ) )
+        {
+            // The list is ordered by the last use. So all following resources have been rendered in the previous frame, too.
+            if ( ref.lastUsedFrame >= frame - 1L )
+                break;
+            
+            final SceneGraphOpenGLReference next = ref.lruNext;
+            
+            if ( ref.evictable )
+            {
+                final int type = ref.residentType.ordinal();
+                numEvictions[ type ]++;
+                evictedBytes[ type ] += ref.residentBytes;
+                
+                release( ref );
+                ref.evicted = true;
+                ref.destroyObject();
+                
+                numEvicted++;
+            }
+            
+            ref = next;
+        }
+        
+        return ( numEvicted );
+    }
+    
+    /**
+     * @param geom
+     * 
+     * @return the estimated number of bytes of a display list, that draws the given Geometry.
+     */
+    public static long estimateDisplayListBytes( Geometry geom )
+    {
+        int floatsPerVertex = geom.getCoordinatesSize();
+        
+        if ( geom.hasNormals() )
+            floatsPerVertex += 3;
+        
+        if ( geom.hasColors() )
+            floatsPerVertex += geom.getColorsSize();
+        
+        for ( int unit = 0; unit < geom.getNumTextureUnits(); unit++ )
+        {
+            floatsPerVertex += geom.getTexCoordSize( unit );
+        }
+        
+        return ( (long)geom.getValidVertexCount() * floatsPerVertex * 4L );
+    }
+    
+    /**
+     * @param texture
+     * 
+     * @return the estimated number of bytes of the given Texture's (resident) images on the GPU.
+     */
+    public static long estimateTextureBytes( Texture texture )
+    {
+        final int baseLevel = ( ( texture instanceof Texture2D ) && ( (Texture2D)texture ).isStreaming() ) ? ( (Texture2D)texture ).getResidentLevel() : 0;
+        
+        long bytes = 0L;
+        
+        for ( int level = baseLevel; level < texture.getImagesCount(); level++ )
+        {
+            final TextureImage image = texture.getImage( level );
+            
+            long levelBytes = (long)image.getWidth() * image.getHeight() * image.getFormat().getPixelSize();
+            if ( image instanceof TextureImage3D )
+                levelBytes *= ( (TextureImage3D)image ).getDepth();
+            
+            bytes += levelBytes;
+        }
+        
+        if ( texture instanceof TextureCubeMap )
+            bytes *= 6L;
+        
+        return ( bytes );
+    }
+    
+    /**
+     * @param texture
+     * 
+     * @return true, if the given Texture can be uploaded again after an eviction.
+     */
+    public static boolean isReuploadable( Texture texture )
+    {
+        if ( texture.isMarkedAsLocalDataToBeFreed() || ( texture.getImagesCount() == 0 ) )
+            return ( false );
+        
+        for ( int level = 0; level < texture.getImagesCount(); level++ )
+        {
+            if ( !texture.getImage( level ).hasData() )
+                return ( false );
+        }
+        
+        return ( true );
+    }
+}
@@ -49,6 +49,7 @@ public class OpenGLCapabilities
     private final int maxVertexAttributes;
     
     private final boolean isMinVersion13;
+    private final boolean isMinVersion14;
     private final boolean isMinVersion15;
     
     private final boolean supportsPlainMultiTexturing;
@@ -79,6 +80,11 @@ public class OpenGLCapabilities
         return ( isMinVersion13 );
     }
     
+    public final boolean isMinVersion14()
+    {
+        return ( isMinVersion14 );
+    }
+    
     public final boolean isMinVersion15()
     {
         return ( isMinVersion15 );
@@ -102,6 +108,7 @@ public class OpenGLCapabilities
         this.maxVertexAttributes = maxVertexAttributes;
         
         this.isMinVersion13 = ( glInfo.getNormalizedVersion() >= OpenGLInfo.NORM_VERSION_1_3 );
+        this.isMinVersion14 = ( glInfo.getNormalizedVersion() >= OpenGLInfo.NORM_VERSION_1_4 );
         this.isMinVersion15 = ( glInfo.getNormalizedVersion() >= OpenGLInfo.NORM_VERSION_1_5 );
         
         this.supportsPlainMultiTexturing = ( glInfo.getKnwonVendor() != KnownVendor.ATI ) && ( glInfo.getKnwonVendor() != KnownVendor.INTEL ) && ( glInfo.getKnwonVendor() != KnownVendor.MESA );
@@ -159,6 +159,11 @@ public abstract class OpenGLStatesCache
     public int currentBoundArrayVBO = -1;
     public int currentBoundElementVBO = -1;
     
+    /**
+     * Counts the issued and the skipped state changes of the current frame.
+     */
+    public final StateChangeStatistics statistics = new StateChangeStatistics();
+    
     public final void update( boolean   _coordsArrayEnabled,
                               boolean   _normalsArrayEnabled,
                               boolean   _colorsArrayEnabled,
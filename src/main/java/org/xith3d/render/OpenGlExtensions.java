@@ -56,6 +56,7 @@ public class OpenGlExtensions
     public static boolean GL_NV_texgen_reflection = false;
     public static boolean GL_KTX_buffer_region = false;
     public static boolean GL_CUSTOM_VERTEX_ATTRIBUTES = false;
+    public static boolean GL_ARB_half_float_vertex = false;
     
     /**
      * Sets the static booleans for some known extensions used by the renderer.
@@ -79,5 +80,6 @@ public class OpenGlExtensions
         GL_ARB_transpose_matrix = oglInfo.hasExtension( "GL_ARB_transpose_matrix" );
         GL_KTX_buffer_region = oglInfo.hasExtension( "GL_KTX_buffer_region" );
         GL_CUSTOM_VERTEX_ATTRIBUTES = oglInfo.getVersionMajor() >= 2;
+        GL_ARB_half_float_vertex = oglInfo.hasExtension( "GL_ARB_half_float_vertex" ) || oglInfo.hasExtension( "GL_NV_half_float" ) || ( oglInfo.getVersionMajor() >= 3 );
     }
 }
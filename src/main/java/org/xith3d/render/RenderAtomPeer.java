@@ -61,4 +61,75 @@ public abstract class RenderAtomPeer
      * @return the number of rendered triangles
      */
     public abstract int renderAtom( RenderAtom< ? > atom, Object glObj, RenderPeer renderPeer, OpenGLCapabilities glCaps, View view, RenderOptions options, long nanoTime, long nanoStep, RenderMode renderMode, long frameId );
+    
+    /**
+     * Renders a batch of atoms, which share the same geometry and the same states
+     * and only differ in their transforms (see {@link RenderPeer#getInstanceCount(org.xith3d.render.preprocessing.RenderBin, int, RenderOptions, RenderMode)}).
+     * The states of the first atom have already been applied.<br>
+     * <br>
+     * This default implementation renders the atoms one by one.
+     * Implementations should override it to set up the geometry only once.
+     * They still have to draw each instance like {@link #renderAtom(RenderAtom, Object, RenderPeer, OpenGLCapabilities, View, RenderOptions, long, long, RenderMode, long)},
+     * including the shown bounds and {@link org.jagatoo.opengl.enums.FaceCullMode#SWITCH}.
+     * 
+     * @param atoms the RenderAtoms to render
+     * @param numAtoms the number of atoms to render
+     * @param glObj
+     * @param renderPeer the RenderPeer to render on
+     * @param glCaps
+     * @param view
+     * @param options
+     * @param nanoTime
+     * @param nanoStep
+     * @param renderMode
+     * @param frameId the current rendered frame's id
+     * 
+     * @return the number of rendered triangles
+     */
+    public int renderInstances( RenderAtom< ? >[] atoms, int numAtoms, Object glObj, RenderPeer renderPeer, OpenGLCapabilities glCaps, View view, RenderOptions options, long nanoTime, long nanoStep, RenderMode renderMode, long frameId )
+    {
+        int triangles = 0;
+        
+        for ( int i = 0; i < numAtoms; i++ )
+        {
+            triangles += renderAtom( atoms[ i ], glObj, renderPeer, glCaps, view, options, nanoTime, nanoStep, renderMode, frameId );
+        }
+        
+        return ( triangles );
+    }
+    
+    /**
+     * Renders a batch of atoms, which share the same states, but not their geometry
+     * (see {@link RenderPeer#getBatchCount(org.xith3d.render.preprocessing.RenderBin, int, RenderOptions, RenderMode)}).
+     * The states of the first atom have already been applied and the batcher has already
+     * merged the atoms' geometries into {@link ShapeAtomBatcher#getGeometry()}.<br>
+     * <br>
+     * This default implementation renders the atoms one by one.
+     * Implementations should override it to draw the merged geometry
+     * with {@link ShapeAtomBatcher#getTransform()} and a single draw call.
+     * 
+     * @param batcher the filled ShapeAtomBatcher
+     * @param glObj
+     * @param renderPeer the RenderPeer to render on
+     * @param glCaps
+     * @param view
+     * @param options
+     * @param nanoTime
+     * @param nanoStep
+     * @param renderMode
+     * @param frameId the current rendered frame's id
+     * 
+     * @return the number of rendered triangles
+     */
+    public int renderBatch( ShapeAtomBatcher batcher, Object glObj, RenderPeer renderPeer, OpenGLCapabilities glCaps, View view, RenderOptions options, long nanoTime, long nanoStep, RenderMode renderMode, long frameId )
+    {
+        int triangles = 0;
+        
+        for ( int i = 0; i < batcher.getNumAtoms(); i++ )
+        {
+            triangles += renderAtom( batcher.getAtom( i ), glObj, renderPeer, glCaps, view, options, nanoTime, nanoStep, renderMode, frameId );
+        }
+        
+        return ( triangles );
+    }
 }
@@ -71,6 +71,16 @@ public class RenderOptions
      */
     public static final boolean DEFAULT_VALUE_DISPLAY_LISTS_ENABLED = true;
     
+    /**
+     * Whether or not to draw consecutive shapes sharing Geometry and states as one instanced batch.
+     */
+    public static final boolean DEFAULT_VALUE_INSTANCING_ENABLED = true;
+    
+    /**
+     * Whether or not to merge consecutive shapes sharing states, but not Geometry, into one batch.
+     */
+    public static final boolean DEFAULT_VALUE_BATCHING_ENABLED = true;
+    
     /**
      * Whether or not to render textures.
      */
@@ -114,6 +124,16 @@ public class RenderOptions
      */
     private boolean displayListsEnabled = DEFAULT_VALUE_DISPLAY_LISTS_ENABLED;
     
+    /**
+     * Whether or not to draw consecutive shapes sharing Geometry and states as one instanced batch.
+     */
+    private boolean instancingEnabled = DEFAULT_VALUE_INSTANCING_ENABLED;
+    
+    /**
+     * Whether or not to merge consecutive shapes sharing states, but not Geometry, into one batch.
+     */
+    private boolean batchingEnabled = DEFAULT_VALUE_BATCHING_ENABLED;
+    
     /**
      * Whether or not to render textures.
      */
@@ -210,6 +230,46 @@ public class RenderOptions
         return ( displayListsEnabled );
     }
     
+    /**
+     * Sets whether or not to draw consecutive shapes sharing Geometry and states
+     * as one instanced batch.
+     * 
+     * @param enabled
+     */
+    public void setInstancingEnabled( boolean enabled )
+    {
+        this.instancingEnabled = enabled;
+    }
+    
+    /**
+     * @return whether or not to draw consecutive shapes sharing Geometry and states
+     * as one instanced batch.
+     */
+    public final boolean isInstancingEnabled()
+    {
+        return ( instancingEnabled );
+    }
+    
+    /**
+     * Sets whether or not to merge consecutive shapes sharing states, but not Geometry,
+     * into one batch, that is drawn with a single draw call.
+     * 
+     * @param enabled
+     */
+    public void setBatchingEnabled( boolean enabled )
+    {
+        this.batchingEnabled = enabled;
+    }
+    
+    /**
+     * @return whether or not to merge consecutive shapes sharing states, but not Geometry,
+     * into one batch, that is drawn with a single draw call.
+     */
+    public final boolean isBatchingEnabled()
+    {
+        return ( batchingEnabled );
+    }
+    
     /**
      * Sets whether or not to render textures.
      * 
@@ -309,6 +369,8 @@ public class RenderOptions
         this.lightingEnabled = DEFAULT_VALUE_LIGHTING_ENABLED;
         this.vbosEnabled = DEFAULT_VALUE_VBOS_ENABLED;
         this.displayListsEnabled = DEFAULT_VALUE_DISPLAY_LISTS_ENABLED;
+        this.instancingEnabled = DEFAULT_VALUE_INSTANCING_ENABLED;
+        this.batchingEnabled = DEFAULT_VALUE_BATCHING_ENABLED;
         this.textureMappingEnabled = DEFAULT_VALUE_TEXTURE_MAPPING_ENABLED;
         this.wireframeModeEnabled = DEFAULT_VALUE_WIREFRAME_MODE_ENABLED;
         this.errorChecksEnabled = DEFAULT_VALUE_GL_ERROR_CHECKS_ENABLED;
@@ -328,6 +390,8 @@ public class RenderOptions
         this.lightingEnabled = renderOptions.lightingEnabled;
         this.vbosEnabled = renderOptions.vbosEnabled;
         this.displayListsEnabled = renderOptions.displayListsEnabled;
+        this.instancingEnabled = renderOptions.instancingEnabled;
+        this.batchingEnabled = renderOptions.batchingEnabled;
         this.textureMappingEnabled = renderOptions.textureMappingEnabled;
         this.wireframeModeEnabled = renderOptions.wireframeModeEnabled;
         this.errorChecksEnabled = renderOptions.errorChecksEnabled;
@@ -348,6 +412,8 @@ public class RenderOptions
         exported.put( "LIGHTING_ENABLED", this.lightingEnabled );
         exported.put( "VBOS_ENABLED", this.vbosEnabled );
         exported.put( "DISPLAY_LISTS_ENABLED", this.displayListsEnabled );
+        exported.put( "INSTANCING_ENABLED", this.instancingEnabled );
+        exported.put( "BATCHING_ENABLED", this.batchingEnabled );
         exported.put( "TEXTURE_MAPPING_ENABLED", this.textureMappingEnabled );
         exported.put( "WIREFRAME_MODE_ENABLED", this.wireframeModeEnabled );
         exported.put( "GL_ERROR_CHECKS_ENABLED", this.errorChecksEnabled );
@@ -380,6 +446,8 @@ public class RenderOptions
         this.lightingEnabled = importBooleanOption( map, "LIGHTING_ENABLED", DEFAULT_VALUE_LIGHTING_ENABLED );
         this.vbosEnabled = importBooleanOption( map, "VBOS_ENABLED", DEFAULT_VALUE_VBOS_ENABLED );
         this.displayListsEnabled = importBooleanOption( map, "DISPLAY_LISTS_ENABLED", DEFAULT_VALUE_DISPLAY_LISTS_ENABLED );
+        this.instancingEnabled = importBooleanOption( map, "INSTANCING_ENABLED", DEFAULT_VALUE_INSTANCING_ENABLED );
+        this.batchingEnabled = importBooleanOption( map, "BATCHING_ENABLED", DEFAULT_VALUE_BATCHING_ENABLED );
         this.textureMappingEnabled = importBooleanOption( map, "TEXTURE_MAPPING_ENABLED", DEFAULT_VALUE_TEXTURE_MAPPING_ENABLED );
         this.wireframeModeEnabled = importBooleanOption( map, "WIREFRAME_MODE_ENABLED", DEFAULT_VALUE_WIREFRAME_MODE_ENABLED );
         this.errorChecksEnabled = importBooleanOption( map, "GL_ERROR_CHECKS_ENABLED", DEFAULT_VALUE_GL_ERROR_CHECKS_ENABLED );
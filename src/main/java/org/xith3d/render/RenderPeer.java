@@ -38,12 +38,17 @@ import java.nio.IntBuffer;
 import java.util.Arrays;
 import java.util.List;
 
+import org.jagatoo.opengl.enums.FaceCullMode;
 import org.xith3d.picking.PickRequest;
 import org.xith3d.picking.PickResult;
 import org.xith3d.render.preprocessing.RenderAtom;
+import org.xith3d.render.preprocessing.RenderBin;
 import org.xith3d.render.preprocessing.RenderBinProvider;
+import org.xith3d.render.preprocessing.ShapeAtom;
 import org.xith3d.render.states.StateUnit;
 import org.xith3d.render.states.units.StateUnitPeer;
+import org.xith3d.scenegraph.Appearance;
+import org.xith3d.scenegraph.Geometry;
 import org.xith3d.scenegraph.Shape3D;
 import org.xith3d.scenegraph.View;
 import org.xith3d.utility.general.SortableList;
@@ -95,6 +100,9 @@ public abstract class RenderPeer
     
     private final long[] stateIDs = new long[ nulledStates.length ];
     
+    private RenderAtom< ? >[] instanceAtoms = new RenderAtom< ? >[ 16 ];
+    private final ShapeAtomBatcher batcher = new ShapeAtomBatcher();
+    
     protected IntBuffer selectBuffer = null;
     private SortableList< PickResult > pickResults = new SortableList< PickResult >();
     private PickResult pickResult = null;
@@ -258,6 +266,10 @@ public abstract class RenderPeer
     {
         resetStateUnitStateArrays();
         
+        statesCache.statistics.reset();
+        
+        batcher.reset();
+        
         if ( pickRequest != null )
         {
             if ( pickRequest.getPickAll() )
@@ -272,6 +284,42 @@ public abstract class RenderPeer
         stateIDs[ stateType ] = -1;
     }
     
+    private final void applyStates( RenderAtom< ? > atom, Object glObj, CanvasPeer canvasPeer, OpenGLCapabilities glCaps, OpenGLStatesCache statesCache, View view, RenderOptions options, long nanoTime, long nanoStep, RenderMode renderMode, long frameId )
+    {
+        final int atomType = atom.getStateType();
+        
+        if ( ( atomType != org.xith3d.render.preprocessing.BoundsAtom.STATE_TYPE ) && ( renderMode == RenderMode.NORMAL ) )
+        {
+            final StateUnit[] stateUnits = atom.getStateUnits();
+            StateUnit stateUnit;
+            for ( int stateType = 0; stateType < StateUnit.MAX_STATE_TYPES; stateType++ )
+            {
+                stateUnit = stateUnits[ stateType ];
+                
+                final long stateId = stateUnit.getCachedStateId();
+                if ( stateIDs[ stateType ] != stateId )
+                {
+                    final StateUnitPeer stateUnitPeer = stateUnitRegistry.getStateUnitPeer( stateType );
+                    stateUnitPeer.apply( atom, stateUnit, glObj, canvasPeer, this, glCaps, view, statesCache, options, nanoTime, nanoStep, renderMode, frameId );
+                    stateIDs[ stateType ] = stateId;
+                    statesCache.statistics.countIssued( stateType );
+                }
+                else
+                {
+                    statesCache.statistics.countSkipped( stateType );
+                }
+            }
+        }
+    }
+    
+    /**
+     * @return the counts of the issued and skipped state changes during the last (or current) frame.
+     */
+    public final StateChangeStatistics getStateChangeStatistics()
+    {
+        return ( statesCache.statistics );
+    }
+    
     /**
      * Renders an Atom.
      * 
@@ -289,27 +337,246 @@ public abstract class RenderPeer
             BillboardManager.updateBillboardGeometry( atom, view, getCanvasPeer().getWidth(), getCanvasPeer().getHeight(), nanoTime, nanoStep, frameId );
         }
         
-        final int atomType = atom.getStateType();
+        if ( renderMode == RenderMode.NORMAL )
+        {
+            canvasPeer.getTextureStreamer().observe( atom, view, canvasPeer.getHeight() );
+        }
         
-        if ( ( atomType != org.xith3d.render.preprocessing.BoundsAtom.STATE_TYPE ) && ( renderMode == RenderMode.NORMAL ) )
+        applyStates( atom, glObj, canvasPeer, glCaps, statesCache, view, options, nanoTime, nanoStep, renderMode, frameId );
+        
+        return ( stateUnitRegistry.getRenderAtomPeer( atom.getStateType() ).renderAtom( atom, glObj, this, glCaps, view, options, nanoTime, nanoStep, renderMode, frameId ) );
+    }
+    
+    /**
+     * @return true, if the atom is a ShapeAtom, that can be drawn as an instance of a batch.
+     */
+    private static boolean isInstanceable( RenderAtom< ? > atom )
+    {
+        if ( ( atom == null ) || ( atom.getStateType() != ShapeAtom.STATE_TYPE ) )
+            return ( false );
+        
+        final Shape3D shape = (Shape3D)atom.getNode();
+        
+        // The BillboardManager updates a Billboard's Geometry for each atom.
+        if ( shape.isBillboard() )
+            return ( false );
+        
+        return ( shape.getGeometry() != null );
+    }
+    
+    /**
+     * @return true, if the atom has the same states, scissor rect and clipper as the first atom.
+     */
+    private static boolean hasSameStates( RenderAtom< ? > first, RenderAtom< ? > atom )
+    {
+        if ( ( atom.getScissorRect() != first.getScissorRect() ) || ( atom.getClipper() != first.getClipper() ) )
+            return ( false );
+        
+        final StateUnit[] firstStateUnits = first.getStateUnits();
+        final StateUnit[] stateUnits = atom.getStateUnits();
+        for ( int stateType = 0; stateType < StateUnit.MAX_STATE_TYPES; stateType++ )
         {
-            final StateUnit[] stateUnits = atom.getStateUnits();
-            StateUnit stateUnit;
-            for ( int stateType = 0; stateType < StateUnit.MAX_STATE_TYPES; stateType++ )
+            if ( stateUnits[ stateType ].getCachedStateId() != firstStateUnits[ stateType ].getCachedStateId() )
+                return ( false );
+        }
+        
+        return ( true );
+    }
+    
+    /**
+     * @return true, if the atom can be drawn in the same instanced batch as the (instanceable) first atom.
+     */
+    private static boolean canInstance( RenderAtom< ? > first, RenderAtom< ? > atom )
+    {
+        if ( ( atom == null ) || ( atom.getStateType() != ShapeAtom.STATE_TYPE ) )
+            return ( false );
+        
+        if ( ( (Shape3D)atom.getNode() ).getGeometry() != ( (Shape3D)first.getNode() ).getGeometry() )
+            return ( false );
+        
+        if ( !isInstanceable( atom ) )
+            return ( false );
+        
+        return ( hasSameStates( first, atom ) );
+    }
+    
+    /**
+     * @return the vertex layout key of the atom's Geometry (see {@link ShapeAtomBatcher#getLayoutKey(Geometry)})
+     *         or -1, if the atom can't be merged into a batch.
+     */
+    private static int getBatchLayoutKey( RenderAtom< ? > atom )
+    {
+        if ( !isInstanceable( atom ) )
+            return ( -1 );
+        
+        final Shape3D shape = (Shape3D)atom.getNode();
+        
+        // The bounds are drawn per Shape.
+        if ( shape.getShowBounds() )
+            return ( -1 );
+        
+        return ( ShapeAtomBatcher.getLayoutKey( shape.getGeometry() ) );
+    }
+    
+    /**
+     * Counts the consecutive atoms of the RenderBin starting at the given index,
+     * which share the same Geometry and the same states (and thus an equivalent Appearance)
+     * and can therefore be drawn as one instanced batch.
+     * Billboards are never instanced, since their Geometry is updated for each atom.
+     * 
+     * @param bin
+     * @param first
+     * @param options
+     * @param renderMode
+     * 
+     * @return the number of atoms for {@link #renderInstances(RenderBin, int, int, Object, CanvasPeer, OpenGLCapabilities, OpenGLStatesCache, View, RenderOptions, long, long, RenderMode, long)}
+     *         or 1, if the atom has to be rendered on its own.
+     */
+    public final int getInstanceCount( RenderBin bin, int first, RenderOptions options, RenderMode renderMode )
+    {
+        if ( !options.isInstancingEnabled() || ( renderMode != RenderMode.NORMAL ) )
+            return ( 1 );
+        
+        final RenderAtom< ? > firstAtom = bin.getAtom( first );
+        
+        if ( !isInstanceable( firstAtom ) )
+            return ( 1 );
+        
+        final int n = bin.size();
+        int last = first + 1;
+        while ( ( last < n ) && canInstance( firstAtom, bin.getAtom( last ) ) )
+        {
+            last++;
+        }
+        
+        return ( last - first );
+    }
+    
+    /**
+     * Counts the consecutive atoms of the RenderBin starting at the given index,
+     * which share the same states and the same vertex layout, but not necessarily their Geometry,
+     * and can therefore be merged into one batch by the {@link ShapeAtomBatcher}.
+     * Billboards, Shapes showing their bounds and Shapes with switched face culling
+     * are never batched. A batch is limited to {@link ShapeAtomBatcher#MAX_BATCH_VERTICES}.
+     * 
+     * @param bin
+     * @param first
+     * @param options
+     * @param renderMode
+     * 
+     * @return the number of atoms for {@link #renderBatch(RenderBin, int, int, Object, CanvasPeer, OpenGLCapabilities, OpenGLStatesCache, View, RenderOptions, long, long, RenderMode, long)}
+     *         or 1, if the atom has to be rendered on its own.
+     */
+    public final int getBatchCount( RenderBin bin, int first, RenderOptions options, RenderMode renderMode )
+    {
+        if ( !options.isBatchingEnabled() || ( renderMode != RenderMode.NORMAL ) )
+            return ( 1 );
+        
+        final RenderAtom< ? > firstAtom = bin.getAtom( first );
+        
+        final int layoutKey = getBatchLayoutKey( firstAtom );
+        if ( layoutKey < 0 )
+            return ( 1 );
+        
+        final Appearance app = ( (Shape3D)firstAtom.getNode() ).getAppearance();
+        if ( ( app != null ) && ( app.getPolygonAttributes() != null ) && ( app.getPolygonAttributes().getFaceCullMode() == FaceCullMode.SWITCH ) )
+            return ( 1 );
+        
+        int numVertices = ShapeAtomBatcher.getVertexCount( ( (Shape3D)firstAtom.getNode() ).getGeometry() );
+        
+        final int n = bin.size();
+        int last = first + 1;
+        while ( last < n )
+        {
+            final RenderAtom< ? > atom = bin.getAtom( last );
+            
+            if ( ( getBatchLayoutKey( atom ) != layoutKey ) || !hasSameStates( firstAtom, atom ) )
+                break;
+            
+            numVertices += ShapeAtomBatcher.getVertexCount( ( (Shape3D)atom.getNode() ).getGeometry() );
+            if ( numVertices > ShapeAtomBatcher.MAX_BATCH_VERTICES )
+                break;
+            
+            last++;
+        }
+        
+        return ( last - first );
+    }
+    
+    /**
+     * Renders a batch of atoms as determined by {@link #getInstanceCount(RenderBin, int, RenderOptions, RenderMode)}.
+     * The states are applied once and the RenderAtomPeer draws all instances with one geometry setup.
+     * 
+     * @param bin
+     * @param first
+     * @param count
+     * 
+     * @return the number of rendered Triangles
+     */
+    public final int renderInstances( RenderBin bin, int first, int count, Object glObj, CanvasPeer canvasPeer, OpenGLCapabilities glCaps, OpenGLStatesCache statesCache, View view, RenderOptions options, long nanoTime, long nanoStep, RenderMode renderMode, long frameId )
+    {
+        if ( instanceAtoms.length < count )
+        {
+            instanceAtoms = new RenderAtom< ? >[ Math.max( count, instanceAtoms.length * 2 ) ];
+        }
+        
+        for ( int i = 0; i < count; i++ )
+        {
+            instanceAtoms[ i ] = bin.getAtom( first + i );
+            
+            if ( renderMode == RenderMode.NORMAL )
             {
-                stateUnit = stateUnits[ stateType ];
-                
-                final long stateId = stateUnit.getCachedStateId();
-                if ( stateIDs[ stateType ] != stateId )
-                {
-                    final StateUnitPeer stateUnitPeer = stateUnitRegistry.getStateUnitPeer( stateType );
-                    stateUnitPeer.apply( atom, stateUnit, glObj, canvasPeer, this, glCaps, view, statesCache, options, nanoTime, nanoStep, renderMode, frameId );
-                    stateIDs[ stateType ] = stateId;
-                }
+                canvasPeer.getTextureStreamer().observe( instanceAtoms[ i ], view, canvasPeer.getHeight() );
             }
         }
         
-        return ( stateUnitRegistry.getRenderAtomPeer( atomType ).renderAtom( atom, glObj, this, glCaps, view, options, nanoTime, nanoStep, renderMode, frameId ) );
+        final RenderAtom< ? > firstAtom = instanceAtoms[ 0 ];
+        
+        applyStates( firstAtom, glObj, canvasPeer, glCaps, statesCache, view, options, nanoTime, nanoStep, renderMode, frameId );
+        
+        final int triangles = stateUnitRegistry.getRenderAtomPeer( firstAtom.getStateType() ).renderInstances( instanceAtoms, count, glObj, this, glCaps, view, options, nanoTime, nanoStep, renderMode, frameId );
+        
+        Arrays.fill( instanceAtoms, 0, count, null );
+        
+        return ( triangles );
+    }
+    
+    /**
+     * Renders a batch of atoms as determined by {@link #getBatchCount(RenderBin, int, RenderOptions, RenderMode)}.
+     * The states are applied once, the {@link ShapeAtomBatcher} merges the atoms' Geometries
+     * and the RenderAtomPeer draws the merged Geometry with one draw call.
+     * 
+     * @param bin
+     * @param first
+     * @param count
+     * 
+     * @return the number of rendered Triangles
+     */
+    public final int renderBatch( RenderBin bin, int first, int count, Object glObj, CanvasPeer canvasPeer, OpenGLCapabilities glCaps, OpenGLStatesCache statesCache, View view, RenderOptions options, long nanoTime, long nanoStep, RenderMode renderMode, long frameId )
+    {
+        if ( instanceAtoms.length < count )
+        {
+            instanceAtoms = new RenderAtom< ? >[ Math.max( count, instanceAtoms.length * 2 ) ];
+        }
+        
+        for ( int i = 0; i < count; i++ )
+        {
+            instanceAtoms[ i ] = bin.getAtom( first + i );
+            
+            canvasPeer.getTextureStreamer().observe( instanceAtoms[ i ], view, canvasPeer.getHeight() );
+        }
+        
+        final RenderAtom< ? > firstAtom = instanceAtoms[ 0 ];
+        
+        applyStates( firstAtom, glObj, canvasPeer, glCaps, statesCache, view, options, nanoTime, nanoStep, renderMode, frameId );
+        
+        batcher.fill( instanceAtoms, count, canvasPeer );
+        
+        final int triangles = stateUnitRegistry.getRenderAtomPeer( firstAtom.getStateType() ).renderBatch( batcher, glObj, this, glCaps, view, options, nanoTime, nanoStep, renderMode, frameId );
+        
+        Arrays.fill( instanceAtoms, 0, count, null );
+        
+        return ( triangles );
     }
     
     public final List< PickResult > getPickResults()
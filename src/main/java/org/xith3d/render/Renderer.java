@@ -492,8 +492,29 @@ public abstract class Renderer
      */
     public abstract long getNumRenderedTriangles();
     
+    /**
+     * @return the number of state changes issued in the last rendered frame
+     */
+    public abstract int getNumStateChanges();
+    
+    /**
+     * @return the number of redundant state changes skipped in the last rendered frame
+     */
+    public abstract int getNumSkippedStateChanges();
+    
+    /**
+     * @return the issued and skipped state changes of the last rendered frame
+     *         per state type and per RenderPass
+     */
+    public abstract StateChangeStatistics getStateChangeStatistics();
+    
     /**
      * @return true, if the view is currently rendering a frame
      */
     public abstract boolean isRendering();
+    
+    /**
+     * @return the FrameTimeline, that records the phase timings of the last rendered frames
+     */
+    public abstract FrameTimeline getFrameTimeline();
 }
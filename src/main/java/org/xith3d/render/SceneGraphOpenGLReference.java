@@ -51,6 +51,17 @@ public abstract class SceneGraphOpenGLReference
     
     private final boolean[] namesValid;
     
+    /*
+     * residency data maintained by the context's GPUMemoryBudget
+     */
+    GPUMemoryBudget.ResourceType residentType = null;
+    long residentBytes = 0L;
+    long lastUsedFrame = 0L;
+    boolean evictable = false;
+    boolean evicted = false;
+    SceneGraphOpenGLReference lruPrev = null;
+    SceneGraphOpenGLReference lruNext = null;
+    
     public final CanvasPeer getContext()
     {
         return ( context );
@@ -310,6 +321,11 @@ public abstract class SceneGraphOpenGLReference
                 deleteName( i );
             }
         }
+        
+        if ( residentType != null )
+        {
+            context.getGPUMemoryBudget().release( this );
+        }
     }
     
     /**
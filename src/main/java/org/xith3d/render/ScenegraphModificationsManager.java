@@ -195,6 +195,12 @@ import org.xith3d.scenegraph.modifications.ScenegraphModificationsListener;
     public void onSwitchWhichChildChanged( Switch sw, int oldValue, int whichChild )
     {
         anythingChanged = true;
+        
+        if ( renderer.getScenegraphModificationListeners().size() > 0 )
+        {
+            for ( int i = 0; i < renderer.getScenegraphModificationListeners().size(); i++ )
+                renderer.getScenegraphModificationListeners().get( i ).onSwitchWhichChildChanged( sw, oldValue, whichChild );
+        }
     }
     
     public void onStateModifierContainmentChanged( GroupNode group, boolean oldValue, boolean newValue )
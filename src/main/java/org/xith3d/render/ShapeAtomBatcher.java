@@ -0,0 +1,559 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.render;
+
+import java.util.Arrays;
+
+import org.jagatoo.opengl.enums.GeometryArrayType;
+import org.openmali.vecmath2.Matrix4f;
+import org.xith3d.render.preprocessing.RenderAtom;
+import org.xith3d.render.preprocessing.ShapeAtom;
+import org.xith3d.scenegraph.GeomNioFloatData;
+import org.xith3d.scenegraph.Geometry;
+import org.xith3d.scenegraph.GeometryStripArray;
+import org.xith3d.scenegraph.IndexedGeometryArray;
+import org.xith3d.scenegraph.IndexedGeometryStripArray;
+import org.xith3d.scenegraph.IndexedTriangleArray;
+import org.xith3d.scenegraph.Shape3D;
+import org.xith3d.scenegraph.Transform3D;
+import org.xith3d.scenegraph._SG_PrivilegedAccess;
+import org.xith3d.scenegraph.Geometry.Optimization;
+
+/**
+ * Merges runs of consecutive ShapeAtoms, which share their states and their
+ * vertex layout, but not their Geometry, into one shared IndexedTriangleArray,
+ * so that each run is drawn with a single draw call over the merged indices
+ * instead of one draw call per atom
+ * (see {@link RenderPeer#getBatchCount(org.xith3d.render.preprocessing.RenderBin, int, RenderOptions, org.xith3d.render.RenderPeer.RenderMode)}).<br>
+ * <br>
+ * If all atoms of a run share the same world transform, the vertices are copied
+ * as they are and the batch is drawn with this transform. Otherwise they are
+ * pre-transformed into world space (normals by the inverse transpose) and the
+ * batch is drawn with the identity transform.
+ * Strips, fans and quads are converted to triangles by the merged index.<br>
+ * <br>
+ * There is one shared Geometry (and thus one set of streamed VBOs) per vertex layout.
+ * The runs of a frame are appended to it one after the other, so that each run only
+ * uploads its own range and doesn't overwrite the data of a previous run, which may
+ * still be in use. {@link #reset()} rewinds it at the start of each frame.
+ * An instance must only be used from the render thread.
+ */
+public class ShapeAtomBatcher
+{
+    /**
+     * The maximum number of vertices of a Geometry to be batched.
+     * Bigger Geometries are not worth to be copied each frame.
+     */
+    public static final int MAX_ATOM_VERTICES = 1024;
+    
+    /**
+     * The maximum number of vertices of one batch.
+     */
+    public static final int MAX_BATCH_VERTICES = 65536;
+    
+    private static final int MAX_TEXTURE_UNITS = 4;
+    
+    private static final int INITIAL_CAPACITY = 4096;
+    
+    private int[] layoutKeys = new int[ 4 ];
+    private IndexedTriangleArray[] layoutGeometries = new IndexedTriangleArray[ 4 ];
+    private int[] layoutVertices = new int[ 4 ];
+    private int[] layoutIndices = new int[ 4 ];
+    private int numLayouts = 0;
+    
+    private RenderAtom< ? >[] atoms = null;
+    private int numAtoms = 0;
+    private IndexedTriangleArray geometry = null;
+    private Transform3D transform = null;
+    private int numVertices = 0;
+    
+    private float[] tmpData = new float[ 12 ];
+    private final int[] faceVertices = new int[ 4 ];
+    private final Matrix4f normalMatrix = new Matrix4f();
+    
+    /**
+     * Rewinds the shared Geometries for the next frame.
+     */
+    public final void reset()
+    {
+        for ( int i = 0; i < numLayouts; i++ )
+        {
+            layoutVertices[ i ] = 0;
+            layoutIndices[ i ] = 0;
+        }
+        
+        this.atoms = null;
+        this.numAtoms = 0;
+    }
+    
+    /**
+     * @return the number of atoms of the last filled batch.
+     */
+    public final int getNumAtoms()
+    {
+        return ( numAtoms );
+    }
+    
+    /**
+     * @return the i-th atom of the last filled batch.
+     * 
+     * @param i
+     */
+    public final RenderAtom< ? > getAtom( int i )
+    {
+        return ( atoms[ i ] );
+    }
+    
+    /**
+     * @return the shared Geometry holding the last filled batch
+     *         within its initial index index and valid index count.
+     */
+    public final Geometry getGeometry()
+    {
+        return ( geometry );
+    }
+    
+    /**
+     * @return the world transform to draw the last filled batch with.
+     */
+    public final Transform3D getTransform()
+    {
+        return ( transform );
+    }
+    
+    /**
+     * @return the number of vertices copied for the last filled batch.
+     */
+    public final int getNumVertices()
+    {
+        return ( numVertices );
+    }
+    
+    /**
+     * @return the number of vertices to be copied for the given Geometry.
+     * 
+     * @param geom
+     */
+    public static final int getVertexCount( Geometry geom )
+    {
+        if ( geom.hasIndex() )
+            return ( geom.getVertexCount() );
+        
+        return ( geom.getValidVertexCount() );
+    }
+    
+    private static final int[] getStripVertexCounts( Geometry geom )
+    {
+        if ( geom instanceof GeometryStripArray )
+            return ( ( (GeometryStripArray)geom ).getStripVertexCounts() );
+        
+        if ( geom instanceof IndexedGeometryStripArray )
+            return ( ( (IndexedGeometryStripArray)geom ).getStripVertexCounts() );
+        
+        return ( null );
+    }
+    
+    private static final boolean isSupportedType( Geometry geom )
+    {
+        switch ( geom.getType() )
+        {
+            case TRIANGLES:
+            case QUADS:
+                return ( true );
+            case TRIANGLE_STRIP:
+            case TRIANGLE_FAN:
+                return ( getStripVertexCounts( geom ) != null );
+            default:
+                return ( false );
+        }
+    }
+    
+    /**
+     * Computes a key for the vertex layout of the given Geometry.
+     * Geometries with the same key can be merged into the same batch.
+     * 
+     * @param geom
+     * 
+     * @return the layout key or -1, if the Geometry can't be batched.
+     */
+    public static final int getLayoutKey( Geometry geom )
+    {
+        if ( !isSupportedType( geom ) || ( geom.getCoordinatesData() == null ) || ( geom.getCoordinatesSize() != 3 ) )
+            return ( -1 );
+        
+        if ( geom.hasVertexAttributes() || ( geom.getNumTextureUnits() > MAX_TEXTURE_UNITS ) )
+            return ( -1 );
+        
+        final int vertexCount = getVertexCount( geom );
+        if ( ( vertexCount == 0 ) || ( vertexCount > MAX_ATOM_VERTICES ) )
+            return ( -1 );
+        
+        int key = geom.hasNormals() ? 1 : 0;
+        
+        if ( geom.hasColors() )
+            key |= geom.getColorsSize() << 1;
+        
+        for ( int unit = 0; unit < MAX_TEXTURE_UNITS; unit++ )
+        {
+            if ( geom.hasTextureCoordinates( unit ) )
+                key |= geom.getTexCoordSize( unit ) << ( 4 + 3 * unit );
+        }
+        
+        return ( key );
+    }
+    
+    private static final Transform3D getWorldTransform( RenderAtom< ? > atom )
+    {
+        return ( _SG_PrivilegedAccess.getLeafWorldTransform( (Shape3D)atom.getNode() ) );
+    }
+    
+    /**
+     * @return the world transform shared by all atoms or null, if they differ.
+     */
+    private static final Transform3D getSharedTransform( RenderAtom< ? >[] atoms, int numAtoms )
+    {
+        final Transform3D first = getWorldTransform( atoms[ 0 ] );
+        
+        for ( int i = 1; i < numAtoms; i++ )
+        {
+            final Transform3D t = getWorldTransform( atoms[ i ] );
+            
+            if ( ( t != first ) && !t.equals( first ) )
+                return ( null );
+        }
+        
+        return ( first );
+    }
+    
+    private final int getLayoutSlot( int layoutKey )
+    {
+        for ( int i = 0; i < numLayouts; i++ )
+        {
+            if ( layoutKeys[ i ] == layoutKey )
+                return ( i );
+        }
+        
+        if ( numLayouts == layoutKeys.length )
+        {
+            final int newLength = numLayouts * 2;
+            
+            layoutKeys = Arrays.copyOf( layoutKeys, newLength );
+            layoutGeometries = Arrays.copyOf( layoutGeometries, newLength );
+            layoutVertices = Arrays.copyOf( layoutVertices, newLength );
+            layoutIndices = Arrays.copyOf( layoutIndices, newLength );
+        }
+        
+        layoutKeys[ numLayouts ] = layoutKey;
+        
+        return ( numLayouts++ );
+    }
+    
+    /**
+     * @return the shared Geometry of the given layout slot with room for the given number of vertices and indices.
+     *         It is replaced by a bigger one, if necessary.
+     */
+    private final IndexedTriangleArray getSharedGeometry( int slot, int numVertices, int numIndices, CanvasPeer canvasPeer )
+    {
+        final IndexedTriangleArray geom = layoutGeometries[ slot ];
+        
+        final int vertexEnd = layoutVertices[ slot ] + numVertices;
+        final int indexEnd = layoutIndices[ slot ] + numIndices;
+        
+        if ( ( geom != null ) && ( vertexEnd <= geom.getVertexCount() ) && ( indexEnd <= geom.getIndexCount() ) )
+            return ( geom );
+        
+        int vertexCapacity = INITIAL_CAPACITY;
+        int indexCapacity = INITIAL_CAPACITY;
+        
+        if ( geom != null )
+        {
+            vertexCapacity = geom.getVertexCount() * 2;
+            indexCapacity = geom.getIndexCount() * 2;
+            
+            geom.freeOpenGLResources( canvasPeer );
+            geom.freeLocalData();
+        }
+        
+        final IndexedTriangleArray newGeom = new IndexedTriangleArray( Math.max( vertexCapacity, vertexEnd ), Math.max( indexCapacity, indexEnd ) );
+        newGeom.setOptimization( Optimization.USE_STREAMING_VBOS );
+        
+        layoutGeometries[ slot ] = newGeom;
+        layoutVertices[ slot ] = 0;
+        layoutIndices[ slot ] = 0;
+        
+        return ( newGeom );
+    }
+    
+    private final float[] getTmpData( int length )
+    {
+        if ( tmpData.length < length )
+        {
+            // a multiple of all element sizes (1 to 4)
+            tmpData = new float[ ( ( length + 11 ) / 12 ) * 12 ];
+        }
+        
+        return ( tmpData );
+    }
+    
+    private static final void transformPoints( Matrix4f m, float[] data, int numVertices )
+    {
+        for ( int i = 0; i < numVertices * 3; i += 3 )
+        {
+            final float x = data[ i + 0 ];
+            final float y = data[ i + 1 ];
+            final float z = data[ i + 2 ];
+            
+            data[ i + 0 ] = m.m00() * x + m.m01() * y + m.m02() * z + m.m03();
+            data[ i + 1 ] = m.m10() * x + m.m11() * y + m.m12() * z + m.m13();
+            data[ i + 2 ] = m.m20() * x + m.m21() * y + m.m22() * z + m.m23();
+        }
+    }
+    
+    private static final void transformNormals( Matrix4f m, float[] data, int numVertices )
+    {
+        for ( int i = 0; i < numVertices * 3; i += 3 )
+        {
+            final float x = data[ i + 0 ];
+            final float y = data[ i + 1 ];
+            final float z = data[ i + 2 ];
+            
+            final float nx = m.m00() * x + m.m01() * y + m.m02() * z;
+            final float ny = m.m10() * x + m.m11() * y + m.m12() * z;
+            final float nz = m.m20() * x + m.m21() * y + m.m22() * z;
+            
+            final float length = (float)Math.sqrt( nx * nx + ny * ny + nz * nz );
+            final float f = ( length > 0f ) ? 1f / length : 0f;
+            
+            data[ i + 0 ] = nx * f;
+            data[ i + 1 ] = ny * f;
+            data[ i + 2 ] = nz * f;
+        }
+    }
+    
+    /**
+     * Copies the vertices of the source Geometry into the target Geometry.
+     * 
+     * @param src
+     * @param srcVertex the first vertex to copy
+     * @param numVertices
+     * @param target
+     * @param targetVertex
+     * @param worldTransform the transform to apply or null
+     */
+    private final void copyVertices( Geometry src, int srcVertex, int numVertices, IndexedTriangleArray target, int targetVertex, Matrix4f worldTransform )
+    {
+        final float[] data = getTmpData( numVertices * 4 );
+        
+        src.getCoordinatesData().get( srcVertex, 3, src.getCoordinatesOffset() / 4L, data, 0, numVertices * 3 );
+        if ( worldTransform != null )
+            transformPoints( worldTransform, data, numVertices );
+        target.setCoordinates( targetVertex, data, 0, numVertices );
+        
+        if ( src.hasNormals() )
+        {
+            src.getNormalsData().get( srcVertex, 3, src.getNormalsOffset() / 4L, data, 0, numVertices * 3 );
+            if ( worldTransform != null )
+            {
+                normalMatrix.invert( worldTransform );
+                normalMatrix.transpose();
+                
+                transformNormals( normalMatrix, data, numVertices );
+            }
+            target.setNormals( targetVertex, data, 0, numVertices );
+        }
+        
+        if ( src.hasColors() )
+        {
+            final int colorSize = src.getColorsSize();
+            
+            src.getColorData().get( srcVertex, colorSize, src.getColorsOffset() / 4L, data, 0, numVertices * colorSize );
+            target.setColors( targetVertex, colorSize, data, 0, numVertices );
+        }
+        
+        for ( int unit = 0; unit < MAX_TEXTURE_UNITS; unit++ )
+        {
+            if ( src.hasTextureCoordinates( unit ) )
+            {
+                final int texCoordSize = src.getTexCoordSize( unit );
+                final GeomNioFloatData texCoords = src.getTexCoordsData( unit );
+                
+                texCoords.get( srcVertex, texCoordSize, src.getTexCoordsOffset( unit ) / 4L, data, 0, numVertices * texCoordSize );
+                target.setTextureCoordinates( unit, targetVertex, texCoordSize, data, 0, numVertices );
+            }
+        }
+    }
+    
+    private static final int putTriangle( IndexedTriangleArray target, int index, int a, int b, int c )
+    {
+        if ( target != null )
+        {
+            target.setIndex( index + 0, a );
+            target.setIndex( index + 1, b );
+            target.setIndex( index + 2, c );
+        }
+        
+        return ( index + 3 );
+    }
+    
+    /**
+     * Writes the triangle indices of the source Geometry's valid elements.
+     * 
+     * @param src
+     * @param vertexOffset the offset to add to the source's vertex indices
+     * @param target the target Geometry or null to only count the indices
+     * @param index the first index to write
+     * 
+     * @return the number of written indices
+     */
+    private final int putTriangles( Geometry src, int vertexOffset, IndexedTriangleArray target, int index )
+    {
+        final int[] srcIndex = src.hasIndex() ? ( (IndexedGeometryArray)src ).getIndex() : null;
+        final int first = src.getInitialVertexIndex();
+        final int end = first + src.getValidVertexCount();
+        
+        final int[] v = faceVertices;
+        final int index0 = index;
+        
+        if ( src.isStrip() )
+        {
+            final boolean isFan = ( src.getType() == GeometryArrayType.TRIANGLE_FAN );
+            final int[] stripVertexCounts = getStripVertexCounts( src );
+            
+            int s0 = 0;
+            for ( int s = 0; s < stripVertexCounts.length; s++ )
+            {
+                final int start = Math.max( s0, first );
+                final int stop = Math.min( s0 + stripVertexCounts[ s ], end );
+                
+                for ( int e = start; e + 2 < stop; e++ )
+                {
+                    for ( int k = 0; k < 3; k++ )
+                    {
+                        final int elem = ( isFan && ( k == 0 ) ) ? start : e + k;
+                        v[ k ] = ( ( srcIndex != null ) ? srcIndex[ elem ] : elem ) + vertexOffset;
+                    }
+                    
+                    if ( !isFan && ( ( ( e - s0 ) & 1 ) != 0 ) )
+                        index = putTriangle( target, index, v[ 1 ], v[ 0 ], v[ 2 ] );
+                    else
+                        index = putTriangle( target, index, v[ 0 ], v[ 1 ], v[ 2 ] );
+                }
+                
+                s0 += stripVertexCounts[ s ];
+            }
+        }
+        else
+        {
+            final int faceSize = ( src.getType() == GeometryArrayType.QUADS ) ? 4 : 3;
+            
+            for ( int e = first; e + faceSize <= end; e += faceSize )
+            {
+                for ( int k = 0; k < faceSize; k++ )
+                {
+                    v[ k ] = ( ( srcIndex != null ) ? srcIndex[ e + k ] : e + k ) + vertexOffset;
+                }
+                
+                index = putTriangle( target, index, v[ 0 ], v[ 1 ], v[ 2 ] );
+                
+                if ( faceSize == 4 )
+                    index = putTriangle( target, index, v[ 0 ], v[ 2 ], v[ 3 ] );
+            }
+        }
+        
+        return ( index - index0 );
+    }
+    
+    /**
+     * Copies the Geometries of the given atoms into the shared Geometry of their vertex layout.
+     * All atoms must have the same {@link #getLayoutKey(Geometry)}.
+     * 
+     * @param atoms
+     * @param numAtoms
+     * @param canvasPeer the CanvasPeer to free the OpenGL resources of an outgrown shared Geometry on
+     * 
+     * @return the number of triangles of the batch
+     */
+    public final int fill( RenderAtom< ? >[] atoms, int numAtoms, CanvasPeer canvasPeer )
+    {
+        int numVertices = 0;
+        int numIndices = 0;
+        for ( int i = 0; i < numAtoms; i++ )
+        {
+            final Geometry geom = ( (Shape3D)atoms[ i ].getNode() ).getGeometry();
+            
+            numVertices += getVertexCount( geom );
+            numIndices += putTriangles( geom, 0, null, 0 );
+        }
+        
+        final int slot = getLayoutSlot( getLayoutKey( ( (Shape3D)atoms[ 0 ].getNode() ).getGeometry() ) );
+        final IndexedTriangleArray target = getSharedGeometry( slot, numVertices, numIndices, canvasPeer );
+        
+        final Transform3D sharedTransform = getSharedTransform( atoms, numAtoms );
+        
+        final int firstIndex = layoutIndices[ slot ];
+        int vertex = layoutVertices[ slot ];
+        int index = firstIndex;
+        
+        for ( int i = 0; i < numAtoms; i++ )
+        {
+            final ShapeAtom atom = (ShapeAtom)atoms[ i ];
+            final Geometry geom = ( (Shape3D)atom.getNode() ).getGeometry();
+            
+            final int srcVertex = geom.hasIndex() ? 0 : geom.getInitialVertexIndex();
+            final int vertexCount = getVertexCount( geom );
+            
+            copyVertices( geom, srcVertex, vertexCount, target, vertex, ( sharedTransform == null ) ? getWorldTransform( atom ).getMatrix4f() : null );
+            
+            final int atomIndices = putTriangles( geom, vertex - srcVertex, target, index );
+            atom.lastComputedPolysCount = atomIndices / 3;
+            
+            vertex += vertexCount;
+            index += atomIndices;
+        }
+        
+        target.setInitialIndexIndex( firstIndex );
+        target.setValidIndexCount( index - firstIndex );
+        
+        layoutVertices[ slot ] = vertex;
+        layoutIndices[ slot ] = index;
+        
+        this.atoms = atoms;
+        this.numAtoms = numAtoms;
+        this.geometry = target;
+        this.transform = ( sharedTransform != null ) ? sharedTransform : Transform3D.IDENTITY;
+        this.numVertices = numVertices;
+        
+        return ( numIndices / 3 );
+    }
+}
@@ -0,0 +1,279 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.render;
+
+import org.xith3d.render.states.StateUnit;
+
+/**
+ * Counts the state changes of a rendered frame, that have actually been issued,
+ * and those, that have been skipped as redundant.<br>
+ * <br>
+ * A StateUnit is skipped, if the previously rendered atom used the same state
+ * (see {@link StateUnit#getCachedStateId()}), so that the counts directly reflect
+ * the quality of the RenderBin sorting and the state priorities.
+ * The counts are kept per state type and per RenderPass (by its index in the
+ * list of rendered RenderPasses). Texture bindings, that the StateUnitPeers skip
+ * through the {@link OpenGLStatesCache}, are counted separately.
+ */
+public class StateChangeStatistics
+{
+    private final int[] issued = new int[ StateUnit.MAX_STATE_TYPES ];
+    private final int[] skipped = new int[ StateUnit.MAX_STATE_TYPES ];
+    
+    private int[] passIssued = new int[ 8 ];
+    private int[] passSkipped = new int[ 8 ];
+    private int currentRenderPass = 0;
+    private int numRenderPasses = 0;
+    
+    private int textureBindsIssued = 0;
+    private int textureBindsSkipped = 0;
+    
+    /**
+     * Resets all counts. This is done at the beginning of each frame.
+     */
+    public final void reset()
+    {
+        for ( int i = 0; i < issued.length; i++ )
+        {
+            issued[ i ] = 0;
+            skipped[ i ] = 0;
+        }
+        
+        for ( int i = 0; i < numRenderPasses; i++ )
+        {
+            passIssued[ i ] = 0;
+            passSkipped[ i ] = 0;
+        }
+        
+        currentRenderPass = 0;
+        numRenderPasses = 0;
+        
+        textureBindsIssued = 0;
+        textureBindsSkipped = 0;
+    }
+    
+    /**
+     * Sets the index of the RenderPass, that the following counts are accounted to.
+     * 
+     * @param index
+     */
+    public final void setRenderPass( int index )
+    {
+        if ( index >= passIssued.length )
+        {
+            final int newLength = Math.max( passIssued.length * 2, index + 1 );
+            
+            final int[] newPassIssued = new int[ newLength ];
+            final int[] newPassSkipped = new int[ newLength ];
+            System.arraycopy( passIssued, 0, newPassIssued, 0, numRenderPasses );
+            System.arraycopy( passSkipped, 0, newPassSkipped, 0, numRenderPasses );
+            passIssued = newPassIssued;
+            passSkipped = newPassSkipped;
+        }
+        
+        currentRenderPass = index;
+        
+        if ( index >= numRenderPasses )
+            numRenderPasses = index + 1;
+    }
+    
+    /**
+     * Counts an issued state change.
+     * 
+     * @param stateType
+     */
+    public final void countIssued( int stateType )
+    {
+        issued[ stateType ]++;
+        
+        if ( numRenderPasses > 0 )
+            passIssued[ currentRenderPass ]++;
+    }
+    
+    /**
+     * Counts a state change, that has been skipped as redundant.
+     * 
+     * @param stateType
+     */
+    public final void countSkipped( int stateType )
+    {
+        skipped[ stateType ]++;
+        
+        if ( numRenderPasses > 0 )
+            passSkipped[ currentRenderPass ]++;
+    }
+    
+    /**
+     * Counts a texture binding.
+     * 
+     * @param issued false, if the texture was already bound and the binding has been skipped
+     */
+    public final void countTextureBind( boolean issued )
+    {
+        if ( issued )
+            textureBindsIssued++;
+        else
+            textureBindsSkipped++;
+    }
+    
+    /**
+     * @param stateType
+     * 
+     * @return the number of issued state changes of the given state type.
+     */
+    public final int getNumIssued( int stateType )
+    {
+        return ( issued[ stateType ] );
+    }
+    
+    /**
+     * @param stateType
+     * 
+     * @return the number of redundant state changes of the given state type, that have been skipped.
+     */
+    public final int getNumSkipped( int stateType )
+    {
+        return ( skipped[ stateType ] );
+    }
+    
+    /**
+     * @return the number of issued state changes of all state types.
+     */
+    public final int getNumIssued()
+    {
+        int sum = 0;
+        for ( int i = 0; i < issued.length; i++ )
+        {
+            sum += issued[ i ];
+        }
+        
+        return ( sum );
+    }
+    
+    /**
+     * @return the number of redundant state changes of all state types, that have been skipped.
+     */
+    public final int getNumSkipped()
+    {
+        int sum = 0;
+        for ( int i = 0; i < skipped.length; i++ )
+        {
+            sum += skipped[ i ];
+        }
+        
+        return ( sum );
+    }
+    
+    /**
+     * @return the number of RenderPasses, that have counts.
+     */
+    public final int getNumRenderPasses()
+    {
+        return ( numRenderPasses );
+    }
+    
+    /**
+     * @param renderPass the RenderPass' index
+     * 
+     * @return the number of issued state changes in the given RenderPass.
+     */
+    public final int getNumIssuedInRenderPass( int renderPass )
+    {
+        if ( renderPass >= numRenderPasses )
+            throw new IndexOutOfBoundsException( "renderPass " + renderPass + " is not in [0, " + numRenderPasses + ")" );
+        
+        return ( passIssued[ renderPass ] );
+    }
+    
+    /**
+     * @param renderPass the RenderPass' index
+     * 
+     * @return the number of redundant state changes in the given RenderPass, that have been skipped.
+     */
+    public final int getNumSkippedInRenderPass( int renderPass )
+    {
+        if ( renderPass >= numRenderPasses )
+            throw new IndexOutOfBoundsException( "renderPass " + renderPass + " is not in [0, " + numRenderPasses + ")" );
+        
+        return ( passSkipped[ renderPass ] );
+    }
+    
+    /**
+     * @return the number of issued texture bindings.
+     */
+    public final int getNumTextureBindsIssued()
+    {
+        return ( textureBindsIssued );
+    }
+    
+    /**
+     * @return the number of texture bindings, that have been skipped, since the texture was already bound.
+     */
+    public final int getNumTextureBindsSkipped()
+    {
+        return ( textureBindsSkipped );
+    }
+    
+    /**
+     * Copies all counts from the given statistics.
+     * 
+     * @param stats
+     */
+    public void set( StateChangeStatistics stats )
+    {
+        reset();
+        
+        System.arraycopy( stats.issued, 0, this.issued, 0, issued.length );
+        System.arraycopy( stats.skipped, 0, this.skipped, 0, skipped.length );
+        
+        if ( stats.numRenderPasses > 0 )
+            setRenderPass( stats.numRenderPasses - 1 );
+        System.arraycopy( stats.passIssued, 0, this.passIssued, 0, stats.numRenderPasses );
+        System.arraycopy( stats.passSkipped, 0, this.passSkipped, 0, stats.numRenderPasses );
+        this.currentRenderPass = stats.currentRenderPass;
+        this.numRenderPasses = stats.numRenderPasses;
+        
+        this.textureBindsIssued = stats.textureBindsIssued;
+        this.textureBindsSkipped = stats.textureBindsSkipped;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public String toString()
+    {
+        return ( getClass().getSimpleName() + " { issued: " + getNumIssued() + ", skipped: " + getNumSkipped() + ", texture binds issued: " + textureBindsIssued + ", skipped: " + textureBindsSkipped + " }" );
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.render;
+
+import org.xith3d.scenegraph.GeometryStripArray;
+
+/**
+ * Collects the first vertex and the vertex count of each strip of a
+ * {@link GeometryStripArray}, so that all strips can be issued with
+ * a single glMultiDrawArrays call instead of one glDrawArrays call per strip.<br>
+ * <br>
+ * The ranges are clamped to the Geometry's initial vertex index and
+ * valid vertex count the same way, the per-strip draw loops do.
+ * An instance is meant to be reused for each drawn Geometry.
+ */
+public class StripDrawRanges
+{
+    private int[] firsts;
+    private int[] counts;
+    private int numRanges = 0;
+    
+    /**
+     * @return the number of ranges computed by the last call to {@link #compute(GeometryStripArray)}.
+     */
+    public final int getNumRanges()
+    {
+        return ( numRanges );
+    }
+    
+    /**
+     * @return the first vertex of each range. Only the first {@link #getNumRanges()} elements are valid.
+     */
+    public final int[] getFirsts()
+    {
+        return ( firsts );
+    }
+    
+    /**
+     * @return the vertex count of each range. Only the first {@link #getNumRanges()} elements are valid.
+     */
+    public final int[] getCounts()
+    {
+        return ( counts );
+    }
+    
+    /**
+     * Computes the draw ranges of the passed Geometry's strips.
+     * 
+     * @param geoStripArr
+     * 
+     * @return the number of ranges
+     */
+    public final int compute( GeometryStripArray geoStripArr )
+    {
+        final int stripCount = geoStripArr.getNumStrips();
+        final int[] stripVertexCounts = geoStripArr.getStripVertexCounts();
+        
+        if ( firsts.length < stripCount )
+        {
+            final int newLength = Math.max( stripCount, firsts.length * 2 );
+            firsts = new int[ newLength ];
+            counts = new int[ newLength ];
+        }
+        
+        final int startIndex = geoStripArr.getInitialVertexIndex();
+        final int numIndices = geoStripArr.getValidVertexCount();
+        
+        numRanges = 0;
+        
+        int i0 = 0;
+        for ( int strip = 0; strip < stripCount; strip++ )
+        {
+            final int start = ( i0 >= startIndex ) ? i0 : startIndex;
+            
+            int end = start + stripVertexCounts[ strip ] - 1;
+            if ( end + 1 > numIndices )
+                end = numIndices - 1;
+            
+            if ( end < start )
+                break;
+            
+            firsts[ numRanges ] = start;
+            counts[ numRanges ] = end - start + 1;
+            numRanges++;
+            
+            i0 += stripVertexCounts[ strip ];
+        }
+        
+        return ( numRanges );
+    }
+    
+    public StripDrawRanges( int initialCapacity )
+    {
+        this.firsts = new int[ initialCapacity ];
+        this.counts = new int[ initialCapacity ];
+    }
+    
+    public StripDrawRanges()
+    {
+        this( 16 );
+    }
+}
@@ -0,0 +1,320 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.render;
+
+import java.util.ArrayList;
+
+import org.openmali.vecmath2.Point3f;
+import org.xith3d.render.preprocessing.RenderAtom;
+import org.xith3d.render.preprocessing.ShapeAtom;
+import org.xith3d.scenegraph.Appearance;
+import org.xith3d.scenegraph.Shape3D;
+import org.xith3d.scenegraph.Texture;
+import org.xith3d.scenegraph.Texture2D;
+import org.xith3d.scenegraph.TextureImage;
+import org.xith3d.scenegraph.View;
+import org.xith3d.scenegraph._SG_PrivilegedAccess;
+import org.xith3d.scenegraph.View.ProjectionPolicy;
+
+/**
+ * Drives the progressive mipmap streaming of the streaming {@link Texture2D}s
+ * rendered on one OpenGL context.<br>
+ * <br>
+ * While a frame is rendered, the projected screen size of each atom, that
+ * uses a streaming Texture, is measured. From the largest one the finest
+ * mipmap level is derived, that the Texture needs.<br>
+ * When the next frame starts, the Textures, whose resident level is coarser
+ * than needed, are upgraded level by level, the blurriest first, until
+ * the number of level uploads per frame is reached. So loading a scene never
+ * waits for the upload of all full resolution images.<br>
+ * If the context's {@link GPUMemoryBudget} is exceeded, the Textures drop
+ * the levels finer than they currently need and no Texture is upgraded, if it
+ * would exceed the budget.
+ * 
+ * @see Texture2D#setStreaming(boolean)
+ * @see CanvasPeer#getTextureStreamer()
+ */
+public class TextureStreamer
+{
+    private boolean enabled = true;
+    private int maxLevelUploadsPerFrame = 4;
+    
+    private long frame = 0L;
+    private final ArrayList< Texture2D > observedTextures = new ArrayList< Texture2D >();
+    
+    private int numUpgrades = 0;
+    private int numDowngrades = 0;
+    
+    private final Point3f viewPosition = new Point3f();
+    private final Point3f atomPosition = new Point3f();
+    
+    /**
+     * Enables or disables the streaming. If disabled, the resident levels of the streaming Textures are kept.
+     * 
+     * @param enabled
+     */
+    public void setEnabled( boolean enabled )
+    {
+        this.enabled = enabled;
+        
+        if ( !enabled )
+        {
+            observedTextures.clear();
+        }
+    }
+    
+    public final boolean isEnabled()
+    {
+        return ( enabled );
+    }
+    
+    /**
+     * Sets the maximum number of mipmap levels, that are upgraded per frame.
+     * 
+     * @param max
+     */
+    public void setMaxLevelUploadsPerFrame( int max )
+    {
+        if ( max < 1 )
+            throw new IllegalArgumentException( "max must be at least 1" );
+        
+        this.maxLevelUploadsPerFrame = max;
+    }
+    
+    public final int getMaxLevelUploadsPerFrame()
+    {
+        return ( maxLevelUploadsPerFrame );
+    }
+    
+    /**
+     * @return the number of mipmap levels, that have been upgraded so far.
+     */
+    public final int getUpgradeCount()
+    {
+        return ( numUpgrades );
+    }
+    
+    /**
+     * @return the number of times, a Texture has dropped its finer levels under memory pressure.
+     */
+    public final int getDowngradeCount()
+    {
+        return ( numDowngrades );
+    }
+    
+    /**
+     * @param atom
+     * @param view
+     * @param canvasHeight
+     * 
+     * @return the height of the atom's bounding sphere on screen in pixels.
+     */
+    private final float getProjectedSize( RenderAtom< ? > atom, View view, int canvasHeight )
+    {
+        if ( view.getProjectionPolicy() == ProjectionPolicy.PARALLEL_PROJECTION )
+            return ( Float.MAX_VALUE );
+        
+        final float radius = atom.getNode().getWorldBounds().getMaxCenterDistance();
+        
+        view.getPosition( viewPosition );
+        atom.getPosition( atomPosition );
+        
+        final float distance = atomPosition.distance( viewPosition ) - radius;
+        
+        if ( distance <= 0f )
+            return ( Float.MAX_VALUE );
+        
+        // same world-units-per-pixel ratio as for Billboards
+        final float fovRatio = distance * 2f * (float)Math.tan( view.getFieldOfView() ) / canvasHeight;
+        
+        return ( 2f * radius / fovRatio );
+    }
+    
+    /**
+     * @param texture
+     * @param projectedSize the projected size in pixels
+     * 
+     * @return the finest mipmap level, that is needed for the given projected size.
+     */
+    public static int getRequiredLevel( Texture2D texture, float projectedSize )
+    {
+        final int numLevels = texture.getImagesCount();
+        
+        if ( numLevels <= 1 )
+            return ( 0 );
+        
+        final TextureImage image0 = texture.getImage( 0 );
+        final int size0 = Math.max( image0.getWidth(), image0.getHeight() );
+        
+        int level = 0;
+        float size = size0;
+        while ( ( level < numLevels - 1 ) && ( size * 0.5f >= projectedSize ) )
+        {
+            size *= 0.5f;
+            level++;
+        }
+        
+        return ( level );
+    }
+    
+    /**
+     * Measures the atom's projected size for all streaming Textures of its Appearance.
+     * This is invoked for each atom rendered in {@link RenderPeer.RenderMode#NORMAL}.
+     * 
+     * @param atom
+     * @param view
+     * @param canvasHeight
+     */
+    public final void observe( RenderAtom< ? > atom, View view, int canvasHeight )
+    {
+        if ( !enabled || ( atom.getStateType() != ShapeAtom.STATE_TYPE ) )
+            return;
+        
+        final Appearance app = ( (Shape3D)atom.getNode() ).getAppearance();
+        if ( app == null )
+            return;
+        
+        float projectedSize = -1f;
+        
+        final int numUnits = app.getTextureUnitsCount();
+        for ( int unit = 0; unit < numUnits; unit++ )
+        {
+            final Texture texture = app.getTexture( unit );
+            
+            if ( !( texture instanceof Texture2D ) || !( (Texture2D)texture ).isStreaming() )
+                continue;
+            
+            final Texture2D texture2D = (Texture2D)texture;
+            
+            if ( projectedSize < 0f )
+                projectedSize = getProjectedSize( atom, view, canvasHeight );
+            
+            final int level = getRequiredLevel( texture2D, projectedSize );
+            
+            if ( _SG_PrivilegedAccess.getStreamingFrame( texture2D ) != frame )
+            {
+                _SG_PrivilegedAccess.setStreamingRequest( texture2D, frame, level );
+                observedTextures.add( texture2D );
+            }
+            else if ( level < _SG_PrivilegedAccess.getRequestedLevel( texture2D ) )
+            {
+                _SG_PrivilegedAccess.setStreamingRequest( texture2D, frame, level );
+            }
+        }
+    }
+    
+    private static long getLevelBytes( Texture2D texture, int level )
+    {
+        final TextureImage image = texture.getImage( level );
+        
+        return ( (long)image.getWidth() * image.getHeight() * image.getFormat().getPixelSize() );
+    }
+    
+    /**
+     * Upgrades and downgrades the streaming Textures observed in the previous frame.
+     * This is invoked, when a frame starts.
+     * 
+     * @param budget the context's GPUMemoryBudget
+     * 
+     * @return the number of resident level changes
+     */
+    public final int update( GPUMemoryBudget budget )
+    {
+        int numChanged = 0;
+        
+        if ( enabled && ( observedTextures.size() > 0 ) )
+        {
+            long residentBytes = budget.getResidentBytes();
+            
+            if ( ( budget.getBudget() > 0L ) && ( residentBytes > budget.getBudget() ) )
+            {
+                for ( int i = 0; i < observedTextures.size(); i++ )
+                {
+                    final Texture2D texture = observedTextures.get( i );
+                    final int requestedLevel = _SG_PrivilegedAccess.getRequestedLevel( texture );
+                    
+                    if ( requestedLevel > texture.getResidentLevel() )
+                    {
+                        for ( int level = texture.getResidentLevel(); level < requestedLevel; level++ )
+                        {
+                            residentBytes -= getLevelBytes( texture, level );
+                        }
+                        
+                        texture.setResidentLevel( requestedLevel );
+                        numDowngrades++;
+                        numChanged++;
+                    }
+                }
+            }
+            
+            for ( int n = 0; n < maxLevelUploadsPerFrame; n++ )
+            {
+                // upgrade the blurriest Texture first
+                Texture2D blurriest = null;
+                int maxMissingLevels = 0;
+                
+                for ( int i = 0; i < observedTextures.size(); i++ )
+                {
+                    final Texture2D texture = observedTextures.get( i );
+                    final int missingLevels = texture.getResidentLevel() - _SG_PrivilegedAccess.getRequestedLevel( texture );
+                    
+                    if ( missingLevels > maxMissingLevels )
+                    {
+                        final long levelBytes = getLevelBytes( texture, texture.getResidentLevel() - 1 );
+                        
+                        if ( ( budget.getBudget() == 0L ) || ( residentBytes + levelBytes <= budget.getBudget() ) )
+                        {
+                            blurriest = texture;
+                            maxMissingLevels = missingLevels;
+                        }
+                    }
+                }
+                
+                if ( blurriest == null )
+                    break;
+                
+                residentBytes += getLevelBytes( blurriest, blurriest.getResidentLevel() - 1 );
+                blurriest.setResidentLevel( blurriest.getResidentLevel() - 1 );
+                numUpgrades++;
+                numChanged++;
+            }
+            
+            observedTextures.clear();
+        }
+        
+        frame++;
+        
+        return ( numChanged );
+    }
+}
@@ -0,0 +1,302 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.render;
+
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.nio.FloatBuffer;
+
+import org.xith3d.scenegraph.GeomNioFloatData;
+import org.xith3d.scenegraph.Geometry;
+import org.xith3d.scenegraph.Geometry.VertexCompression;
+
+/**
+ * Packs the float vertex data of a Geometry into the compact formats
+ * selected by its {@link VertexCompression} hint, right before it is
+ * uploaded to a VBO.<br>
+ * <br>
+ * The packed elements are aligned to four bytes. So the packed stride of
+ * a three component half float element is eight bytes and a packed normal
+ * occupies four bytes, the last of which is unused.<br>
+ * The packing buffer is shared and must only be used from the render thread.
+ */
+public final class VertexPacking
+{
+    public static enum Format
+    {
+        /**
+         * Unpacked 32 bit floats
+         */
+        FLOAT,
+        
+        /**
+         * 16 bit half floats (ARB_half_float_vertex)
+         */
+        HALF_FLOAT,
+        
+        /**
+         * signed bytes, mapped from [-1, 1]
+         */
+        NORMALIZED_BYTE,
+        
+        /**
+         * unsigned bytes, mapped from [0, 1]
+         */
+        NORMALIZED_UNSIGNED_BYTE;
+    }
+    
+    private static ByteBuffer packBuffer = null;
+    
+    /**
+     * @param compression the Geometry's compression hint
+     * @param component one of {@link Geometry#COORDINATES}, {@link Geometry#NORMALS}, {@link Geometry#COLORS}, {@link Geometry#TEXTURE_COORDINATES}
+     * @param halfFloatsSupported
+     * 
+     * @return the format, the given vertex data component is to be stored in.
+     */
+    public static final Format getFormat( VertexCompression compression, int component, boolean halfFloatsSupported )
+    {
+        switch ( component )
+        {
+            case Geometry.NORMALS:
+                return ( compression.packNormalsAndColors() ? Format.NORMALIZED_BYTE : Format.FLOAT );
+            case Geometry.COLORS:
+                return ( compression.packNormalsAndColors() ? Format.NORMALIZED_UNSIGNED_BYTE : Format.FLOAT );
+            case Geometry.COORDINATES:
+            case Geometry.TEXTURE_COORDINATES:
+                return ( ( compression.halfFloats() && halfFloatsSupported ) ? Format.HALF_FLOAT : Format.FLOAT );
+            default:
+                return ( Format.FLOAT );
+        }
+    }
+    
+    /**
+     * @param format
+     * @param elemSize the number of components of an unpacked element
+     * 
+     * @return the number of components of a packed element (the size parameter of the gl*Pointer call).
+     */
+    public static final int getPackedElemSize( Format format, int elemSize )
+    {
+        // Colors are always packed with an alpha channel, which is 1 for three component colors.
+        if ( format == Format.NORMALIZED_UNSIGNED_BYTE )
+            return ( 4 );
+        
+        return ( elemSize );
+    }
+    
+    /**
+     * @param format
+     * @param elemSize the number of components of an unpacked element
+     * 
+     * @return the number of bytes of a packed element (the stride parameter of the gl*Pointer call).
+     */
+    public static final int getPackedElemBytes( Format format, int elemSize )
+    {
+        switch ( format )
+        {
+            case HALF_FLOAT:
+                return ( ( elemSize * 2 + 3 ) & ~3 );
+            case NORMALIZED_BYTE:
+            case NORMALIZED_UNSIGNED_BYTE:
+                return ( 4 );
+            case FLOAT:
+            default:
+                return ( elemSize * 4 );
+        }
+    }
+    
+    /**
+     * @param format
+     * @param data
+     * 
+     * @return the number of bytes, the packed data occupies in VRAM.
+     */
+    public static final int getPackedSize( Format format, GeomNioFloatData data )
+    {
+        final int numElems = data.getBuffer().limit() / data.getElemStride();
+        
+        return ( numElems * getPackedElemBytes( format, data.getElemSize() ) );
+    }
+    
+    /**
+     * Converts a float value to the bits of a 16 bit half float.
+     * Values beyond the half float range become infinity, tiny values
+     * become (signed) zero or denormals.
+     * 
+     * @param f
+     * 
+     * @return the half float bits
+     */
+    public static final short toHalfFloat( float f )
+    {
+        final int bits = Float.floatToIntBits( f );
+        final int sign = ( bits >>> 16 ) & 0x8000;
+        final int abs = bits & 0x7FFFFFFF;
+        
+        // rounded to the nearest half float
+        int val = abs + 0x1000;
+        
+        if ( val >= 0x47800000 )
+        {
+            if ( abs >= 0x47800000 )
+            {
+                if ( abs < 0x7F800000 )
+                    return ( (short)( sign | 0x7C00 ) );
+                
+                // infinity or NaN
+                return ( (short)( sign | 0x7C00 | ( ( bits & 0x007FFFFF ) >>> 13 ) ) );
+            }
+            
+            // the largest finite half float
+            return ( (short)( sign | 0x7BFF ) );
+        }
+        
+        if ( val >= 0x38800000 )
+            return ( (short)( sign | ( ( val - 0x38000000 ) >>> 13 ) ) );
+        
+        if ( val < 0x33000000 )
+            return ( (short)sign );
+        
+        // denormal
+        val = abs >>> 23;
+        
+        return ( (short)( sign | ( ( ( ( bits & 0x007FFFFF ) | 0x00800000 ) + ( 0x00800000 >>> ( val - 102 ) ) ) >>> ( 126 - val ) ) ) );
+    }
+    
+    private static final byte toNormalizedByte( float f )
+    {
+        if ( f <= -1f )
+            return ( (byte)-127 );
+        
+        if ( f >= 1f )
+            return ( (byte)127 );
+        
+        return ( (byte)Math.round( f * 127f ) );
+    }
+    
+    private static final byte toNormalizedUnsignedByte( float f )
+    {
+        if ( f <= 0f )
+            return ( (byte)0 );
+        
+        if ( f >= 1f )
+            return ( (byte)255 );
+        
+        return ( (byte)Math.round( f * 255f ) );
+    }
+    
+    private static final ByteBuffer getPackBuffer( int size )
+    {
+        if ( ( packBuffer == null ) || ( packBuffer.capacity() < size ) )
+        {
+            final int capacity = ( packBuffer == null ) ? size : Math.max( size, packBuffer.capacity() * 2 );
+            
+            packBuffer = ByteBuffer.allocateDirect( capacity ).order( ByteOrder.nativeOrder() );
+        }
+        
+        packBuffer.clear();
+        
+        return ( packBuffer );
+    }
+    
+    /**
+     * Packs the whole data into the given format.
+     * 
+     * @param format
+     * @param data
+     * 
+     * @return a shared buffer, that holds the packed data and is valid until the next call.
+     */
+    public static final ByteBuffer pack( Format format, GeomNioFloatData data )
+    {
+        final FloatBuffer src = data.getBuffer();
+        final int elemSize = data.getElemSize();
+        final int elemStride = data.getElemStride();
+        final int numElems = src.limit() / elemStride;
+        final int elemBytes = getPackedElemBytes( format, elemSize );
+        
+        final ByteBuffer dst = getPackBuffer( numElems * elemBytes );
+        
+        for ( int i = 0; i < numElems; i++ )
+        {
+            final int srcPos = i * elemStride;
+            final int dstPos = i * elemBytes;
+            
+            switch ( format )
+            {
+                case HALF_FLOAT:
+                    for ( int j = 0; j < elemSize; j++ )
+                    {
+                        dst.putShort( dstPos + j * 2, toHalfFloat( src.get( srcPos + j ) ) );
+                    }
+                    for ( int j = elemSize * 2; j < elemBytes; j++ )
+                    {
+                        dst.put( dstPos + j, (byte)0 );
+                    }
+                    break;
+                    
+                case NORMALIZED_BYTE:
+                    dst.put( dstPos + 0, toNormalizedByte( src.get( srcPos + 0 ) ) );
+                    dst.put( dstPos + 1, toNormalizedByte( src.get( srcPos + 1 ) ) );
+                    dst.put( dstPos + 2, toNormalizedByte( src.get( srcPos + 2 ) ) );
+                    dst.put( dstPos + 3, (byte)0 );
+                    break;
+                    
+                case NORMALIZED_UNSIGNED_BYTE:
+                    for ( int j = 0; j < 4; j++ )
+                    {
+                        dst.put( dstPos + j, ( j < elemSize ) ? toNormalizedUnsignedByte( src.get( srcPos + j ) ) : (byte)255 );
+                    }
+                    break;
+                    
+                case FLOAT:
+                default:
+                    for ( int j = 0; j < elemSize; j++ )
+                    {
+                        dst.putFloat( dstPos + j * 4, src.get( srcPos + j ) );
+                    }
+                    break;
+            }
+        }
+        
+        dst.limit( numElems * elemBytes );
+        
+        return ( dst );
+    }
+    
+    private VertexPacking()
+    {
+    }
+}
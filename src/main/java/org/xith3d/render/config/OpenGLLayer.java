@@ -45,8 +45,8 @@ public class OpenGLLayer implements Comparable< OpenGLLayer >
 {
     protected static int next_ordinal = 0;
     
-    private static OpenGLLayer[] array = new OpenGLLayer[ 5 ];
-    private static OpenGLLayer[] array2 = new OpenGLLayer[ 5 ];
+    private static OpenGLLayer[] array = new OpenGLLayer[ 6 ];
+    private static OpenGLLayer[] array2 = new OpenGLLayer[ 6 ];
     
     public static final OpenGLLayer JOGL_AWT = new OpenGLLayer( "JOGL_AWT", true, "org.xith3d.render.jsr231.DisplayModeSelectorAWTImpl", "org.xith3d.render.jsr231.CanvasPeerImplAWT" );
     public static final OpenGLLayer JOGL_SWING = new OpenGLLayer( "JOGL_SWING", false, "org.xith3d.render.jsr231.DisplayModeSelectorAWTImpl", "org.xith3d.render.jsr231.CanvasPeerImplSwing" );
@@ -54,6 +54,12 @@ public class OpenGLLayer implements Comparable< OpenGLLayer >
     public static final OpenGLLayer LWJGL = new OpenGLLayer( "LWJGL", true, "org.xith3d.render.lwjgl.DisplayModeSelectorNativeImpl", "org.xith3d.render.lwjgl.CanvasPeerImplNative" );
     public static final OpenGLLayer LWJGL_AWT = new OpenGLLayer( "LWJGL_AWT", false, "org.xith3d.render.lwjgl.DisplayModeSelectorAWTImpl", "org.xith3d.render.lwjgl.CanvasPeerImplAWT" );
     
+    /**
+     * Renders without any OpenGL context and records all issued commands.
+     * Intended for benchmarking and testing on machines without a GPU.
+     */
+    public static final OpenGLLayer HEADLESS = new OpenGLLayer( "HEADLESS", true, "org.xith3d.render.headless.DisplayModeSelectorHeadlessImpl", "org.xith3d.render.headless.CanvasPeerImplHeadless" );
+    
     private final String name;
     private final int ordinal;
     private final boolean isStandaloneCapable;
@@ -190,6 +196,8 @@ public class OpenGLLayer implements Comparable< OpenGLLayer >
             return ( LWJGL );
         else if ( defaultRenderer.equals( "lwjglawt" ) )
             return ( LWJGL_AWT );
+        else if ( defaultRenderer.equals( "headless" ) )
+            return ( HEADLESS );
         return ( JOGL_AWT );
     }
     
@@ -209,6 +217,14 @@ public class OpenGLLayer implements Comparable< OpenGLLayer >
         return ( ( this == LWJGL ) || ( this == LWJGL_AWT ) );
     }
     
+    /**
+     * @return true, if this OpenGLLayer is the headless (recording) one
+     */
+    public boolean isHeadless()
+    {
+        return ( this == HEADLESS );
+    }
+    
     /**
      * @return true, if this OpenGLLayer AWT based
      */
@@ -0,0 +1,416 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.render.headless;
+
+import java.io.IOException;
+import java.net.URL;
+import java.util.List;
+
+import org.jagatoo.input.InputSystem;
+import org.jagatoo.input.devices.InputDeviceFactory;
+import org.jagatoo.logging.ProfileTimer;
+import org.openmali.types.twodee.Rect2i;
+import org.xith3d.picking.PickRequest;
+import org.xith3d.render.CanvasPeer;
+import org.xith3d.render.OpenGLCapabilities;
+import org.xith3d.render.OpenGLInfo;
+import org.xith3d.render.OpenGlExtensions;
+import org.xith3d.render.RenderPass;
+import org.xith3d.render.SceneGraphOpenGLReference;
+import org.xith3d.render.SceneGraphOpenGLReferences;
+import org.xith3d.render.config.DisplayMode;
+import org.xith3d.render.config.DisplayModeSelector;
+import org.xith3d.render.config.FSAA;
+import org.xith3d.render.config.OpenGLLayer;
+import org.xith3d.render.config.DisplayMode.FullscreenMode;
+import org.xith3d.scenegraph.View;
+import org.xith3d.utility.logging.X3DLog;
+
+/**
+ * The CanvasPeer implementation for the headless OpenGLLayer.<br>
+ * It doesn't create any window or OpenGL context. The scene is processed by
+ * the Renderer (culling, sorting, state-sorting) as usual, but the resulting
+ * OpenGL commands are only recorded into a {@link CommandLog}.
+ * This way culling and sorting can be profiled and tested on machines without a GPU.
+ * 
+ * @see OpenGLLayer#HEADLESS
+ */
+public class CanvasPeerImplHeadless extends CanvasPeer
+{
+    private static final String GL_VERSION = "2.1.0";
+    private static final String GL_EXTENSIONS = "GL_ARB_multitexture GL_ARB_vertex_buffer_object GL_ARB_vertex_program GL_ARB_fragment_program GL_ARB_shader_objects GL_ARB_vertex_shader GL_ARB_fragment_shader GL_ARB_texture_compression GL_EXT_texture_filter_anisotropic";
+    
+    static final SceneGraphOpenGLReferences.Provider NAME_PROVIDER = new SceneGraphOpenGLReferences.Provider()
+    {
+        public SceneGraphOpenGLReference newReference( CanvasPeer canvasPeer, SceneGraphOpenGLReferences references, int numNamesPerContext )
+        {
+            return ( new SceneGraphOpenGLReference( canvasPeer, references, numNamesPerContext )
+            {
+                @Override
+                public void prepareObjectForDestroy()
+                {
+                    SceneGraphOpenGLReference ref = getReferences().removeReference( getContext().getCanvasID() );
+                    
+                    ( (CanvasPeerImplHeadless)getContext() ).addDestroyableObject( ref );
+                }
+                
+                @Override
+                public void destroyObject( int index, int name )
+                {
+                    // There is nothing to free.
+                }
+            } );
+        }
+    };
+    
+    private int left = 0;
+    private int top = 0;
+    private int width;
+    private int height;
+    private String title = "Xith3D (Headless)";
+    
+    private final Rect2i maxViewport = new Rect2i( 0, 0, 8192, 8192 );
+    
+    private int nextName = 1;
+    
+    private boolean isRendering = false;
+    private long renderedFrames = 0L;
+    
+    @Override
+    protected RenderPeerImpl createRenderPeer()
+    {
+        return ( new RenderPeerImpl( this, new StateUnitPeerRegistryImpl(), new OpenGLStatesCacheImpl() ) );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final RenderPeerImpl getRenderPeer()
+    {
+        return ( (RenderPeerImpl)super.getRenderPeer() );
+    }
+    
+    /**
+     * @return the log of the commands recorded while rendering.
+     */
+    public final CommandLog getCommandLog()
+    {
+        return ( getRenderPeer().getCommandLog() );
+    }
+    
+    /**
+     * Generates a new (virtual) OpenGL name for textures and buffer objects.
+     */
+    final int genName()
+    {
+        return ( nextName++ );
+    }
+    
+    public final Object getDrawable()
+    {
+        return ( null );
+    }
+    
+    /**
+     * The headless OpenGLLayer doesn't have any input devices.
+     */
+    public InputDeviceFactory getInputDeviceFactory( InputSystem inputSystem )
+    {
+        return ( null );
+    }
+    
+    public final boolean receivesInputEvents()
+    {
+        return ( false );
+    }
+    
+    public void refreshCursor( org.jagatoo.input.devices.Mouse mouse )
+    {
+    }
+    
+    /**
+     * 
+     * @param owner ignored
+     * @param displayMode
+     * @param fullscreen
+     * @param vsync
+     * @param fsaa
+     * @param depthBufferSize
+     */
+    public CanvasPeerImplHeadless( Object owner, DisplayMode displayMode, FullscreenMode fullscreen, boolean vsync, FSAA fsaa, int depthBufferSize )
+    {
+        super( displayMode, fullscreen, vsync, fsaa, depthBufferSize );
+        
+        this.width = getDisplayMode().getWidth();
+        this.height = getDisplayMode().getHeight();
+        
+        this.oglInfo = new OpenGLInfo( "Headless Recorder", GL_VERSION, "Xith3D", GL_EXTENSIONS );
+        OpenGlExtensions.setExtensions( oglInfo );
+        
+        setOpenGLCapabilities( new OpenGLCapabilities( maxViewport.getWidth(), 8, 16, 16, oglInfo ) );
+        
+        getRenderPeer().getStatesCache().update( null, getOpenGLCapabilities() );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public OpenGLLayer getType()
+    {
+        return ( OpenGLLayer.HEADLESS );
+    }
+    
+    @Override
+    protected Class< ? > getExpectedNativeDisplayModeClass()
+    {
+        return ( DisplayModeSelectorHeadlessImpl.NativeMode.class );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public long getRenderedFrames()
+    {
+        return ( renderedFrames );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final Object getWindow()
+    {
+        return ( null );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final Object getComponent()
+    {
+        return ( null );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void setIcon( URL iconResource ) throws IOException
+    {
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void setTitle( String title )
+    {
+        this.title = title;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final String getTitle()
+    {
+        return ( title );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final boolean setLocation( int x, int y )
+    {
+        if ( ( this.left == x ) && ( this.top == y ) )
+        {
+            return ( false );
+        }
+        
+        this.left = x;
+        this.top = y;
+        
+        return ( true );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final int getLeft()
+    {
+        return ( left );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final int getTop()
+    {
+        return ( top );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final boolean setSize( int width, int height )
+    {
+        if ( ( width == this.width ) && ( height == this.height ) )
+            return ( false );
+        
+        DisplayMode displayMode = DisplayModeSelector.getImplementation( OpenGLLayer.HEADLESS ).getBestMode( width, height, getBPP(), getFrequency() );
+        
+        if ( displayMode == null )
+            return ( false );
+        
+        setDisplayModeRef( displayMode );
+        
+        this.width = getDisplayMode().getWidth();
+        this.height = getDisplayMode().getHeight();
+        
+        return ( true );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final int getWidth()
+    {
+        return ( width );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final int getHeight()
+    {
+        return ( height );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected boolean setDisplayModeImpl( DisplayMode displayMode )
+    {
+        this.width = displayMode.getWidth();
+        this.height = displayMode.getHeight();
+        
+        return ( true );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Rect2i getMaxViewport()
+    {
+        return ( maxViewport );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final boolean isRendering()
+    {
+        return ( isRendering );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void beforeThreadChanged()
+    {
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void addDestroyableObject( SceneGraphOpenGLReference ref )
+    {
+        super.addDestroyableObject( ref );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void clear()
+    {
+        getRenderPeer().clearViewport();
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected Object initRenderingImpl( View view, List< RenderPass > renderPasses, boolean layeredMode, long frameId, long nanoTime, long nanoStep, PickRequest pickRequest )
+    {
+        if ( getFullscreenSwitchRequest() != null )
+        {
+            resetFullscreenSwitchRequest();
+        }
+        
+        ProfileTimer.startProfile( X3DLog.LOG_CHANNEL, "CanvasPeerImpl::render" );
+        
+        // reset triangles count
+        setTriangles( 0 );
+        
+        destroyGLNames( true );
+        updateTextureStreaming();
+        enforceGPUMemoryBudget();
+        
+        isRendering = true;
+        Object result = getRenderPeer().render( null, view, renderPasses, layeredMode, frameId, nanoTime, nanoStep, pickRequest );
+        isRendering = false;
+        
+        renderedFrames++;
+        
+        ProfileTimer.endProfile();
+        
+        return ( result );
+    }
+}
@@ -0,0 +1,399 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.render.headless;
+
+import java.io.PrintStream;
+
+/**
+ * The CommandLog records the (virtual) OpenGL commands issued by the headless
+ * OpenGLLayer. It is filled by the {@link CanvasPeerImplHeadless}'s RenderPeer
+ * and its atom- and StateUnit-peers and can be inspected after each frame.<br>
+ * <br>
+ * The log itself is held in parallel primitive arrays, which are only grown,
+ * but never shrunk. So recording doesn't produce any garbage in steady state.
+ * If recording is disabled, only the per-frame and total counters are maintained.
+ */
+public class CommandLog
+{
+    public static enum CommandType
+    {
+        /**
+         * A frame has been started. arg0 is the frameId.
+         */
+        BEGIN_FRAME,
+        
+        /**
+         * A frame has been finished. arg0 is the frameId, arg1 the number of rendered triangles.
+         */
+        END_FRAME,
+        
+        /**
+         * A RenderPass has been started. arg0 is the pass index, arg1 the number of atoms in its bins.
+         */
+        BEGIN_RENDER_PASS,
+        
+        /**
+         * A RenderPass has been finished. arg0 is the pass index.
+         */
+        END_RENDER_PASS,
+        
+        /**
+         * A StateUnit has been applied. arg0 is the state type, arg1 the state id. object is the StateUnit.
+         */
+        STATE_CHANGE,
+        
+        /**
+         * A Texture has been bound. arg0 is the texture unit, arg1 the texture's (virtual) name. object is the Texture.
+         */
+        BIND_TEXTURE,
+        
+        /**
+         * A Texture has been (re-)defined. arg0 is the texture's (virtual) name, arg1 the number of uploaded bytes,
+         * which only covers the resident mipmap levels of a streaming Texture. object is the Texture.
+         */
+        UPLOAD_TEXTURE,
+        
+        /**
+         * A VBO has been bound. arg0 is 0 for an index buffer and 1 for an array buffer, arg1 the VBO's (virtual) name. object is the data.
+         */
+        BIND_VBO,
+        
+        /**
+         * VBO data has been uploaded. arg0 is the VBO's (virtual) name, arg1 the number of uploaded bytes,
+         * which is less than the data's size, if only its dirty range has been uploaded or the data
+         * has been packed according to the Geometry's VertexCompression. object is the data.
+         */
+        UPLOAD_VBO,
+        
+        /**
+         * VBO data has been streamed into the orphaned storage of a GL_STREAM_DRAW buffer.
+         * arg0 is the VBO's (virtual) name, arg1 the number of uploaded bytes. object is the data.
+         */
+        STREAM_VBO,
+        
+        /**
+         * The modelview matrix has been loaded. object is the world Transform3D.
+         */
+        SET_MATRIX,
+        
+        /**
+         * A Shape has been drawn. arg0 is the number of triangles, arg1 the number of vertices. object is the Shape3D.
+         */
+        DRAW,
+        
+        /**
+         * The buffers of a Geometry have been set up once for a batch of Shapes sharing it and their states.
+         * Each instance follows with its own SET_MATRIX and DRAW commands.
+         * arg0 is the number of instances. object is the shared Geometry.
+         */
+        SETUP_INSTANCES,
+        
+        /**
+         * The Geometries of a batch of Shapes sharing their states have been merged into the
+         * shared Geometry of a {@link org.xith3d.render.ShapeAtomBatcher} and its buffers have been set up.
+         * One DRAW command for the whole batch follows.
+         * arg0 is the number of merged Shapes, arg1 the number of merged vertices. object is the shared Geometry.
+         */
+        SETUP_BATCH,
+        
+        /**
+         * A Node's bounds have been drawn. object is the Node.
+         */
+        DRAW_BOUNDS,
+        
+        /**
+         * The viewport has been cleared.
+         */
+        CLEAR,
+        
+        /**
+         * A screenshot has been taken. arg0 is the image's width, arg1 its height. object is the target File.
+         */
+        SCREENSHOT,
+        ;
+    }
+    
+    private static final CommandType[] TYPES = CommandType.values();
+    
+    private boolean recordingEnabled = true;
+    private boolean accumulating = false;
+    
+    private int size = 0;
+    private CommandType[] types;
+    private long[] args0;
+    private long[] args1;
+    private Object[] objects;
+    
+    private final int[] frameCounts = new int[ TYPES.length ];
+    private final long[] totalCounts = new long[ TYPES.length ];
+    
+    /**
+     * Enables or disables the recording of the actual commands.
+     * If disabled, only the counters are maintained.
+     * 
+     * @param enabled
+     */
+    public void setRecordingEnabled( boolean enabled )
+    {
+        this.recordingEnabled = enabled;
+    }
+    
+    /**
+     * @return whether the actual commands are recorded or only counted.
+     */
+    public final boolean isRecordingEnabled()
+    {
+        return ( recordingEnabled );
+    }
+    
+    /**
+     * If accumulating, the log is not cleared at the beginning of each frame.
+     * 
+     * @param accumulating
+     */
+    public void setAccumulating( boolean accumulating )
+    {
+        this.accumulating = accumulating;
+    }
+    
+    /**
+     * @return whether the log is not cleared at the beginning of each frame.
+     */
+    public final boolean isAccumulating()
+    {
+        return ( accumulating );
+    }
+    
+    private void ensureCapacity( int minCapacity )
+    {
+        if ( types.length >= minCapacity )
+            return;
+        
+        final int newCapacity = Math.max( minCapacity, ( types.length * 3 ) / 2 + 1 );
+        
+        CommandType[] newTypes = new CommandType[ newCapacity ];
+        System.arraycopy( types, 0, newTypes, 0, size );
+        types = newTypes;
+        
+        long[] newArgs0 = new long[ newCapacity ];
+        System.arraycopy( args0, 0, newArgs0, 0, size );
+        args0 = newArgs0;
+        
+        long[] newArgs1 = new long[ newCapacity ];
+        System.arraycopy( args1, 0, newArgs1, 0, size );
+        args1 = newArgs1;
+        
+        Object[] newObjects = new Object[ newCapacity ];
+        System.arraycopy( objects, 0, newObjects, 0, size );
+        objects = newObjects;
+    }
+    
+    /**
+     * Records a command.
+     * 
+     * @param type
+     * @param arg0
+     * @param arg1
+     * @param object
+     */
+    final void record( CommandType type, long arg0, long arg1, Object object )
+    {
+        if ( type == CommandType.BEGIN_FRAME )
+        {
+            for ( int i = 0; i < frameCounts.length; i++ )
+                frameCounts[ i ] = 0;
+            
+            if ( !accumulating )
+                clearCommands();
+        }
+        
+        frameCounts[ type.ordinal() ]++;
+        totalCounts[ type.ordinal() ]++;
+        
+        if ( !recordingEnabled )
+            return;
+        
+        ensureCapacity( size + 1 );
+        
+        types[ size ] = type;
+        args0[ size ] = arg0;
+        args1[ size ] = arg1;
+        objects[ size ] = object;
+        
+        size++;
+    }
+    
+    private void clearCommands()
+    {
+        for ( int i = 0; i < size; i++ )
+            objects[ i ] = null;
+        
+        size = 0;
+    }
+    
+    /**
+     * Clears the recorded commands and all counters.
+     */
+    public void clear()
+    {
+        clearCommands();
+        
+        for ( int i = 0; i < TYPES.length; i++ )
+        {
+            frameCounts[ i ] = 0;
+            totalCounts[ i ] = 0L;
+        }
+    }
+    
+    /**
+     * @return the number of recorded commands.
+     */
+    public final int getSize()
+    {
+        return ( size );
+    }
+    
+    /**
+     * @param index
+     * 
+     * @return the type of the index-th recorded command.
+     */
+    public final CommandType getType( int index )
+    {
+        if ( index >= size )
+            throw new ArrayIndexOutOfBoundsException( index );
+        
+        return ( types[ index ] );
+    }
+    
+    /**
+     * @param index
+     * 
+     * @return the first argument of the index-th recorded command.
+     */
+    public final long getArgument0( int index )
+    {
+        if ( index >= size )
+            throw new ArrayIndexOutOfBoundsException( index );
+        
+        return ( args0[ index ] );
+    }
+    
+    /**
+     * @param index
+     * 
+     * @return the second argument of the index-th recorded command.
+     */
+    public final long getArgument1( int index )
+    {
+        if ( index >= size )
+            throw new ArrayIndexOutOfBoundsException( index );
+        
+        return ( args1[ index ] );
+    }
+    
+    /**
+     * @param index
+     * 
+     * @return the object of the index-th recorded command (may be null).
+     */
+    public final Object getObject( int index )
+    {
+        if ( index >= size )
+            throw new ArrayIndexOutOfBoundsException( index );
+        
+        return ( objects[ index ] );
+    }
+    
+    /**
+     * @param type
+     * 
+     * @return the number of commands of the given type issued in the last (or current) frame.
+     */
+    public final int getFrameCount( CommandType type )
+    {
+        return ( frameCounts[ type.ordinal() ] );
+    }
+    
+    /**
+     * @param type
+     * 
+     * @return the number of commands of the given type issued since creation or the last {@link #clear()}.
+     */
+    public final long getTotalCount( CommandType type )
+    {
+        return ( totalCounts[ type.ordinal() ] );
+    }
+    
+    /**
+     * Dumps the recorded commands to the given PrintStream.
+     * 
+     * @param out
+     */
+    public void dump( PrintStream out )
+    {
+        for ( int i = 0; i < size; i++ )
+        {
+            out.println( types[ i ] + "( " + args0[ i ] + ", " + args1[ i ] + " ) " + ( ( objects[ i ] == null ) ? "" : String.valueOf( objects[ i ] ) ) );
+        }
+        
+        out.print( "Frame counts:" );
+        for ( int i = 0; i < TYPES.length; i++ )
+        {
+            out.print( " " + TYPES[ i ] + "=" + frameCounts[ i ] );
+        }
+        out.println();
+    }
+    
+    /**
+     * Dumps the recorded commands to System.out.
+     */
+    public void dump()
+    {
+        dump( System.out );
+    }
+    
+    public CommandLog( int initialCapacity )
+    {
+        this.types = new CommandType[ initialCapacity ];
+        this.args0 = new long[ initialCapacity ];
+        this.args1 = new long[ initialCapacity ];
+        this.objects = new Object[ initialCapacity ];
+    }
+    
+    public CommandLog()
+    {
+        this( 1024 );
+    }
+}
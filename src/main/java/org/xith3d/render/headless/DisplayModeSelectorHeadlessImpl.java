@@ -0,0 +1,146 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.render.headless;
+
+import org.xith3d.render.config.DisplayMode;
+import org.xith3d.render.config.DisplayModeSelector;
+import org.xith3d.render.config.OpenGLLayer;
+
+/**
+ * DisplayModeSelector implementation for the headless OpenGLLayer.<br>
+ * As there is no physical display, any requested resolution is available.
+ * The desktop mode is a synthetic 1024x768 mode and doesn't query AWT.<br>
+ * <br>
+ * Instantiate it by invoking the static getImplementation() method.
+ * 
+ * @see DisplayModeSelector#getImplementation(org.xith3d.render.config.OpenGLLayer)
+ */
+public class DisplayModeSelectorHeadlessImpl extends DisplayModeSelector
+{
+    private static final OpenGLLayer OPENGL_LAYER = OpenGLLayer.HEADLESS;
+    
+    /**
+     * The native mode object used by the headless OpenGLLayer.
+     */
+    public static final class NativeMode
+    {
+        private final int width;
+        private final int height;
+        
+        public final int getWidth()
+        {
+            return ( width );
+        }
+        
+        public final int getHeight()
+        {
+            return ( height );
+        }
+        
+        @Override
+        public String toString()
+        {
+            return ( "Headless( " + width + " x " + height + " )" );
+        }
+        
+        NativeMode( int width, int height )
+        {
+            this.width = width;
+            this.height = height;
+        }
+    }
+    
+    private static final int[][] RESOLUTIONS = new int[][]
+    {
+        { 640, 480 },
+        { 800, 600 },
+        { 1024, 768 },
+        { 1280, 1024 },
+        { 1600, 1200 },
+        { 1920, 1080 },
+    };
+    
+    private static DisplayMode[] cachedModes = null;
+    
+    private static DisplayMode createMode( int width, int height, int bpp, int freq )
+    {
+        return ( new DisplayMode( OPENGL_LAYER, new NativeMode( width, height ), width, height, bpp, freq ) );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DisplayMode[] getAvailableModes()
+    {
+        if ( cachedModes != null )
+            return ( cachedModes );
+        
+        DisplayMode[] modes = new DisplayMode[ RESOLUTIONS.length ];
+        
+        for ( int i = 0; i < RESOLUTIONS.length; i++ )
+        {
+            modes[ i ] = createMode( RESOLUTIONS[ i ][ 0 ], RESOLUTIONS[ i ][ 1 ], DisplayMode.getDefaultBPP(), DisplayMode.getDefaultFrequency() );
+        }
+        
+        sortModes( modes );
+        
+        cachedModes = modes;
+        
+        return ( modes );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public DisplayMode getDesktopMode()
+    {
+        return ( createMode( 1024, 768, DisplayMode.getDefaultBPP(), DisplayMode.getDefaultFrequency() ) );
+    }
+    
+    /**
+     * {@inheritDoc}
+     * 
+     * Any positive resolution is available for the headless OpenGLLayer.
+     */
+    @Override
+    public DisplayMode getBestMode( int width, int height, int optimalBPP, int optimalFreq )
+    {
+        if ( ( width <= 0 ) || ( height <= 0 ) )
+            return ( super.getBestMode( width, height, optimalBPP, optimalFreq ) );
+        
+        return ( createMode( width, height, ( optimalBPP > 0 ) ? optimalBPP : DisplayMode.getDefaultBPP(), ( optimalFreq > 0 ) ? optimalFreq : DisplayMode.getDefaultFrequency() ) );
+    }
+}
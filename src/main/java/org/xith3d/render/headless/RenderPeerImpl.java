@@ -0,0 +1,322 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.render.headless;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+import java.util.List;
+
+import javax.imageio.ImageIO;
+
+import org.jagatoo.logging.ProfileTimer;
+import org.xith3d.picking.PickRequest;
+import org.xith3d.render.CanvasPeer;
+import org.xith3d.render.OpenGLCapabilities;
+import org.xith3d.render.OpenGLStatesCache;
+import org.xith3d.render.RenderOptions;
+import org.xith3d.render.RenderPass;
+import org.xith3d.render.RenderPassConfig;
+import org.xith3d.render.RenderPeer;
+import org.xith3d.render.StateUnitPeerRegistry;
+import org.xith3d.render.headless.CommandLog.CommandType;
+import org.xith3d.render.preprocessing.RenderAtom;
+import org.xith3d.render.preprocessing.RenderBin;
+import org.xith3d.render.preprocessing.RenderBinProvider;
+import org.xith3d.render.preprocessing.ShapeAtom;
+import org.xith3d.scenegraph.View;
+import org.xith3d.scenegraph._SG_PrivilegedAccess;
+import org.xith3d.utility.logging.X3DLog;
+
+/**
+ * RenderPeer implementation for the headless OpenGLLayer.<br>
+ * It walks the RenderPasses and RenderBins exactly like the real RenderPeers
+ * and hands each atom to {@link RenderPeer#renderAtom(RenderAtom, Object, CanvasPeer, OpenGLCapabilities, OpenGLStatesCache, View, RenderOptions, long, long, RenderMode, long)},
+ * so that state-sorting and StateUnit application is identical.
+ * All issued commands are recorded into the {@link CommandLog}.<br>
+ * <br>
+ * RenderTargets and shadows are not supported.
+ * Screenshots are blank images of the canvas size.
+ * Picking always results in no hits.
+ */
+class RenderPeerImpl extends RenderPeer
+{
+    private final CommandLog commandLog = new CommandLog();
+    
+    private RenderOptions effectiveRenderOptions = new RenderOptions();
+    
+    private File scheduledShotFile = null;
+    private boolean scheduledShotAlpha = false;
+    
+    public RenderPeerImpl( CanvasPeerImplHeadless canvasPeer, StateUnitPeerRegistry shaderRegistry, OpenGLStatesCache statesCache, RenderOptions renderOptions )
+    {
+        super( canvasPeer, shaderRegistry, statesCache, renderOptions );
+    }
+    
+    public RenderPeerImpl( CanvasPeerImplHeadless canvasPeer, StateUnitPeerRegistry shaderRegistry, OpenGLStatesCache statesCache )
+    {
+        this( canvasPeer, shaderRegistry, statesCache, new RenderOptions() );
+    }
+    
+    /**
+     * @return the log of all recorded commands.
+     */
+    public final CommandLog getCommandLog()
+    {
+        return ( commandLog );
+    }
+    
+    private final int drawBin( OpenGLStatesCache statesCache, OpenGLCapabilities glCaps, RenderOptions options, RenderBin bin, View view, long frameId, long nanoTime, long nanoStep, RenderMode renderMode )
+    {
+        final CanvasPeer canvasPeer = getCanvasPeer();
+        
+        int triangles = 0;
+        
+        final int n = bin.size();
+        for ( int i = 0; i < n; i++ )
+        {
+            final int instances = getInstanceCount( bin, i, options, renderMode );
+            final int batched = ( instances > 1 ) ? 1 : getBatchCount( bin, i, options, renderMode );
+            
+            if ( instances > 1 )
+            {
+                triangles += this.renderInstances( bin, i, instances, null, canvasPeer, glCaps, statesCache, view, options, nanoTime, nanoStep, renderMode, frameId );
+                
+                i += instances - 1;
+            }
+            else if ( batched > 1 )
+            {
+                triangles += this.renderBatch( bin, i, batched, null, canvasPeer, glCaps, statesCache, view, options, nanoTime, nanoStep, renderMode, frameId );
+                
+                i += batched - 1;
+            }
+            else
+            {
+                final RenderAtom< ? > atom = bin.getAtom( i );
+                
+                triangles += this.renderAtom( atom, null, canvasPeer, glCaps, statesCache, view, options, nanoTime, nanoStep, renderMode, frameId );
+            }
+        }
+        
+        return ( triangles );
+    }
+    
+    private final int renderMain( OpenGLCapabilities glCaps, OpenGLStatesCache statesCache, RenderOptions options, View view, RenderPass renderPass, long frameId, long nanoTime, long nanoStep, RenderMode renderMode )
+    {
+        int triangles = 0;
+        
+        ProfileTimer.startProfile( X3DLog.LOG_CHANNEL, "CanvasPeerImpl::Drawing Main Scene" );
+        
+        final RenderBinProvider binProvider = renderPass.getRenderBinProvider();
+        
+        if ( binProvider.getOpaqueBin().size() > 0 )
+        {
+            triangles += drawBin( statesCache, glCaps, options, binProvider.getOpaqueBin(), view, frameId, nanoTime, nanoStep, renderMode );
+        }
+        
+        if ( binProvider.getTransparentBin().size() > 0 )
+        {
+            triangles += drawBin( statesCache, glCaps, options, binProvider.getTransparentBin(), view, frameId, nanoTime, nanoStep, renderMode );
+        }
+        
+        ProfileTimer.endProfile();
+        
+        return ( triangles );
+    }
+    
+    private final int renderRenderPass( Object glObj, OpenGLCapabilities glCaps, OpenGLStatesCache statesCache, List< RenderPass > renderPasses, RenderPass renderPass, final int rpIndex, RenderMode renderMode, View view, long frameId, long nanoTime, long nanoStep, PickRequest pickRequest )
+    {
+        final RenderPassConfig passConfig = renderPass.getConfig();
+        
+        // notify the RenderCallbacks, if any
+        if ( pickRequest == null )
+        {
+            renderPass.getRenderCallbackNotifier().notifyBeforeRenderPassIsRendered( renderPass, getCanvasPeer().getType(), glObj );
+        }
+        
+        _SG_PrivilegedAccess.set( view, true, passConfig );
+        
+        if ( ( passConfig != null ) && ( passConfig.getRenderOptions() != null ) )
+            effectiveRenderOptions.loadOptions( passConfig.getRenderOptions() );
+        else
+            effectiveRenderOptions.loadOptions( this.getRenderOptions() );
+        
+        statesCache.enabled = effectiveRenderOptions.isGLStatesCacheEnabled();
+        statesCache.statistics.setRenderPass( rpIndex );
+        
+        // recalculate projection matrices
+        if ( ( passConfig != null ) && ( passConfig.getViewport() != null ) )
+            view.getFrustum( passConfig.getViewport() );
+        else
+            view.getFrustum( getCanvasPeer().getCanvas3D() );
+        
+        commandLog.record( CommandType.BEGIN_RENDER_PASS, rpIndex, renderPass.getRenderBinProvider().getAtomsCount(), renderPass );
+        
+        // notify the RenderCallbacks, if any
+        if ( pickRequest == null )
+        {
+            renderPass.getRenderCallbackNotifier().notifyAfterRenderPassIsSetUp( renderPass, getCanvasPeer().getType(), glObj );
+        }
+        
+        final int triangles = renderMain( glCaps, statesCache, effectiveRenderOptions, view, renderPass, frameId, nanoTime, nanoStep, renderMode );
+        
+        commandLog.record( CommandType.END_RENDER_PASS, rpIndex, triangles, renderPass );
+        
+        if ( ( ( passConfig != null ) && ( passConfig.getRenderOptions() != null ) ) || ( ( rpIndex + 1 < renderPasses.size() ) && ( renderPasses.get( rpIndex + 1 ).getConfig() != null ) && ( renderPasses.get( rpIndex + 1 ).getConfig().getRenderOptions() != null ) ) )
+        {
+            super.renderDone( frameId );
+            super.resetStateUnitStateArrays();
+        }
+        
+        _SG_PrivilegedAccess.set( view, false, (RenderPassConfig)null );
+        
+        // notify the RenderCallbacks, if any
+        if ( pickRequest == null )
+        {
+            renderPass.getRenderCallbackNotifier().notifyAfterRenderPassCompleted( renderPass, getCanvasPeer().getType(), glObj );
+        }
+        
+        return ( triangles );
+    }
+    
+    /**
+     * Does the actual (virtual) rendering.
+     */
+    @Override
+    public final Object render( Object glObj, View view, List< RenderPass > renderPasses, boolean layeredMode, long frameId, long nanoTime, long nanoStep, PickRequest pickRequest )
+    {
+        if ( view == null )
+        {
+            return ( null );
+        }
+        
+        final OpenGLCapabilities glCaps = getCanvasPeer().getOpenGLCapabilities();
+        final OpenGLStatesCache statesCache = getStatesCache();
+        
+        statesCache.enabled = getRenderOptions().isGLStatesCacheEnabled();
+        
+        /*
+         * Reset the ShapeAtomPeer's transform indicator to record
+         * the modelview matrix at least once per frame.
+         */
+        ( (ShapeAtomPeer)getShaderRegistry().getRenderAtomPeer( ShapeAtom.STATE_TYPE ) ).reset();
+        
+        commandLog.record( CommandType.BEGIN_FRAME, frameId, 0L, null );
+        
+        renderStart( pickRequest );
+        
+        final RenderMode renderMode = ( pickRequest == null ) ? RenderMode.NORMAL : RenderMode.PICKING;
+        
+        int triangles = 0;
+        
+        if ( renderPasses != null )
+        {
+            for ( int i = 0; i < renderPasses.size(); i++ )
+            {
+                final RenderPass renderPass = renderPasses.get( i );
+                
+                if ( renderPass.isEnabled() )
+                {
+                    triangles += renderRenderPass( glObj, glCaps, statesCache, renderPasses, renderPass, i, renderMode, view, frameId, nanoTime, nanoStep, pickRequest );
+                }
+            }
+        }
+        
+        super.renderDone( frameId );
+        
+        getCanvasPeer().addTriangles( triangles );
+        
+        commandLog.record( CommandType.END_FRAME, frameId, triangles, null );
+        
+        if ( ( scheduledShotFile != null ) && ( pickRequest == null ) )
+        {
+            writeScreenshot( scheduledShotFile, scheduledShotAlpha );
+            scheduledShotFile = null;
+        }
+        
+        checkGCRequested();
+        
+        if ( pickRequest != null )
+        {
+            // There is no selection buffer. So nothing is ever hit.
+            return ( convertSelectBuffer( 0, renderPasses, pickRequest.getPickAll() ) );
+        }
+        
+        return ( null );
+    }
+    
+    /**
+     * Records a CLEAR command.
+     */
+    public void clearViewport()
+    {
+        commandLog.record( CommandType.CLEAR, 0L, 0L, null );
+    }
+    
+    /**
+     * Records a SCREENSHOT command and writes a blank image of the canvas size,
+     * since nothing is actually rendered.
+     */
+    private final void writeScreenshot( File file, boolean alpha )
+    {
+        final int width = getCanvasPeer().getWidth();
+        final int height = getCanvasPeer().getHeight();
+        
+        commandLog.record( CommandType.SCREENSHOT, width, height, file );
+        
+        final BufferedImage image = new BufferedImage( width, height, alpha ? BufferedImage.TYPE_INT_ARGB : BufferedImage.TYPE_INT_RGB );
+        
+        try
+        {
+            ImageIO.write( image, "PNG", file );
+        }
+        catch ( IOException e )
+        {
+            X3DLog.error( "Cannot write the screenshot to ", file, ": ", e.getMessage() );
+        }
+    }
+    
+    /**
+     * Schedules a (blank) screenshot to be written after the next rendered frame.
+     * 
+     * @param file
+     * @param alpha with alpha channel?
+     */
+    @Override
+    public final void takeScreenshot( File file, boolean alpha )
+    {
+        this.scheduledShotFile = file;
+        this.scheduledShotAlpha = alpha;
+    }
+}
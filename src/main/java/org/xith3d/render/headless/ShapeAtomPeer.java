@@ -0,0 +1,479 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.render.headless;
+
+import org.jagatoo.geometry.GeomNioData;
+import org.jagatoo.opengl.enums.FaceCullMode;
+import org.xith3d.render.CanvasPeer;
+import org.xith3d.render.GPUMemoryBudget.ResourceType;
+import org.xith3d.render.OpenGLCapabilities;
+import org.xith3d.render.OpenGLStatesCache;
+import org.xith3d.render.RenderAtomPeer;
+import org.xith3d.render.RenderOptions;
+import org.xith3d.render.RenderPeer;
+import org.xith3d.render.SceneGraphOpenGLReference;
+import org.xith3d.render.ShapeAtomBatcher;
+import org.xith3d.render.VertexPacking;
+import org.xith3d.render.VertexPacking.Format;
+import org.xith3d.render.RenderPeer.RenderMode;
+import org.xith3d.render.headless.CommandLog.CommandType;
+import org.xith3d.render.preprocessing.RenderAtom;
+import org.xith3d.render.preprocessing.ShapeAtom;
+import org.xith3d.scenegraph.Appearance;
+import org.xith3d.scenegraph.GeomNioFloatData;
+import org.xith3d.scenegraph.GeomNioIntData;
+import org.xith3d.scenegraph.Geometry;
+import org.xith3d.scenegraph.IndexedGeometryArray;
+import org.xith3d.scenegraph.Shape3D;
+import org.xith3d.scenegraph.Transform3D;
+import org.xith3d.scenegraph.View;
+import org.xith3d.scenegraph._SG_PrivilegedAccess;
+import org.xith3d.scenegraph.Geometry.Optimization;
+import org.xith3d.scenegraph.Geometry.VertexCompression;
+
+/**
+ * ShapeAtomPeer implementation for the headless OpenGLLayer.<br>
+ * It follows the same VBO decisions as the real ShapeAtomPeers, but records
+ * the (virtual) VBO bindings, uploads and draw calls instead of issuing them.
+ */
+class ShapeAtomPeer extends RenderAtomPeer
+{
+    private static final int OPT_AUTO_MAX_FRAMES = 10;
+    private static final int OPT_STREAMING_MIN_FRAMES = 3;
+    
+    private Transform3D lastTransform = null;
+    
+    private long frameCounter = 0L;
+    
+    /**
+     * Prepares this instance to render the next frame.
+     */
+    public final void reset()
+    {
+        lastTransform = null;
+        frameCounter++;
+    }
+    
+    private final void setMatrix( Transform3D transform, CommandLog log )
+    {
+        if ( lastTransform == transform )
+            return;
+        
+        lastTransform = transform;
+        
+        log.record( CommandType.SET_MATRIX, 0L, 0L, transform );
+    }
+    
+    private static final boolean useVBO( Optimization optimization, GeomNioData data, boolean isTexCoord )
+    {
+        switch ( optimization )
+        {
+            case USE_VBOS:
+            case USE_STREAMING_VBOS:
+                return ( true );
+            case USE_VBO_FOR_VERTEX_DATA:
+                return ( !isTexCoord );
+            case USE_VBO_FOR_TEXTURE_COORDINATES:
+                return ( isTexCoord );
+            case NONE:
+            case USE_DISPLAY_LISTS:
+                return ( false );
+            case AUTO:
+            default:
+                return ( _SG_PrivilegedAccess.getFramesSinceDirty( data ) >= OPT_AUTO_MAX_FRAMES );
+        }
+    }
+    
+    private static final void bindVBO( int vbo, boolean isIndex, OpenGLStatesCache statesCache, GeomNioData data, CommandLog log )
+    {
+        if ( isIndex )
+        {
+            if ( statesCache.enabled && ( statesCache.currentBoundElementVBO == vbo ) )
+                return;
+            
+            statesCache.currentBoundElementVBO = vbo;
+        }
+        else
+        {
+            if ( statesCache.enabled && ( statesCache.currentBoundArrayVBO == vbo ) )
+                return;
+            
+            statesCache.currentBoundArrayVBO = vbo;
+        }
+        
+        log.record( CommandType.BIND_VBO, isIndex ? 0L : 1L, vbo, data );
+    }
+    
+    private static final SceneGraphOpenGLReference getReference( CanvasPeer canvasPeer, GeomNioData data )
+    {
+        if ( data instanceof GeomNioFloatData )
+            return ( ( (GeomNioFloatData)data ).getOpenGLReferences().getReference( canvasPeer, CanvasPeerImplHeadless.NAME_PROVIDER ) );
+        
+        return ( ( (GeomNioIntData)data ).getOpenGLReferences().getReference( canvasPeer, CanvasPeerImplHeadless.NAME_PROVIDER ) );
+    }
+    
+    private static final long getSizeInBytes( GeomNioData data )
+    {
+        if ( data instanceof GeomNioFloatData )
+            return ( ( (GeomNioFloatData)data ).getBuffer().limit() * 4L );
+        
+        return ( ( (GeomNioIntData)data ).getBuffer().limit() * 4L );
+    }
+    
+    /**
+     * @return the number of bytes of the data's dirty element range or -1, if the range is unknown or covers the whole data.
+     */
+    private static final long getDirtyRangeSizeInBytes( GeomNioData data )
+    {
+        final int rangeStart = _SG_PrivilegedAccess.getDirtyRangeStart( data );
+        if ( rangeStart < 0 )
+            return ( -1L );
+        
+        final int elemStride = ( data instanceof GeomNioFloatData ) ? ( (GeomNioFloatData)data ).getElemStride() : data.getElemSize();
+        final long size = getSizeInBytes( data );
+        final long start = rangeStart * elemStride * 4L;
+        final long end = Math.min( _SG_PrivilegedAccess.getDirtyRangeEnd( data ) * elemStride * 4L, size );
+        
+        if ( ( start == 0L ) && ( end == size ) )
+            return ( -1L );
+        
+        return ( Math.max( 0L, end - start ) );
+    }
+    
+    private final void bindGeometryComponent( CanvasPeerImplHeadless canvasPeer, OpenGLStatesCache statesCache, GeomNioData data, boolean isIndex, Format format, boolean useVBO, boolean streaming, CommandLog log )
+    {
+        if ( data == null )
+            return;
+        
+        final SceneGraphOpenGLReference openGLRef = getReference( canvasPeer, data );
+        
+        if ( useVBO )
+        {
+            int cacheHandle = openGLRef.getName();
+            
+            boolean newHandle = false;
+            if ( cacheHandle == -1 )
+            {
+                cacheHandle = canvasPeer.genName();
+                openGLRef.setName( cacheHandle );
+                newHandle = true;
+            }
+            
+            bindVBO( cacheHandle, isIndex, statesCache, data, log );
+            
+            if ( _SG_PrivilegedAccess.isDirty( data ) || newHandle )
+            {
+                final boolean stream = ( _SG_PrivilegedAccess.markUpdated( data, frameCounter ) >= OPT_STREAMING_MIN_FRAMES ) || streaming;
+                final long rangeSize = ( newHandle || ( format != Format.FLOAT ) ) ? -1L : getDirtyRangeSizeInBytes( data );
+                final long vboSize = ( format != Format.FLOAT ) ? VertexPacking.getPackedSize( format, (GeomNioFloatData)data ) : getSizeInBytes( data );
+                
+                if ( format != Format.FLOAT )
+                    log.record( stream ? CommandType.STREAM_VBO : CommandType.UPLOAD_VBO, cacheHandle, vboSize, data );
+                else if ( rangeSize >= 0L )
+                    log.record( CommandType.UPLOAD_VBO, cacheHandle, rangeSize, data );
+                else
+                    log.record( stream ? CommandType.STREAM_VBO : CommandType.UPLOAD_VBO, cacheHandle, vboSize, data );
+                
+                _SG_PrivilegedAccess.setDirty( data, false );
+                _SG_PrivilegedAccess.incrementFramesSinceDirty( data );
+                
+                canvasPeer.getGPUMemoryBudget().markResident( openGLRef, ResourceType.VBO, vboSize, true );
+            }
+            else
+            {
+                canvasPeer.getGPUMemoryBudget().markUsed( openGLRef );
+            }
+        }
+        else
+        {
+            if ( openGLRef.getName() != -1 )
+            {
+                openGLRef.deleteName();
+                
+                canvasPeer.getGPUMemoryBudget().release( openGLRef );
+            }
+            
+            bindVBO( 0, isIndex, statesCache, null, log );
+            
+            _SG_PrivilegedAccess.setDirty( data, false );
+            _SG_PrivilegedAccess.incrementFramesSinceDirty( data );
+        }
+    }
+    
+    private final void setupBuffers( CanvasPeerImplHeadless canvasPeer, OpenGLStatesCache statesCache, OpenGLCapabilities glCaps, Geometry geoArray, Optimization optimization, boolean useTextures, boolean vbosSupported, CommandLog log )
+    {
+        final boolean streaming = optimization.streaming();
+        
+        // The virtual OpenGL supports half float vertices.
+        final VertexCompression compression = geoArray.getVertexCompression();
+        final boolean halfFloats = true;
+        
+        if ( geoArray.isInterleaved() )
+        {
+            bindGeometryComponent( canvasPeer, statesCache, geoArray.getInterleavedData(), false, Format.FLOAT, vbosSupported && useVBO( optimization, geoArray.getInterleavedData(), false ), streaming, log );
+        }
+        else
+        {
+            if ( geoArray.hasNormals() )
+                bindGeometryComponent( canvasPeer, statesCache, geoArray.getNormalsData(), false, VertexPacking.getFormat( compression, Geometry.NORMALS, halfFloats ), vbosSupported && useVBO( optimization, geoArray.getNormalsData(), false ), streaming, log );
+            
+            if ( geoArray.hasColors() )
+                bindGeometryComponent( canvasPeer, statesCache, geoArray.getColorData(), false, VertexPacking.getFormat( compression, Geometry.COLORS, halfFloats ), vbosSupported && useVBO( optimization, geoArray.getColorData(), false ), streaming, log );
+            
+            if ( useTextures )
+            {
+                final int maxTUs = glCaps.getMaxTextureUnits();
+                for ( int unit = 0; unit < maxTUs; unit++ )
+                {
+                    if ( geoArray.getTexCoordSize( unit ) > 0 )
+                    {
+                        final GeomNioFloatData texCoords = geoArray.getTexCoordsData( unit );
+                        
+                        bindGeometryComponent( canvasPeer, statesCache, texCoords, false, VertexPacking.getFormat( compression, Geometry.TEXTURE_COORDINATES, halfFloats ), vbosSupported && useVBO( optimization, texCoords, true ), streaming, log );
+                    }
+                }
+            }
+            
+            if ( geoArray.hasVertexAttributes() )
+            {
+                final int n = Math.min( geoArray.getVertexAttributesCount(), glCaps.getMaxVertexAttributes() );
+                for ( int i = 0; i < n; i++ )
+                {
+                    if ( geoArray.hasVertexAttributes( i ) )
+                    {
+                        final GeomNioFloatData attribData = geoArray.getVertexAttribData( i );
+                        
+                        bindGeometryComponent( canvasPeer, statesCache, attribData, false, Format.FLOAT, vbosSupported && useVBO( optimization, attribData, false ), streaming, log );
+                    }
+                }
+            }
+            
+            bindGeometryComponent( canvasPeer, statesCache, geoArray.getCoordinatesData(), false, VertexPacking.getFormat( compression, Geometry.COORDINATES, halfFloats ), vbosSupported && useVBO( optimization, geoArray.getCoordinatesData(), false ), streaming, log );
+        }
+        
+        if ( geoArray.hasIndex() && !geoArray.isInterleaved() )
+        {
+            final GeomNioIntData indexData = ( (IndexedGeometryArray)geoArray ).getIndexData();
+            
+            bindGeometryComponent( canvasPeer, statesCache, indexData, true, Format.FLOAT, vbosSupported && useVBO( optimization, indexData, false ), streaming, log );
+        }
+    }
+    
+    /**
+     * @return the number of elements (vertices or indices) drawn for the given geometry.
+     */
+    private static final int getNumElements( Geometry geoArray )
+    {
+        final int numVertices = geoArray.getValidVertexCount();
+        if ( ( numVertices == 0 ) || ( geoArray.getType().toOpenGL() == -1 ) )
+        {
+            return ( 0 );
+        }
+        
+        if ( geoArray.hasIndex() )
+            return ( ( (IndexedGeometryArray)geoArray ).getValidIndexCount() );
+        
+        return ( numVertices );
+    }
+    
+    /**
+     * Records the draw call for the given geometry.
+     * 
+     * @return the number of rendered triangles
+     */
+    private static final int drawBuffers( Shape3D shape, Geometry geoArray, CommandLog log )
+    {
+        final int numElements = getNumElements( geoArray );
+        if ( numElements == 0 )
+        {
+            return ( 0 );
+        }
+        
+        final int triangles = numElements / geoArray.getFaceSize();
+        
+        log.record( CommandType.DRAW, triangles, numElements, shape );
+        
+        return ( triangles );
+    }
+    
+    private final int render( ShapeAtom shapeAtom, Shape3D shape, Geometry geometry, CanvasPeerImplHeadless canvasPeer, OpenGLCapabilities glCaps, OpenGLStatesCache statesCache, RenderOptions options, boolean isNormalRenderMode, CommandLog log )
+    {
+        final boolean vbosSupported = glCaps.isMinVersion15() && glCaps.supportsVBOs() && options.areVBOsEnabled();
+        
+        Optimization optimization = geometry.getOptimization();
+        
+        if ( ( optimization == Optimization.USE_DISPLAY_LISTS ) && !options.areDisplayListsEnabled() )
+        {
+            optimization = Optimization.USE_VBOS;
+        }
+        
+        setupBuffers( canvasPeer, statesCache, glCaps, geometry, optimization, isNormalRenderMode && options.isTextureMappingEnabled(), vbosSupported, log );
+        
+        shapeAtom.lastComputedPolysCount = drawBuffers( shape, geometry, log );
+        
+        return ( shapeAtom.lastComputedPolysCount );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final int renderAtom( RenderAtom< ? > atom, Object glObj, RenderPeer renderPeer, OpenGLCapabilities glCaps, View view, RenderOptions options, long nanoTime, long nanoStep, RenderMode renderMode, long frameId )
+    {
+        final CanvasPeerImplHeadless canvasPeer = (CanvasPeerImplHeadless)renderPeer.getCanvasPeer();
+        final OpenGLStatesCache statesCache = renderPeer.getStatesCache();
+        final CommandLog log = ( (RenderPeerImpl)renderPeer ).getCommandLog();
+        
+        final ShapeAtom shapeAtom = (ShapeAtom)atom;
+        final Shape3D shape = (Shape3D)shapeAtom.getNode();
+        
+        final Geometry geometry = shape.getGeometry();
+        if ( geometry == null )
+        {
+            return ( 0 );
+        }
+        
+        setMatrix( _SG_PrivilegedAccess.getLeafWorldTransform( shape ), log );
+        
+        if ( shape.getShowBounds() && ( renderMode == RenderMode.NORMAL ) )
+            log.record( CommandType.DRAW_BOUNDS, 0L, 0L, shape );
+        
+        final Appearance app = shape.getAppearance();
+        
+        int triangles = render( shapeAtom, shape, geometry, canvasPeer, glCaps, statesCache, options, renderMode == RenderMode.NORMAL, log );
+        
+        if ( ( app != null ) && ( app.getPolygonAttributes() != null ) && ( app.getPolygonAttributes().getFaceCullMode() == FaceCullMode.SWITCH ) )
+        {
+            // back faces first, then the front faces
+            triangles = render( shapeAtom, shape, geometry, canvasPeer, glCaps, statesCache, options, renderMode == RenderMode.NORMAL, log );
+        }
+        
+        return ( triangles );
+    }
+    
+    /**
+     * Records each instance's draw like {@link #renderAtom(RenderAtom, Object, RenderPeer, OpenGLCapabilities, View, RenderOptions, long, long, RenderMode, long)}.
+     * 
+     * @return the number of rendered triangles
+     */
+    private final int drawInstances( RenderAtom< ? >[] atoms, int numAtoms, Geometry geometry, boolean drawBounds, RenderMode renderMode, CommandLog log )
+    {
+        int triangles = 0;
+        
+        for ( int i = 0; i < numAtoms; i++ )
+        {
+            final ShapeAtom shapeAtom = (ShapeAtom)atoms[ i ];
+            final Shape3D shape = (Shape3D)shapeAtom.getNode();
+            
+            setMatrix( _SG_PrivilegedAccess.getLeafWorldTransform( shape ), log );
+            
+            if ( drawBounds && shape.getShowBounds() && ( renderMode == RenderMode.NORMAL ) )
+                log.record( CommandType.DRAW_BOUNDS, 0L, 0L, shape );
+            
+            shapeAtom.lastComputedPolysCount = drawBuffers( shape, geometry, log );
+            
+            triangles += shapeAtom.lastComputedPolysCount;
+        }
+        
+        return ( triangles );
+    }
+    
+    /**
+     * Records the buffer setup once with a {@link CommandType#SETUP_INSTANCES} command
+     * and then each instance's matrix and draw call, like the OpenGL peers issue them.
+     * 
+     * {@inheritDoc}
+     */
+    @Override
+    public final int renderInstances( RenderAtom< ? >[] atoms, int numAtoms, Object glObj, RenderPeer renderPeer, OpenGLCapabilities glCaps, View view, RenderOptions options, long nanoTime, long nanoStep, RenderMode renderMode, long frameId )
+    {
+        final CanvasPeerImplHeadless canvasPeer = (CanvasPeerImplHeadless)renderPeer.getCanvasPeer();
+        final OpenGLStatesCache statesCache = renderPeer.getStatesCache();
+        final CommandLog log = ( (RenderPeerImpl)renderPeer ).getCommandLog();
+        
+        final Geometry geometry = ( (Shape3D)atoms[ 0 ].getNode() ).getGeometry();
+        
+        final boolean vbosSupported = glCaps.isMinVersion15() && glCaps.supportsVBOs() && options.areVBOsEnabled();
+        
+        Optimization optimization = geometry.getOptimization();
+        
+        if ( ( optimization == Optimization.USE_DISPLAY_LISTS ) && !options.areDisplayListsEnabled() )
+        {
+            optimization = Optimization.USE_VBOS;
+        }
+        
+        setupBuffers( canvasPeer, statesCache, glCaps, geometry, optimization, ( renderMode == RenderMode.NORMAL ) && options.isTextureMappingEnabled(), vbosSupported, log );
+        
+        log.record( CommandType.SETUP_INSTANCES, numAtoms, 0L, geometry );
+        
+        // All instances share their states and thus their PolygonAttributes.
+        final Appearance app = ( (Shape3D)atoms[ 0 ].getNode() ).getAppearance();
+        
+        int triangles = drawInstances( atoms, numAtoms, geometry, true, renderMode, log );
+        
+        if ( ( app != null ) && ( app.getPolygonAttributes() != null ) && ( app.getPolygonAttributes().getFaceCullMode() == FaceCullMode.SWITCH ) )
+        {
+            // back faces first, then the front faces
+            triangles = drawInstances( atoms, numAtoms, geometry, false, renderMode, log );
+        }
+        
+        return ( triangles );
+    }
+    
+    /**
+     * Records the buffer setup of the merged Geometry with a {@link CommandType#SETUP_BATCH} command
+     * followed by one matrix and one draw call for the whole batch, like the OpenGL peers issue them.
+     * 
+     * {@inheritDoc}
+     */
+    @Override
+    public final int renderBatch( ShapeAtomBatcher batcher, Object glObj, RenderPeer renderPeer, OpenGLCapabilities glCaps, View view, RenderOptions options, long nanoTime, long nanoStep, RenderMode renderMode, long frameId )
+    {
+        final CanvasPeerImplHeadless canvasPeer = (CanvasPeerImplHeadless)renderPeer.getCanvasPeer();
+        final OpenGLStatesCache statesCache = renderPeer.getStatesCache();
+        final CommandLog log = ( (RenderPeerImpl)renderPeer ).getCommandLog();
+        
+        final Geometry geometry = batcher.getGeometry();
+        
+        final boolean vbosSupported = glCaps.isMinVersion15() && glCaps.supportsVBOs() && options.areVBOsEnabled();
+        
+        setMatrix( batcher.getTransform(), log );
+        
+        setupBuffers( canvasPeer, statesCache, glCaps, geometry, geometry.getOptimization(), ( renderMode == RenderMode.NORMAL ) && options.isTextureMappingEnabled(), vbosSupported, log );
+        
+        log.record( CommandType.SETUP_BATCH, batcher.getNumAtoms(), batcher.getNumVertices(), geometry );
+        
+        return ( drawBuffers( (Shape3D)batcher.getAtom( 0 ).getNode(), geometry, log ) );
+    }
+}
@@ -0,0 +1,133 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.render.headless;
+
+import org.xith3d.render.CanvasPeer;
+import org.xith3d.render.GPUMemoryBudget;
+import org.xith3d.render.GPUMemoryBudget.ResourceType;
+import org.xith3d.render.OpenGLCapabilities;
+import org.xith3d.render.OpenGLStatesCache;
+import org.xith3d.render.RenderOptions;
+import org.xith3d.render.RenderPeer;
+import org.xith3d.render.SceneGraphOpenGLReference;
+import org.xith3d.render.RenderPeer.RenderMode;
+import org.xith3d.render.headless.CommandLog.CommandType;
+import org.xith3d.render.preprocessing.RenderAtom;
+import org.xith3d.render.states.StateUnit;
+import org.xith3d.render.states.units.StateUnitPeer;
+import org.xith3d.render.states.units.TextureUnitStateUnit;
+import org.xith3d.scenegraph.Texture;
+import org.xith3d.scenegraph.View;
+import org.xith3d.scenegraph._SG_PrivilegedAccess;
+
+/**
+ * StateUnitPeer implementation for the headless OpenGLLayer.
+ * It is registered for all state types and records each applied StateUnit.
+ * For TextureUnitStateUnits the (virtual) texture bindings and uploads are recorded, too.
+ */
+class StateUnitPeerImpl implements StateUnitPeer
+{
+    private static void applyTexture( TextureUnitStateUnit texUnit, CanvasPeerImplHeadless canvasPeer, OpenGLStatesCache statesCache, CommandLog log )
+    {
+        final int unit = texUnit.getUnit();
+        final Texture texture = texUnit.getTexture();
+        
+        if ( texture == null )
+        {
+            if ( !statesCache.enabled || ( statesCache.currentBoundTexture[ unit ] != null ) )
+            {
+                log.record( CommandType.BIND_TEXTURE, unit, 0L, null );
+                statesCache.currentBoundTexture[ unit ] = null;
+                statesCache.statistics.countTextureBind( true );
+            }
+            else
+            {
+                statesCache.statistics.countTextureBind( false );
+            }
+            
+            return;
+        }
+        
+        final SceneGraphOpenGLReference openGLRef = texture.getOpenGLReferences().getReference( canvasPeer, CanvasPeerImplHeadless.NAME_PROVIDER );
+        
+        if ( statesCache.enabled && ( statesCache.currentBoundTexture[ unit ] == texture ) && !texture.isDirty() )
+        {
+            canvasPeer.getGPUMemoryBudget().markUsed( openGLRef );
+            statesCache.statistics.countTextureBind( false );
+            return;
+        }
+        
+        int textureId = openGLRef.getName();
+        boolean newHandle = false;
+        if ( textureId == -1 )
+        {
+            textureId = canvasPeer.genName();
+            openGLRef.setName( textureId );
+            newHandle = true;
+        }
+        
+        log.record( CommandType.BIND_TEXTURE, unit, textureId, texture );
+        statesCache.currentBoundTexture[ unit ] = texture;
+        statesCache.statistics.countTextureBind( true );
+        
+        if ( texture.isDirty() || newHandle )
+        {
+            final long textureSize = GPUMemoryBudget.estimateTextureBytes( texture );
+            
+            log.record( CommandType.UPLOAD_TEXTURE, textureId, textureSize, texture );
+            _SG_PrivilegedAccess.setDirty( texture, false );
+            
+            canvasPeer.getGPUMemoryBudget().markResident( openGLRef, ResourceType.TEXTURE, textureSize, GPUMemoryBudget.isReuploadable( texture ) );
+        }
+        else
+        {
+            canvasPeer.getGPUMemoryBudget().markUsed( openGLRef );
+        }
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void apply( RenderAtom< ? > atom, StateUnit stateUnit, Object glObj, CanvasPeer canvasPeer, RenderPeer renderPeer, OpenGLCapabilities glCaps, View view, OpenGLStatesCache statesCache, RenderOptions options, long nanoTime, long nanoStep, RenderMode renderMode, long frameId )
+    {
+        final CommandLog log = ( (RenderPeerImpl)renderPeer ).getCommandLog();
+        
+        log.record( CommandType.STATE_CHANGE, stateUnit.getStateType(), stateUnit.getCachedStateId(), stateUnit );
+        
+        if ( ( stateUnit instanceof TextureUnitStateUnit ) && ( options.isTextureMappingEnabled() ) )
+        {
+            applyTexture( (TextureUnitStateUnit)stateUnit, (CanvasPeerImplHeadless)canvasPeer, statesCache, log );
+        }
+    }
+}
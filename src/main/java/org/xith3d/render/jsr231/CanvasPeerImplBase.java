@@ -222,6 +222,8 @@ public abstract class CanvasPeerImplBase extends CanvasPeer
         setTriangles( 0 );
         
         destroyGLNames( true );
+        updateTextureStreaming();
+        enforceGPUMemoryBudget();
     }
     
     /**
@@ -43,6 +43,8 @@ import org.openmali.vecmath2.TexCoord3f;
 import org.openmali.vecmath2.TexCoord4f;
 import org.openmali.vecmath2.Vector3f;
 import org.xith3d.render.CanvasPeer;
+import org.xith3d.render.GPUMemoryBudget;
+import org.xith3d.render.GPUMemoryBudget.ResourceType;
 import org.xith3d.render.OpenGLCapabilities;
 import org.xith3d.render.OpenGLStatesCache;
 import org.xith3d.render.SceneGraphOpenGLReference;
@@ -240,7 +242,7 @@ public class DisplayListRenderPeer
         if ( useVertexArrayWorkaround )
             ShapeAtomPeer.renderWithForcedVertexArrays( gl, atom, texturesUseMap, geom, canvasPeer, glCaps, statesCache );
         else
-            atom.lastComputedPolysCount = ShapeAtomPeer.drawBuffers( gl, geom, false, true, glCaps.isMinVersion13() );
+            atom.lastComputedPolysCount = ShapeAtomPeer.drawBuffers( gl, geom, false, true, glCaps.isMinVersion13(), false );
         
         gl.glEndList();
         
@@ -270,6 +272,8 @@ public class DisplayListRenderPeer
         if ( !openGLRef.nameExists() )
         {
             openGLRef.setName( recordDisplayList( gl, atom, geom, -1, useVertexArrayWorkaround, texturesUseMap, canvasPeer, glCaps, statesCache ) );
+            
+            canvasPeer.getGPUMemoryBudget().markResident( openGLRef, ResourceType.DISPLAY_LIST, GPUMemoryBudget.estimateDisplayListBytes( geom ), true );
         }
         else if ( !openGLRef.isNameValid() )
         {
@@ -278,11 +282,15 @@ public class DisplayListRenderPeer
             openGLRef.setName( dlName );
             if ( USE_PRECOMPILED_DISPLAY_LISTS )
                 playbackDisplayList( gl, dlName );
+            
+            canvasPeer.getGPUMemoryBudget().markResident( openGLRef, ResourceType.DISPLAY_LIST, GPUMemoryBudget.estimateDisplayListBytes( geom ), true );
         }
         else
         {
             final int dlName = openGLRef.getName();
             playbackDisplayList( gl, dlName );
+            
+            canvasPeer.getGPUMemoryBudget().markUsed( openGLRef );
         }
     }
 }
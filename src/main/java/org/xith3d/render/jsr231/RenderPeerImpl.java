@@ -384,7 +384,25 @@ class RenderPeerImpl extends RenderPeer
                 }
                 */
                 
-                triangles += this.renderAtom( atom, gl, canvasPeer, glCaps, statesCache, view, options, nanoTime, nanoStep, renderMode, frameId );
+                final int instances = getInstanceCount( bin, i, options, renderMode );
+                final int batched = ( instances > 1 ) ? 1 : getBatchCount( bin, i, options, renderMode );
+                
+                if ( instances > 1 )
+                {
+                    triangles += this.renderInstances( bin, i, instances, gl, canvasPeer, glCaps, statesCache, view, options, nanoTime, nanoStep, renderMode, frameId );
+                    
+                    i += instances - 1;
+                }
+                else if ( batched > 1 )
+                {
+                    triangles += this.renderBatch( bin, i, batched, gl, canvasPeer, glCaps, statesCache, view, options, nanoTime, nanoStep, renderMode, frameId );
+                    
+                    i += batched - 1;
+                }
+                else
+                {
+                    triangles += this.renderAtom( atom, gl, canvasPeer, glCaps, statesCache, view, options, nanoTime, nanoStep, renderMode, frameId );
+                }
                 
             }
             catch ( Throwable e )
@@ -751,6 +769,7 @@ class RenderPeerImpl extends RenderPeer
             }
             
             statesCache.enabled = effectiveRenderOptions.isGLStatesCacheEnabled();
+            statesCache.statistics.setRenderPass( rpIndex );
             
             // recalculate projection matrices
             view.getFrustum( ( getCanvasPeerBase().getCurrentViewport() == null ) ? getCanvasPeer().getCanvas3D() : getCanvasPeerBase().getCurrentViewport() );
@@ -780,6 +799,8 @@ class RenderPeerImpl extends RenderPeer
                 
                 gl.glClear( GL.GL_DEPTH_BUFFER_BIT );
                 
+                statesCache.statistics.setRenderPass( rpIndex );
+                
                 setGLModelViewMatrix( gl, view, passConfig.getCameraMode() );
                 view.getFrustum( getCanvasPeerBase().getCurrentViewport() );
                 renderStartView( gl, view, pickRequest );
@@ -51,6 +51,8 @@ import org.jagatoo.opengl.enums.TextureType;
 import org.openmali.types.twodee.Rect2i;
 import org.openmali.vecmath2.Colorf;
 import org.xith3d.render.CanvasPeer;
+import org.xith3d.render.GPUMemoryBudget;
+import org.xith3d.render.GPUMemoryBudget.ResourceType;
 import org.xith3d.render.OpenGLCapabilities;
 import org.xith3d.render.OpenGLInfo;
 import org.xith3d.render.OpenGLStatesCache;
@@ -298,7 +300,11 @@ public class TextureUnitStateUnitPeer implements StateUnitPeer
                 int internalFormat = 0;
                 int border = 0; // !!! what does this do? !!!
                 
-                for ( int level = 0; level < numMipmaps; level++ )
+                // A streaming Texture only defines its resident levels.
+                final boolean streaming = ( texture instanceof Texture2D ) && ( (Texture2D)texture ).isStreaming();
+                final int baseLevel = streaming ? ( (Texture2D)texture ).getResidentLevel() : 0;
+                
+                for ( int level = baseLevel; level < numMipmaps; level++ )
                 {
                     image = (TextureImage2D)texture.getImage( level );
                     
@@ -332,13 +338,18 @@ public class TextureUnitStateUnitPeer implements StateUnitPeer
                             gl.glTexImage2D( glTexType, level, internalFormat, image.getWidth(), image.getHeight(), border, format, GL.GL_UNSIGNED_BYTE, buff );
                         }
                         
-                        if ( texture.isMarkedAsLocalDataToBeFreed() )
+                        if ( texture.isMarkedAsLocalDataToBeFreed() && !streaming )
                         {
                             image.freeLocalData();
                             RenderPeerImpl.setGCRequested();
                         }
                     }
                 }
+                
+                if ( baseLevel > 0 )
+                {
+                    gl.glTexParameteri( glTexType, GL.GL_TEXTURE_BASE_LEVEL, baseLevel );
+                }
             }
             break;
             case GL.GL_TEXTURE_3D:
@@ -567,12 +578,19 @@ public class TextureUnitStateUnitPeer implements StateUnitPeer
             {
                 updateTexture( gl, (Texture2D)texture );
             }
+            
+            canvasPeer.getGPUMemoryBudget().markUsed( openGLRef );
         }
         else
         {
             texHandle = defineTexture( gl, unit, texture, canvasPeer, depthBuffersize, statesCache );
             
             _SG_PrivilegedAccess.resetSizeChanged( texture );
+            
+            if ( texHandle != -1 )
+            {
+                canvasPeer.getGPUMemoryBudget().markResident( openGLRef, ResourceType.TEXTURE, GPUMemoryBudget.estimateTextureBytes( texture ), GPUMemoryBudget.isReuploadable( texture ) );
+            }
         }
         
         return ( texHandle );
@@ -1066,9 +1084,16 @@ public class TextureUnitStateUnitPeer implements StateUnitPeer
             setTextureState( gl, glCaps, statesCache, texture, unit, changed, canvasPeer, canvasPeer.getDepthBufferSize() );
             
             statesCache.currentBoundTexture[ unit ] = texture;
+            statesCache.statistics.countTextureBind( true );
             //if ( texture != null )
             //    _SG_PrivilegedAccess.setChanged( texture, false );
         }
+        else
+        {
+            canvasPeer.getGPUMemoryBudget().markUsed( texture.getOpenGLReferences().getReference( canvasPeer, textureNameProvider ) );
+            
+            statesCache.statistics.countTextureBind( false );
+        }
         
         
         final TextureAttributes texAttribs = texStateUnit.getTextureAttributes();
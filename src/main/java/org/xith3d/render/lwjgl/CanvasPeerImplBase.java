@@ -215,6 +215,8 @@ public abstract class CanvasPeerImplBase extends CanvasPeer
         setTriangles( 0 );
         
         destroyGLNames( true );
+        updateTextureStreaming();
+        enforceGPUMemoryBudget();
     }
     
     /**
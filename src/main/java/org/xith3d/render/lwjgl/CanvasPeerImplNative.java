@@ -648,6 +648,8 @@ public class CanvasPeerImplNative extends CanvasPeerImplBase
         //if ( Display.isVisible() || Display.isDirty() )
         //if ( Display.isVisible() )
         {
+            final long t0 = System.nanoTime();
+            
             try
             {
                 Display.swapBuffers();
@@ -657,6 +659,8 @@ public class CanvasPeerImplNative extends CanvasPeerImplBase
                 X3DLog.print( e );
                 e.printStackTrace();
             }
+            
+            setSwapTime( System.nanoTime() - t0 );
         }
         
         ProfileTimer.endProfile();
@@ -44,6 +44,8 @@ import org.openmali.vecmath2.TexCoord3f;
 import org.openmali.vecmath2.TexCoord4f;
 import org.openmali.vecmath2.Vector3f;
 import org.xith3d.render.CanvasPeer;
+import org.xith3d.render.GPUMemoryBudget;
+import org.xith3d.render.GPUMemoryBudget.ResourceType;
 import org.xith3d.render.OpenGLCapabilities;
 import org.xith3d.render.OpenGLStatesCache;
 import org.xith3d.render.SceneGraphOpenGLReference;
@@ -250,7 +252,7 @@ public class DisplayListRenderPeer
         if ( useVertexArrayWorkaround )
             ShapeAtomPeer.renderWithForcedVertexArrays( atom, texturesUseMap, geom, canvasPeer, glCaps, statesCache );
         else
-            atom.lastComputedPolysCount = ShapeAtomPeer.drawBuffers( geom, false, true, glCaps.isMinVersion13() );
+            atom.lastComputedPolysCount = ShapeAtomPeer.drawBuffers( geom, false, true, glCaps.isMinVersion13(), false );
         
         GL11.glEndList();
         
@@ -280,6 +282,8 @@ public class DisplayListRenderPeer
         if ( !openGLRef.nameExists() )
         {
             openGLRef.setName( recordDisplayList( atom, geom, -1, useVertexArrayWorkaround, texturesUseMap, canvasPeer, glCaps, statesCache ) );
+            
+            canvasPeer.getGPUMemoryBudget().markResident( openGLRef, ResourceType.DISPLAY_LIST, GPUMemoryBudget.estimateDisplayListBytes( geom ), true );
         }
         else if ( !openGLRef.isNameValid() )
         {
@@ -288,11 +292,15 @@ public class DisplayListRenderPeer
             openGLRef.setName( dlName );
             if ( USE_PRECOMPILED_DISPLAY_LISTS )
                 playbackDisplayList( dlName );
+            
+            canvasPeer.getGPUMemoryBudget().markResident( openGLRef, ResourceType.DISPLAY_LIST, GPUMemoryBudget.estimateDisplayListBytes( geom ), true );
         }
         else
         {
             final int dlName = openGLRef.getName();
             playbackDisplayList( dlName );
+            
+            canvasPeer.getGPUMemoryBudget().markUsed( openGLRef );
         }
     }
 }
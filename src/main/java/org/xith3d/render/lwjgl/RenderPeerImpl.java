@@ -350,7 +350,25 @@ class RenderPeerImpl extends RenderPeer
                     GL11.glHint( GL11.GL_CLIP_, GL11.GL_NICEST );
                 */
 
-                triangles += this.renderAtom( atom, null, canvasPeer, glCaps, statesCache, view, options, nanoTime, nanoStep, renderMode, frameId );
+                final int instances = getInstanceCount( bin, i, options, renderMode );
+                final int batched = ( instances > 1 ) ? 1 : getBatchCount( bin, i, options, renderMode );
+                
+                if ( instances > 1 )
+                {
+                    triangles += this.renderInstances( bin, i, instances, null, canvasPeer, glCaps, statesCache, view, options, nanoTime, nanoStep, renderMode, frameId );
+                    
+                    i += instances - 1;
+                }
+                else if ( batched > 1 )
+                {
+                    triangles += this.renderBatch( bin, i, batched, null, canvasPeer, glCaps, statesCache, view, options, nanoTime, nanoStep, renderMode, frameId );
+                    
+                    i += batched - 1;
+                }
+                else
+                {
+                    triangles += this.renderAtom( atom, null, canvasPeer, glCaps, statesCache, view, options, nanoTime, nanoStep, renderMode, frameId );
+                }
             }
             catch ( Throwable e )
             {
@@ -682,6 +700,7 @@ class RenderPeerImpl extends RenderPeer
             }
             
             statesCache.enabled = effectiveRenderOptions.isGLStatesCacheEnabled();
+            statesCache.statistics.setRenderPass( rpIndex );
             
             // recalculate projection matrices
             view.getFrustum( ( getCanvasPeerBase().getCurrentViewport() == null ) ? getCanvasPeer().getCanvas3D() : getCanvasPeerBase().getCurrentViewport() );
@@ -711,6 +730,8 @@ class RenderPeerImpl extends RenderPeer
                 
                 GL11.glClear( GL11.GL_DEPTH_BUFFER_BIT );
                 
+                statesCache.statistics.setRenderPass( rpIndex );
+                
                 setGLModelViewMatrix( view, passConfig.getCameraMode() );
                 view.getFrustum( getCanvasPeerBase().getCurrentViewport() );
                 renderStartView( view, pickRequest );
@@ -33,6 +33,8 @@
  */
 package org.xith3d.render.lwjgl;
 
+import java.nio.Buffer;
+import java.nio.ByteBuffer;
 import java.nio.FloatBuffer;
 import java.nio.IntBuffer;
 
@@ -40,14 +42,17 @@ import org.jagatoo.geometry.GeomNioData;
 import org.jagatoo.logging.ProfileTimer;
 import org.jagatoo.opengl.enums.FaceCullMode;
 import org.lwjgl.BufferUtils;
+import org.lwjgl.opengl.ARBHalfFloatVertex;
 import org.lwjgl.opengl.ARBVertexBufferObject;
 import org.lwjgl.opengl.GL11;
 import org.lwjgl.opengl.GL12;
 import org.lwjgl.opengl.GL13;
+import org.lwjgl.opengl.GL14;
 import org.lwjgl.opengl.GL15;
 import org.lwjgl.opengl.GL20;
 import org.openmali.vecmath2.Matrix4f;
 import org.xith3d.render.CanvasPeer;
+import org.xith3d.render.GPUMemoryBudget.ResourceType;
 import org.xith3d.render.OpenGLCapabilities;
 import org.xith3d.render.OpenGLStatesCache;
 import org.xith3d.render.OpenGlExtensions;
@@ -56,6 +61,10 @@ import org.xith3d.render.RenderOptions;
 import org.xith3d.render.RenderPeer;
 import org.xith3d.render.SceneGraphOpenGLReference;
 import org.xith3d.render.SceneGraphOpenGLReferences;
+import org.xith3d.render.ShapeAtomBatcher;
+import org.xith3d.render.StripDrawRanges;
+import org.xith3d.render.VertexPacking;
+import org.xith3d.render.VertexPacking.Format;
 import org.xith3d.render.RenderPeer.RenderMode;
 import org.xith3d.render.preprocessing.RenderAtom;
 import org.xith3d.render.preprocessing.ShapeAtom;
@@ -73,6 +82,7 @@ import org.xith3d.scenegraph.Transform3D;
 import org.xith3d.scenegraph.View;
 import org.xith3d.scenegraph._SG_PrivilegedAccess;
 import org.xith3d.scenegraph.Geometry.Optimization;
+import org.xith3d.scenegraph.Geometry.VertexCompression;
 import org.xith3d.utility.logging.X3DLog;
 
 /**
@@ -86,12 +96,18 @@ public class ShapeAtomPeer extends RenderAtomPeer
     private static enum VBOMode
     {
         ALWAYS,
+        STREAMING,
         AUTO,
         NEVER
     }
     
     private static final int OPT_AUTO_MAX_FRAMES = 10;
     
+    /**
+     * Data, that is updated on this many consecutive frames, is streamed into orphaned VBOs.
+     */
+    private static final int OPT_STREAMING_MIN_FRAMES = 3;
+    
     private static final int CARE_MAP_COORDINATES = 1;
     private static final int CARE_MAP_NORMALS = 2;
     private static final int CARE_MAP_COLORS = 4;
@@ -108,8 +124,17 @@ public class ShapeAtomPeer extends RenderAtomPeer
     
     private static FloatBuffer float16 = BufferUtils.createFloatBuffer( 16 );
     
+    /**
+     * first vertices and vertex counts of the strips for glMultiDrawArrays
+     */
+    private static final StripDrawRanges stripRanges = new StripDrawRanges();
+    private static IntBuffer multiDrawFirsts = BufferUtils.createIntBuffer( 16 );
+    private static IntBuffer multiDrawCounts = BufferUtils.createIntBuffer( 16 );
+    
     private static Transform3D lastTransform = null;
     
+    private static long frameCounter = 0L;
+    
     private static SceneGraphOpenGLReferences.Provider vboNameProvider = new SceneGraphOpenGLReferences.Provider()
     {
         public SceneGraphOpenGLReference newReference( CanvasPeer canvasPeer, SceneGraphOpenGLReferences references, int numNamesPerContext )
@@ -145,6 +170,7 @@ public class ShapeAtomPeer extends RenderAtomPeer
     public static final void reset()
     {
         lastTransform = null;
+        frameCounter++;
     }
     
     protected static final void setMatrix( View view, Transform3D transform, boolean ignoreRotation, boolean forced )
@@ -200,6 +226,8 @@ public class ShapeAtomPeer extends RenderAtomPeer
             case USE_VBOS:
             case USE_VBO_FOR_TEXTURE_COORDINATES:
                 return ( VBOMode.ALWAYS );
+            case USE_STREAMING_VBOS:
+                return ( VBOMode.STREAMING );
             case NONE:
             case USE_DISPLAY_LISTS:
             case USE_VBO_FOR_VERTEX_DATA:
@@ -217,6 +245,8 @@ public class ShapeAtomPeer extends RenderAtomPeer
             case USE_VBOS:
             case USE_VBO_FOR_VERTEX_DATA:
                 return ( VBOMode.ALWAYS );
+            case USE_STREAMING_VBOS:
+                return ( VBOMode.STREAMING );
             case NONE:
             case USE_DISPLAY_LISTS:
             case USE_VBO_FOR_TEXTURE_COORDINATES:
@@ -232,6 +262,7 @@ public class ShapeAtomPeer extends RenderAtomPeer
         switch ( vboMode )
         {
             case ALWAYS:
+            case STREAMING:
                 return ( true );
             case NEVER:
                 return ( false );
@@ -267,7 +298,105 @@ public class ShapeAtomPeer extends RenderAtomPeer
         statesCache.currentBoundElementVBO = vbo;
     }
     
-    private static final void createAndBindVBO( CanvasPeer canvasPeer, GeomNioData data, int arrayType, OpenGLStatesCache statesCache, boolean glVBOsSupported, boolean arbVBOsSupported )
+    /**
+     * Uploads only the dirty element range of the data into the currently bound VBO.
+     * 
+     * @return false, if the dirty range is unknown or covers the whole buffer, which is then to be uploaded completely
+     */
+    private static final boolean uploadDirtyRange( GeomNioData data, int arrayType, boolean glVBOsSupported, boolean arbVBOsSupported )
+    {
+        final int rangeStart = _SG_PrivilegedAccess.getDirtyRangeStart( data );
+        if ( rangeStart < 0 )
+            return ( false );
+        
+        final Buffer buffer;
+        final int elemStride;
+        if ( arrayType == 0 ) // index
+        {
+            buffer = ( (GeomNioIntData)data ).getBuffer();
+            elemStride = data.getElemSize();
+        }
+        else
+        {
+            buffer = ( (GeomNioFloatData)data ).getBuffer();
+            elemStride = ( (GeomNioFloatData)data ).getElemStride();
+        }
+        
+        final int limit = buffer.limit();
+        final int start = rangeStart * elemStride;
+        final int end = Math.min( _SG_PrivilegedAccess.getDirtyRangeEnd( data ) * elemStride, limit );
+        
+        if ( ( start == 0 ) && ( end == limit ) )
+            return ( false );
+        
+        if ( end > start )
+        {
+            buffer.position( start );
+            buffer.limit( end );
+            
+            if ( arrayType == 0 )
+            {
+                if ( glVBOsSupported )
+                    GL15.glBufferSubData( GL15.GL_ELEMENT_ARRAY_BUFFER, start * 4L, (IntBuffer)buffer );
+                else if ( arbVBOsSupported )
+                    ARBVertexBufferObject.glBufferSubDataARB( ARBVertexBufferObject.GL_ELEMENT_ARRAY_BUFFER_ARB, start * 4L, (IntBuffer)buffer );
+            }
+            else
+            {
+                if ( glVBOsSupported )
+                    GL15.glBufferSubData( GL15.GL_ARRAY_BUFFER, start * 4L, (FloatBuffer)buffer );
+                else if ( arbVBOsSupported )
+                    ARBVertexBufferObject.glBufferSubDataARB( ARBVertexBufferObject.GL_ARRAY_BUFFER_ARB, start * 4L, (FloatBuffer)buffer );
+            }
+            
+            buffer.limit( limit );
+            buffer.rewind();
+        }
+        
+        return ( true );
+    }
+    
+    private static final int getGLType( Format format )
+    {
+        switch ( format )
+        {
+            case HALF_FLOAT:
+                return ( ARBHalfFloatVertex.GL_HALF_FLOAT );
+            case NORMALIZED_BYTE:
+                return ( GL11.GL_BYTE );
+            case NORMALIZED_UNSIGNED_BYTE:
+                return ( GL11.GL_UNSIGNED_BYTE );
+            case FLOAT:
+            default:
+                return ( GL11.GL_FLOAT );
+        }
+    }
+    
+    /**
+     * Uploads packed vertex data into the currently bound array VBO.
+     */
+    private static final void uploadPackedData( ByteBuffer packed, boolean stream, boolean glVBOsSupported, boolean arbVBOsSupported )
+    {
+        if ( stream )
+        {
+            if ( glVBOsSupported )
+            {
+                GL15.glBufferData( GL15.GL_ARRAY_BUFFER, packed.limit(), GL15.GL_STREAM_DRAW );
+                GL15.glBufferSubData( GL15.GL_ARRAY_BUFFER, 0L, packed );
+            }
+            else if ( arbVBOsSupported )
+            {
+                ARBVertexBufferObject.glBufferDataARB( ARBVertexBufferObject.GL_ARRAY_BUFFER_ARB, packed.limit(), ARBVertexBufferObject.GL_STREAM_DRAW_ARB );
+                ARBVertexBufferObject.glBufferSubDataARB( ARBVertexBufferObject.GL_ARRAY_BUFFER_ARB, 0L, packed );
+            }
+        }
+        else if ( glVBOsSupported )
+            GL15.glBufferData( GL15.GL_ARRAY_BUFFER, packed, GL15.GL_STATIC_DRAW );
+        else if ( arbVBOsSupported )
+            ARBVertexBufferObject.glBufferDataARB( ARBVertexBufferObject.GL_ARRAY_BUFFER_ARB, packed, ARBVertexBufferObject.GL_STATIC_DRAW_ARB );
+    }
+    
+    private static final void createAndBindVBO( CanvasPeer canvasPeer, GeomNioData data, int arrayType, Format format, boolean streaming, OpenGLStatesCache statesCache, boolean glVBOsSupported, boolean arbVBOsSupported )
     {
         final SceneGraphOpenGLReference openGLRef = ( data instanceof GeomNioFloatData ) ? ( (GeomNioFloatData)data ).getOpenGLReferences().getReference( canvasPeer, vboNameProvider ) : ( (GeomNioIntData)data ).getOpenGLReferences().getReference( canvasPeer, vboNameProvider );
         
@@ -297,28 +426,89 @@ public class ShapeAtomPeer extends RenderAtomPeer
         
         if ( _SG_PrivilegedAccess.isDirty( data ) || newHandle )
         {
-            if ( arrayType == 0 ) // index
+            /*
+             * Data, that changes on several consecutive frames, is streamed.
+             * The old storage is orphaned by a glBufferData call without data,
+             * so that the driver doesn't need to wait for pending draw calls,
+             * and the new data is written with glBufferSubData.
+             */
+            final boolean stream = ( _SG_PrivilegedAccess.markUpdated( data, frameCounter ) >= OPT_STREAMING_MIN_FRAMES ) || streaming;
+            
+            // Compressed data is packed and always uploaded completely.
+            // Otherwise, if only a few elements have been modified, only these are uploaded.
+            final long vboSize;
+            if ( format != Format.FLOAT )
             {
-                final IntBuffer buffer = ((GeomNioIntData)data).getBuffer();
-                buffer.rewind();
+                final ByteBuffer packed = VertexPacking.pack( format, (GeomNioFloatData)data );
+                vboSize = packed.limit();
                 
-                if ( glVBOsSupported )
-                    GL15.glBufferData( GL15.GL_ELEMENT_ARRAY_BUFFER, buffer, GL15.GL_STATIC_DRAW );
-                else if ( arbVBOsSupported )
-                    ARBVertexBufferObject.glBufferDataARB( ARBVertexBufferObject.GL_ELEMENT_ARRAY_BUFFER_ARB, buffer, ARBVertexBufferObject.GL_STATIC_DRAW_ARB );
+                uploadPackedData( packed, stream, glVBOsSupported, arbVBOsSupported );
             }
             else
             {
-                final FloatBuffer buffer = ((GeomNioFloatData)data).getBuffer();
-                buffer.rewind();
-                
-                if ( glVBOsSupported )
-                    GL15.glBufferData( GL15.GL_ARRAY_BUFFER, buffer, GL15.GL_STATIC_DRAW );
-                else if ( arbVBOsSupported )
-                    ARBVertexBufferObject.glBufferDataARB( ARBVertexBufferObject.GL_ARRAY_BUFFER_ARB, buffer, ARBVertexBufferObject.GL_STATIC_DRAW_ARB );
+                if ( arrayType == 0 )
+                    vboSize = ((GeomNioIntData)data).getBuffer().limit() * 4L;
+                else
+                    vboSize = ((GeomNioFloatData)data).getBuffer().limit() * 4L;
+            }
+            
+            if ( ( format == Format.FLOAT ) && ( newHandle || !uploadDirtyRange( data, arrayType, glVBOsSupported, arbVBOsSupported ) ) )
+            {
+                if ( arrayType == 0 ) // index
+                {
+                    final IntBuffer buffer = ((GeomNioIntData)data).getBuffer();
+                    buffer.rewind();
+                    
+                    if ( stream )
+                    {
+                        if ( glVBOsSupported )
+                        {
+                            GL15.glBufferData( GL15.GL_ELEMENT_ARRAY_BUFFER, buffer.limit() * 4L, GL15.GL_STREAM_DRAW );
+                            GL15.glBufferSubData( GL15.GL_ELEMENT_ARRAY_BUFFER, 0L, buffer );
+                        }
+                        else if ( arbVBOsSupported )
+                        {
+                            ARBVertexBufferObject.glBufferDataARB( ARBVertexBufferObject.GL_ELEMENT_ARRAY_BUFFER_ARB, buffer.limit() * 4L, ARBVertexBufferObject.GL_STREAM_DRAW_ARB );
+                            ARBVertexBufferObject.glBufferSubDataARB( ARBVertexBufferObject.GL_ELEMENT_ARRAY_BUFFER_ARB, 0L, buffer );
+                        }
+                    }
+                    else if ( glVBOsSupported )
+                        GL15.glBufferData( GL15.GL_ELEMENT_ARRAY_BUFFER, buffer, GL15.GL_STATIC_DRAW );
+                    else if ( arbVBOsSupported )
+                        ARBVertexBufferObject.glBufferDataARB( ARBVertexBufferObject.GL_ELEMENT_ARRAY_BUFFER_ARB, buffer, ARBVertexBufferObject.GL_STATIC_DRAW_ARB );
+                }
+                else
+                {
+                    final FloatBuffer buffer = ((GeomNioFloatData)data).getBuffer();
+                    buffer.rewind();
+                    
+                    if ( stream )
+                    {
+                        if ( glVBOsSupported )
+                        {
+                            GL15.glBufferData( GL15.GL_ARRAY_BUFFER, buffer.limit() * 4L, GL15.GL_STREAM_DRAW );
+                            GL15.glBufferSubData( GL15.GL_ARRAY_BUFFER, 0L, buffer );
+                        }
+                        else if ( arbVBOsSupported )
+                        {
+                            ARBVertexBufferObject.glBufferDataARB( ARBVertexBufferObject.GL_ARRAY_BUFFER_ARB, buffer.limit() * 4L, ARBVertexBufferObject.GL_STREAM_DRAW_ARB );
+                            ARBVertexBufferObject.glBufferSubDataARB( ARBVertexBufferObject.GL_ARRAY_BUFFER_ARB, 0L, buffer );
+                        }
+                    }
+                    else if ( glVBOsSupported )
+                        GL15.glBufferData( GL15.GL_ARRAY_BUFFER, buffer, GL15.GL_STATIC_DRAW );
+                    else if ( arbVBOsSupported )
+                        ARBVertexBufferObject.glBufferDataARB( ARBVertexBufferObject.GL_ARRAY_BUFFER_ARB, buffer, ARBVertexBufferObject.GL_STATIC_DRAW_ARB );
+                }
             }
             _SG_PrivilegedAccess.setDirty( data, false );
             _SG_PrivilegedAccess.incrementFramesSinceDirty( data );
+            
+            canvasPeer.getGPUMemoryBudget().markResident( openGLRef, ResourceType.VBO, vboSize, true );
+        }
+        else
+        {
+            canvasPeer.getGPUMemoryBudget().markUsed( openGLRef );
         }
     }
     
@@ -336,6 +526,8 @@ public class ShapeAtomPeer extends RenderAtomPeer
             else if ( arbVBOsSupported )
                 ARBVertexBufferObject.glDeleteBuffersARB( tmpIntBuffer );
             cacheHandle = openGLRef.deleteName();
+            
+            canvasPeer.getGPUMemoryBudget().release( openGLRef );
         }
         
         bindArrayVBO( 0, statesCache, glVBOsSupported, arbVBOsSupported );
@@ -373,7 +565,7 @@ public class ShapeAtomPeer extends RenderAtomPeer
      * 
      * @return true, if a VBO is used
      */
-    private static final boolean bindGeometryComponent( CanvasPeer canvasPeer, OpenGLStatesCache statesCache, GeomNioData data, int elemSize, int stride, long offset, int index, int arrayType, VBOMode vboMode, Boolean useVBO, boolean glVBOsSupported, boolean arbVBOsSupported )
+    private static final boolean bindGeometryComponent( CanvasPeer canvasPeer, OpenGLStatesCache statesCache, GeomNioData data, int elemSize, int stride, long offset, int index, int arrayType, Format format, VBOMode vboMode, Boolean useVBO, boolean glVBOsSupported, boolean arbVBOsSupported )
     {
         if ( useVBO == null )
         {
@@ -386,23 +578,28 @@ public class ShapeAtomPeer extends RenderAtomPeer
         {
             if ( data != null )
             {
-                createAndBindVBO( canvasPeer, data, arrayType, statesCache, glVBOsSupported, arbVBOsSupported );
+                createAndBindVBO( canvasPeer, data, arrayType, format, vboMode == VBOMode.STREAMING, statesCache, glVBOsSupported, arbVBOsSupported );
             }
             
+            final int type = getGLType( format );
+            final int size = VertexPacking.getPackedElemSize( format, elemSize );
+            if ( format != Format.FLOAT )
+                stride = VertexPacking.getPackedElemBytes( format, elemSize );
+            
             // set the data pointer
             switch ( arrayType )
             {
                 case GL11.GL_VERTEX_ARRAY:
-                    GL11.glVertexPointer( elemSize, GL11.GL_FLOAT, stride, offset );
+                    GL11.glVertexPointer( size, type, stride, offset );
                     break;
                 case GL11.GL_NORMAL_ARRAY:
-                    GL11.glNormalPointer( GL11.GL_FLOAT, stride, offset );
+                    GL11.glNormalPointer( type, stride, offset );
                     break;
                 case GL11.GL_COLOR_ARRAY:
-                    GL11.glColorPointer( elemSize, GL11.GL_FLOAT, stride, offset );
+                    GL11.glColorPointer( size, type, stride, offset );
                     break;
                 case GL11.GL_TEXTURE_COORD_ARRAY:
-                    GL11.glTexCoordPointer( elemSize, GL11.GL_FLOAT, stride, offset );
+                    GL11.glTexCoordPointer( size, type, stride, offset );
                     break;
                 case GL20.GL_VERTEX_ATTRIB_ARRAY_POINTER:
                     GL20.glVertexAttribPointer( index, elemSize, GL11.GL_FLOAT, false, stride, offset );
@@ -429,7 +626,7 @@ public class ShapeAtomPeer extends RenderAtomPeer
             useVBO = vboModeToBool( geomVBOMode, geoArray.getInterleavedData() ) && ( glVBOsSupported || arbVBOsSupported );
             stride = geoArray.getInterleavedData().getStride();
             if ( useVBO )
-                createAndBindVBO( canvasPeer, geoArray.getInterleavedData(), -1, statesCache, glVBOsSupported, arbVBOsSupported );
+                createAndBindVBO( canvasPeer, geoArray.getInterleavedData(), -1, Format.FLOAT, geomVBOMode == VBOMode.STREAMING, statesCache, glVBOsSupported, arbVBOsSupported );
         }
         else
         {
@@ -437,13 +634,17 @@ public class ShapeAtomPeer extends RenderAtomPeer
             stride = 0;
         }
         
+        // interleaved data is never compressed
+        final VertexCompression compression = geoArray.isInterleaved() ? VertexCompression.NONE : geoArray.getVertexCompression();
+        final boolean halfFloats = OpenGlExtensions.GL_ARB_half_float_vertex;
+        
         int vboMap = 0;
         
         // Get the normal data.
         // If the data is cached, but dirty then then disable cache.
         if ( geoArray.hasNormals() )
         {
-            if ( bindGeometryComponent( canvasPeer, statesCache, geoArray.getNormalsData(), geoArray.getNormalsSize(), stride, geoArray.getNormalsOffset(), -1, GL11.GL_NORMAL_ARRAY, geomVBOMode, useVBO, glVBOsSupported, arbVBOsSupported ) )
+            if ( bindGeometryComponent( canvasPeer, statesCache, geoArray.getNormalsData(), geoArray.getNormalsSize(), stride, geoArray.getNormalsOffset(), -1, GL11.GL_NORMAL_ARRAY, VertexPacking.getFormat( compression, Geometry.NORMALS, halfFloats ), geomVBOMode, useVBO, glVBOsSupported, arbVBOsSupported ) )
                 vboMap |= CARE_MAP_NORMALS;
         }
         
@@ -451,7 +652,7 @@ public class ShapeAtomPeer extends RenderAtomPeer
         // If the coordinate data is cached, but dirty then then disable cache.
         if ( geoArray.hasColors() )
         {
-            if ( bindGeometryComponent( canvasPeer, statesCache, geoArray.getColorData(), geoArray.getColorsSize(), stride, geoArray.getColorsOffset(), -1, GL11.GL_COLOR_ARRAY, geomVBOMode, useVBO, glVBOsSupported, arbVBOsSupported ) )
+            if ( bindGeometryComponent( canvasPeer, statesCache, geoArray.getColorData(), geoArray.getColorsSize(), stride, geoArray.getColorsOffset(), -1, GL11.GL_COLOR_ARRAY, VertexPacking.getFormat( compression, Geometry.COLORS, halfFloats ), geomVBOMode, useVBO, glVBOsSupported, arbVBOsSupported ) )
                 vboMap |= CARE_MAP_COLORS;
         }
         
@@ -475,12 +676,12 @@ public class ShapeAtomPeer extends RenderAtomPeer
                         final int texCoordSize = geoArray.getTexCoordSize( unit );
                         final long offset = geoArray.getTexCoordsOffset( unit );
                         
-                        if ( bindGeometryComponent( canvasPeer, statesCache, texCoords, texCoordSize, stride, offset, unit, GL11.GL_TEXTURE_COORD_ARRAY, texCoordVBOMode, useVBO, glVBOsSupported, arbVBOsSupported ) )
+                        if ( bindGeometryComponent( canvasPeer, statesCache, texCoords, texCoordSize, stride, offset, unit, GL11.GL_TEXTURE_COORD_ARRAY, VertexPacking.getFormat( compression, Geometry.TEXTURE_COORDINATES, halfFloats ), texCoordVBOMode, useVBO, glVBOsSupported, arbVBOsSupported ) )
                             vboMap |= CARE_MAP_TEXTURE_COORDS;
                     }
                     else
                     {
-                        if ( bindGeometryComponent( canvasPeer, statesCache, texCoords, texCoords.getElemSize(), 0, 0L, unit, GL11.GL_TEXTURE_COORD_ARRAY, texCoordVBOMode, useVBO, glVBOsSupported, arbVBOsSupported ) )
+                        if ( bindGeometryComponent( canvasPeer, statesCache, texCoords, texCoords.getElemSize(), 0, 0L, unit, GL11.GL_TEXTURE_COORD_ARRAY, VertexPacking.getFormat( compression, Geometry.TEXTURE_COORDINATES, halfFloats ), texCoordVBOMode, useVBO, glVBOsSupported, arbVBOsSupported ) )
                             vboMap |= CARE_MAP_TEXTURE_COORDS;
                     }
                 }
@@ -504,12 +705,12 @@ public class ShapeAtomPeer extends RenderAtomPeer
                         final int attribSize = geoArray.getVertexAttribSize( i );
                         final long offset = geoArray.getVertexAttribsOffset( i );
                         
-                        if ( bindGeometryComponent( canvasPeer, statesCache, attribData, attribSize, stride, offset, i, GL20.GL_VERTEX_ATTRIB_ARRAY_POINTER, geomVBOMode, useVBO, glVBOsSupported, arbVBOsSupported ) )
+                        if ( bindGeometryComponent( canvasPeer, statesCache, attribData, attribSize, stride, offset, i, GL20.GL_VERTEX_ATTRIB_ARRAY_POINTER, Format.FLOAT, geomVBOMode, useVBO, glVBOsSupported, arbVBOsSupported ) )
                             vboMap |= CARE_MAP_VERTEX_ATTRIBS;
                     }
                     else
                     {
-                        if ( bindGeometryComponent( canvasPeer, statesCache, attribData, attribData.getElemSize(), 0, 0L, i, GL20.GL_VERTEX_ATTRIB_ARRAY_POINTER, geomVBOMode, useVBO, glVBOsSupported, arbVBOsSupported ) )
+                        if ( bindGeometryComponent( canvasPeer, statesCache, attribData, attribData.getElemSize(), 0, 0L, i, GL20.GL_VERTEX_ATTRIB_ARRAY_POINTER, Format.FLOAT, geomVBOMode, useVBO, glVBOsSupported, arbVBOsSupported ) )
                             vboMap |= CARE_MAP_VERTEX_ATTRIBS;
                     }
                 }
@@ -518,14 +719,14 @@ public class ShapeAtomPeer extends RenderAtomPeer
         
         // Get the coordinate data.
         // If the coordinate data is cached, but dirty then then disable cache.
-        if ( bindGeometryComponent( canvasPeer, statesCache, geoArray.getCoordinatesData(), geoArray.getCoordinatesSize(), stride, geoArray.getCoordinatesOffset(), -1, GL11.GL_VERTEX_ARRAY, geomVBOMode, useVBO, glVBOsSupported, arbVBOsSupported ) )
+        if ( bindGeometryComponent( canvasPeer, statesCache, geoArray.getCoordinatesData(), geoArray.getCoordinatesSize(), stride, geoArray.getCoordinatesOffset(), -1, GL11.GL_VERTEX_ARRAY, VertexPacking.getFormat( compression, Geometry.COORDINATES, halfFloats ), geomVBOMode, useVBO, glVBOsSupported, arbVBOsSupported ) )
             vboMap |= CARE_MAP_COORDINATES;
         
         // Get the coordinate data.
         // If the coordinate data is cached, but dirty then then disable cache.
         if ( geoArray.hasIndex() && !geoArray.isInterleaved() )
         {
-            if ( bindGeometryComponent( canvasPeer, statesCache, ((IndexedGeometryArray)geoArray).getIndexData(), 1, 0, 0L, -1, 0, geomVBOMode, useVBO, glVBOsSupported, arbVBOsSupported ) )
+            if ( bindGeometryComponent( canvasPeer, statesCache, ((IndexedGeometryArray)geoArray).getIndexData(), 1, 0, 0L, -1, 0, Format.FLOAT, geomVBOMode, useVBO, glVBOsSupported, arbVBOsSupported ) )
                 vboMap |= CARE_MAP_INDICES;
         }
         
@@ -539,10 +740,12 @@ public class ShapeAtomPeer extends RenderAtomPeer
      * @param geoArray
      * @param useIndexVBO
      * @param isInDisplayList
+     * @param isMinVersion13
+     * @param useMultiDraw if true, all strips of a GeometryStripArray are issued with one glMultiDrawArrays call (requires OpenGL 1.4)
      * 
      * @return the number of rendered triangles
      */
-    protected static final int drawBuffers( Geometry geoArray, boolean useIndexVBO, boolean isInDisplayList, boolean isMinVersion13 )
+    protected static final int drawBuffers( Geometry geoArray, boolean useIndexVBO, boolean isInDisplayList, boolean isMinVersion13, boolean useMultiDraw )
     {
         ProfileTimer.startProfile( X3DLog.LOG_CHANNEL, "ShapeAtomPeer::drawGeometry()" );
         
@@ -632,6 +835,10 @@ public class ShapeAtomPeer extends RenderAtomPeer
                 {
                     DisplayListRenderPeer.drawGeometryStripArray( geoStripArr, mode, stripCount, stripVertexCounts, isMinVersion13 );
                 }
+                else if ( useMultiDraw && ( stripCount > 1 ) )
+                {
+                    multiDrawArrays( mode, geoStripArr );
+                }
                 else
                 {
                     final int startIndex = geoStripArr.getInitialVertexIndex();
@@ -673,15 +880,19 @@ public class ShapeAtomPeer extends RenderAtomPeer
                 final int startIndex = igeoArray.getInitialIndexIndex();
                 final int numIndices = igeoArray.getValidIndexCount();
                 
+                // The valid indices don't necessarily start at the buffer's beginning (see ShapeAtomBatcher).
                 if ( useIndexVBO )
-                    GL12.glDrawRangeElements( mode, startIndex, startIndex + numIndices - 1, numIndices, GL11.GL_UNSIGNED_INT, 0L );
+                    GL11.glDrawElements( mode, numIndices, GL11.GL_UNSIGNED_INT, startIndex * 4L );
                 else
                 {
-                    // safe the old value
+                    // safe the old values
+                    int position = buffer.position();
                     int limit = buffer.limit();
-                    buffer.limit( numIndices );
+                    buffer.limit( startIndex + numIndices );
+                    buffer.position( startIndex );
                     GL11.glDrawElements( mode, buffer );
                     buffer.limit( limit );
+                    buffer.position( position );
                 }
             }
             
@@ -706,6 +917,37 @@ public class ShapeAtomPeer extends RenderAtomPeer
         return ( triangles );
     }
     
+    /**
+     * Issues all strips of the passed GeometryStripArray with a single
+     * glMultiDrawArrays call.
+     * 
+     * @param mode
+     * @param geoStripArr
+     */
+    private static final void multiDrawArrays( int mode, GeometryStripArray geoStripArr )
+    {
+        final int numRanges = stripRanges.compute( geoStripArr );
+        if ( numRanges == 0 )
+            return;
+        
+        if ( multiDrawFirsts.capacity() < numRanges )
+        {
+            final int capacity = Math.max( numRanges, multiDrawFirsts.capacity() * 2 );
+            multiDrawFirsts = BufferUtils.createIntBuffer( capacity );
+            multiDrawCounts = BufferUtils.createIntBuffer( capacity );
+        }
+        
+        multiDrawFirsts.clear();
+        multiDrawFirsts.put( stripRanges.getFirsts(), 0, numRanges );
+        multiDrawFirsts.flip();
+        
+        multiDrawCounts.clear();
+        multiDrawCounts.put( stripRanges.getCounts(), 0, numRanges );
+        multiDrawCounts.flip();
+        
+        GL14.glMultiDrawArrays( mode, multiDrawFirsts, multiDrawCounts );
+    }
+    
     public static final void selectClientTextureUnit( int unit, OpenGLStatesCache statesCache, boolean force )
     {
         if ( ( statesCache.enabled && statesCache.currentClientTextureUnit == unit ) && !force )
@@ -854,7 +1096,7 @@ public class ShapeAtomPeer extends RenderAtomPeer
         final int vboMap = setupBuffers( canvasPeer, statesCache, glCaps, geoArray, optimization, texturesUseMap, glVBOsSupported, arbVBOsSupported );
         
         final boolean vboForIndex = ( ( vboMap & CARE_MAP_INDICES ) != 0 );
-        shapeAtom.lastComputedPolysCount = drawBuffers( geoArray, vboForIndex, false, glCaps.isMinVersion13() );
+        shapeAtom.lastComputedPolysCount = drawBuffers( geoArray, vboForIndex, false, glCaps.isMinVersion13(), glCaps.isMinVersion14() );
         
         return ( shapeAtom.lastComputedPolysCount );
     }
@@ -964,4 +1206,152 @@ public class ShapeAtomPeer extends RenderAtomPeer
         
         return ( triangles );
     }
+    
+    /**
+     * Draws each instance of a batch like {@link #renderAtom(RenderAtom, Object, RenderPeer, OpenGLCapabilities, View, RenderOptions, long, long, RenderMode, long)},
+     * but with the buffers of the shared Geometry already set up.
+     * 
+     * @return the number of rendered triangles
+     */
+    private final int drawInstances( RenderAtom< ? >[] atoms, int numAtoms, Geometry geometry, boolean useDisplayLists, boolean vboForIndex, boolean drawBounds, CanvasPeer canvasPeer, OpenGLCapabilities glCaps, OpenGLStatesCache statesCache, View view, RenderMode renderMode )
+    {
+        int triangles = 0;
+        
+        for ( int i = 0; i < numAtoms; i++ )
+        {
+            final ShapeAtom shapeAtom = (ShapeAtom)atoms[ i ];
+            
+            final Shape3D shape = (Shape3D)shapeAtom.getNode();
+            final String shapeName = shape.getName();
+            final boolean hasName = ( ( shapeName != null ) && ( shapeName.length() > 0 ) );
+            if ( hasName && ProfileTimer.isProfilingEnabled() )
+            {
+                ProfileTimer.startProfile( X3DLog.LOG_CHANNEL, shapeName );
+            }
+            
+            setMatrix( view, _SG_PrivilegedAccess.getLeafWorldTransform( shape ), ( shape instanceof Billboard ), false );
+            
+            if ( drawBounds && shape.getShowBounds() && ( renderMode == RenderMode.NORMAL ) )
+                BoundsAtomPeer.drawBounds( shape.getBounds(), null, statesCache );
+            
+            if ( useDisplayLists )
+                DisplayListRenderPeer.renderDisplayList( shapeAtom, geometry, canvasPeer, glCaps, statesCache, renderMode == RenderMode.NORMAL );
+            else
+                shapeAtom.lastComputedPolysCount = drawBuffers( geometry, vboForIndex, false, glCaps.isMinVersion13(), glCaps.isMinVersion14() );
+            
+            triangles += shapeAtom.lastComputedPolysCount;
+            
+            if ( hasName && ProfileTimer.isProfilingEnabled() )
+            {
+                ProfileTimer.endProfile();
+            }
+        }
+        
+        return ( triangles );
+    }
+    
+    /**
+     * Sets up the client states and buffers of the shared Geometry once
+     * and then only loads each instance's transform and issues its draw call.
+     * {@link FaceCullMode#SWITCH} draws the whole batch with culled back faces
+     * and then with culled front faces.
+     * 
+     * {@inheritDoc}
+     */
+    @Override
+    public final int renderInstances( RenderAtom< ? >[] atoms, int numAtoms, Object glObj, RenderPeer renderPeer, OpenGLCapabilities glCaps, View view, RenderOptions options, long nanoTime, long nanoStep, RenderMode renderMode, long frameId )
+    {
+        final CanvasPeer canvasPeer = renderPeer.getCanvasPeer();
+        final OpenGLStatesCache statesCache = renderPeer.getStatesCache();
+        
+        final Geometry geometry = ( (Shape3D)atoms[ 0 ].getNode() ).getGeometry();
+        
+        final boolean glVBOsSupported = glCaps.isMinVersion15() && glCaps.supportsVBOs() && options.areVBOsEnabled();
+        final boolean arbVBOsSupported = OpenGlExtensions.ARB_vertex_buffer_object && glCaps.supportsVBOs() && options.areVBOsEnabled();
+        
+        Optimization optimization = geometry.getOptimization();
+        
+        final boolean useDisplayLists = ( optimization == Geometry.Optimization.USE_DISPLAY_LISTS ) && options.areDisplayListsEnabled();
+        boolean vboForIndex = false;
+        
+        if ( useDisplayLists )
+        {
+            bindArrayVBO( 0, statesCache, glVBOsSupported, arbVBOsSupported );
+            bindIndexVBO( 0, statesCache, glVBOsSupported, arbVBOsSupported );
+        }
+        else
+        {
+            if ( optimization == Geometry.Optimization.USE_DISPLAY_LISTS )
+                optimization = Optimization.USE_VBOS;
+            
+            final int texturesUseMap = setStates( geometry, glCaps, statesCache, renderMode == RenderMode.NORMAL, CARE_MAP_ALL );
+            final int vboMap = setupBuffers( canvasPeer, statesCache, glCaps, geometry, optimization, texturesUseMap, glVBOsSupported, arbVBOsSupported );
+            vboForIndex = ( ( vboMap & CARE_MAP_INDICES ) != 0 );
+        }
+        
+        // All instances share their states and thus their PolygonAttributes.
+        final Appearance app = ( (Shape3D)atoms[ 0 ].getNode() ).getAppearance();
+        
+        int triangles = 0;
+        
+        if ( ( app != null ) && ( app.getPolygonAttributes() != null ) && ( app.getPolygonAttributes().getFaceCullMode() == FaceCullMode.SWITCH ) )
+        {
+            tmpIntBuffer.clear();
+            GL11.glGetInteger( GL11.GL_CULL_FACE_MODE, tmpIntBuffer );
+            final int polyMode = tmpIntBuffer.get();
+            final boolean wasPolyCullEnabled = PolygonAttribsStateUnitPeer.setCullMode( statesCache, PolygonAttributes.CULL_BACK, true, renderMode == RenderMode.PICKING );
+            triangles = drawInstances( atoms, numAtoms, geometry, useDisplayLists, vboForIndex, true, canvasPeer, glCaps, statesCache, view, renderMode );
+            PolygonAttribsStateUnitPeer.setCullMode( statesCache, PolygonAttributes.CULL_FRONT, false, renderMode == RenderMode.PICKING );
+            triangles = drawInstances( atoms, numAtoms, geometry, useDisplayLists, vboForIndex, false, canvasPeer, glCaps, statesCache, view, renderMode );
+            
+            PolygonAttribsStateUnitPeer.setCullMode( statesCache, polyMode, wasPolyCullEnabled, renderMode == RenderMode.PICKING );
+        }
+        else
+        {
+            triangles = drawInstances( atoms, numAtoms, geometry, useDisplayLists, vboForIndex, true, canvasPeer, glCaps, statesCache, view, renderMode );
+        }
+        
+        // since vertex colors can change the current color and
+        // destroy the shader's known state we must restore them.
+        if ( ( renderMode == RenderMode.NORMAL ) && geometry.hasColors() )
+        {
+            GL11.glColor4f( statesCache.color.getRed(), statesCache.color.getGreen(), statesCache.color.getBlue(), 1f - statesCache.color.getAlpha() );
+        }
+        
+        return ( triangles );
+    }
+    
+    /**
+     * Sets up the client states and the streamed VBOs of the batcher's merged Geometry
+     * and draws the whole batch with a single glDrawElements call over the merged indices.
+     * 
+     * {@inheritDoc}
+     */
+    @Override
+    public final int renderBatch( ShapeAtomBatcher batcher, Object glObj, RenderPeer renderPeer, OpenGLCapabilities glCaps, View view, RenderOptions options, long nanoTime, long nanoStep, RenderMode renderMode, long frameId )
+    {
+        final CanvasPeer canvasPeer = renderPeer.getCanvasPeer();
+        final OpenGLStatesCache statesCache = renderPeer.getStatesCache();
+        
+        final Geometry geometry = batcher.getGeometry();
+        
+        final boolean glVBOsSupported = glCaps.isMinVersion15() && glCaps.supportsVBOs() && options.areVBOsEnabled();
+        final boolean arbVBOsSupported = OpenGlExtensions.ARB_vertex_buffer_object && glCaps.supportsVBOs() && options.areVBOsEnabled();
+        
+        setMatrix( view, batcher.getTransform(), false, false );
+        
+        final int texturesUseMap = setStates( geometry, glCaps, statesCache, renderMode == RenderMode.NORMAL, CARE_MAP_ALL );
+        final int vboMap = setupBuffers( canvasPeer, statesCache, glCaps, geometry, geometry.getOptimization(), texturesUseMap, glVBOsSupported, arbVBOsSupported );
+        
+        final int triangles = drawBuffers( geometry, ( vboMap & CARE_MAP_INDICES ) != 0, false, glCaps.isMinVersion13(), glCaps.isMinVersion14() );
+        
+        // since vertex colors can change the current color and
+        // destroy the shader's known state we must restore them.
+        if ( ( renderMode == RenderMode.NORMAL ) && geometry.hasColors() )
+        {
+            GL11.glColor4f( statesCache.color.getRed(), statesCache.color.getGreen(), statesCache.color.getBlue(), 1f - statesCache.color.getAlpha() );
+        }
+        
+        return ( triangles );
+    }
 }
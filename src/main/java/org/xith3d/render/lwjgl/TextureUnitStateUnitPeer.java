@@ -58,6 +58,8 @@ import org.lwjgl.opengl.GL14;
 import org.openmali.types.twodee.Rect2i;
 import org.openmali.vecmath2.Colorf;
 import org.xith3d.render.CanvasPeer;
+import org.xith3d.render.GPUMemoryBudget;
+import org.xith3d.render.GPUMemoryBudget.ResourceType;
 import org.xith3d.render.OpenGLCapabilities;
 import org.xith3d.render.OpenGLInfo;
 import org.xith3d.render.OpenGLStatesCache;
@@ -303,7 +305,11 @@ public class TextureUnitStateUnitPeer implements StateUnitPeer
                 int internalFormat = 0;
                 final int border = texture.getBoundaryWidth();
                 
-                for ( int level = 0; level < numMipmaps; level++ )
+                // A streaming Texture only defines its resident levels.
+                final boolean streaming = ( texture instanceof Texture2D ) && ( (Texture2D)texture ).isStreaming();
+                final int baseLevel = streaming ? ( (Texture2D)texture ).getResidentLevel() : 0;
+                
+                for ( int level = baseLevel; level < numMipmaps; level++ )
                 {
                     image = (TextureImage2D)texture.getImage( level );
                     
@@ -337,13 +343,18 @@ public class TextureUnitStateUnitPeer implements StateUnitPeer
                             GL11.glTexImage2D( glTexType, level, internalFormat, image.getWidth(), image.getHeight(), border, format, GL11.GL_UNSIGNED_BYTE, buff );
                         }
                         
-                        if ( texture.isMarkedAsLocalDataToBeFreed() )
+                        if ( texture.isMarkedAsLocalDataToBeFreed() && !streaming )
                         {
                             image.freeLocalData();
                             RenderPeerImpl.setGCRequested();
                         }
                     }
                 }
+                
+                if ( baseLevel > 0 )
+                {
+                    GL11.glTexParameteri( glTexType, GL12.GL_TEXTURE_BASE_LEVEL, baseLevel );
+                }
             }
             break;
             case GL12.GL_TEXTURE_3D:
@@ -572,12 +583,19 @@ public class TextureUnitStateUnitPeer implements StateUnitPeer
             {
                 updateTexture( (Texture2D)texture );
             }
+            
+            canvasPeer.getGPUMemoryBudget().markUsed( openGLRef );
         }
         else
         {
             texHandle = defineTexture( unit, texture, canvasPeer, depthBuffersize, statesCache );
             
             _SG_PrivilegedAccess.resetSizeChanged( texture );
+            
+            if ( texHandle != -1 )
+            {
+                canvasPeer.getGPUMemoryBudget().markResident( openGLRef, ResourceType.TEXTURE, GPUMemoryBudget.estimateTextureBytes( texture ), GPUMemoryBudget.isReuploadable( texture ) );
+            }
         }
         
         return ( texHandle );
@@ -1068,9 +1086,16 @@ public class TextureUnitStateUnitPeer implements StateUnitPeer
             setTextureState( glCaps, statesCache, texture, unit, changed, canvasPeer, canvasPeer.getDepthBufferSize() );
             
             statesCache.currentBoundTexture[ unit ] = texture;
+            statesCache.statistics.countTextureBind( true );
             //if ( texture != null )
             //    _SG_PrivilegedAccess.setChanged( texture, false );
         }
+        else
+        {
+            canvasPeer.getGPUMemoryBudget().markUsed( texture.getOpenGLReferences().getReference( canvasPeer, textureNameProvider ) );
+            
+            statesCache.statistics.countTextureBind( false );
+        }
         
         
         final TextureAttributes texAttribs = texStateUnit.getTextureAttributes();
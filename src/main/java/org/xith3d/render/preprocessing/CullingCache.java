@@ -0,0 +1,743 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.render.preprocessing;
+
+import java.util.IdentityHashMap;
+import java.util.WeakHashMap;
+
+import org.openmali.spatial.bodies.Classifier.Classification;
+import org.openmali.spatial.bodies.Frustum;
+import org.openmali.spatial.bodies.Plane;
+import org.openmali.vecmath2.Point3f;
+import org.xith3d.render.Clipper;
+import org.xith3d.render.OpenGLCapabilities;
+import org.xith3d.render.RenderPass;
+import org.xith3d.render.ScissorRect;
+import org.xith3d.scenegraph.Appearance;
+import org.xith3d.scenegraph.BranchGroup;
+import org.xith3d.scenegraph.Geometry;
+import org.xith3d.scenegraph.GroupNode;
+import org.xith3d.scenegraph.Node;
+import org.xith3d.scenegraph.NodeComponent;
+import org.xith3d.scenegraph.Shape3D;
+import org.xith3d.scenegraph.Switch;
+import org.xith3d.scenegraph.Texture;
+import org.xith3d.scenegraph.TextureImage;
+import org.xith3d.scenegraph.TextureUnit;
+import org.xith3d.scenegraph.Transform3D;
+import org.xith3d.scenegraph.TransformGroup;
+import org.xith3d.scenegraph._SG_PrivilegedAccess;
+import org.xith3d.scenegraph.modifications.ScenegraphModificationsListener;
+
+/**
+ * The CullingCache keeps the RenderAtoms, that a subtree has contributed
+ * to the RenderBins, between frames, so that the {@link FrustumCuller}
+ * doesn't need to re-cull subtrees, that didn't change.<br>
+ * <br>
+ * Each scenegraph modification stamps the modified Node and its ancestors.
+ * A cached subtree is reused as long as its stamp is not newer than the cache entry,
+ * none of its ancestors has been modified itself and the RenderPass' Frustum is unchanged.
+ * Subtrees containing {@link org.xith3d.scenegraph.UpdatableNode}s are never cached,
+ * since they need to be updated each frame.<br>
+ * <br>
+ * Only changes, that are reported to the {@link ScenegraphModificationsListener}
+ * are detected. Since NodeComponents don't know the Nodes, they are used by,
+ * a changed Appearance component is only collected. It is resolved once,
+ * when the next RenderPass is culled, by stamping the cached Shapes using it.
+ * Geometry and Texture data changes are ignored, since they neither change
+ * the culling result nor the state sorting. Invoke {@link #clear()} after changes,
+ * that are not reported (e.g. {@link Shape3D#setVisible(boolean)} or changed Shape bounds).
+ */
+public class CullingCache implements ScenegraphModificationsListener
+{
+    /**
+     * The RenderAtoms, a subtree has contributed to the opaque, transparent and shadows bins
+     * (in this order) together with their Classifications.
+     */
+    private static final class Entry
+    {
+        private long stamp = 0L;
+        private int numShapes = 0;
+        private RenderAtom< ? >[] atoms = new RenderAtom< ? >[ 16 ];
+        private Classification[] classifies = new Classification[ 16 ];
+        private int numOpaque = 0;
+        private int numTransparent = 0;
+        private int numShadows = 0;
+        
+        private final int copyRange( RenderBin bin, int start, int offset )
+        {
+            final int n = bin.size() - start;
+            
+            for ( int i = 0; i < n; i++ )
+            {
+                final RenderAtom< ? > atom = bin.getAtom( start + i );
+                atoms[ offset + i ] = atom;
+                classifies[ offset + i ] = atom.getClassification();
+            }
+            
+            return ( n );
+        }
+        
+        private final void record( RenderBinProvider binProvider, int startOpaque, int startTransparent, int startShadows, int numShapes, long stamp )
+        {
+            final int size = ( binProvider.getOpaqueBin().size() - startOpaque ) + ( binProvider.getTransparentBin().size() - startTransparent ) + ( binProvider.getShadowsBin().size() - startShadows );
+            
+            if ( atoms.length < size )
+            {
+                atoms = new RenderAtom< ? >[ size ];
+                classifies = new Classification[ size ];
+            }
+            
+            this.numOpaque = copyRange( binProvider.getOpaqueBin(), startOpaque, 0 );
+            this.numTransparent = copyRange( binProvider.getTransparentBin(), startTransparent, numOpaque );
+            this.numShadows = copyRange( binProvider.getShadowsBin(), startShadows, numOpaque + numTransparent );
+            
+            for ( int i = size; i < atoms.length; i++ )
+            {
+                atoms[ i ] = null;
+                classifies[ i ] = null;
+            }
+            
+            this.numShapes = numShapes;
+            this.stamp = stamp;
+        }
+        
+        private final void replayRange( RenderBin bin, int offset, int n )
+        {
+            for ( int i = offset; i < offset + n; i++ )
+            {
+                bin.addAtom( atoms[ i ], classifies[ i ], 0L );
+            }
+        }
+        
+        private final void replay( RenderBinProvider binProvider, OpenGLCapabilities glCaps )
+        {
+            replayRange( binProvider.getOpaqueBin(), 0, numOpaque );
+            replayRange( binProvider.getTransparentBin(), numOpaque, numTransparent );
+            replayRange( binProvider.getShadowsBin(), numOpaque + numTransparent, numShadows );
+            
+            updateStateUnits( glCaps );
+        }
+        
+        /**
+         * Non-static Appearances are updated each frame by the FrustumCuller.
+         * So we must do the same for the cached ShapeAtoms.
+         */
+        private final void updateStateUnits( OpenGLCapabilities glCaps )
+        {
+            final int n = numOpaque + numTransparent;
+            for ( int i = 0; i < n; i++ )
+            {
+                if ( atoms[ i ] instanceof ShapeAtom )
+                {
+                    final ShapeAtom atom = (ShapeAtom)atoms[ i ];
+                    final Appearance app = ( (Shape3D)atom.getNode() ).getAppearance();
+                    
+                    if ( ( app != null ) && ( !app.isStatic() || app.isStaticDirty() ) )
+                    {
+                        atom.updateStateUnits( app, glCaps );
+                    }
+                }
+            }
+        }
+    }
+    
+    /**
+     * The cached subtrees of one RenderPass.
+     */
+    private static final class PassCache
+    {
+        private final float[] planes = new float[ 4 * PlaneMaskClassifier.NUM_PLANES ];
+        private final Point3f viewPosition = new Point3f();
+        private boolean cullingSuppressed = false;
+        private boolean initialized = false;
+        
+        private long lastCullStamp = 0L;
+        private GroupNode lastRoot = null;
+        private boolean binsReused = false;
+        
+        private final IdentityHashMap< GroupNode, Entry > entries = new IdentityHashMap< GroupNode, Entry >();
+        
+        /**
+         * Checks, whether the given culling parameters equal the ones of the last frame
+         * and stores them.
+         */
+        private final boolean update( Frustum frustum, Point3f viewPosition, boolean cullingSuppressed )
+        {
+            boolean equal = initialized && ( this.cullingSuppressed == cullingSuppressed ) && this.viewPosition.equals( viewPosition );
+            
+            for ( int i = 0; i < PlaneMaskClassifier.NUM_PLANES; i++ )
+            {
+                final Plane plane = PlaneMaskClassifier.getPlane( frustum, i );
+                final int j = i * 4;
+                
+                if ( ( planes[ j + 0 ] != plane.getA() ) || ( planes[ j + 1 ] != plane.getB() ) || ( planes[ j + 2 ] != plane.getC() ) || ( planes[ j + 3 ] != plane.getD() ) )
+                {
+                    equal = false;
+                    
+                    planes[ j + 0 ] = plane.getA();
+                    planes[ j + 1 ] = plane.getB();
+                    planes[ j + 2 ] = plane.getC();
+                    planes[ j + 3 ] = plane.getD();
+                }
+            }
+            
+            this.viewPosition.set( viewPosition );
+            this.cullingSuppressed = cullingSuppressed;
+            this.initialized = true;
+            
+            return ( equal );
+        }
+        
+        private final void clear()
+        {
+            entries.clear();
+            initialized = false;
+            lastRoot = null;
+            binsReused = false;
+        }
+    }
+    
+    private final WeakHashMap< RenderPass, PassCache > passCaches = new WeakHashMap< RenderPass, PassCache >();
+    
+    private long modStamp = 1L;
+    
+    private int minShapes = 8;
+    
+    private PassCache currentPass = null;
+    private boolean bypassing = false;
+    private int numReplays = 0;
+    
+    /**
+     * The NodeComponents reported as changed since the last RenderPass has been culled.
+     */
+    private NodeComponent[] changedComponents = new NodeComponent[ 8 ];
+    private int numChangedComponents = 0;
+    
+    private int depth = 0;
+    private int[] startOpaque = new int[ 16 ];
+    private int[] startTransparent = new int[ 16 ];
+    private int[] startShadows = new int[ 16 ];
+    private boolean[] savedLiveNode = new boolean[ 16 ];
+    private boolean liveNode = false;
+    
+    /**
+     * Sets the minimum number of Shapes, a GroupNode's subtree must contain
+     * to get its own cache entry. Smaller subtrees are cached as a part of their parents.
+     * 
+     * @param minShapes
+     */
+    public void setMinShapes( int minShapes )
+    {
+        if ( minShapes < 1 )
+            throw new IllegalArgumentException( "minShapes must be at least 1" );
+        
+        this.minShapes = minShapes;
+    }
+    
+    /**
+     * @return the minimum number of Shapes, a GroupNode's subtree must contain
+     * to get its own cache entry.
+     */
+    public final int getMinShapes()
+    {
+        return ( minShapes );
+    }
+    
+    /**
+     * Drops all cached subtrees of all RenderPasses.
+     */
+    public void clear()
+    {
+        for ( PassCache passCache : passCaches.values() )
+        {
+            passCache.clear();
+        }
+    }
+    
+    /**
+     * Drops all cached subtrees of the given RenderPass.
+     * 
+     * @param renderPass
+     */
+    public void clear( RenderPass renderPass )
+    {
+        final PassCache passCache = passCaches.get( renderPass );
+        
+        if ( passCache != null )
+            passCache.clear();
+    }
+    
+    /**
+     * @param renderPass
+     * 
+     * @return true, if the RenderBins of the given RenderPass have been
+     *         left untouched since the last frame, so that they don't need to be sorted again.
+     */
+    public final boolean isBinsReused( RenderPass renderPass )
+    {
+        final PassCache passCache = passCaches.get( renderPass );
+        
+        return ( ( passCache != null ) && passCache.binsReused );
+    }
+    
+    /**
+     * @return the number of cached subtrees, that have been replayed
+     *         while culling the last RenderPass.
+     */
+    public final int getNumReplays()
+    {
+        return ( numReplays );
+    }
+    
+    /**
+     * @return true, if the given Shape's Appearance is or contains the given NodeComponent.
+     */
+    private static final boolean usesComponent( Shape3D shape, NodeComponent comp )
+    {
+        final Appearance app = shape.getAppearance();
+        
+        if ( app == null )
+            return ( false );
+        
+        if ( ( app == comp ) || ( app.getMaterial() == comp ) || ( app.getColoringAttributes() == comp ) || ( app.getTransparencyAttributes() == comp ) || ( app.getRenderingAttributes() == comp ) || ( app.getPolygonAttributes() == comp ) || ( app.getLineAttributes() == comp ) || ( app.getPointAttributes() == comp ) || ( app.getShaderProgramContext() == comp ) )
+            return ( true );
+        
+        for ( int i = 0; i < app.getTextureUnitsCount(); i++ )
+        {
+            final TextureUnit tu = app.getTextureUnit( i );
+            
+            if ( ( tu != null ) && ( ( tu == comp ) || ( tu.getTextureAttributes() == comp ) || ( tu.getTexCoordGeneration() == comp ) ) )
+                return ( true );
+        }
+        
+        return ( false );
+    }
+    
+    /**
+     * Stamps all cached Shapes, that use one of the changed NodeComponents, as modified,
+     * so that only the subtrees containing them are culled again.
+     * Shapes, that aren't cached, are culled anyway.
+     */
+    private final void markChangedShapes()
+    {
+        final long stamp = modStamp;
+        
+        for ( PassCache passCache : passCaches.values() )
+        {
+            for ( Entry entry : passCache.entries.values() )
+            {
+                final int n = entry.numOpaque + entry.numTransparent + entry.numShadows;
+                
+                for ( int i = 0; i < n; i++ )
+                {
+                    final Node node = entry.atoms[ i ].getNode();
+                    
+                    // already stamped through another entry
+                    if ( !( node instanceof Shape3D ) || ( _SG_PrivilegedAccess.getCullingModStamp( node ) > stamp ) )
+                        continue;
+                    
+                    for ( int j = 0; j < numChangedComponents; j++ )
+                    {
+                        if ( usesComponent( (Shape3D)node, changedComponents[ j ] ) )
+                        {
+                            markModified( node, true );
+                            break;
+                        }
+                    }
+                }
+            }
+        }
+        
+        for ( int i = 0; i < numChangedComponents; i++ )
+        {
+            changedComponents[ i ] = null;
+        }
+        numChangedComponents = 0;
+    }
+    
+    /**
+     * Starts culling the given RenderPass' root group.
+     * 
+     * @return true, if the RenderBins still hold the unchanged result
+     *         of the last frame and don't need to be refilled.
+     */
+    final boolean beginPass( RenderPass renderPass, GroupNode rootGroup, Frustum frustum, Point3f viewPosition, boolean cullingSuppressed )
+    {
+        if ( numChangedComponents > 0 )
+            markChangedShapes();
+        
+        numReplays = 0;
+        
+        PassCache passCache = passCaches.get( renderPass );
+        if ( passCache == null )
+        {
+            passCache = new PassCache();
+            passCaches.put( renderPass, passCache );
+        }
+        
+        if ( !passCache.update( frustum, viewPosition, cullingSuppressed ) )
+        {
+            passCache.entries.clear();
+            passCache.lastRoot = null;
+        }
+        
+        passCache.binsReused = false;
+        
+        if ( ( passCache.lastRoot == rootGroup ) && ( _SG_PrivilegedAccess.getCullingModStamp( rootGroup ) <= passCache.lastCullStamp ) )
+        {
+            final Entry entry = passCache.entries.get( rootGroup );
+            
+            if ( ( entry != null ) && ( _SG_PrivilegedAccess.getCullingSubtreeModStamp( rootGroup ) <= entry.stamp ) )
+            {
+                passCache.binsReused = true;
+                
+                return ( true );
+            }
+        }
+        
+        this.currentPass = passCache;
+        this.bypassing = false;
+        this.depth = 0;
+        this.liveNode = false;
+        
+        return ( false );
+    }
+    
+    /**
+     * Updates the non-static Appearances of the given root group's cached ShapeAtoms,
+     * if the RenderBins have been reused.
+     * 
+     * @return the number of unculled Shapes
+     */
+    final int updateReusedPass( RenderPass renderPass, GroupNode rootGroup, OpenGLCapabilities glCaps )
+    {
+        final Entry entry = passCaches.get( renderPass ).entries.get( rootGroup );
+        
+        entry.updateStateUnits( glCaps );
+        
+        return ( entry.numShapes );
+    }
+    
+    /**
+     * Finishes culling of the current RenderPass.
+     */
+    final void endPass( GroupNode rootGroup )
+    {
+        if ( currentPass != null )
+        {
+            currentPass.lastCullStamp = modStamp;
+            currentPass.lastRoot = rootGroup;
+            currentPass = null;
+        }
+    }
+    
+    /**
+     * @return true, if a RenderPass is currently culled through this cache.
+     */
+    final boolean isActive()
+    {
+        return ( currentPass != null );
+    }
+    
+    /**
+     * Marks the currently recorded subtrees as not cacheable.
+     */
+    final void markLiveNode()
+    {
+        this.liveNode = true;
+    }
+    
+    /**
+     * Appends the cached RenderAtoms of the given GroupNode to the RenderBins, if they are still valid.
+     * 
+     * @return the number of unculled Shapes or -1, if there is no valid entry.
+     */
+    final int replay( GroupNode group, RenderBinProvider binProvider, OpenGLCapabilities glCaps )
+    {
+        if ( bypassing )
+            return ( -1 );
+        
+        final Entry entry = currentPass.entries.get( group );
+        
+        if ( ( entry == null ) || ( _SG_PrivilegedAccess.getCullingSubtreeModStamp( group ) > entry.stamp ) )
+            return ( -1 );
+        
+        entry.replay( binProvider, glCaps );
+        numReplays++;
+        
+        return ( entry.numShapes );
+    }
+    
+    /**
+     * Must be invoked before a Node is culled. Cached entries below a Node,
+     * that has been modified itself, are bypassed.
+     * 
+     * @return the previous bypassing state to be passed to {@link #exitNode(boolean)}.
+     */
+    final boolean enterNode( Node node )
+    {
+        final boolean wasBypassing = bypassing;
+        
+        if ( _SG_PrivilegedAccess.getCullingModStamp( node ) > currentPass.lastCullStamp )
+            bypassing = true;
+        
+        return ( wasBypassing );
+    }
+    
+    final void exitNode( boolean wasBypassing )
+    {
+        this.bypassing = wasBypassing;
+    }
+    
+    /**
+     * Starts recording the RenderAtoms of the given GroupNode's subtree.
+     * 
+     * @return true, if the subtree is being recorded.
+     */
+    final boolean beginRecording( GroupNode group, RenderBinProvider binProvider )
+    {
+        if ( group.getTotalNumShapes() < minShapes )
+            return ( false );
+        
+        if ( depth == startOpaque.length )
+        {
+            final int newLength = depth * 2;
+            
+            int[] tmp = new int[ newLength ];
+            System.arraycopy( startOpaque, 0, tmp, 0, depth );
+            startOpaque = tmp;
+            
+            tmp = new int[ newLength ];
+            System.arraycopy( startTransparent, 0, tmp, 0, depth );
+            startTransparent = tmp;
+            
+            tmp = new int[ newLength ];
+            System.arraycopy( startShadows, 0, tmp, 0, depth );
+            startShadows = tmp;
+            
+            final boolean[] tmp2 = new boolean[ newLength ];
+            System.arraycopy( savedLiveNode, 0, tmp2, 0, depth );
+            savedLiveNode = tmp2;
+        }
+        
+        startOpaque[ depth ] = binProvider.getOpaqueBin().size();
+        startTransparent[ depth ] = binProvider.getTransparentBin().size();
+        startShadows[ depth ] = binProvider.getShadowsBin().size();
+        savedLiveNode[ depth ] = liveNode;
+        depth++;
+        
+        liveNode = false;
+        
+        return ( true );
+    }
+    
+    /**
+     * Stores the RenderAtoms, the given GroupNode's subtree has contributed since
+     * {@link #beginRecording(GroupNode, RenderBinProvider)}.
+     */
+    final void endRecording( GroupNode group, RenderBinProvider binProvider, int numShapes )
+    {
+        depth--;
+        
+        if ( liveNode )
+        {
+            currentPass.entries.remove( group );
+        }
+        else
+        {
+            Entry entry = currentPass.entries.get( group );
+            if ( entry == null )
+            {
+                entry = new Entry();
+                currentPass.entries.put( group, entry );
+            }
+            
+            entry.record( binProvider, startOpaque[ depth ], startTransparent[ depth ], startShadows[ depth ], numShapes, modStamp );
+        }
+        
+        liveNode = liveNode || savedLiveNode[ depth ];
+    }
+    
+    /**
+     * Stamps the given Node and all its ancestors as modified below.
+     * 
+     * @param node
+     * @param self if true, the Node has been modified itself, which affects all its children
+     */
+    protected void markModified( Node node, boolean self )
+    {
+        final long stamp = ++modStamp;
+        
+        if ( self )
+            _SG_PrivilegedAccess.setCullingModStamp( node, stamp );
+        
+        while ( node != null )
+        {
+            _SG_PrivilegedAccess.setCullingSubtreeModStamp( node, stamp );
+            
+            node = node.getParent();
+        }
+    }
+    
+    private final void removeEntries( Node node )
+    {
+        if ( !( node instanceof GroupNode ) )
+            return;
+        
+        final GroupNode group = (GroupNode)node;
+        
+        for ( PassCache passCache : passCaches.values() )
+        {
+            passCache.entries.remove( group );
+        }
+        
+        for ( int i = 0; i < group.numChildren(); i++ )
+        {
+            removeEntries( group.getChild( i ) );
+        }
+    }
+    
+    /*
+     * #####################################################################
+     * ### Methods from ScenegraphModificationsListener
+     * #####################################################################
+     */
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void onBranchGraphAdded( BranchGroup branchGraph )
+    {
+        clear();
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void onBranchGraphRemoved( BranchGroup branchGraph )
+    {
+        clear();
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void onChildAddedToGroup( GroupNode group, Node child )
+    {
+        markModified( child, true );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void onNodePropertyChanged( Node node, String property )
+    {
+        markModified( node, true );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void onChildRemovedFromGroup( GroupNode group, Node child )
+    {
+        removeEntries( child );
+        
+        markModified( group, false );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void onSwitchWhichChildChanged( Switch sw, int oldValue, int whichChild )
+    {
+        markModified( sw, true );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void onStateModifierContainmentChanged( GroupNode group, boolean oldValue, boolean newValue )
+    {
+        markModified( group, true );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void onScissorRectChanged( GroupNode group, ScissorRect oldValue, ScissorRect newValue )
+    {
+        markModified( group, true );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void onClipperChanged( GroupNode group, Clipper oldValue, Clipper newValue )
+    {
+        markModified( group, true );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void onTransformChanged( TransformGroup tg, Transform3D transform )
+    {
+        markModified( tg, true );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void onNodeComponentChanged( NodeComponent comp )
+    {
+        if ( ( comp instanceof Geometry ) || ( comp instanceof Texture ) || ( comp instanceof TextureImage ) )
+            return;
+        
+        for ( int i = 0; i < numChangedComponents; i++ )
+        {
+            if ( changedComponents[ i ] == comp )
+                return;
+        }
+        
+        if ( numChangedComponents == changedComponents.length )
+        {
+            NodeComponent[] tmp = new NodeComponent[ numChangedComponents * 2 ];
+            System.arraycopy( changedComponents, 0, tmp, 0, numChangedComponents );
+            changedComponents = tmp;
+        }
+        
+        changedComponents[ numChangedComponents++ ] = comp;
+    }
+}
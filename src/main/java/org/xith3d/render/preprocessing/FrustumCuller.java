@@ -34,27 +34,35 @@
 package org.xith3d.render.preprocessing;
 
 import org.openmali.spatial.bodies.Box;
-import org.openmali.spatial.bodies.Classifier;
 import org.openmali.spatial.bodies.Classifier.Classification;
 import org.openmali.spatial.bodies.Frustum;
 import org.openmali.spatial.bodies.Sphere;
 import org.openmali.spatial.bounds.BoundsType;
 import org.openmali.types.twodee.Sized2iRO;
 import org.openmali.vecmath2.Point3f;
+import org.openmali.vecmath2.Vector3f;
 import org.xith3d.effects.EffectFactory;
 import org.xith3d.effects.shadows.ShadowFactory;
 import org.xith3d.picking.PickPool;
 import org.xith3d.picking.PickRay;
 import org.xith3d.picking.PickRequest;
 import org.xith3d.render.Canvas3D;
+import org.xith3d.render.FrameTimeline;
 import org.xith3d.render.OpenGLCapabilities;
 import org.xith3d.render.RenderPass;
 import org.xith3d.render.RenderPassConfig;
 import org.xith3d.scenegraph.*;
 import org.xith3d.utility.logging.X3DLog;
 
+import java.util.ArrayList;
 import java.util.BitSet;
 import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
 
 /**
  * The ViewCuller is in charge of traversing the scenegraph to
@@ -67,16 +75,378 @@ import java.util.List;
  */
 public class FrustumCuller
 {
+    /**
+     * A chunk of the scenegraph, that is culled by a worker thread into its own
+     * RenderBinProvider segment. Everything, that would touch shared state
+     * (state-units, shadow-atoms, updatable and special culling nodes), is only
+     * recorded here and processed on the rendering thread, when the segment is merged.
+     */
+    private static final class CullingSegment implements Callable< Object >
+    {
+        private final FrustumCuller culler;
+        private final RenderBinProvider binProvider = new RenderBinProvider();
+        
+        private final ArrayList< Node > nodes = new ArrayList< Node >();
+        private final ArrayList< Classification > classifies = new ArrayList< Classification >();
+        private int[] planeMasks = new int[ 16 ];
+        private int numShapes = 0;
+        
+        private RenderPass renderPass = null;
+        private GroupNode rootGroup = null;
+        private boolean cullingSuppressed = false;
+        private final Frustum frustum = new Frustum();
+        private final Point3f viewPosition = new Point3f();
+        private OpenGLCapabilities glCaps = null;
+        private long frameId;
+        private long nanoTime;
+        private long nanoStep;
+        
+        private long cullTime = 0L;
+        
+        private final ArrayList< Node > deferredNodes = new ArrayList< Node >();
+        private final ArrayList< Classification > deferredClassifies = new ArrayList< Classification >();
+        private final ArrayList< ShapeAtom > deferredAtoms = new ArrayList< ShapeAtom >();
+        private final ArrayList< Appearance > deferredApps = new ArrayList< Appearance >();
+        private final ArrayList< Node > deferredShadows = new ArrayList< Node >();
+        private final ArrayList< Classification > deferredShadowClassifies = new ArrayList< Classification >();
+        
+        public final void addNode( Node node, Classification parentClassify, int parentPlaneMask )
+        {
+            if ( nodes.size() == planeMasks.length )
+            {
+                final int[] oldPlaneMasks = planeMasks;
+                planeMasks = new int[ oldPlaneMasks.length * 2 ];
+                System.arraycopy( oldPlaneMasks, 0, planeMasks, 0, oldPlaneMasks.length );
+            }
+            
+            planeMasks[ nodes.size() ] = parentPlaneMask;
+            nodes.add( node );
+            classifies.add( parentClassify );
+            
+            if ( node instanceof GroupNode )
+                numShapes += ( (GroupNode)node ).getTotalNumShapes();
+            else
+                numShapes++;
+        }
+        
+        public final void deferNode( Node node, Classification parentClassify )
+        {
+            deferredNodes.add( node );
+            deferredClassifies.add( parentClassify );
+        }
+        
+        public final void deferStateUnits( ShapeAtom atom, Appearance app )
+        {
+            deferredAtoms.add( atom );
+            deferredApps.add( app );
+        }
+        
+        public final void deferShadow( Node node, Classification classify )
+        {
+            deferredShadows.add( node );
+            deferredShadowClassifies.add( classify );
+        }
+        
+        public final void setup( RenderPass renderPass, GroupNode rootGroup, boolean cullingSuppressed, Frustum frustum, Point3f viewPosition, OpenGLCapabilities glCaps, long frameId, long nanoTime, long nanoStep )
+        {
+            this.renderPass = renderPass;
+            this.rootGroup = rootGroup;
+            this.cullingSuppressed = cullingSuppressed;
+            this.frustum.setPlaneLeft( frustum.getPlaneLeft() );
+            this.frustum.setPlaneRight( frustum.getPlaneRight() );
+            this.frustum.setPlaneBottom( frustum.getPlaneBottom() );
+            this.frustum.setPlaneTop( frustum.getPlaneTop() );
+            this.frustum.setPlaneNear( frustum.getPlaneNear() );
+            this.frustum.setPlaneFar( frustum.getPlaneFar() );
+            this.viewPosition.set( viewPosition );
+            this.glCaps = glCaps;
+            this.frameId = frameId;
+            this.nanoTime = nanoTime;
+            this.nanoStep = nanoStep;
+        }
+        
+        public final void reset()
+        {
+            nodes.clear();
+            classifies.clear();
+            numShapes = 0;
+            cullTime = 0L;
+            
+            renderPass = null;
+            rootGroup = null;
+            glCaps = null;
+            
+            deferredNodes.clear();
+            deferredClassifies.clear();
+            deferredAtoms.clear();
+            deferredApps.clear();
+            deferredShadows.clear();
+            deferredShadowClassifies.clear();
+            
+            binProvider.clearAllBins();
+        }
+        
+        /**
+         * {@inheritDoc}
+         */
+        public Object call()
+        {
+            final long t0 = System.nanoTime();
+            
+            culler.unculledShapesCount = 0;
+            
+            // The View is not needed here, since UpdatableNodes and SpecialCullingNodes are deferred.
+            for ( int i = 0; i < nodes.size(); i++ )
+            {
+                culler.cullNodeAtoms( nodes.get( i ), classifies.get( i ), planeMasks[ i ], cullingSuppressed, null, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, null, false );
+            }
+            
+            cullTime = System.nanoTime() - t0;
+            
+            return ( null );
+        }
+        
+        public CullingSegment()
+        {
+            this.culler = new FrustumCuller( this );
+        }
+    }
+    
+    private static final ThreadFactory WORKER_THREAD_FACTORY = new ThreadFactory()
+    {
+        private int counter = 0;
+        
+        public synchronized Thread newThread( Runnable r )
+        {
+            final Thread thread = new Thread( r, "FrustumCuller-Worker-" + ( ++counter ) );
+            thread.setDaemon( true );
+            
+            return ( thread );
+        }
+    };
+    
+    private final CullingSegment segment;
+    
     private ShadowFactory shadowFactory;
     
     private int unculledShapesCount = 0;
     
     private final Point3f viewPosition2 = new Point3f();
     
+    private int classifiedPlaneMask = PlaneMaskClassifier.ALL_PLANES;
+    
+    /**
+     * Groups with at least this number of children with consecutive {@link WorldBoundsStore} slots
+     * are classified in a single pass over the store before traversing the children.
+     */
+    private static final int BOUNDS_STREAMING_THRESHOLD = 8;
+    private static final int NOT_PRECLASSIFIED = Integer.MIN_VALUE;
+    
+    private final float[] streamedPlanes = new float[ 4 * PlaneMaskClassifier.NUM_PLANES ];
+    private int[] preclassifiedMasks = new int[ 64 ];
+    private int preclassifiedMasksTop = 0;
+    private Node preclassifiedNode = null;
+    private int preclassifiedMask = 0;
+    
+    private boolean parallelCullingEnabled = false;
+    private int parallelCullingThreshold = 4096;
+    private int numWorkerThreads = Runtime.getRuntime().availableProcessors();
+    private ExecutorService executor = null;
+    
+    private final ArrayList< CullingSegment > segmentsPool = new ArrayList< CullingSegment >();
+    private final ArrayList< CullingSegment > activeSegments = new ArrayList< CullingSegment >();
+    private final ArrayList< Point3f > passViewPositions = new ArrayList< Point3f >();
+    private long[] passCullTimes = new long[ 4 ];
+    private long segmentsCullTime = 0L;
+    
+    private CullingCache cullingCache = null;
+    private OcclusionCuller occlusionCuller = null;
+    private FrameTimeline frameTimeline = null;
+    
+    /**
+     * Enables or disables parallel culling.<br>
+     * If enabled, big subtrees (see {@link #setParallelCullingThreshold(int)})
+     * and independent RenderPasses are culled by a pool of worker threads,
+     * each filling its own RenderBinProvider segment. The segments are merged
+     * into the RenderPass' RenderBinProvider before sorting.<br>
+     * <br>
+     * The {@link CullingCache} and the {@link OcclusionCuller} are only supported by the serial culling.
+     * While one of them is set, the scenegraph is culled serially.
+     * 
+     * @param enabled
+     */
+    public final void setParallelCullingEnabled( boolean enabled )
+    {
+        this.parallelCullingEnabled = enabled;
+        
+        if ( !enabled )
+        {
+            shutdownWorkers();
+        }
+    }
+    
+    /**
+     * @return whether parallel culling is enabled.
+     */
+    public final boolean isParallelCullingEnabled()
+    {
+        return ( parallelCullingEnabled );
+    }
+    
+    /**
+     * @return whether the scenegraph is currently culled in parallel.
+     *         This is not the case, if a CullingCache or an OcclusionCuller is set.
+     */
+    private final boolean isParallelCullingUsable()
+    {
+        return ( parallelCullingEnabled && ( cullingCache == null ) && ( occlusionCuller == null ) );
+    }
+    
+    /**
+     * Sets the minimum number of Shape3Ds a GroupNode must contain
+     * to be split into subtrees for the worker threads.
+     * 
+     * @param threshold
+     */
+    public final void setParallelCullingThreshold( int threshold )
+    {
+        if ( threshold < 1 )
+            throw new IllegalArgumentException( "threshold must be positive." );
+        
+        this.parallelCullingThreshold = threshold;
+    }
+    
+    /**
+     * @return the minimum number of Shape3Ds a GroupNode must contain
+     * to be split into subtrees for the worker threads.
+     */
+    public final int getParallelCullingThreshold()
+    {
+        return ( parallelCullingThreshold );
+    }
+    
+    /**
+     * Sets the number of worker threads used for parallel culling.
+     * 
+     * @param numThreads
+     */
+    public final void setNumWorkerThreads( int numThreads )
+    {
+        if ( numThreads < 1 )
+            throw new IllegalArgumentException( "numThreads must be positive." );
+        
+        if ( numThreads != this.numWorkerThreads )
+        {
+            this.numWorkerThreads = numThreads;
+            
+            shutdownWorkers();
+        }
+    }
+    
+    /**
+     * @return the number of worker threads used for parallel culling.
+     */
+    public final int getNumWorkerThreads()
+    {
+        return ( numWorkerThreads );
+    }
+    
+    /**
+     * Stops the worker threads. They are restarted on demand.
+     */
+    public final void shutdownWorkers()
+    {
+        if ( executor != null )
+        {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+    
+    /**
+     * Sets the CullingCache, that keeps the culling results of unchanged subtrees between frames.
+     * While a cache is set, the scenegraph is culled serially, even if parallel culling is enabled.
+     * 
+     * @param cache the cache or null to disable caching
+     */
+    public final void setCullingCache( CullingCache cache )
+    {
+        if ( segment != null )
+            throw new IllegalStateException( "A worker culler cannot use a CullingCache." );
+        
+        this.cullingCache = cache;
+    }
+    
+    /**
+     * @return the CullingCache, that keeps the culling results of unchanged subtrees between frames.
+     */
+    public final CullingCache getCullingCache()
+    {
+        return ( cullingCache );
+    }
+    
+    /**
+     * Sets the OcclusionCuller, that tests the Shapes, which passed the frustum test,
+     * against the depth of its occluders. It is not used for picking and shadow passes.
+     * While an OcclusionCuller is set, the scenegraph is culled serially, even if parallel culling is enabled.
+     * 
+     * @param occlusionCuller the occlusion culler or null to disable occlusion culling
+     */
+    public final void setOcclusionCuller( OcclusionCuller occlusionCuller )
+    {
+        if ( segment != null )
+            throw new IllegalStateException( "A worker culler cannot use an OcclusionCuller." );
+        
+        this.occlusionCuller = occlusionCuller;
+    }
+    
+    /**
+     * @return the OcclusionCuller, that tests the Shapes, which passed the frustum test,
+     * against the depth of its occluders.
+     */
+    public final OcclusionCuller getOcclusionCuller()
+    {
+        return ( occlusionCuller );
+    }
+    
+    /**
+     * Sets the FrameTimeline, that receives the cull time of each RenderPass.
+     * For parallel culling a RenderPass' cull time is the time spent on it by the rendering thread
+     * plus the times of the worker threads for its segments.
+     * 
+     * @param timeline the timeline or null to not record any times
+     */
+    public final void setFrameTimeline( FrameTimeline timeline )
+    {
+        if ( segment != null )
+            throw new IllegalStateException( "A worker culler cannot use a FrameTimeline." );
+        
+        this.frameTimeline = timeline;
+    }
+    
+    /**
+     * @return the FrameTimeline, that receives the cull time of each RenderPass.
+     */
+    public final FrameTimeline getFrameTimeline()
+    {
+        return ( frameTimeline );
+    }
+    
+    /**
+     * @param renderPass
+     * 
+     * @return true, if the RenderPass' RenderBins have been reused from the last frame
+     *         and therefore don't need to be sorted again.
+     */
+    public final boolean isRenderPassReused( RenderPass renderPass )
+    {
+        return ( ( cullingCache != null ) && cullingCache.isBinsReused( renderPass ) );
+    }
+    
     /**
      * Further traverses all enabled subnodes of the Switch.
      */
-    private final void cullSwitchAtoms( Switch sw, Classification parentClassify, boolean cullingSuppressed, View view, Point3f viewPosition, Frustum frustum, RenderBinProvider binProvider, OpenGLCapabilities glCaps, long frameId, long nanoTime, long nanoStep, PickRay pickRay, boolean isShadowPass )
+    private final void cullSwitchAtoms( Switch sw, Classification parentClassify, int parentPlaneMask, boolean cullingSuppressed, View view, Point3f viewPosition, Frustum frustum, RenderBinProvider binProvider, OpenGLCapabilities glCaps, long frameId, long nanoTime, long nanoStep, PickRay pickRay, boolean isShadowPass )
     {
         if ( sw instanceof LODSwitch )
         {
@@ -92,7 +462,7 @@ public class FrustumCuller
                 final int numChildren = sw.numChildren();
                 for ( int i = bs.nextSetBit( 0 ); i >= 0 && i < numChildren; i = bs.nextSetBit( i + 1 ) )
                 {
-                    cullNodeAtoms( sw.getChild( i ), parentClassify, cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
+                    cullNodeAtoms( sw.getChild( i ), parentClassify, parentPlaneMask, cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
                 }
                 break;
             }
@@ -101,7 +471,7 @@ public class FrustumCuller
                 final int numChildren = sw.numChildren();
                 for ( int i = 0; i < numChildren; i++ )
                 {
-                    cullNodeAtoms( sw.getChild( i ), parentClassify, cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
+                    cullNodeAtoms( sw.getChild( i ), parentClassify, parentPlaneMask, cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
                 }
                 break;
             }
@@ -112,7 +482,7 @@ public class FrustumCuller
             default:
             {
                 final Node n = sw.getChild( childIdx );
-                cullNodeAtoms( n, parentClassify, cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
+                cullNodeAtoms( n, parentClassify, parentPlaneMask, cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
                 break;
             }
         }
@@ -122,17 +492,108 @@ public class FrustumCuller
      * Further traverses this group to find Shape3Ds.
      * Checks for state changes and cares for the state-stack.
      */
-    private final void cullGroupAtoms( GroupNode group, Classification parentClassify, boolean cullingSuppressed, View view, Point3f viewPosition, Frustum frustum, RenderBinProvider binProvider, OpenGLCapabilities glCaps, long frameId, long nanoTime, long nanoStep, PickRay pickRay, boolean isShadowPass )
+    private final void cullGroupAtoms( GroupNode group, Classification parentClassify, int parentPlaneMask, boolean cullingSuppressed, View view, Point3f viewPosition, Frustum frustum, RenderBinProvider binProvider, OpenGLCapabilities glCaps, long frameId, long nanoTime, long nanoStep, PickRay pickRay, boolean isShadowPass )
+    {
+        final int numChildren = group.numChildren();
+        
+        if ( ( numChildren >= BOUNDS_STREAMING_THRESHOLD ) && ( group.getWorldBoundsStore() != null ) && !cullingSuppressed && ( parentClassify != Classification.INSIDE ) && ( ( cullingCache == null ) || !cullingCache.isActive() ) )
+        {
+            final int firstSlot = _SG_PrivilegedAccess.getChildrenWorldBoundsSlot( group );
+            
+            if ( firstSlot >= 0 )
+            {
+                cullGroupAtomsStreamed( group, firstSlot, parentClassify, parentPlaneMask, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
+                
+                return;
+            }
+        }
+        
+        for ( int i = 0; i < numChildren; i++ )
+        {
+            cullNodeAtoms( group.getChild( i ), parentClassify, parentPlaneMask, cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
+        }
+    }
+    
+    /**
+     * Classifies all children of the group in a single pass over the {@link WorldBoundsStore}
+     * and only traverses the children, that are not outside.
+     */
+    private final void cullGroupAtomsStreamed( GroupNode group, int firstSlot, Classification parentClassify, int parentPlaneMask, View view, Point3f viewPosition, Frustum frustum, RenderBinProvider binProvider, OpenGLCapabilities glCaps, long frameId, long nanoTime, long nanoStep, PickRay pickRay, boolean isShadowPass )
     {
+        final WorldBoundsStore store = group.getWorldBoundsStore();
         final int numChildren = group.numChildren();
+        
+        final int base = preclassifiedMasksTop;
+        if ( base + numChildren > preclassifiedMasks.length )
+        {
+            final int[] newMasks = new int[ ( base + numChildren ) * 2 ];
+            System.arraycopy( preclassifiedMasks, 0, newMasks, 0, base );
+            preclassifiedMasks = newMasks;
+        }
+        preclassifiedMasksTop = base + numChildren;
+        
+        final int[] masks = preclassifiedMasks;
+        
+        // World bounds are evaluated lazily after transform changes. So the store may be outdated.
         for ( int i = 0; i < numChildren; i++ )
         {
-            cullNodeAtoms( group.getChild( i ), parentClassify, cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
+            _SG_PrivilegedAccess.validateWorldBounds( group.getChild( i ) );
+        }
+        
+        if ( pickRay != null )
+        {
+            final Point3f origin = pickRay.getOrigin();
+            final Vector3f direction = pickRay.getDirection();
+            
+            for ( int i = 0; i < numChildren; i++ )
+            {
+                masks[ base + i ] = store.mayIntersect( firstSlot + i, origin, direction ) ? NOT_PRECLASSIFIED : -1;
+            }
         }
+        else
+        {
+            // A parent without Classification doesn't tell anything about the planes.
+            final int planeMask = ( parentClassify == null ) ? PlaneMaskClassifier.ALL_PLANES : parentPlaneMask;
+            
+            // The Frustum may have changed since the last group.
+            WorldBoundsStore.loadPlanes( frustum, streamedPlanes );
+            store.classify( firstSlot, numChildren, streamedPlanes, planeMask, masks, base );
+        }
+        
+        for ( int i = 0; i < numChildren; i++ )
+        {
+            // The array may have been replaced by the recursion.
+            final int mask = preclassifiedMasks[ base + i ];
+            
+            if ( ( mask != NOT_PRECLASSIFIED ) && PlaneMaskClassifier.isOutside( mask ) )
+                continue;
+            
+            final Node child = group.getChild( i );
+            
+            if ( ( mask != NOT_PRECLASSIFIED ) && ( pickRay == null ) )
+            {
+                preclassifiedNode = child;
+                preclassifiedMask = mask;
+            }
+            
+            cullNodeAtoms( child, parentClassify, parentPlaneMask, false, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
+            
+            preclassifiedNode = null;
+        }
+        
+        preclassifiedMasksTop = base;
     }
     
     private final void handleGroupShadow( GroupNode group, Classification classify, RenderBinProvider binProvider, long frameId, boolean isShadowPass )
     {
+        if ( segment != null )
+        {
+            if ( ( shadowFactory != null ) && group.isOccluder() )
+                segment.deferShadow( group, classify );
+            
+            return;
+        }
+        
         final boolean b = ( shadowFactory.needsPerLightCulling() && isShadowPass ) || ( !shadowFactory.needsPerLightCulling() && !isShadowPass );
         
         // submit the occluder if there is one. Set the virtual world transform for the occluder
@@ -151,6 +612,24 @@ public class FrustumCuller
         }
     }
     
+    /**
+     * Adds the Node's BoundsAtom to the appropriate list.
+     * The atom is cached in the Node, so that no new one is created each frame.
+     * 
+     * @param node
+     */
+    private static void addBoundsAtom( Node node, Classification classify, RenderBinProvider binProvider, long frameId )
+    {
+        BoundsAtom atom = _SG_PrivilegedAccess.getBoundsAtom( node );
+        if ( atom == null )
+        {
+            atom = new BoundsAtom( node );
+            _SG_PrivilegedAccess.setBoundsAtom( node, atom );
+        }
+        
+        binProvider.addMainAtom( atom, classify, frameId );
+    }
+    
     /**
      * Adds the ShapeAtom the the appropriate list
      * 
@@ -170,14 +649,22 @@ public class FrustumCuller
             ( (AbstractLODShape3D)shape ).updateLOD( viewPosition );
         }
         
-        binProvider.addMainAtom( atom, classify, frameId );
+        final boolean occluded = ( pickRay == null ) && !isShadowPass && ( occlusionCuller != null ) && occlusionCuller.isActive() && occlusionCuller.isOccluded( shape );
+        
+        if ( !occluded )
+        {
+            binProvider.addMainAtom( atom, classify, frameId );
+        }
         
         if ( pickRay == null )
         {
             Appearance app = shape.getAppearance();
-            if ( ( app != null ) && ( !app.isStatic() || app.isStaticDirty() ) )
+            if ( !occluded && ( app != null ) && ( !app.isStatic() || app.isStaticDirty() ) )
             {
-                atom.updateStateUnits( app, glCaps );
+                if ( segment == null )
+                    atom.updateStateUnits( app, glCaps );
+                else
+                    segment.deferStateUnits( atom, app );
             }
             
             if ( ( shadowFactory != null ) && shadowFactory.isEnabled() )
@@ -185,102 +672,213 @@ public class FrustumCuller
                 // submit the occluder if there is one. Set the virtual world transform for the occluder
                 if ( shape.isOccluder() && ( ( shadowFactory.needsPerLightCulling() && isShadowPass ) || ( !shadowFactory.needsPerLightCulling() && !isShadowPass ) ) )
                 {
-                    final ShadowAtom shadowAtom = shadowFactory.getShadowAtom( shape );
-                    if ( shadowAtom != null )
-                        binProvider.addShadowAtom( shadowAtom, classify, frameId );
+                    if ( segment == null )
+                        addShapeShadowAtom( shape, classify, binProvider, frameId );
+                    else
+                        segment.deferShadow( shape, classify );
                 }
             }
         }
         
-        unculledShapesCount++;
+        if ( !occluded )
+        {
+            unculledShapesCount++;
+        }
+    }
+    
+    private final void addShapeShadowAtom( Shape3D shape, Classification classify, RenderBinProvider binProvider, long frameId )
+    {
+        final ShadowAtom shadowAtom = shadowFactory.getShadowAtom( shape );
+        if ( shadowAtom != null )
+            binProvider.addShadowAtom( shadowAtom, classify, frameId );
     }
     
     /**
-     * Checks the Node's actual type and invokes the appropriate method to further traverse the scenegraph.
+     * Checks, whether the given Node touches shared state while being culled
+     * and must therefore not be culled by a worker thread.
      */
-    @SuppressWarnings("unchecked")
-    public final void cullNodeAtoms( Node node, Classification parentClassify, boolean cullingSuppressed, View view, Point3f viewPosition, Frustum frustum, RenderBinProvider binProvider, OpenGLCapabilities glCaps, long frameId, long nanoTime, long nanoStep, PickRay pickRay, boolean isShadowPass )
+    private static final boolean needsSerialCulling( Node node )
     {
-        /*
-        if ( node.getName() == null )
-            X3DLog.debug( "FrustumCuller.cullNodeAtoms(): Checking node ", node.getClass().getName() );
-        else
-            X3DLog.debug( "FrustumCuller.cullNodeAtoms(): Checking node ", node.getClass().getName(), " \"", node.getName(), "\"" );
-        */
-		if (node == null) {
-			// this should never happen. this is a bug that I am hiding for now. -MFORD
-			X3DLog.error("node is null. Node should never be null");
-			return;
-		}
+        if ( node.isUpdatableNode() || ( node instanceof SpecialCullingNode ) )
+            return ( true );
+        
+        if ( node instanceof Shape3D )
+            return ( ( _SG_PrivilegedAccess.getAtom( (Shape3D)node ) == null ) || ( node instanceof AbstractLODShape3D ) );
+        
+        return ( false );
+    }
+    
+    /**
+     * Classifies the Node against the Frustum (or PickRay).
+     * Only the planes in the parent's plane-mask are tested, starting with the
+     * plane, that rejected the Node last time. The remaining plane-mask for the
+     * Node's children is stored in {@link #classifiedPlaneMask}.
+     * 
+     * @return the Node's Classification or {@link Classification#OUTSIDE},
+     *         if the Node is not to be processed at all.
+     */
+    private final Classification classifyNode( Node node, Classification parentClassify, int parentPlaneMask, boolean cullingSuppressed, Frustum frustum, PickRay pickRay )
+    {
+        classifiedPlaneMask = PlaneMaskClassifier.ALL_PLANES;
         
         // a non-renderable node or in pickmode a non-pickable node must not be processed
         if ( ( ( pickRay == null ) && !node.isRenderable() ) || ( ( pickRay != null ) && !node.isPickable() ) )
         {
-            return;
+            return ( Classification.OUTSIDE );
         }
         
-        Classification classify;
-        
         if ( node instanceof BranchGroup )
         {
-            classify = null;
+            return ( null );
         }
-        else if ( pickRay != null )
+        
+        // The WorldBoundsStore is only updated, when the lazily evaluated world bounds are validated.
+        _SG_PrivilegedAccess.validateWorldBounds( node );
+        
+        if ( pickRay != null )
         {
             // pick-ray intersection test replaces frustum culling here.
             // This results in more accurate preselection for GLSelect picking.
-            if ( !node.isIgnoreBounds() )
+            if ( !node.isIgnoreBounds() && ( node.getWorldBoundsStore() != null ) && !node.getWorldBoundsStore().mayIntersect( node.getWorldBoundsSlot(), pickRay.getOrigin(), pickRay.getDirection() ) )
             {
-                if ( node.getWorldBounds().intersects( pickRay ) )
-                {
-                    classify = null;
-                }
-                else
-                {
-                    classify = Classification.OUTSIDE;
-                    
-                    return;
-                }
+                return ( Classification.OUTSIDE );
             }
-            else
+            
+            if ( !node.isIgnoreBounds() && !node.getWorldBounds().intersects( pickRay ) )
             {
-                classify = null;
+                return ( Classification.OUTSIDE );
             }
+            
+            return ( null );
+        }
+        
+        if ( cullingSuppressed || node.isIgnoreBounds() )
+        {
+            return ( null );
+        }
+        
+        if ( parentClassify == Classification.INSIDE )
+        {
+            classifiedPlaneMask = 0;
+            
+            return ( parentClassify );
+        }
+        
+        // A parent without Classification doesn't tell anything about the planes.
+        final int planeMask = ( parentClassify == null ) ? PlaneMaskClassifier.ALL_PLANES : parentPlaneMask;
+        
+        final WorldBoundsStore store = node.getWorldBoundsStore();
+        
+        final int result;
+        if ( node == preclassifiedNode )
+        {
+            preclassifiedNode = null;
+            result = preclassifiedMask;
+        }
+        else if ( ( store != null ) && store.isValid( node.getWorldBoundsSlot() ) )
+        {
+            result = store.classify( node.getWorldBoundsSlot(), frustum, planeMask, _SG_PrivilegedAccess.getCullingPlaneHint( node ) );
+        }
+        else if ( node.getBoundsType() == BoundsType.SPHERE )
+        {
+            result = PlaneMaskClassifier.classifySphere( frustum, (Sphere)node.getWorldBounds(), planeMask, _SG_PrivilegedAccess.getCullingPlaneHint( node ) );
+        }
+        else if ( node.getBoundsType() == BoundsType.AABB )
+        {
+            result = PlaneMaskClassifier.classifyBox( frustum, (Box)node.getWorldBounds(), planeMask, _SG_PrivilegedAccess.getCullingPlaneHint( node ) );
+        }
+        else
+        {
+            return ( null );
         }
-        else if ( !cullingSuppressed && !node.isIgnoreBounds() )
+        
+        if ( PlaneMaskClassifier.isOutside( result ) )
+        {
+            _SG_PrivilegedAccess.setCullingPlaneHint( node, PlaneMaskClassifier.getRejectingPlane( result ) );
+            
+            return ( Classification.OUTSIDE );
+        }
+        
+        classifiedPlaneMask = result;
+        
+        return ( PlaneMaskClassifier.getClassification( result ) );
+    }
+    
+    /**
+     * Checks the Node's actual type and invokes the appropriate method to further traverse the scenegraph.
+     * 
+     * @param parentPlaneMask the frustum planes, the parent is not fully inside of (see {@link PlaneMaskClassifier})
+     */
+    public final void cullNodeAtoms( Node node, Classification parentClassify, int parentPlaneMask, boolean cullingSuppressed, View view, Point3f viewPosition, Frustum frustum, RenderBinProvider binProvider, OpenGLCapabilities glCaps, long frameId, long nanoTime, long nanoStep, PickRay pickRay, boolean isShadowPass )
+    {
+        if ( ( cullingCache == null ) || !cullingCache.isActive() || ( node == null ) || ( pickRay != null ) || isShadowPass )
         {
-            if ( parentClassify != Classification.INSIDE )
+            cullNodeAtoms_uncached( node, parentClassify, parentPlaneMask, cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
+            
+            return;
+        }
+        
+        if ( node.isUpdatableNode() )
+        {
+            cullingCache.markLiveNode();
+        }
+        else if ( node instanceof GroupNode )
+        {
+            final int numShapes = cullingCache.replay( (GroupNode)node, binProvider, glCaps );
+            
+            if ( numShapes >= 0 )
             {
-                if ( node.getBoundsType() == BoundsType.SPHERE )
-                {
-                    classify = Classifier.classifyFrustumSphere( frustum, (Sphere)node.getWorldBounds() );
-                }
-                else if ( node.getBoundsType() == BoundsType.AABB )
-                {
-                    classify = Classifier.classifyFrustumBox( frustum, (Box)node.getWorldBounds() );
-                }
-                else
-                {
-                    classify = null;
-                }
+                unculledShapesCount += numShapes;
                 
-                // Break traversal here. This is especially useful in case this is a Group.
-                if ( classify == Classification.OUTSIDE )
-                {
-                    //System.out.println( "culled: " + node + ", " + node.getWorldBounds() );
-                    return;
-                }
-            }
-            else
-            {
-                classify = parentClassify;
+                return;
             }
         }
+        
+        final boolean wasBypassing = cullingCache.enterNode( node );
+        final boolean recording = !node.isUpdatableNode() && ( node instanceof GroupNode ) && cullingCache.beginRecording( (GroupNode)node, binProvider );
+        final int unculledShapesBefore = unculledShapesCount;
+        
+        cullNodeAtoms_uncached( node, parentClassify, parentPlaneMask, cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
+        
+        if ( recording )
+        {
+            cullingCache.endRecording( (GroupNode)node, binProvider, unculledShapesCount - unculledShapesBefore );
+        }
+        
+        cullingCache.exitNode( wasBypassing );
+    }
+    
+    @SuppressWarnings("unchecked")
+    private final void cullNodeAtoms_uncached( Node node, Classification parentClassify, int parentPlaneMask, boolean cullingSuppressed, View view, Point3f viewPosition, Frustum frustum, RenderBinProvider binProvider, OpenGLCapabilities glCaps, long frameId, long nanoTime, long nanoStep, PickRay pickRay, boolean isShadowPass )
+    {
+        /*
+        if ( node.getName() == null )
+            X3DLog.debug( "FrustumCuller.cullNodeAtoms(): Checking node ", node.getClass().getName() );
         else
+            X3DLog.debug( "FrustumCuller.cullNodeAtoms(): Checking node ", node.getClass().getName(), " \"", node.getName(), "\"" );
+        */
+		if (node == null) {
+			// this should never happen. this is a bug that I am hiding for now. -MFORD
+			X3DLog.error("node is null. Node should never be null");
+			return;
+		}
+        
+        if ( ( segment != null ) && needsSerialCulling( node ) )
         {
-            classify = null;
+            segment.deferNode( node, parentClassify );
+            
+            return;
         }
         
+        final Classification classify = classifyNode( node, parentClassify, parentPlaneMask, cullingSuppressed, frustum, pickRay );
+        
+        // Break traversal here. This is especially useful in case this is a Group.
+        if ( classify == Classification.OUTSIDE )
+        {
+            return;
+        }
+        
+        final int planeMask = classifiedPlaneMask;
         
         if ( node.isUpdatableNode() )
         {
@@ -289,7 +887,7 @@ public class FrustumCuller
         
         if ( ( node.getShowBounds() ) && ( !( node instanceof Shape3D ) ) )
         {
-            binProvider.addMainAtom( new BoundsAtom( node ), classify, frameId );
+            addBoundsAtom( node, classify, binProvider, frameId );
         }
         
         
@@ -308,11 +906,11 @@ public class FrustumCuller
                 }
                 else if ( node instanceof Switch )
                 {
-                    cullSwitchAtoms( (Switch)node, classify, cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
+                    cullSwitchAtoms( (Switch)node, classify, planeMask, cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
                 }
                 else
                 {
-                    cullGroupAtoms( (GroupNode)node, classify, cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
+                    cullGroupAtoms( (GroupNode)node, classify, planeMask, cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
                 }
             }
         }
@@ -327,6 +925,14 @@ public class FrustumCuller
         }
     }
     
+    /**
+     * Checks the Node's actual type and invokes the appropriate method to further traverse the scenegraph.
+     */
+    public final void cullNodeAtoms( Node node, Classification parentClassify, boolean cullingSuppressed, View view, Point3f viewPosition, Frustum frustum, RenderBinProvider binProvider, OpenGLCapabilities glCaps, long frameId, long nanoTime, long nanoStep, PickRay pickRay, boolean isShadowPass )
+    {
+        cullNodeAtoms( node, parentClassify, PlaneMaskClassifier.ALL_PLANES, cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
+    }
+    
     /**
      * Collects all Atoms in this Group, if the give Node is a Group, otherwise only this Node's Atom.
      * 
@@ -359,6 +965,19 @@ public class FrustumCuller
      */
     private final int cullAtoms_normal( RenderPass renderPass, boolean initialize, GroupNode rootGroup, Canvas3D canvas, Point3f viewPosition, OpenGLCapabilities glCaps, long frameId, long nanoTime, long nanoStep )
     {
+        if ( isParallelCullingUsable() && ( rootGroup.getTotalNumShapes() >= parallelCullingThreshold ) )
+        {
+            activeSegments.clear();
+            
+            prepareParallelCulling( renderPass, rootGroup, canvas, viewPosition, glCaps, frameId, nanoTime, nanoStep );
+            runCullingSegments();
+            final int result = finishParallelCulling( renderPass, rootGroup, canvas, viewPosition, glCaps, frameId, nanoTime, nanoStep );
+            
+            activeSegments.clear();
+            
+            return ( result );
+        }
+        
         unculledShapesCount = 0;
         
         final View view = canvas.getView();
@@ -380,9 +999,31 @@ public class FrustumCuller
             Frustum frustum = view.getFrustum( viewport );
         //}
         
+        if ( occlusionCuller != null )
+        {
+            occlusionCuller.prepare( view, viewport );
+            
+            // The occlusion depends on the occluders' positions, which the cache doesn't track.
+            if ( ( cullingCache != null ) && occlusionCuller.isActive() )
+                cullingCache.clear( renderPass );
+        }
+        
+        if ( ( cullingCache != null ) && ( ( occlusionCuller == null ) || !occlusionCuller.isActive() ) && cullingCache.beginPass( renderPass, rootGroup, frustum, viewPosition, !renderPass.isFrustumCullingEnabled() ) )
+        {
+            _SG_PrivilegedAccess.set( canvas.getView(), false, (RenderPassConfig)null );
+            
+            return ( cullingCache.updateReusedPass( renderPass, rootGroup, glCaps ) );
+        }
+        
         renderPass.getRenderBinProvider().clearAllBins();
         
         cullAtoms( rootGroup, frustum, !renderPass.isFrustumCullingEnabled(), view, viewPosition, renderPass.getRenderBinProvider(), glCaps, frameId, nanoTime, nanoStep, null, false );
+        
+        if ( cullingCache != null )
+            cullingCache.endPass( rootGroup );
+        
+        if ( occlusionCuller != null )
+            occlusionCuller.finish();
 
         try
         {
@@ -391,39 +1032,377 @@ public class FrustumCuller
                 _SG_PrivilegedAccess.set( canvas.getView(), false, (RenderPassConfig)null );
             }
 
-            if ( ( shadowFactory != null ) && shadowFactory.isEnabled() && shadowFactory.needsPerLightCulling() && ( renderPass.getShadowCasterLight() != null ) )
+            cullPerLightShadowAtoms( renderPass, rootGroup, canvas, viewPosition, glCaps, frameId, nanoTime, nanoStep );
+        }
+        finally
+        {
+            renderPass.getRenderBinProvider().shrinkAllBins();
+        }
+        return ( unculledShapesCount );
+    }
+    
+    /**
+     * Culls the scenegraph a second time from the shadow caster light's view,
+     * if the ShadowFactory needs per light culling.
+     */
+    private final void cullPerLightShadowAtoms( RenderPass renderPass, GroupNode rootGroup, Canvas3D canvas, Point3f viewPosition, OpenGLCapabilities glCaps, long frameId, long nanoTime, long nanoStep )
+    {
+        if ( ( shadowFactory != null ) && shadowFactory.isEnabled() && shadowFactory.needsPerLightCulling() && ( renderPass.getShadowCasterLight() != null ) )
+        {
+            final View view = canvas.getView();
+            
+            final RenderPass viewPass = shadowFactory.setupRenderPass( view, renderPass.getShadowCasterLight(), 0f, null, frameId, true );
+            if ( viewPass != null )
             {
-                final RenderPass viewPass = shadowFactory.setupRenderPass( view, renderPass.getShadowCasterLight(), 0f, null, frameId, true );
-                if ( viewPass != null )
+                _SG_PrivilegedAccess.set( view, true, viewPass.getConfig() );
+                
+                final Sized2iRO viewport2;
+                if ( shadowFactory.getLightViewport() != null )
                 {
-                    _SG_PrivilegedAccess.set( view, true, viewPass.getConfig() );
-
-                    final Sized2iRO viewport2;
-                    if ( shadowFactory.getLightViewport() != null )
-                    {
-                        viewport2 = shadowFactory.getLightViewport();
-                    }
-                    else if ( ( renderPass.getConfig() != null ) && ( renderPass.getConfig().getViewport() != null ) )
-                    {
-                        viewport2 = renderPass.getConfig().getViewport();
-                    }
+                    viewport2 = shadowFactory.getLightViewport();
+                }
+                else if ( ( renderPass.getConfig() != null ) && ( renderPass.getConfig().getViewport() != null ) )
+                {
+                    viewport2 = renderPass.getConfig().getViewport();
+                }
+                else
+                {
+                    viewport2 = canvas;
+                }
+                
+                final Frustum frustum = view.getFrustum( viewport2 );
+                
+                cullAtoms( rootGroup, frustum, !renderPass.isFrustumCullingEnabled(), view, viewPosition, renderPass.getRenderBinProvider(), glCaps, frameId, nanoTime, nanoStep, null, true );
+                
+                _SG_PrivilegedAccess.set( view, false, (RenderPassConfig)null );
+            }
+        }
+    }
+    
+    private final CullingSegment newCullingSegment()
+    {
+        if ( segmentsPool.size() == activeSegments.size() )
+        {
+            segmentsPool.add( new CullingSegment() );
+        }
+        
+        final CullingSegment segment = segmentsPool.get( activeSegments.size() );
+        segment.reset();
+        segment.culler.shadowFactory = this.shadowFactory;
+        activeSegments.add( segment );
+        
+        return ( segment );
+    }
+    
+    /**
+     * @return the last active CullingSegment, if it belongs to the template's pass and group
+     *         and is not yet full, or a new one set up like the template.
+     */
+    private final CullingSegment getCullingSegment( CullingSegment template, int chunkSize )
+    {
+        final CullingSegment last = activeSegments.get( activeSegments.size() - 1 );
+        if ( ( last.renderPass == template.renderPass ) && ( last.rootGroup == template.rootGroup ) && ( last.numShapes < chunkSize ) )
+        {
+            return ( last );
+        }
+        
+        final CullingSegment segment = newCullingSegment();
+        segment.setup( template.renderPass, template.rootGroup, template.cullingSuppressed, template.frustum, template.viewPosition, template.glCaps, template.frameId, template.nanoTime, template.nanoStep );
+        
+        return ( segment );
+    }
+    
+    /**
+     * Descends into plain GroupNodes containing at least {@link #getParallelCullingThreshold()} Shape3Ds
+     * and distributes their smaller subtrees over CullingSegments in traversal order.
+     * The node-local work of the split GroupNodes is done right here on the rendering thread.
+     */
+    private final void splitNodeAtoms( Node node, Classification parentClassify, int parentPlaneMask, CullingSegment template, int chunkSize )
+    {
+        if ( !( node instanceof GroupNode ) || ( node instanceof SpecialCullingNode ) || ( node instanceof Switch ) || node.isUpdatableNode() || ( ( (GroupNode)node ).getTotalNumShapes() < parallelCullingThreshold ) )
+        {
+            // The worker must only validate the Nodes below this one. So the world transforms
+            // and bounds of this Node and its ancestors are validated here on the rendering thread.
+            _SG_PrivilegedAccess.validateWorldBounds( node );
+            
+            getCullingSegment( template, chunkSize ).addNode( node, parentClassify, parentPlaneMask );
+            
+            return;
+        }
+        
+        final Classification classify = classifyNode( node, parentClassify, parentPlaneMask, template.cullingSuppressed, template.frustum, null );
+        if ( classify == Classification.OUTSIDE )
+        {
+            return;
+        }
+        
+        final int planeMask = classifiedPlaneMask;
+        final GroupNode group = (GroupNode)node;
+        final RenderBinProvider binProvider = template.renderPass.getRenderBinProvider();
+        
+        if ( group.getShowBounds() )
+        {
+            addBoundsAtom( group, classify, binProvider, template.frameId );
+        }
+        
+        handleGroupShadow( group, classify, binProvider, template.frameId, false );
+        
+        final int numChildren = group.numChildren();
+        for ( int i = 0; i < numChildren; i++ )
+        {
+            splitNodeAtoms( group.getChild( i ), classify, planeMask, template, chunkSize );
+        }
+    }
+    
+    /**
+     * Clears the RenderPass' bins and splits the given group into CullingSegments.
+     */
+    private final void prepareParallelCulling( RenderPass renderPass, GroupNode rootGroup, Canvas3D canvas, Point3f viewPosition, OpenGLCapabilities glCaps, long frameId, long nanoTime, long nanoStep )
+    {
+        final View view = canvas.getView();
+        
+        _SG_PrivilegedAccess.set( view, true, renderPass.getConfig() );
+        
+        try
+        {
+            final Sized2iRO viewport;
+            if ( ( renderPass.getConfig() != null ) && ( renderPass.getConfig().getViewport() != null ) )
+            {
+                viewport = renderPass.getConfig().getViewport();
+            }
+            else
+            {
+                viewport = canvas;
+            }
+            
+            final Frustum frustum = view.getFrustum( viewport );
+            
+            renderPass.getRenderBinProvider().clearAllBins();
+            
+            final CullingSegment template = newCullingSegment();
+            template.setup( renderPass, rootGroup, !renderPass.isFrustumCullingEnabled(), frustum, viewPosition, glCaps, frameId, nanoTime, nanoStep );
+            
+            final int chunkSize = (int)Math.max( 64L, rootGroup.getTotalNumShapes() / ( numWorkerThreads * 4L ) );
+            
+            splitNodeAtoms( rootGroup, null, PlaneMaskClassifier.ALL_PLANES, template, chunkSize );
+        }
+        finally
+        {
+            _SG_PrivilegedAccess.set( view, false, (RenderPassConfig)null );
+        }
+    }
+    
+    /**
+     * Culls all active CullingSegments by the worker threads and waits for them to finish.
+     */
+    private final void runCullingSegments()
+    {
+        if ( activeSegments.size() == 0 )
+        {
+            return;
+        }
+        
+        if ( activeSegments.size() == 1 )
+        {
+            activeSegments.get( 0 ).call();
+            
+            return;
+        }
+        
+        if ( executor == null )
+        {
+            executor = Executors.newFixedThreadPool( numWorkerThreads, WORKER_THREAD_FACTORY );
+        }
+        
+        try
+        {
+            final List< Future< Object > > futures = executor.invokeAll( activeSegments );
+            
+            for ( int i = 0; i < futures.size(); i++ )
+            {
+                futures.get( i ).get();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            
+            throw new Error( e );
+        }
+        catch ( ExecutionException e )
+        {
+            // Rethrow the worker's exception as if the segment had been culled on this thread.
+            final Throwable cause = e.getCause();
+            
+            if ( cause instanceof RuntimeException )
+                throw (RuntimeException)cause;
+            
+            if ( cause instanceof Error )
+                throw (Error)cause;
+            
+            throw new Error( cause );
+        }
+    }
+    
+    private static final void mergeRenderBin( RenderBin source, RenderBin target )
+    {
+        final RenderBin.DynamicAtomArray sourceAtoms = source.getAtoms();
+        final RenderBin.DynamicAtomArray targetAtoms = target.getAtoms();
+        
+        // The atoms' Classifications have already been set by the worker.
+        for ( int i = 0; i < sourceAtoms.size(); i++ )
+        {
+            targetAtoms.append( sourceAtoms.get( i ) );
+        }
+    }
+    
+    /**
+     * Merges the CullingSegments of the given RenderPass and group into the RenderPass' RenderBinProvider
+     * in traversal order and processes everything, that the workers have deferred.
+     */
+    private final int finishParallelCulling( RenderPass renderPass, GroupNode rootGroup, Canvas3D canvas, Point3f viewPosition, OpenGLCapabilities glCaps, long frameId, long nanoTime, long nanoStep )
+    {
+        unculledShapesCount = 0;
+        segmentsCullTime = 0L;
+        
+        final View view = canvas.getView();
+        final RenderBinProvider binProvider = renderPass.getRenderBinProvider();
+        final boolean cullingSuppressed = !renderPass.isFrustumCullingEnabled();
+        
+        _SG_PrivilegedAccess.set( view, true, renderPass.getConfig() );
+        
+        try
+        {
+            final Sized2iRO viewport;
+            if ( ( renderPass.getConfig() != null ) && ( renderPass.getConfig().getViewport() != null ) )
+            {
+                viewport = renderPass.getConfig().getViewport();
+            }
+            else
+            {
+                viewport = canvas;
+            }
+            
+            final Frustum frustum = view.getFrustum( viewport );
+            
+            for ( int i = 0; i < activeSegments.size(); i++ )
+            {
+                final CullingSegment segment = activeSegments.get( i );
+                if ( ( segment.renderPass != renderPass ) || ( segment.rootGroup != rootGroup ) )
+                    continue;
+                
+                mergeRenderBin( segment.binProvider.getOpaqueBin(), binProvider.getOpaqueBin() );
+                mergeRenderBin( segment.binProvider.getTransparentBin(), binProvider.getTransparentBin() );
+                mergeRenderBin( segment.binProvider.getShadowsBin(), binProvider.getShadowsBin() );
+                
+                unculledShapesCount += segment.culler.unculledShapesCount;
+                segmentsCullTime += segment.cullTime;
+                
+                for ( int j = 0; j < segment.deferredAtoms.size(); j++ )
+                {
+                    segment.deferredAtoms.get( j ).updateStateUnits( segment.deferredApps.get( j ), glCaps );
+                }
+                
+                for ( int j = 0; j < segment.deferredShadows.size(); j++ )
+                {
+                    final Node node = segment.deferredShadows.get( j );
+                    
+                    if ( node instanceof Shape3D )
+                        addShapeShadowAtom( (Shape3D)node, segment.deferredShadowClassifies.get( j ), binProvider, frameId );
                     else
-                    {
-                        viewport2 = canvas;
-                    }
-
-                    frustum = view.getFrustum( viewport2 );
-
-                    cullAtoms( rootGroup, frustum, !renderPass.isFrustumCullingEnabled(), canvas.getView(), viewPosition, renderPass.getRenderBinProvider(), glCaps, frameId, nanoTime, nanoStep, null, true );
-
-                    _SG_PrivilegedAccess.set( view, false, (RenderPassConfig)null );
+                        handleGroupShadow( (GroupNode)node, segment.deferredShadowClassifies.get( j ), binProvider, frameId, false );
+                }
+                
+                for ( int j = 0; j < segment.deferredNodes.size(); j++ )
+                {
+                    cullNodeAtoms( segment.deferredNodes.get( j ), segment.deferredClassifies.get( j ), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, null, false );
                 }
+                
+                segment.reset();
             }
         }
         finally
         {
-            renderPass.getRenderBinProvider().shrinkAllBins();
+            _SG_PrivilegedAccess.set( view, false, (RenderPassConfig)null );
+        }
+        
+        try
+        {
+            cullPerLightShadowAtoms( renderPass, rootGroup, canvas, viewPosition, glCaps, frameId, nanoTime, nanoStep );
+        }
+        finally
+        {
+            binProvider.shrinkAllBins();
+        }
+        
+        return ( unculledShapesCount );
+    }
+    
+    /**
+     * Culls all RenderPasses in parallel. The RenderPasses are split
+     * into CullingSegments one after the other, then all segments are culled
+     * by the worker threads at once and finally merged pass by pass.
+     */
+    private final int cullAtoms_parallel( List< RenderPass > renderPasses, Canvas3D canvas, OpenGLCapabilities glCaps, long frameId, long nanoTime, long nanoStep )
+    {
+        activeSegments.clear();
+        
+        while ( passViewPositions.size() < renderPasses.size() )
+        {
+            passViewPositions.add( new Point3f() );
+        }
+        
+        if ( passCullTimes.length < renderPasses.size() )
+        {
+            passCullTimes = new long[ renderPasses.size() ];
+        }
+        
+        for ( int i = 0; i < renderPasses.size(); i++ )
+        {
+            final RenderPass pass = renderPasses.get( i );
+            final Point3f viewPosition = passViewPositions.get( i );
+            
+            // notify the RenderCallbacks, if any
+            pass.getRenderCallbackNotifier().notifyBeforeRenderPassIsProcessed( pass );
+            
+            if ( pass.getConfig().getViewTransform() == null )
+                canvas.getView().getPosition( viewPosition );
+            else
+                pass.getConfig().getViewTransform().getTranslation( viewPosition );
+            
+            final long t0 = System.nanoTime();
+            
+            if ( pass.getBranchGroup() != null )
+                prepareParallelCulling( pass, pass.getBranchGroup(), canvas, viewPosition, glCaps, frameId, nanoTime, nanoStep );
+            
+            passCullTimes[ i ] = System.nanoTime() - t0;
+        }
+        
+        runCullingSegments();
+        
+        int unculledShapesCount = 0;
+        
+        for ( int i = 0; i < renderPasses.size(); i++ )
+        {
+            final RenderPass pass = renderPasses.get( i );
+            
+            final long t0 = System.nanoTime();
+            
+            if ( pass.getBranchGroup() != null )
+            {
+                unculledShapesCount += finishParallelCulling( pass, pass.getBranchGroup(), canvas, passViewPositions.get( i ), glCaps, frameId, nanoTime, nanoStep );
+                passCullTimes[ i ] += segmentsCullTime;
+            }
+            
+            if ( frameTimeline != null )
+                frameTimeline.addRenderPassCullTime( passCullTimes[ i ] + System.nanoTime() - t0 );
+            
+            // notify the RenderCallbacks, if any
+            pass.getRenderCallbackNotifier().notifyAfterRenderPassIsProcessed( pass );
         }
+        
+        activeSegments.clear();
+        
         return ( unculledShapesCount );
     }
     
@@ -575,7 +1554,11 @@ public class FrustumCuller
         
         if ( pickRequest == null )
         {
-            if ( groupsLists == null )
+            if ( ( groupsLists == null ) && isParallelCullingUsable() )
+            {
+                return ( cullAtoms_parallel( renderPasses, canvas, glCaps, frameId, nanoTime, nanoStep ) );
+            }
+            else if ( groupsLists == null )
             {
                 for ( int i = 0; i < renderPasses.size(); i++ )
                 {
@@ -589,9 +1572,14 @@ public class FrustumCuller
                     else
                         pass.getConfig().getViewTransform().getTranslation( viewPosition2 );
                     
+                    final long t0 = System.nanoTime();
+                    
                     if ( pass.getBranchGroup() != null )
                         unculledShapesCount += cullAtoms_normal( pass, ( i == 0 ), pass.getBranchGroup(), canvas, viewPosition2, glCaps, frameId, nanoTime, nanoStep );
                     
+                    if ( frameTimeline != null )
+                        frameTimeline.addRenderPassCullTime( System.nanoTime() - t0 );
+                    
                     // notify the RenderCallbacks, if any
                     pass.getRenderCallbackNotifier().notifyAfterRenderPassIsProcessed( pass );
                 }
@@ -610,12 +1598,17 @@ public class FrustumCuller
                     else
                         pass.getConfig().getViewTransform().getTranslation( viewPosition2 );
                     
+                    final long t0 = System.nanoTime();
+                    
                     final List< GroupNode > groups = groupsLists.get( i );
                     for ( int j = 0; j < groups.size(); j++ )
                     {
                         unculledShapesCount += cullAtoms_normal( pass, ( i == 0 && j == 0 ), groups.get( j ), canvas, viewPosition2, glCaps, frameId, nanoTime, nanoStep );
                     }
                     
+                    if ( frameTimeline != null )
+                        frameTimeline.addRenderPassCullTime( System.nanoTime() - t0 );
+                    
                     // notify the RenderCallbacks, if any
                     pass.getRenderCallbackNotifier().notifyAfterRenderPassIsProcessed( pass );
                 }
@@ -629,10 +1622,25 @@ public class FrustumCuller
         return ( unculledShapesCount );
     }
     
+    private FrustumCuller( CullingSegment segment )
+    {
+        this.segment = segment;
+    }
+    
     /**
      * Creates a new renderer that also capable of collecting RenderAtoms.
      */
     public FrustumCuller()
     {
+        this.segment = null;
+        
+        try
+        {
+            this.parallelCullingEnabled = System.getProperty( "org.xith3d.render.parallelCulling", "false" ).equals( "true" );
+        }
+        catch ( SecurityException ignore )
+        {
+            // Ignore a SecurityException for Applet deployment
+        }
     }
 }
@@ -0,0 +1,547 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.render.preprocessing;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.IdentityHashMap;
+
+import org.openmali.spatial.TriangleContainer;
+import org.openmali.spatial.bodies.Box;
+import org.openmali.spatial.bodies.Sphere;
+import org.openmali.spatial.bounds.Bounds;
+import org.openmali.spatial.polygons.Triangle;
+import org.openmali.types.twodee.Sized2iRO;
+import org.openmali.vecmath2.Matrix4f;
+import org.openmali.vecmath2.Point3f;
+import org.openmali.vecmath2.Tuple2f;
+import org.openmali.vecmath2.Vertex3f;
+import org.xith3d.scenegraph.Geometry;
+import org.xith3d.scenegraph.Node;
+import org.xith3d.scenegraph.Shape3D;
+import org.xith3d.scenegraph.View;
+import org.xith3d.scenegraph.View.ProjectionPolicy;
+
+/**
+ * The OcclusionCuller rasterizes designated occluder Shapes into a low resolution
+ * software depth buffer and tests the screen space bounds of other Shapes against it.
+ * It is used by the {@link FrustumCuller} after the frustum test and before the
+ * RenderAtom is added to the RenderBins.<br>
+ * <br>
+ * The depth buffer holds the linear view space depth. Each level of the depth pyramid
+ * holds the maximum (farthest) depth of the four texels below it, so that a Shape,
+ * which is nearer than a texel's depth, can't be occluded by anything in that texel.<br>
+ * <br>
+ * Occluder triangles, which cross the near plane, are skipped. A Shape, whose bounds
+ * cross the near plane, is always visible. Custom projections and an off-center view
+ * are not supported and disable the test for the frame.
+ */
+public class OcclusionCuller
+{
+    private boolean enabled = true;
+    
+    private int width;
+    private int height;
+    
+    private float[][] depthLevels;
+    private int[] levelWidths;
+    private int[] levelHeights;
+    
+    private final ArrayList< Shape3D > occluders = new ArrayList< Shape3D >();
+    private final IdentityHashMap< Shape3D, Shape3D > occluderSet = new IdentityHashMap< Shape3D, Shape3D >();
+    
+    private boolean active = false;
+    private boolean perspective = true;
+    private float nearClip;
+    private float scaleX;
+    private float scaleY;
+    
+    private final Matrix4f worldToEye = new Matrix4f();
+    private final Matrix4f localToEye = new Matrix4f();
+    private final Triangle triangle = new Triangle();
+    private final Point3f vertex = new Point3f();
+    private final float[] triX = new float[ 3 ];
+    private final float[] triY = new float[ 3 ];
+    private final float[] triZ = new float[ 3 ];
+    
+    private int numRasterizedTriangles = 0;
+    private int numOccludedShapes = 0;
+    
+    public void setEnabled( boolean enabled )
+    {
+        this.enabled = enabled;
+    }
+    
+    public final boolean isEnabled()
+    {
+        return ( enabled );
+    }
+    
+    /**
+     * Sets the resolution of the finest depth buffer level.
+     * 
+     * @param width
+     * @param height
+     */
+    public void setResolution( int width, int height )
+    {
+        if ( ( width < 1 ) || ( height < 1 ) )
+            throw new IllegalArgumentException( "Illegal depth buffer resolution " + width + "x" + height );
+        
+        this.width = width;
+        this.height = height;
+        
+        int numLevels = 1;
+        for ( int w = width, h = height; ( w > 1 ) || ( h > 1 ); w = ( w + 1 ) / 2, h = ( h + 1 ) / 2 )
+        {
+            numLevels++;
+        }
+        
+        this.depthLevels = new float[ numLevels ][];
+        this.levelWidths = new int[ numLevels ];
+        this.levelHeights = new int[ numLevels ];
+        
+        for ( int i = 0, w = width, h = height; i < numLevels; i++, w = ( w + 1 ) / 2, h = ( h + 1 ) / 2 )
+        {
+            depthLevels[ i ] = new float[ w * h ];
+            levelWidths[ i ] = w;
+            levelHeights[ i ] = h;
+        }
+    }
+    
+    public final int getWidth()
+    {
+        return ( width );
+    }
+    
+    public final int getHeight()
+    {
+        return ( height );
+    }
+    
+    /**
+     * @return the number of depth pyramid levels.
+     */
+    public final int getNumLevels()
+    {
+        return ( depthLevels.length );
+    }
+    
+    /**
+     * @param level
+     * @param x
+     * @param y
+     * 
+     * @return the (maximum) depth of the given texel of the given pyramid level.
+     */
+    public final float getDepth( int level, int x, int y )
+    {
+        return ( depthLevels[ level ][ y * levelWidths[ level ] + x ] );
+    }
+    
+    /**
+     * Designates the given Shape as an occluder. Occluders should be large,
+     * closed and of low polygon count.
+     * 
+     * @param shape
+     */
+    public void addOccluder( Shape3D shape )
+    {
+        if ( occluderSet.put( shape, shape ) == null )
+            occluders.add( shape );
+    }
+    
+    public void removeOccluder( Shape3D shape )
+    {
+        if ( occluderSet.remove( shape ) != null )
+            occluders.remove( shape );
+    }
+    
+    public final boolean isOccluder( Shape3D shape )
+    {
+        return ( occluderSet.containsKey( shape ) );
+    }
+    
+    public final int getOccludersCount()
+    {
+        return ( occluders.size() );
+    }
+    
+    /**
+     * @return the number of occluder triangles rasterized for the last RenderPass.
+     */
+    public final int getNumRasterizedTriangles()
+    {
+        return ( numRasterizedTriangles );
+    }
+    
+    /**
+     * @return the number of Shapes found to be occluded in the last RenderPass.
+     */
+    public final int getNumOccludedShapes()
+    {
+        return ( numOccludedShapes );
+    }
+    
+    /**
+     * @return true, if the depth buffer has been prepared for the current RenderPass.
+     */
+    public final boolean isActive()
+    {
+        return ( active );
+    }
+    
+    /**
+     * Sets up the projection from the View and rasterizes all occluders into the depth buffer.
+     * 
+     * @param view
+     * @param viewport
+     */
+    public void prepare( View view, Sized2iRO viewport )
+    {
+        active = false;
+        numRasterizedTriangles = 0;
+        numOccludedShapes = 0;
+        
+        if ( !enabled || occluders.isEmpty() || ( view.getProjectionPolicy() == ProjectionPolicy.CUSTOM_PROJECTION ) )
+            return;
+        
+        final Tuple2f cov = view.getCenterOfView();
+        if ( ( cov != null ) && ( ( cov.getX() != 0f ) || ( cov.getY() != 0f ) ) )
+            return;
+        
+        final float aspect = (float)viewport.getWidth() / (float)viewport.getHeight();
+        
+        if ( view.getProjectionPolicy() == ProjectionPolicy.PARALLEL_PROJECTION )
+        {
+            perspective = false;
+            scaleX = 1f / view.getScreenScale();
+            scaleY = aspect / view.getScreenScale();
+        }
+        else
+        {
+            perspective = true;
+            scaleY = 1f / (float)Math.tan( view.getFieldOfView() );
+            scaleX = scaleY / aspect;
+        }
+        
+        nearClip = view.getFrontClipDistance();
+        
+        worldToEye.invert( view.getTransform().getMatrix4f() );
+        
+        Arrays.fill( depthLevels[ 0 ], Float.MAX_VALUE );
+        
+        triangle.setFeatures( Vertex3f.COORDINATES );
+        
+        for ( int i = 0; i < occluders.size(); i++ )
+        {
+            final Shape3D occluder = occluders.get( i );
+            
+            if ( occluder.isLive() && occluder.isRenderable() && occluder.isVisible() )
+            {
+                rasterizeOccluder( occluder );
+            }
+        }
+        
+        buildPyramid();
+        
+        active = true;
+    }
+    
+    /**
+     * Must be called after the RenderPass has been culled.
+     */
+    public void finish()
+    {
+        active = false;
+    }
+    
+    private final void rasterizeOccluder( Shape3D occluder )
+    {
+        final Geometry geom = occluder.getGeometry();
+        if ( !( geom instanceof TriangleContainer ) )
+            return;
+        
+        localToEye.mul( worldToEye, occluder.getWorldTransform().getMatrix4f() );
+        
+        final TriangleContainer tc = (TriangleContainer)geom;
+        final int numTriangles = tc.getTriangleCount();
+        
+        for ( int t = 0; t < numTriangles; t++ )
+        {
+            if ( !tc.getTriangle( t, triangle ) )
+                continue;
+            
+            if ( !projectVertex( triangle.getVertexCoordA(), 0 ) || !projectVertex( triangle.getVertexCoordB(), 1 ) || !projectVertex( triangle.getVertexCoordC(), 2 ) )
+                continue;
+            
+            rasterizeTriangle();
+            
+            numRasterizedTriangles++;
+        }
+    }
+    
+    /**
+     * Projects the given occluder vertex into depth buffer space.
+     * 
+     * @return false, if the vertex is in front of the near plane.
+     */
+    private final boolean projectVertex( Point3f coord, int index )
+    {
+        localToEye.transform( coord, vertex );
+        
+        final float depth = -vertex.getZ();
+        if ( depth < nearClip )
+            return ( false );
+        
+        final float w = perspective ? depth : 1f;
+        
+        triX[ index ] = ( vertex.getX() * scaleX / w * 0.5f + 0.5f ) * width;
+        triY[ index ] = ( 0.5f - vertex.getY() * scaleY / w * 0.5f ) * height;
+        // 1 / depth is linear in screen space for perspective projection, depth itself for parallel projection.
+        triZ[ index ] = perspective ? ( 1f / depth ) : depth;
+        
+        return ( true );
+    }
+    
+    private static final float edge( float ax, float ay, float bx, float by, float px, float py )
+    {
+        return ( ( bx - ax ) * ( py - ay ) - ( by - ay ) * ( px - ax ) );
+    }
+    
+    /**
+     * Rasterizes the projected triangle by testing the pixel centers of its bounding rectangle.
+     * Both windings are rasterized.
+     */
+    private final void rasterizeTriangle()
+    {
+        final float x0 = triX[ 0 ], y0 = triY[ 0 ];
+        final float x1 = triX[ 1 ], y1 = triY[ 1 ];
+        final float x2 = triX[ 2 ], y2 = triY[ 2 ];
+        
+        final float area = edge( x0, y0, x1, y1, x2, y2 );
+        if ( area == 0f )
+            return;
+        
+        final int minX = Math.max( 0, (int)Math.floor( Math.min( x0, Math.min( x1, x2 ) ) ) );
+        final int maxX = Math.min( width - 1, (int)Math.ceil( Math.max( x0, Math.max( x1, x2 ) ) ) );
+        final int minY = Math.max( 0, (int)Math.floor( Math.min( y0, Math.min( y1, y2 ) ) ) );
+        final int maxY = Math.min( height - 1, (int)Math.ceil( Math.max( y0, Math.max( y1, y2 ) ) ) );
+        
+        if ( ( minX > maxX ) || ( minY > maxY ) )
+            return;
+        
+        final float invArea = 1f / area;
+        final float[] depth = depthLevels[ 0 ];
+        
+        for ( int y = minY; y <= maxY; y++ )
+        {
+            final float py = y + 0.5f;
+            
+            for ( int x = minX; x <= maxX; x++ )
+            {
+                final float px = x + 0.5f;
+                
+                final float w0 = edge( x1, y1, x2, y2, px, py ) * invArea;
+                final float w1 = edge( x2, y2, x0, y0, px, py ) * invArea;
+                final float w2 = 1f - w0 - w1;
+                
+                if ( ( w0 < 0f ) || ( w1 < 0f ) || ( w2 < 0f ) )
+                    continue;
+                
+                final float z = w0 * triZ[ 0 ] + w1 * triZ[ 1 ] + w2 * triZ[ 2 ];
+                final float d = perspective ? ( 1f / z ) : z;
+                
+                final int i = y * width + x;
+                if ( d < depth[ i ] )
+                    depth[ i ] = d;
+            }
+        }
+    }
+    
+    private final void buildPyramid()
+    {
+        for ( int level = 1; level < depthLevels.length; level++ )
+        {
+            final float[] src = depthLevels[ level - 1 ];
+            final float[] dst = depthLevels[ level ];
+            final int srcW = levelWidths[ level - 1 ];
+            final int srcH = levelHeights[ level - 1 ];
+            final int dstW = levelWidths[ level ];
+            final int dstH = levelHeights[ level ];
+            
+            for ( int y = 0; y < dstH; y++ )
+            {
+                final int sy0 = y * 2;
+                final int sy1 = Math.min( sy0 + 1, srcH - 1 );
+                
+                for ( int x = 0; x < dstW; x++ )
+                {
+                    final int sx0 = x * 2;
+                    final int sx1 = Math.min( sx0 + 1, srcW - 1 );
+                    
+                    final float d = Math.max( Math.max( src[ sy0 * srcW + sx0 ], src[ sy0 * srcW + sx1 ] ), Math.max( src[ sy1 * srcW + sx0 ], src[ sy1 * srcW + sx1 ] ) );
+                    
+                    dst[ y * dstW + x ] = d;
+                }
+            }
+        }
+    }
+    
+    /**
+     * Tests the given Node's world bounds against the depth buffer.
+     * 
+     * @param node
+     * 
+     * @return true, if the Node is completely hidden behind the occluders.
+     */
+    public final boolean isOccluded( Node node )
+    {
+        if ( !active || node.isIgnoreBounds() || ( ( node instanceof Shape3D ) && occluderSet.containsKey( node ) ) )
+            return ( false );
+        
+        final Bounds bounds = node.getWorldBounds();
+        
+        final float lx, ly, lz, ux, uy, uz;
+        if ( bounds instanceof Box )
+        {
+            final Box box = (Box)bounds;
+            lx = box.getLowerX();
+            ly = box.getLowerY();
+            lz = box.getLowerZ();
+            ux = box.getUpperX();
+            uy = box.getUpperY();
+            uz = box.getUpperZ();
+        }
+        else if ( bounds instanceof Sphere )
+        {
+            final Sphere sphere = (Sphere)bounds;
+            final float r = sphere.getRadius();
+            lx = sphere.getCenterX() - r;
+            ly = sphere.getCenterY() - r;
+            lz = sphere.getCenterZ() - r;
+            ux = sphere.getCenterX() + r;
+            uy = sphere.getCenterY() + r;
+            uz = sphere.getCenterZ() + r;
+        }
+        else
+        {
+            return ( false );
+        }
+        
+        final Matrix4f m = worldToEye;
+        
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE;
+        float minDepth = Float.MAX_VALUE;
+        
+        for ( int i = 0; i < 8; i++ )
+        {
+            final float cx = ( ( i & 1 ) == 0 ) ? lx : ux;
+            final float cy = ( ( i & 2 ) == 0 ) ? ly : uy;
+            final float cz = ( ( i & 4 ) == 0 ) ? lz : uz;
+            
+            final float ex = m.m00() * cx + m.m01() * cy + m.m02() * cz + m.m03();
+            final float ey = m.m10() * cx + m.m11() * cy + m.m12() * cz + m.m13();
+            final float depth = -( m.m20() * cx + m.m21() * cy + m.m22() * cz + m.m23() );
+            
+            if ( depth < nearClip )
+                return ( false );
+            
+            final float w = perspective ? depth : 1f;
+            final float sx = ( ex * scaleX / w * 0.5f + 0.5f ) * width;
+            final float sy = ( 0.5f - ey * scaleY / w * 0.5f ) * height;
+            
+            minX = Math.min( minX, sx );
+            maxX = Math.max( maxX, sx );
+            minY = Math.min( minY, sy );
+            maxY = Math.max( maxY, sy );
+            minDepth = Math.min( minDepth, depth );
+        }
+        
+        int x0 = Math.max( 0, (int)Math.floor( minX ) );
+        int y0 = Math.max( 0, (int)Math.floor( minY ) );
+        int x1 = Math.min( width - 1, (int)Math.floor( maxX ) );
+        int y1 = Math.min( height - 1, (int)Math.floor( maxY ) );
+        
+        if ( ( x0 > x1 ) || ( y0 > y1 ) )
+            return ( false );
+        
+        // Choose the level, on which the rectangle covers at most 4x4 texels.
+        int level = 0;
+        while ( ( level < depthLevels.length - 1 ) && ( ( x1 - x0 > 3 ) || ( y1 - y0 > 3 ) ) )
+        {
+            x0 >>= 1;
+            y0 >>= 1;
+            x1 >>= 1;
+            y1 >>= 1;
+            level++;
+        }
+        
+        final float[] depth = depthLevels[ level ];
+        final int levelWidth = levelWidths[ level ];
+        
+        for ( int y = y0; y <= y1; y++ )
+        {
+            for ( int x = x0; x <= x1; x++ )
+            {
+                if ( minDepth <= depth[ y * levelWidth + x ] )
+                    return ( false );
+            }
+        }
+        
+        numOccludedShapes++;
+        
+        return ( true );
+    }
+    
+    /**
+     * Creates a new OcclusionCuller.
+     * 
+     * @param width the width of the finest depth buffer level
+     * @param height the height of the finest depth buffer level
+     */
+    public OcclusionCuller( int width, int height )
+    {
+        setResolution( width, height );
+    }
+    
+    /**
+     * Creates a new OcclusionCuller with a 256x128 depth buffer.
+     */
+    public OcclusionCuller()
+    {
+        this( 256, 128 );
+    }
+}
@@ -0,0 +1,209 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.render.preprocessing;
+
+import org.openmali.spatial.bodies.Box;
+import org.openmali.spatial.bodies.Classifier;
+import org.openmali.spatial.bodies.Frustum;
+import org.openmali.spatial.bodies.Plane;
+import org.openmali.spatial.bodies.Sphere;
+import org.openmali.spatial.bodies.Classifier.Classification;
+import org.openmali.spatial.bodies.Classifier.PlaneClassification;
+import org.openmali.vecmath2.Point3f;
+
+/**
+ * Classifies bounds against a {@link Frustum} coherently.<br>
+ * <br>
+ * A plane-mask holds one bit per frustum plane, which still needs to be tested.
+ * A parent, that is fully inside a plane, clears this plane's bit, so that its
+ * children don't test it again. Additionally the plane, that rejected a node
+ * the last time, can be tested first, since it is most likely to reject it again.<br>
+ * <br>
+ * The int result of the classify methods is the remaining plane-mask
+ * (0 means INSIDE) or a negative value, if the bounds are OUTSIDE.
+ * Use {@link #isOutside(int)}, {@link #getRejectingPlane(int)} and
+ * {@link #getClassification(int)} to interpret it.
+ */
+public final class PlaneMaskClassifier
+{
+    public static final int PLANE_NEAR = 0;
+    public static final int PLANE_LEFT = 1;
+    public static final int PLANE_RIGHT = 2;
+    public static final int PLANE_BOTTOM = 3;
+    public static final int PLANE_TOP = 4;
+    public static final int PLANE_FAR = 5;
+    
+    public static final int NUM_PLANES = 6;
+    
+    /**
+     * The plane-mask to start with, if nothing is known about the parent.
+     */
+    public static final int ALL_PLANES = ( 1 << NUM_PLANES ) - 1;
+    
+    /**
+     * @param frustum
+     * @param index one of the PLANE_* constants
+     * 
+     * @return the Frustum's plane with the given index.
+     */
+    public static final Plane getPlane( Frustum frustum, int index )
+    {
+        switch ( index )
+        {
+            case PLANE_NEAR:
+                return ( frustum.getPlaneNear() );
+            case PLANE_LEFT:
+                return ( frustum.getPlaneLeft() );
+            case PLANE_RIGHT:
+                return ( frustum.getPlaneRight() );
+            case PLANE_BOTTOM:
+                return ( frustum.getPlaneBottom() );
+            case PLANE_TOP:
+                return ( frustum.getPlaneTop() );
+            case PLANE_FAR:
+                return ( frustum.getPlaneFar() );
+        }
+        
+        throw new IllegalArgumentException( "Illegal plane index " + index );
+    }
+    
+    /**
+     * @param result the result of a classify method
+     * 
+     * @return whether the classified bounds are outside of the Frustum.
+     */
+    public static final boolean isOutside( int result )
+    {
+        return ( result < 0 );
+    }
+    
+    /**
+     * @param result the result of a classify method
+     * 
+     * @return the index of the plane, that rejected the classified bounds.
+     */
+    public static final int getRejectingPlane( int result )
+    {
+        return ( -result - 1 );
+    }
+    
+    /**
+     * @param result the result of a classify method
+     * 
+     * @return the Classification equivalent to the result.
+     */
+    public static final Classification getClassification( int result )
+    {
+        if ( result < 0 )
+            return ( Classification.OUTSIDE );
+        
+        if ( result == 0 )
+            return ( Classification.INSIDE );
+        
+        return ( Classification.SPANNING );
+    }
+    
+    /**
+     * Classifies the Sphere against the planes of the Frustum, that are set in the plane-mask.
+     * 
+     * @param frustum
+     * @param sphere
+     * @param planeMask the planes to test
+     * @param firstPlane the plane to test first (usually the last rejecting one)
+     * 
+     * @return the remaining plane-mask or a negative value, if the Sphere is outside.
+     */
+    public static final int classifySphere( Frustum frustum, Sphere sphere, int planeMask, int firstPlane )
+    {
+        final Point3f center = sphere.getCenter();
+        final float radius = sphere.getRadius();
+        
+        int result = planeMask;
+        
+        for ( int i = -1; i < NUM_PLANES; i++ )
+        {
+            final int plane = ( i < 0 ) ? firstPlane : i;
+            
+            if ( ( ( i >= 0 ) && ( plane == firstPlane ) ) || ( ( planeMask & ( 1 << plane ) ) == 0 ) )
+                continue;
+            
+            final float dist = getPlane( frustum, plane ).distanceTo( center );
+            
+            if ( dist <= -radius )
+                return ( -plane - 1 );
+            
+            if ( dist >= radius )
+                result &= ~( 1 << plane );
+        }
+        
+        return ( result );
+    }
+    
+    /**
+     * Classifies the Box against the planes of the Frustum, that are set in the plane-mask.
+     * 
+     * @param frustum
+     * @param box
+     * @param planeMask the planes to test
+     * @param firstPlane the plane to test first (usually the last rejecting one)
+     * 
+     * @return the remaining plane-mask or a negative value, if the Box is outside.
+     */
+    public static final int classifyBox( Frustum frustum, Box box, int planeMask, int firstPlane )
+    {
+        int result = planeMask;
+        
+        for ( int i = -1; i < NUM_PLANES; i++ )
+        {
+            final int plane = ( i < 0 ) ? firstPlane : i;
+            
+            if ( ( ( i >= 0 ) && ( plane == firstPlane ) ) || ( ( planeMask & ( 1 << plane ) ) == 0 ) )
+                continue;
+            
+            final PlaneClassification pc = Classifier.classifyPlaneBox( getPlane( frustum, plane ), box );
+            
+            if ( pc == PlaneClassification.BEHIND )
+                return ( -plane - 1 );
+            
+            if ( pc == PlaneClassification.IN_FRONT_OF )
+                result &= ~( 1 << plane );
+        }
+        
+        return ( result );
+    }
+    
+    private PlaneMaskClassifier()
+    {
+    }
+}
@@ -40,6 +40,7 @@ import org.openmali.vecmath2.Tuple3f;
 import org.xith3d.render.ClipperInfo;
 import org.xith3d.render.ScissorRect;
 import org.xith3d.render.states.StateSortable;
+import org.xith3d.render.preprocessing.sorting.StatePriorities;
 import org.xith3d.render.states.StateSortableMap;
 import org.xith3d.render.states.StateUnit;
 import org.xith3d.scenegraph.Node;
@@ -73,6 +74,13 @@ public abstract class RenderAtom< T extends Node > extends StateSortable
     
     private StateSortableMap map = new StateSortableMap();
     
+    private long sortKey = 0L;
+    private RenderBin sortedBin = null;
+    private long sortedBinGeneration = -1L;
+    private int sortedBinIndex = -1;
+    private long stateSortKey = 0L;
+    private StatePriorities stateSortKeyPriorities = null;
+    
     /**
      * Sets the values to compare by.
      * 
@@ -89,6 +97,72 @@ public abstract class RenderAtom< T extends Node > extends StateSortable
         this.customComparable = customComparable;
     }
     
+    /**
+     * Sets the packed key, the RenderAtom is radix sorted by.
+     * 
+     * @param sortKey
+     */
+    public final void setSortKey( long sortKey )
+    {
+        this.sortKey = sortKey;
+    }
+    
+    /**
+     * @return the packed key, the RenderAtom is radix sorted by.
+     */
+    public final long getSortKey()
+    {
+        return ( sortKey );
+    }
+    
+    /**
+     * Stores the index of this RenderAtom in the sorted order of a persistent RenderBin.
+     * 
+     * @param bin
+     * @param generation the RenderBin's sort generation
+     * @param index
+     */
+    public final void setSortedBinIndex( RenderBin bin, long generation, int index )
+    {
+        this.sortedBin = bin;
+        this.sortedBinGeneration = generation;
+        this.sortedBinIndex = index;
+    }
+    
+    /**
+     * @param bin
+     * @param generation the RenderBin's sort generation
+     * 
+     * @return the index of this RenderAtom in the given sorted order of the given RenderBin
+     *         or -1, if it hasn't been part of it.
+     */
+    public final int getSortedBinIndex( RenderBin bin, long generation )
+    {
+        if ( ( sortedBin != bin ) || ( sortedBinGeneration != generation ) )
+            return ( -1 );
+        
+        return ( sortedBinIndex );
+    }
+    
+    /**
+     * Returns the packed state part of the sort key for the given priorities.
+     * It is only recomputed, if the state units or the priorities have changed.
+     * 
+     * @param priorities
+     * 
+     * @return the packed state sort key.
+     */
+    public final long getStateSortKey( StatePriorities priorities )
+    {
+        if ( stateSortKeyPriorities != priorities )
+        {
+            this.stateSortKey = priorities.packStateKey( getStateType(), map );
+            this.stateSortKeyPriorities = priorities;
+        }
+        
+        return ( stateSortKey );
+    }
+    
     /**
      * @return the absolute (squared) distance to the current View.
      */
@@ -186,6 +260,8 @@ public abstract class RenderAtom< T extends Node > extends StateSortable
         map.map[ stateUnit.getStateType() ] = stateUnit;
         map.mapID[ stateUnit.getStateType() ] = stateUnit.getStateId();
         map.calcHash();
+        
+        stateSortKeyPriorities = null;
     }
     
     /**
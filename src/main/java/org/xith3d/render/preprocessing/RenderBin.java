@@ -143,6 +143,11 @@ public final class RenderBin
     private final DynamicAtomArray atoms;
     private int iterationPointer = 0;
     
+    private boolean persistent = false;
+    private long sortGeneration = 0L;
+    private int lastSortedSize = 0;
+    private int numMovedAtoms = 0;
+    
     public final RenderBinType getType()
     {
         return ( type );
@@ -153,6 +158,65 @@ public final class RenderBin
         return ( name );
     }
     
+    /**
+     * Enables or disables the persistent mode. In persistent mode the sorted order
+     * of the last frame is kept and only repaired by the sorter, which is much cheaper
+     * than a full sort, if the visible atoms and their order change only slightly.
+     * 
+     * @param persistent
+     */
+    public final void setPersistent( boolean persistent )
+    {
+        this.persistent = persistent;
+        this.sortGeneration++;
+        this.lastSortedSize = 0;
+    }
+    
+    /**
+     * @return whether this RenderBin keeps its sorted order between frames.
+     */
+    public final boolean isPersistent()
+    {
+        return ( persistent );
+    }
+    
+    /**
+     * @return the number of times this RenderBin has been sorted in persistent mode.
+     *         It identifies the sorted order, the atoms' bin positions belong to.
+     */
+    public final long getSortGeneration()
+    {
+        return ( sortGeneration );
+    }
+    
+    /**
+     * @return the number of atoms in this RenderBin after the last persistent sort.
+     */
+    public final int getLastSortedSize()
+    {
+        return ( lastSortedSize );
+    }
+    
+    /**
+     * Must be invoked by the sorter after each persistent sort.
+     * 
+     * @param numMovedAtoms the number of atoms, that have been inserted, removed or moved
+     */
+    public final void onPersistentSorted( int numMovedAtoms )
+    {
+        this.sortGeneration++;
+        this.lastSortedSize = atoms.size();
+        this.numMovedAtoms = numMovedAtoms;
+    }
+    
+    /**
+     * @return the number of atoms, that have been inserted, removed or moved by the last persistent sort.
+     */
+    public final int getNumMovedAtoms()
+    {
+        return ( numMovedAtoms );
+    }
+    
     /**
      * @return the DynamicAtomArray containing all RenderBuckets in this RenderBin.
      */
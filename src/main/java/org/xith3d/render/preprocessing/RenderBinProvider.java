@@ -35,6 +35,7 @@ package org.xith3d.render.preprocessing;
 
 import org.openmali.spatial.bodies.Classifier;
 
+import org.xith3d.render.FrameTimeline;
 import org.xith3d.render.preprocessing.sorting.RenderBinSorter;
 import org.xith3d.scenegraph.Node;
 import org.xith3d.scenegraph.Transform3D;
@@ -89,6 +90,37 @@ public class RenderBinProvider
         return ( transparentBin.size() + opaqueBin.size() );
     }
     
+    /**
+     * Enables or disables the persistent mode of all RenderBins.
+     * 
+     * @see RenderBin#setPersistent(boolean)
+     * 
+     * @param enabled
+     */
+    public void setPersistentBinsEnabled( boolean enabled )
+    {
+        opaqueBin.setPersistent( enabled );
+        transparentBin.setPersistent( enabled );
+        shadowsBin.setPersistent( enabled );
+    }
+    
+    /**
+     * @return whether the RenderBins keep their sorted order between frames.
+     */
+    public final boolean isPersistentBinsEnabled()
+    {
+        return ( opaqueBin.isPersistent() );
+    }
+    
+    /**
+     * @return the number of atoms, that have been inserted, removed or moved
+     *         by the last persistent sort of all RenderBins.
+     */
+    public final int getNumMovedAtoms()
+    {
+        return ( opaqueBin.getNumMovedAtoms() + transparentBin.getNumMovedAtoms() + shadowsBin.getNumMovedAtoms() );
+    }
+    
     /**
      * Adds an atom to be rendered. The atoms are sorted into multiple render
      * bins to facilitate multiple passes where necessary.
@@ -136,6 +168,30 @@ public class RenderBinProvider
         sortRenderBin( shadowsBin, opaqueSorter, transparentSorter, viewTransform );
     }
     
+    /**
+     * Sorts the RenderAtoms in the diverse RenderBins by policies
+     * and adds the time spent on each RenderBin to the given FrameTimeline.
+     * 
+     * @param opaqueSorter the sorting policy for opaque shapes
+     * @param transparentSorter the sorting policy for transparent shapes
+     * @param viewTransform the View's transform
+     * @param timeline
+     */
+    public final void sortAllAtoms( RenderBinSorter opaqueSorter, RenderBinSorter transparentSorter, Transform3D viewTransform, FrameTimeline timeline )
+    {
+        final long t0 = System.nanoTime();
+        sortRenderBin( opaqueBin, opaqueSorter, transparentSorter, viewTransform );
+        final long t1 = System.nanoTime();
+        sortRenderBin( transparentBin, opaqueSorter, transparentSorter, viewTransform );
+        final long t2 = System.nanoTime();
+        sortRenderBin( shadowsBin, opaqueSorter, transparentSorter, viewTransform );
+        final long t3 = System.nanoTime();
+        
+        timeline.addPhaseTime( FrameTimeline.Phase.SORT_OPAQUE, t1 - t0 );
+        timeline.addPhaseTime( FrameTimeline.Phase.SORT_TRANSPARENT, t2 - t1 );
+        timeline.addPhaseTime( FrameTimeline.Phase.SORT_SHADOWS, t3 - t2 );
+    }
+    
     public final void clearAllBins()
     {
         opaqueBin.clear();
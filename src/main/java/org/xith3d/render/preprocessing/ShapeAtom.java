@@ -406,6 +406,8 @@ public class ShapeAtom extends ShadowAtom
         
         numValidTUs = tuc;
         
+        _SG_PrivilegedAccess.markChangeHandled( app );
+        
         if ( app.isStatic() )
         {
             _SG_PrivilegedAccess.markStaticClean( app );
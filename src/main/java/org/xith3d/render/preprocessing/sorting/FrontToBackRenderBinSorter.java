@@ -42,7 +42,6 @@ import org.xith3d.render.preprocessing.RenderAtom;
 import org.xith3d.render.preprocessing.RenderBin;
 import org.xith3d.render.preprocessing.RenderBin.DynamicAtomArray;
 import org.xith3d.scenegraph.Transform3D;
-import org.xith3d.utility.comparator.Sorter;
 
 /**
  * This sorter sorts RenderAtoms front-to-back.
@@ -104,9 +103,12 @@ public class FrontToBackRenderBinSorter extends RenderBinSorter implements Compa
         
         final DynamicAtomArray atoms = renderBin.getAtoms();
         
-        //Arrays.sort( atoms.getRawArray(), 0, atoms.size(), this );
-        Sorter.quickSort( atoms.getRawArray(), 0, atoms.size() - 1, this );
-        //head = Sorter.mergeSort( head, this );
+        for ( int i = 0; i < atoms.size(); i++ )
+        {
+            atoms.get( i ).setSortKey( getDistanceKey( atoms.get( i ).getSquaredDistanceToView() ) );
+        }
+        
+        radixSort( renderBin );
     }
     
     public FrontToBackRenderBinSorter()
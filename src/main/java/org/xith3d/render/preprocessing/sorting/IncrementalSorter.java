@@ -0,0 +1,232 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.render.preprocessing.sorting;
+
+import org.xith3d.render.preprocessing.RenderAtom;
+import org.xith3d.render.preprocessing.RenderBin;
+import org.xith3d.render.preprocessing.RenderBin.DynamicAtomArray;
+
+/**
+ * Sorts the RenderAtoms of a persistent {@link RenderBin} by their packed sort keys
+ * starting from the sorted order of the last frame:
+ * <ol>
+ *   <li>The atoms, that have been in the bin last frame, are put back into their old order
+ *       (counting sort by their old index), removed atoms just drop out.</li>
+ *   <li>The atoms, that break this order (because their keys have changed), are taken out
+ *       in a single linear pass.</li>
+ *   <li>These and the newly visible atoms are radix sorted and merged in.</li>
+ * </ol>
+ * So the costs are linear in the bin size plus the radix sort of the changed atoms only.
+ * 
+ * @see RenderBin#setPersistent(boolean)
+ */
+public final class IncrementalSorter
+{
+    /**
+     * The maximum number of already ordered atoms to be displaced in favour of the current one.
+     */
+    private static final int MAX_POPPED = 8;
+    
+    private final RadixSorter radixSorter;
+    
+    private int[] counts = new int[ 0 ];
+    private int[] indices = new int[ 0 ];
+    private RenderAtom< ? >[] tmpAtoms = new RenderAtom< ? >[ 0 ];
+    
+    private final void ensureCapacity( int size, int lastSize )
+    {
+        if ( counts.length < lastSize + 1 )
+        {
+            counts = new int[ ( lastSize * 3 ) / 2 + 2 ];
+        }
+        
+        if ( tmpAtoms.length < size )
+        {
+            final int newCapacity = ( size * 3 ) / 2 + 1;
+            
+            indices = new int[ newCapacity ];
+            tmpAtoms = new RenderAtom< ? >[ newCapacity ];
+        }
+    }
+    
+    /**
+     * Compares two sort keys unsigned.
+     */
+    private static final boolean isGreater( long key1, long key2 )
+    {
+        return ( ( key1 ^ Long.MIN_VALUE ) > ( key2 ^ Long.MIN_VALUE ) );
+    }
+    
+    /**
+     * Sorts the given RenderBin by its atoms' sort keys, which must have been set before.
+     * 
+     * @param renderBin
+     */
+    public void sort( RenderBin renderBin )
+    {
+        final DynamicAtomArray atomsArray = renderBin.getAtoms();
+        final RenderAtom< ? >[] atoms = atomsArray.getRawArray();
+        final int size = atomsArray.size();
+        final int lastSize = renderBin.getLastSortedSize();
+        final long generation = renderBin.getSortGeneration();
+        
+        ensureCapacity( size, lastSize );
+        
+        /*
+         * Step 1: Restore the last frame's order of the atoms, that are still visible.
+         */
+        for ( int i = 0; i <= lastSize; i++ )
+            counts[ i ] = 0;
+        
+        int numKept = 0;
+        for ( int i = 0; i < size; i++ )
+        {
+            final int index = atoms[ i ].getSortedBinIndex( renderBin, generation );
+            indices[ i ] = index;
+            
+            if ( ( index >= 0 ) && ( index < lastSize ) )
+            {
+                counts[ index + 1 ]++;
+                numKept++;
+            }
+        }
+        
+        for ( int i = 0; i < lastSize; i++ )
+            counts[ i + 1 ] += counts[ i ];
+        
+        int numNew = 0;
+        for ( int i = 0; i < size; i++ )
+        {
+            final int index = indices[ i ];
+            
+            if ( ( index >= 0 ) && ( index < lastSize ) )
+                tmpAtoms[ counts[ index ]++ ] = atoms[ i ];
+            else
+                tmpAtoms[ numKept + numNew++ ] = atoms[ i ];
+        }
+        
+        System.arraycopy( tmpAtoms, 0, atoms, 0, size );
+        
+        /*
+         * Step 2: Extract the atoms, that break the kept atoms' order, and put them to the new ones.
+         */
+        int numInOrder = 0;
+        int numDisplaced = 0;
+        for ( int i = 0; i < numKept; i++ )
+        {
+            final RenderAtom< ? > atom = atoms[ i ];
+            final long key = atom.getSortKey();
+            
+            if ( ( numInOrder == 0 ) || !isGreater( atoms[ numInOrder - 1 ].getSortKey(), key ) )
+            {
+                atoms[ numInOrder++ ] = atom;
+                continue;
+            }
+            
+            /*
+             * Either this atom or up to MAX_POPPED of its predecessors are out of order.
+             * Displace the predecessors, if this keeps the atom in order.
+             */
+            final int minInOrder = Math.max( 0, numInOrder - MAX_POPPED );
+            int n = numInOrder - 1;
+            while ( ( n > minInOrder ) && isGreater( atoms[ n - 1 ].getSortKey(), key ) )
+                n--;
+            
+            if ( ( n == 0 ) || !isGreater( atoms[ n - 1 ].getSortKey(), key ) )
+            {
+                for ( int j = n; j < numInOrder; j++ )
+                    tmpAtoms[ numDisplaced++ ] = atoms[ j ];
+                
+                numInOrder = n;
+                atoms[ numInOrder++ ] = atom;
+            }
+            else
+            {
+                tmpAtoms[ numDisplaced++ ] = atom;
+            }
+        }
+        
+        // Move the new atoms behind the displaced ones.
+        System.arraycopy( atoms, numKept, atoms, numInOrder + numDisplaced, numNew );
+        System.arraycopy( tmpAtoms, 0, atoms, numInOrder, numDisplaced );
+        
+        final int numUnsorted = numDisplaced + numNew;
+        
+        /*
+         * Step 3: Sort the displaced and new atoms and merge them in.
+         */
+        if ( numUnsorted > 0 )
+        {
+            radixSorter.sort( atoms, numInOrder, numUnsorted );
+            
+            System.arraycopy( atoms, 0, tmpAtoms, 0, size );
+            
+            int i = 0, j = numInOrder, k = 0;
+            while ( ( i < numInOrder ) && ( j < size ) )
+            {
+                if ( isGreater( tmpAtoms[ i ].getSortKey(), tmpAtoms[ j ].getSortKey() ) )
+                    atoms[ k++ ] = tmpAtoms[ j++ ];
+                else
+                    atoms[ k++ ] = tmpAtoms[ i++ ];
+            }
+            while ( i < numInOrder )
+                atoms[ k++ ] = tmpAtoms[ i++ ];
+            while ( j < size )
+                atoms[ k++ ] = tmpAtoms[ j++ ];
+        }
+        
+        int numMoved = numUnsorted;
+        
+        // removed atoms
+        numMoved += Math.max( 0, lastSize - numKept );
+        
+        for ( int i = 0; i < size; i++ )
+        {
+            tmpAtoms[ i ] = null;
+            atoms[ i ].setSortedBinIndex( renderBin, generation + 1L, i );
+        }
+        
+        renderBin.onPersistentSorted( numMoved );
+    }
+    
+    public IncrementalSorter( RadixSorter radixSorter )
+    {
+        this.radixSorter = radixSorter;
+    }
+    
+    public IncrementalSorter()
+    {
+        this( new RadixSorter() );
+    }
+}
@@ -46,7 +46,10 @@ import org.xith3d.utility.comparator.Sorter;
 
 /**
  * This sorter sorts RenderAtoms by StateUnits (state-sorting)
- * with respect to the Node's {@link OrderedState}.
+ * with respect to the Node's {@link OrderedState}.<br>
+ * <br>
+ * Bins without any OrderedState are radix sorted by packed state keys
+ * like in {@link StateRenderBinSorter}, if all states fit into the keys.
  * 
  * @author YVG
  * @author Marvin Froehlich (aka Qudus)
@@ -171,9 +174,39 @@ public class OrderedStateRenderBinSorter extends RenderBinSorter implements Comp
     {
         final DynamicAtomArray atoms = renderBin.getAtoms();
         
-        // Arrays.sort( atoms.getRawArray(), 0, atoms.size(), this );
-        Sorter.quickSort( atoms.getRawArray(), 0, atoms.size() - 1, this );
-        // head = Sorter.mergeSort( head, this );
+        for ( int i = 0; i < atoms.size(); i++ )
+        {
+            if ( atoms.get( i ).getOrderedState() != null )
+            {
+                // OrderedStates can't be packed into a sort key.
+                
+                // Arrays.sort( atoms.getRawArray(), 0, atoms.size(), this );
+                Sorter.quickSort( atoms.getRawArray(), 0, atoms.size() - 1, this );
+                // head = Sorter.mergeSort( head, this );
+                
+                return;
+            }
+        }
+        
+        updateDistancesToView( renderBin, viewTransform );
+        
+        for ( int i = 0; i < atoms.size(); i++ )
+        {
+            final RenderAtom< ? > atom = atoms.get( i );
+            final long stateKey = atom.getStateSortKey( priorities );
+            
+            if ( stateKey == StatePriorities.OVERFLOW_KEY )
+            {
+                // The states can't be packed into a sort key.
+                Sorter.quickSort( atoms.getRawArray(), 0, atoms.size() - 1, this );
+                
+                return;
+            }
+            
+            atom.setSortKey( stateKey | getQuantizedDepthKey( atom.getSquaredDistanceToView() ) );
+        }
+        
+        radixSort( renderBin );
     }
     
     public OrderedStateRenderBinSorter( StatePriorities priorities )
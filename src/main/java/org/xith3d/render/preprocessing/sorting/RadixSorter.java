@@ -0,0 +1,168 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.render.preprocessing.sorting;
+
+import org.xith3d.render.preprocessing.RenderAtom;
+import org.xith3d.render.preprocessing.RenderBin.DynamicAtomArray;
+
+/**
+ * Sorts the RenderAtoms of a {@link DynamicAtomArray} by their packed sort keys
+ * (see {@link RenderAtom#getSortKey()}) using a stable LSD radix sort
+ * with 8 bit digits. Keys are compared unsigned.<br>
+ * <br>
+ * The scratch buffers are kept and only grow, so that sorting doesn't allocate
+ * anything once the largest bin has been sorted.
+ * 
+ * @see RenderBinSorter
+ */
+public final class RadixSorter
+{
+    private static final int RADIX_BITS = 8;
+    private static final int RADIX = 1 << RADIX_BITS;
+    private static final int NUM_PASSES = 64 / RADIX_BITS;
+    
+    private long[] keys = new long[ 0 ];
+    private long[] tmpKeys = new long[ 0 ];
+    private RenderAtom< ? >[] atoms1 = new RenderAtom< ? >[ 0 ];
+    private RenderAtom< ? >[] atoms2 = new RenderAtom< ? >[ 0 ];
+    private final int[] counts = new int[ RADIX ];
+    
+    private final void ensureCapacity( int size )
+    {
+        if ( keys.length < size )
+        {
+            final int newCapacity = ( size * 3 ) / 2 + 1;
+            
+            keys = new long[ newCapacity ];
+            tmpKeys = new long[ newCapacity ];
+            atoms1 = new RenderAtom< ? >[ newCapacity ];
+            atoms2 = new RenderAtom< ? >[ newCapacity ];
+        }
+    }
+    
+    /**
+     * Sorts the given atoms by their sort keys.
+     * 
+     * @param atoms
+     */
+    public void sort( DynamicAtomArray atoms )
+    {
+        sort( atoms.getRawArray(), 0, atoms.size() );
+    }
+    
+    /**
+     * Sorts the given range of atoms by their sort keys.
+     * 
+     * @param atoms
+     * @param offset
+     * @param size
+     */
+    public void sort( RenderAtom< ? >[] atoms, int offset, int size )
+    {
+        if ( size < 2 )
+            return;
+        
+        ensureCapacity( size );
+        
+        RenderAtom< ? >[] srcAtoms = atoms1;
+        RenderAtom< ? >[] dstAtoms = atoms2;
+        long[] srcKeys = keys;
+        long[] dstKeys = tmpKeys;
+        
+        long allBits = 0L;
+        long anyBits = 0L;
+        for ( int i = 0; i < size; i++ )
+        {
+            final RenderAtom< ? > atom = atoms[ offset + i ];
+            final long key = atom.getSortKey();
+            
+            srcAtoms[ i ] = atom;
+            srcKeys[ i ] = key;
+            allBits |= key;
+            anyBits |= ~key;
+        }
+        
+        // bits, that differ between at least two keys
+        final long varyingBits = allBits & anyBits;
+        
+        for ( int pass = 0; pass < NUM_PASSES; pass++ )
+        {
+            final int shift = pass * RADIX_BITS;
+            
+            // skip digits, that are equal for all keys
+            if ( ( ( varyingBits >>> shift ) & ( RADIX - 1 ) ) == 0L )
+                continue;
+            
+            for ( int i = 0; i < RADIX; i++ )
+                counts[ i ] = 0;
+            
+            for ( int i = 0; i < size; i++ )
+                counts[ (int)( ( srcKeys[ i ] >>> shift ) & ( RADIX - 1 ) ) ]++;
+            
+            int pos = 0;
+            for ( int i = 0; i < RADIX; i++ )
+            {
+                final int count = counts[ i ];
+                counts[ i ] = pos;
+                pos += count;
+            }
+            
+            for ( int i = 0; i < size; i++ )
+            {
+                final long key = srcKeys[ i ];
+                final int index = counts[ (int)( ( key >>> shift ) & ( RADIX - 1 ) ) ]++;
+                
+                dstKeys[ index ] = key;
+                dstAtoms[ index ] = srcAtoms[ i ];
+            }
+            
+            final long[] swapKeys = srcKeys;
+            srcKeys = dstKeys;
+            dstKeys = swapKeys;
+            
+            final RenderAtom< ? >[] swapAtoms = srcAtoms;
+            srcAtoms = dstAtoms;
+            dstAtoms = swapAtoms;
+        }
+        
+        System.arraycopy( srcAtoms, 0, atoms, offset, size );
+        
+        // don't hold references to atoms in the scratch buffers
+        for ( int i = 0; i < size; i++ )
+        {
+            atoms1[ i ] = null;
+            atoms2[ i ] = null;
+        }
+    }
+}
@@ -35,6 +35,7 @@ package org.xith3d.render.preprocessing.sorting;
 
 import org.openmali.vecmath2.Point3f;
 import org.xith3d.render.Renderer;
+import org.xith3d.render.preprocessing.RenderAtom;
 import org.xith3d.render.preprocessing.RenderBin;
 import org.xith3d.render.preprocessing.RenderBin.DynamicAtomArray;
 import org.xith3d.scenegraph.Transform3D;
@@ -53,6 +54,65 @@ public abstract class RenderBinSorter
     private Point3f viewPosition = new Point3f();
     private Point3f tmpPos = new Point3f();
     
+    private RadixSorter radixSorter = null;
+    private IncrementalSorter incrementalSorter = null;
+    
+    /**
+     * Converts a non-negative distance into a key, that sorts like the distance.
+     * 
+     * @param distance
+     * 
+     * @return the sort key for the given distance.
+     */
+    protected static final long getDistanceKey( float distance )
+    {
+        if ( !( distance > 0f ) )
+            return ( 0L );
+        
+        // The bits of a positive float sort like the float itself.
+        return ( Float.floatToIntBits( distance ) );
+    }
+    
+    /**
+     * Quantizes a non-negative distance into {@link StatePriorities#DEPTH_KEY_BITS} bits
+     * (logarithmically, by keeping the exponent and the highest mantissa bits).
+     * 
+     * @param distance
+     * 
+     * @return the quantized depth for the low bits of a state sort key.
+     */
+    protected static final long getQuantizedDepthKey( float distance )
+    {
+        return ( getDistanceKey( distance ) >>> ( 31 - StatePriorities.DEPTH_KEY_BITS ) );
+    }
+    
+    /**
+     * Sorts the RenderBin's atoms by their sort keys, which must have been set before.
+     * A persistent RenderBin is incrementally sorted starting from the last frame's order.
+     * 
+     * @see RenderAtom#setSortKey(long)
+     * @see RenderBin#setPersistent(boolean)
+     * 
+     * @param renderBin
+     */
+    protected final void radixSort( RenderBin renderBin )
+    {
+        if ( radixSorter == null )
+            radixSorter = new RadixSorter();
+        
+        if ( renderBin.isPersistent() )
+        {
+            if ( incrementalSorter == null )
+                incrementalSorter = new IncrementalSorter( radixSorter );
+            
+            incrementalSorter.sort( renderBin );
+        }
+        else
+        {
+            radixSorter.sort( renderBin.getAtoms() );
+        }
+    }
+    
     public void updateDistancesToView( RenderBin renderBin, Transform3D viewTransform )
     {
         if ( viewTransform != null )
@@ -33,6 +33,7 @@
  */
 package org.xith3d.render.preprocessing.sorting;
 
+import org.xith3d.render.states.StateSortableMap;
 import org.xith3d.render.states.StateTypes;
 
 /**
@@ -45,13 +46,83 @@ import org.xith3d.render.states.StateTypes;
  */
 public final class StatePriorities
 {
+    /**
+     * The number of low bits of a packed sort key, that hold the quantized depth.
+     */
+    public static final int DEPTH_KEY_BITS = 12;
+    
+    /**
+     * The number of bits of a packed sort key, that hold the state IDs of all priorities.
+     */
+    public static final int STATE_KEY_BITS = 48;
+    
+    private static final int ATOM_TYPE_KEY_BITS = 64 - STATE_KEY_BITS - DEPTH_KEY_BITS;
+    
+    /**
+     * Returned by {@link #packStateKey(int, StateSortableMap)}, if the atom's state type
+     * or one of its state IDs doesn't fit into its bits.
+     * A packed key never has any of the lowest {@link #DEPTH_KEY_BITS} bits set, so this value is unambiguous.
+     */
+    public static final long OVERFLOW_KEY = -1L;
+    
     public final int[] statePriorities;
     public final int numStatePriorities;
     
+    private final int numPackedPriorities;
+    private final int stateIdKeyBits;
+    
     private StatePriorities( int[] priorities, int numPriorities )
     {
         this.statePriorities = priorities;
         this.numStatePriorities = numPriorities;
+        
+        this.numPackedPriorities = Math.min( numPriorities, STATE_KEY_BITS );
+        this.stateIdKeyBits = ( numPackedPriorities == 0 ) ? 0 : ( STATE_KEY_BITS / numPackedPriorities );
+    }
+    
+    /**
+     * Packs the atom's state type and the IDs of the prioritized states into the high bits of a sort key,
+     * so that comparing the keys (unsigned) equals comparing the states by priority.
+     * A missing state is sorted before any present one.
+     * The lowest {@link #DEPTH_KEY_BITS} bits are left zero for the quantized depth.<br>
+     * <br>
+     * If the state type or an ID doesn't fit into the available bits, {@link #OVERFLOW_KEY} is returned.
+     * The atoms must then be sorted by comparing their states.
+     * 
+     * @param atomStateType
+     * @param ssMap
+     * 
+     * @return the packed state sort key or {@link #OVERFLOW_KEY}.
+     */
+    public final long packStateKey( int atomStateType, StateSortableMap ssMap )
+    {
+        final long maxId = ( 1L << stateIdKeyBits ) - 1L;
+        
+        if ( ( atomStateType < 0 ) || ( atomStateType >= ( 1 << ATOM_TYPE_KEY_BITS ) ) )
+            return ( OVERFLOW_KEY );
+        
+        long key = atomStateType;
+        
+        for ( int i = 0; i < numPackedPriorities; i++ )
+        {
+            final int prio = statePriorities[ i ];
+            
+            key <<= stateIdKeyBits;
+            
+            if ( ssMap.map[ prio ] != null )
+            {
+                final long id = ssMap.mapID[ prio ];
+                
+                if ( ( id < 0L ) || ( id >= maxId ) )
+                    return ( OVERFLOW_KEY );
+                
+                key |= id + 1L;
+            }
+        }
+        
+        key <<= STATE_KEY_BITS - numPackedPriorities * stateIdKeyBits;
+        
+        return ( key << DEPTH_KEY_BITS );
     }
     
     private StatePriorities( int... priorities )
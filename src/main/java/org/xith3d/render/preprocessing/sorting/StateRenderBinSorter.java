@@ -45,6 +45,11 @@ import org.xith3d.utility.comparator.Sorter;
 
 /**
  * This sorter sorts RenderAtoms by StateUnits (state-sorting).
+ * Atoms with equal states are sorted front-to-back.<br>
+ * <br>
+ * The states are packed into one sort key per atom
+ * (see {@link StatePriorities#packStateKey(int, StateSortableMap)}), which are radix sorted.
+ * If the states of any atom don't fit into a key, the bin is sorted by comparing the states.
  * 
  * @author YVG
  * @author Marvin Froehlich (aka Qudus)
@@ -124,11 +129,27 @@ public class StateRenderBinSorter extends RenderBinSorter implements Comparator<
     @Override
     public void sortRenderBin( RenderBin renderBin, Transform3D viewTransform )
     {
+        updateDistancesToView( renderBin, viewTransform );
+        
         final DynamicAtomArray atoms = renderBin.getAtoms();
         
-        // Arrays.sort( atoms.getRawArray(), 0, atoms.size(), this );
-        Sorter.quickSort( atoms.getRawArray(), 0, atoms.size() - 1, this );
-        // head = Sorter.mergeSort( head, this );
+        for ( int i = 0; i < atoms.size(); i++ )
+        {
+            final RenderAtom< ? > atom = atoms.get( i );
+            final long stateKey = atom.getStateSortKey( priorities );
+            
+            if ( stateKey == StatePriorities.OVERFLOW_KEY )
+            {
+                // The states can't be packed into a sort key.
+                Sorter.quickSort( atoms.getRawArray(), 0, atoms.size() - 1, this );
+                
+                return;
+            }
+            
+            atom.setSortKey( stateKey | getQuantizedDepthKey( atom.getSquaredDistanceToView() ) );
+        }
+        
+        radixSort( renderBin );
     }
     
     public StateRenderBinSorter( StatePriorities priorities )
@@ -890,6 +890,15 @@ public class Appearance extends NodeComponent
         }
     }
     
+    /**
+     * Resets only this Appearance's own changed flag, after its change has been handled,
+     * so that the next change is reported again. The components' flags are left untouched.
+     */
+    final void markChangeHandled()
+    {
+        super.setChanged( false );
+    }
+    
     public void setChangedRecursive( boolean changed )
     {
         super.setChanged( changed );
@@ -0,0 +1,800 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.scenegraph;
+
+import java.util.Arrays;
+
+import org.openmali.spatial.bodies.Box;
+import org.openmali.spatial.bodies.Frustum;
+import org.openmali.spatial.bodies.Plane;
+import org.openmali.spatial.bodies.Sphere;
+import org.openmali.spatial.bodies.Classifier.Classification;
+import org.openmali.spatial.bounds.BoundingBox;
+import org.openmali.spatial.bounds.Bounds;
+import org.openmali.vecmath2.Point3f;
+import org.openmali.vecmath2.Vector3f;
+import org.xith3d.picking.PickRay;
+import org.xith3d.render.OpenGLCapabilities;
+import org.xith3d.render.preprocessing.FrustumCuller;
+import org.xith3d.render.preprocessing.PlaneMaskClassifier;
+import org.xith3d.render.preprocessing.RenderBinProvider;
+
+/**
+ * A Group, that organizes its children in a linear bounding volume hierarchy.
+ * The hierarchy is built from the Morton codes of the children's world bounds
+ * and is stored in flat arrays in depth-first order.<br>
+ * <br>
+ * Moving children don't need any special treatment. When the bounds of a child change,
+ * the hierarchy is refit in O(n) before the next culling. It is only rebuilt,
+ * if the refit has degraded its quality by more than the rebuild-threshold
+ * or if children have been added or removed.<br>
+ * <br>
+ * Unlike {@link OcTreeGroup} and {@link QuadTreeGroup} a BVHGroup has no fixed
+ * extent and may be nested into TransformGroups.
+ */
+public class BVHGroup extends Group implements SpecialCullingNode< BVHGroup >
+{
+    public static final int DEFAULT_MAX_LEAF_SIZE = 4;
+    public static final float DEFAULT_REBUILD_THRESHOLD = 1.5f;
+    
+    private static final int MORTON_BITS = 10;
+    private static final float MORTON_SCALE = ( 1 << MORTON_BITS ) - 1;
+    
+    private int maxLeafSize = DEFAULT_MAX_LEAF_SIZE;
+    private float rebuildThreshold = DEFAULT_REBUILD_THRESHOLD;
+    
+    private boolean rebuildRequired = true;
+    private boolean refitRequired = false;
+    private long frameTransformStamp = -1L;
+    
+    /**
+     * The children in hierarchy order. Children, that ignore bounds, are not part of the hierarchy.
+     */
+    private Node[] leafNodes = new Node[ 0 ];
+    private int numLeafNodes = 0;
+    private Node[] unboundedNodes = new Node[ 0 ];
+    private int numUnboundedNodes = 0;
+    
+    /**
+     * The world-space AABBs of the leaf nodes (minX, minY, minZ, maxX, maxY, maxZ).
+     */
+    private float[] leafBounds = new float[ 0 ];
+    private long[] mortonCodes = new long[ 0 ];
+    private Node[] tmpNodes = new Node[ 0 ];
+    private float[] tmpBounds = new float[ 0 ];
+    
+    /*
+     * The hierarchy. The left child of an inner node always directly follows it.
+     * For inner nodes nodeCount is 0 and nodeFirst is the index of the right child.
+     * For leafs nodeFirst is the first leaf node and nodeCount the number of leaf nodes.
+     */
+    private float[] nodeBounds = new float[ 0 ];
+    private int[] nodeFirst = new int[ 0 ];
+    private int[] nodeCount = new int[ 0 ];
+    private int numNodes = 0;
+    
+    private float builtCost = 0f;
+    private float currentCost = 0f;
+    private int numRebuilds = 0;
+    private int numRefits = 0;
+    
+    private int[] stack = new int[ 64 ];
+    
+    /**
+     * The frustum plane, that rejected the last culled hierarchy node.
+     * Neighboring nodes are likely to be rejected by the same plane.
+     */
+    private int nodeCullingPlaneHint = 0;
+    
+    /**
+     * Sets the maximum number of children in one leaf of the hierarchy.
+     * 
+     * @param maxLeafSize
+     */
+    public void setMaxLeafSize( int maxLeafSize )
+    {
+        if ( maxLeafSize < 1 )
+            throw new IllegalArgumentException( "maxLeafSize must be at least 1." );
+        
+        this.maxLeafSize = maxLeafSize;
+        this.rebuildRequired = true;
+    }
+    
+    public final int getMaxLeafSize()
+    {
+        return ( maxLeafSize );
+    }
+    
+    /**
+     * Sets the factor, by which the refit hierarchy's cost (the summed surface areas
+     * of its nodes) may exceed the cost right after the last build,
+     * before it is rebuilt.
+     * 
+     * @param rebuildThreshold
+     */
+    public void setRebuildThreshold( float rebuildThreshold )
+    {
+        if ( rebuildThreshold < 1f )
+            throw new IllegalArgumentException( "rebuildThreshold must be at least 1." );
+        
+        this.rebuildThreshold = rebuildThreshold;
+    }
+    
+    public final float getRebuildThreshold()
+    {
+        return ( rebuildThreshold );
+    }
+    
+    /**
+     * @return the current cost of the hierarchy relative to the cost after the last build.
+     */
+    public final float getQualityRatio()
+    {
+        if ( builtCost <= 0f )
+            return ( 1f );
+        
+        return ( currentCost / builtCost );
+    }
+    
+    /**
+     * @return the number of full rebuilds of the hierarchy.
+     */
+    public final int getNumRebuilds()
+    {
+        return ( numRebuilds );
+    }
+    
+    /**
+     * @return the number of refits of the hierarchy.
+     */
+    public final int getNumRefits()
+    {
+        return ( numRefits );
+    }
+    
+    /**
+     * @return the number of nodes in the hierarchy.
+     */
+    public final int getNumBVHNodes()
+    {
+        return ( numNodes );
+    }
+    
+    /**
+     * Forces a full rebuild of the hierarchy before the next culling.
+     */
+    public final void invalidateHierarchy()
+    {
+        this.rebuildRequired = true;
+    }
+    
+    /**
+     * Tells this group, that the given child has moved or changed its size.
+     * This is usually detected automatically through the bounds update.
+     * 
+     * @param node
+     */
+    public final void updateNodePosition( Node node )
+    {
+        if ( node.getParent() != this )
+            throw new Error( "The given Node is not in this group." );
+        
+        this.refitRequired = true;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addChild( Node child, int index )
+    {
+        super.addChild( child, index );
+        
+        this.rebuildRequired = true;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Node removeChild( int index )
+    {
+        Node node = super.removeChild( index );
+        
+        this.rebuildRequired = true;
+        
+        return ( node );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeAllChildren()
+    {
+        super.removeAllChildren();
+        
+        this.rebuildRequired = true;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void setBoundsDirtyUpward()
+    {
+        super.setBoundsDirtyUpward();
+        
+        this.refitRequired = true;
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    protected void updateBoundsCheap( boolean onlyDirty, boolean childrenToo, boolean parentToo, boolean onlyWorld )
+    {
+        if ( !isIgnoreBounds() && ( boundsDirty || !onlyDirty ) )
+            this.refitRequired = true;
+        
+        super.updateBoundsCheap( onlyDirty, childrenToo, parentToo, onlyWorld );
+    }
+    
+    private static final void getAABB( Node node, float[] out, int offset )
+    {
+        final Bounds bounds = node.getWorldBounds();
+        
+        if ( bounds instanceof Box )
+        {
+            final Box box = (Box)bounds;
+            
+            out[ offset + 0 ] = box.getLowerX();
+            out[ offset + 1 ] = box.getLowerY();
+            out[ offset + 2 ] = box.getLowerZ();
+            out[ offset + 3 ] = box.getUpperX();
+            out[ offset + 4 ] = box.getUpperY();
+            out[ offset + 5 ] = box.getUpperZ();
+        }
+        else if ( bounds instanceof Sphere )
+        {
+            final Sphere sphere = (Sphere)bounds;
+            final Point3f center = sphere.getCenter();
+            final float radius = sphere.getRadius();
+            
+            out[ offset + 0 ] = center.getX() - radius;
+            out[ offset + 1 ] = center.getY() - radius;
+            out[ offset + 2 ] = center.getZ() - radius;
+            out[ offset + 3 ] = center.getX() + radius;
+            out[ offset + 4 ] = center.getY() + radius;
+            out[ offset + 5 ] = center.getZ() + radius;
+        }
+        else
+        {
+            final float radius = bounds.getMaxCenterDistance();
+            
+            out[ offset + 0 ] = bounds.getCenterX() - radius;
+            out[ offset + 1 ] = bounds.getCenterY() - radius;
+            out[ offset + 2 ] = bounds.getCenterZ() - radius;
+            out[ offset + 3 ] = bounds.getCenterX() + radius;
+            out[ offset + 4 ] = bounds.getCenterY() + radius;
+            out[ offset + 5 ] = bounds.getCenterZ() + radius;
+        }
+    }
+    
+    /**
+     * Spreads the lower 10 bits of v so that there are two zero bits between each.
+     */
+    private static final int expandBits( int v )
+    {
+        v = ( v * 0x00010001 ) & 0xFF0000FF;
+        v = ( v * 0x00000101 ) & 0x0F00F00F;
+        v = ( v * 0x00000011 ) & 0xC30C30C3;
+        v = ( v * 0x00000005 ) & 0x49249249;
+        
+        return ( v );
+    }
+    
+    private static final int quantize( float v, float min, float invExtent )
+    {
+        final int q = (int)( ( v - min ) * invExtent * MORTON_SCALE );
+        
+        return ( Math.max( 0, Math.min( (int)MORTON_SCALE, q ) ) );
+    }
+    
+    private static final float getSurfaceArea( float[] b, int offset )
+    {
+        final float dx = b[ offset + 3 ] - b[ offset + 0 ];
+        final float dy = b[ offset + 4 ] - b[ offset + 1 ];
+        final float dz = b[ offset + 5 ] - b[ offset + 2 ];
+        
+        return ( 2f * ( dx * dy + dy * dz + dz * dx ) );
+    }
+    
+    private final void combineNodeBounds( int node, int child )
+    {
+        final int o = node * 6;
+        final int c = child * 6;
+        
+        nodeBounds[ o + 0 ] = Math.min( nodeBounds[ o + 0 ], nodeBounds[ c + 0 ] );
+        nodeBounds[ o + 1 ] = Math.min( nodeBounds[ o + 1 ], nodeBounds[ c + 1 ] );
+        nodeBounds[ o + 2 ] = Math.min( nodeBounds[ o + 2 ], nodeBounds[ c + 2 ] );
+        nodeBounds[ o + 3 ] = Math.max( nodeBounds[ o + 3 ], nodeBounds[ c + 3 ] );
+        nodeBounds[ o + 4 ] = Math.max( nodeBounds[ o + 4 ], nodeBounds[ c + 4 ] );
+        nodeBounds[ o + 5 ] = Math.max( nodeBounds[ o + 5 ], nodeBounds[ c + 5 ] );
+    }
+    
+    private final void computeLeafBounds( int node )
+    {
+        final int o = node * 6;
+        final int first = nodeFirst[ node ];
+        final int last = first + nodeCount[ node ];
+        
+        System.arraycopy( leafBounds, first * 6, nodeBounds, o, 6 );
+        
+        for ( int i = first + 1; i < last; i++ )
+        {
+            final int l = i * 6;
+            
+            nodeBounds[ o + 0 ] = Math.min( nodeBounds[ o + 0 ], leafBounds[ l + 0 ] );
+            nodeBounds[ o + 1 ] = Math.min( nodeBounds[ o + 1 ], leafBounds[ l + 1 ] );
+            nodeBounds[ o + 2 ] = Math.min( nodeBounds[ o + 2 ], leafBounds[ l + 2 ] );
+            nodeBounds[ o + 3 ] = Math.max( nodeBounds[ o + 3 ], leafBounds[ l + 3 ] );
+            nodeBounds[ o + 4 ] = Math.max( nodeBounds[ o + 4 ], leafBounds[ l + 4 ] );
+            nodeBounds[ o + 5 ] = Math.max( nodeBounds[ o + 5 ], leafBounds[ l + 5 ] );
+        }
+    }
+    
+    /**
+     * Computes all node bounds bottom-up and returns the hierarchy's cost.
+     * Since the children always have greater indices than their parent,
+     * a single backward pass is sufficient.
+     */
+    private final float computeNodeBounds()
+    {
+        float cost = 0f;
+        
+        for ( int node = numNodes - 1; node >= 0; node-- )
+        {
+            if ( nodeCount[ node ] > 0 )
+            {
+                computeLeafBounds( node );
+            }
+            else
+            {
+                System.arraycopy( nodeBounds, ( node + 1 ) * 6, nodeBounds, node * 6, 6 );
+                combineNodeBounds( node, nodeFirst[ node ] );
+            }
+            
+            cost += getSurfaceArea( nodeBounds, node * 6 );
+        }
+        
+        if ( numNodes > 0 )
+        {
+            final float rootArea = getSurfaceArea( nodeBounds, 0 );
+            
+            if ( rootArea > 0f )
+                cost /= rootArea;
+        }
+        
+        return ( cost );
+    }
+    
+    /**
+     * Finds the index, after which the Morton code's highest differing bit changes.
+     */
+    private final int findSplit( int first, int last )
+    {
+        final long firstCode = mortonCodes[ first ] >>> 32;
+        final long lastCode = mortonCodes[ last ] >>> 32;
+        
+        if ( firstCode == lastCode )
+            return ( ( first + last ) >>> 1 );
+        
+        final int commonPrefix = Long.numberOfLeadingZeros( firstCode ^ lastCode );
+        
+        // binary search for the last code sharing more than the common prefix with the first one
+        int split = first;
+        int step = last - first;
+        
+        do
+        {
+            step = ( step + 1 ) >>> 1;
+            final int newSplit = split + step;
+            
+            if ( newSplit < last )
+            {
+                final long splitCode = mortonCodes[ newSplit ] >>> 32;
+                
+                if ( Long.numberOfLeadingZeros( firstCode ^ splitCode ) > commonPrefix )
+                    split = newSplit;
+            }
+        }
+        while ( step > 1 );
+        
+        return ( split );
+    }
+    
+    private final void buildNode( int node, int first, int last )
+    {
+        if ( last - first + 1 <= maxLeafSize )
+        {
+            nodeFirst[ node ] = first;
+            nodeCount[ node ] = last - first + 1;
+            
+            numNodes = Math.max( numNodes, node + 1 );
+            
+            return;
+        }
+        
+        final int split = findSplit( first, last );
+        
+        nodeCount[ node ] = 0;
+        
+        final int left = node + 1;
+        buildNode( left, first, split );
+        
+        final int right = numNodes;
+        nodeFirst[ node ] = right;
+        buildNode( right, split + 1, last );
+    }
+    
+    /**
+     * Rebuilds the whole hierarchy from the children's current world bounds.
+     */
+    public void rebuild()
+    {
+        final int n = numChildren();
+        
+        numLeafNodes = 0;
+        numUnboundedNodes = 0;
+        
+        if ( leafNodes.length < n )
+        {
+            leafNodes = new Node[ n ];
+            unboundedNodes = new Node[ n ];
+            leafBounds = new float[ n * 6 ];
+            tmpNodes = new Node[ n ];
+            tmpBounds = new float[ n * 6 ];
+            mortonCodes = new long[ n ];
+            nodeBounds = new float[ n * 2 * 6 ];
+            nodeFirst = new int[ n * 2 ];
+            nodeCount = new int[ n * 2 ];
+        }
+        
+        float minX = Float.MAX_VALUE, minY = Float.MAX_VALUE, minZ = Float.MAX_VALUE;
+        float maxX = -Float.MAX_VALUE, maxY = -Float.MAX_VALUE, maxZ = -Float.MAX_VALUE;
+        
+        for ( int i = 0; i < n; i++ )
+        {
+            final Node child = getChild( i );
+            
+            if ( child.isIgnoreBounds() )
+            {
+                unboundedNodes[ numUnboundedNodes++ ] = child;
+                continue;
+            }
+            
+            final int o = numLeafNodes * 6;
+            getAABB( child, leafBounds, o );
+            leafNodes[ numLeafNodes++ ] = child;
+            
+            final float cx = ( leafBounds[ o + 0 ] + leafBounds[ o + 3 ] ) * 0.5f;
+            final float cy = ( leafBounds[ o + 1 ] + leafBounds[ o + 4 ] ) * 0.5f;
+            final float cz = ( leafBounds[ o + 2 ] + leafBounds[ o + 5 ] ) * 0.5f;
+            
+            minX = Math.min( minX, cx ); maxX = Math.max( maxX, cx );
+            minY = Math.min( minY, cy ); maxY = Math.max( maxY, cy );
+            minZ = Math.min( minZ, cz ); maxZ = Math.max( maxZ, cz );
+        }
+        
+        for ( int i = numUnboundedNodes; i < unboundedNodes.length; i++ )
+            unboundedNodes[ i ] = null;
+        
+        numNodes = 0;
+        
+        if ( numLeafNodes > 0 )
+        {
+            final float invX = ( maxX > minX ) ? 1f / ( maxX - minX ) : 0f;
+            final float invY = ( maxY > minY ) ? 1f / ( maxY - minY ) : 0f;
+            final float invZ = ( maxZ > minZ ) ? 1f / ( maxZ - minZ ) : 0f;
+            
+            for ( int i = 0; i < numLeafNodes; i++ )
+            {
+                final int o = i * 6;
+                final int qx = quantize( ( leafBounds[ o + 0 ] + leafBounds[ o + 3 ] ) * 0.5f, minX, invX );
+                final int qy = quantize( ( leafBounds[ o + 1 ] + leafBounds[ o + 4 ] ) * 0.5f, minY, invY );
+                final int qz = quantize( ( leafBounds[ o + 2 ] + leafBounds[ o + 5 ] ) * 0.5f, minZ, invZ );
+                
+                final int code = ( expandBits( qx ) << 2 ) | ( expandBits( qy ) << 1 ) | expandBits( qz );
+                
+                mortonCodes[ i ] = ( (long)code << 32 ) | i;
+            }
+            
+            Arrays.sort( mortonCodes, 0, numLeafNodes );
+            
+            // bring the leaf nodes and bounds into Morton order
+            for ( int i = 0; i < numLeafNodes; i++ )
+            {
+                final int index = (int)( mortonCodes[ i ] & 0xFFFFFFFFL );
+                
+                tmpNodes[ i ] = leafNodes[ index ];
+                System.arraycopy( leafBounds, index * 6, tmpBounds, i * 6, 6 );
+            }
+            System.arraycopy( tmpNodes, 0, leafNodes, 0, numLeafNodes );
+            System.arraycopy( tmpBounds, 0, leafBounds, 0, numLeafNodes * 6 );
+            Arrays.fill( tmpNodes, 0, numLeafNodes, null );
+            
+            buildNode( 0, 0, numLeafNodes - 1 );
+        }
+        
+        for ( int i = numLeafNodes; i < leafNodes.length; i++ )
+            leafNodes[ i ] = null;
+        
+        builtCost = computeNodeBounds();
+        currentCost = builtCost;
+        
+        rebuildRequired = false;
+        refitRequired = false;
+        numRebuilds++;
+    }
+    
+    /**
+     * Updates all node bounds of the hierarchy from the children's current world bounds
+     * without changing its structure. If the hierarchy's quality has degraded
+     * by more than the rebuild-threshold, it is rebuilt.
+     */
+    public void refit()
+    {
+        if ( rebuildRequired )
+        {
+            rebuild();
+            
+            return;
+        }
+        
+        for ( int i = 0; i < numLeafNodes; i++ )
+        {
+            getAABB( leafNodes[ i ], leafBounds, i * 6 );
+        }
+        
+        currentCost = computeNodeBounds();
+        
+        refitRequired = false;
+        numRefits++;
+        
+        if ( currentCost > builtCost * rebuildThreshold )
+            rebuild();
+    }
+    
+    private final boolean intersectsRay( int node, Point3f origin, Vector3f direction )
+    {
+        final int o = node * 6;
+        
+        float tMin = 0f;
+        float tMax = Float.MAX_VALUE;
+        
+        for ( int axis = 0; axis < 3; axis++ )
+        {
+            final float orig = origin.getValue( axis );
+            final float dir = direction.getValue( axis );
+            final float lower = nodeBounds[ o + axis ];
+            final float upper = nodeBounds[ o + 3 + axis ];
+            
+            if ( dir == 0f )
+            {
+                if ( ( orig < lower ) || ( orig > upper ) )
+                    return ( false );
+            }
+            else
+            {
+                float t1 = ( lower - orig ) / dir;
+                float t2 = ( upper - orig ) / dir;
+                
+                if ( t1 > t2 )
+                {
+                    final float t = t1;
+                    t1 = t2;
+                    t2 = t;
+                }
+                
+                tMin = Math.max( tMin, t1 );
+                tMax = Math.min( tMax, t2 );
+                
+                if ( tMin > tMax )
+                    return ( false );
+            }
+        }
+        
+        return ( true );
+    }
+    
+    /**
+     * Classifies a hierarchy node against the frustum planes, that are set in the plane-mask.
+     * 
+     * @return the remaining plane-mask or a negative value, if the node is outside.
+     */
+    private final int classifyNode( int node, Frustum frustum, int planeMask )
+    {
+        final int o = node * 6;
+        
+        final float cx = ( nodeBounds[ o + 0 ] + nodeBounds[ o + 3 ] ) * 0.5f;
+        final float cy = ( nodeBounds[ o + 1 ] + nodeBounds[ o + 4 ] ) * 0.5f;
+        final float cz = ( nodeBounds[ o + 2 ] + nodeBounds[ o + 5 ] ) * 0.5f;
+        final float ex = ( nodeBounds[ o + 3 ] - nodeBounds[ o + 0 ] ) * 0.5f;
+        final float ey = ( nodeBounds[ o + 4 ] - nodeBounds[ o + 1 ] ) * 0.5f;
+        final float ez = ( nodeBounds[ o + 5 ] - nodeBounds[ o + 2 ] ) * 0.5f;
+        
+        int result = planeMask;
+        
+        for ( int i = -1; i < PlaneMaskClassifier.NUM_PLANES; i++ )
+        {
+            final int plane = ( i < 0 ) ? nodeCullingPlaneHint : i;
+            
+            if ( ( ( i >= 0 ) && ( plane == nodeCullingPlaneHint ) ) || ( ( planeMask & ( 1 << plane ) ) == 0 ) )
+                continue;
+            
+            final Plane p = PlaneMaskClassifier.getPlane( frustum, plane );
+            
+            final float dist = p.distanceTo( cx, cy, cz );
+            final float radius = ex * Math.abs( p.getNX() ) + ey * Math.abs( p.getNY() ) + ez * Math.abs( p.getNZ() );
+            
+            if ( dist <= -radius )
+            {
+                nodeCullingPlaneHint = plane;
+                
+                return ( -plane - 1 );
+            }
+            
+            if ( dist >= radius )
+                result &= ~( 1 << plane );
+        }
+        
+        return ( result );
+    }
+    
+    private final void cullBVHAtoms( boolean cullingSuppressed, View view, Point3f viewPosition, Frustum frustum, RenderBinProvider binProvider, OpenGLCapabilities glCaps, long frameId, long nanoTime, long nanoStep, PickRay pickRay, boolean isShadowPass, FrustumCuller frustumCuller )
+    {
+        // The children's world bounds also change with the (lazily evaluated) world transform above this group.
+        final long frameStamp = getFrameTransformStamp();
+        
+        if ( rebuildRequired )
+            rebuild();
+        else if ( refitRequired || ( frameStamp != frameTransformStamp ) )
+            refit();
+        
+        frameTransformStamp = frameStamp;
+        
+        for ( int i = 0; i < numUnboundedNodes; i++ )
+        {
+            frustumCuller.cullNodeAtoms( unboundedNodes[ i ], null, PlaneMaskClassifier.ALL_PLANES, cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
+        }
+        
+        if ( numNodes == 0 )
+            return;
+        
+        // The stack holds pairs of node index and plane-mask.
+        int sp = 0;
+        stack[ sp++ ] = 0;
+        stack[ sp++ ] = cullingSuppressed ? 0 : PlaneMaskClassifier.ALL_PLANES;
+        
+        while ( sp > 0 )
+        {
+            int planeMask = stack[ --sp ];
+            final int node = stack[ --sp ];
+            
+            if ( pickRay != null )
+            {
+                if ( !intersectsRay( node, pickRay.getOrigin(), pickRay.getDirection() ) )
+                    continue;
+            }
+            else if ( planeMask != 0 )
+            {
+                planeMask = classifyNode( node, frustum, planeMask );
+                
+                if ( PlaneMaskClassifier.isOutside( planeMask ) )
+                    continue;
+            }
+            
+            if ( nodeCount[ node ] > 0 )
+            {
+                final Classification classify = ( pickRay != null ) ? null : PlaneMaskClassifier.getClassification( planeMask );
+                final boolean cs = cullingSuppressed || ( ( pickRay == null ) && ( planeMask == 0 ) );
+                
+                final int first = nodeFirst[ node ];
+                final int last = first + nodeCount[ node ];
+                
+                for ( int i = first; i < last; i++ )
+                {
+                    frustumCuller.cullNodeAtoms( leafNodes[ i ], classify, planeMask, cs, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
+                }
+            }
+            else
+            {
+                if ( sp + 4 > stack.length )
+                {
+                    final int[] newStack = new int[ stack.length * 2 ];
+                    System.arraycopy( stack, 0, newStack, 0, sp );
+                    stack = newStack;
+                }
+                
+                // push the right child first to traverse the left one first
+                stack[ sp++ ] = nodeFirst[ node ];
+                stack[ sp++ ] = planeMask;
+                stack[ sp++ ] = node + 1;
+                stack[ sp++ ] = planeMask;
+            }
+        }
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void cullSpecialNode( BVHGroup node, boolean cullingSuppressed, View view, Point3f viewPosition, Frustum frustum, RenderBinProvider binProvider, OpenGLCapabilities glCaps, long frameId, long nanoTime, long nanoStep, PickRay pickRay, boolean isShadowPass, FrustumCuller frustumCuller )
+    {
+        node.cullBVHAtoms( cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void dump()
+    {
+        System.out.println( "BVHGroup: " + numLeafNodes + " leaf nodes, " + numUnboundedNodes + " unbounded nodes, " + numNodes + " hierarchy nodes, quality ratio " + getQualityRatio() );
+    }
+    
+    /**
+     * Creates a new BVHGroup.
+     * 
+     * @param maxLeafSize the maximum number of children in one leaf of the hierarchy
+     * @param rebuildThreshold the factor, by which a refit may degrade the hierarchy's quality before it is rebuilt
+     */
+    public BVHGroup( int maxLeafSize, float rebuildThreshold )
+    {
+        super();
+        
+        setMaxLeafSize( maxLeafSize );
+        setRebuildThreshold( rebuildThreshold );
+        
+        this.setBounds( new BoundingBox() );
+    }
+    
+    /**
+     * Creates a new BVHGroup.
+     */
+    public BVHGroup()
+    {
+        this( DEFAULT_MAX_LEAF_SIZE, DEFAULT_REBUILD_THRESHOLD );
+    }
+}
@@ -48,6 +48,8 @@ public class BranchGroup extends GroupNode
 {
     private SceneGraph sceneGraph = null;
     
+    private WorldBoundsStore ownedWorldBoundsStore = null;
+    
     private boolean refillForeced = true;
     private boolean recullForeced = true;
     
@@ -105,6 +107,38 @@ public class BranchGroup extends GroupNode
         return ( recullForeced );
     }
     
+    /**
+     * Enables or disables the {@link WorldBoundsStore} for this BranchGroup.
+     * If enabled, the world bounds of all Nodes in this BranchGroup are additionally
+     * kept in flat arrays, that the culler can stream over.
+     * 
+     * @param enabled
+     */
+    public void setWorldBoundsStoreEnabled( boolean enabled )
+    {
+        if ( enabled == ( ownedWorldBoundsStore != null ) )
+            return;
+        
+        if ( enabled )
+        {
+            ownedWorldBoundsStore = new WorldBoundsStore();
+            ownedWorldBoundsStore.register( this );
+        }
+        else
+        {
+            ownedWorldBoundsStore.unregister( this );
+            ownedWorldBoundsStore = null;
+        }
+    }
+    
+    /**
+     * @return whether this BranchGroup owns a {@link WorldBoundsStore}.
+     */
+    public final boolean isWorldBoundsStoreEnabled()
+    {
+        return ( ownedWorldBoundsStore != null );
+    }
+    
     final void setSceneGraph( SceneGraph sceneGraph )
     {
         this.sceneGraph = sceneGraph;
@@ -33,8 +33,10 @@
  */
 package org.xith3d.scenegraph;
 
+import org.jagatoo.util.nio.BufferUtils;
 import org.xith3d.render.CanvasPeer;
 import org.xith3d.render.SceneGraphOpenGLReferences;
+import org.xith3d.utility.memory.SlabAllocator;
 
 /**
  * GeomDataInterface implementation for NIO buffers
@@ -44,6 +46,16 @@ import org.xith3d.render.SceneGraphOpenGLReferences;
 public class GeomNioFloatData extends org.jagatoo.geometry.GeomNioFloatData
 {
     private int framesSinceDirty = 0;
+    private long lastUpdateFrame = -1L;
+    private int updatedFramesInRow = 0;
+    
+    private boolean rangedChange = false;
+    private boolean wholeDirty = true;
+    private int dirtyRangeStart = Integer.MAX_VALUE;
+    private int dirtyRangeEnd = 0;
+    
+    private SlabAllocator slabAllocator = null;
+    private SlabAllocator.Allocation allocation = null;
     
     private final SceneGraphOpenGLReferences openGLReferences = new SceneGraphOpenGLReferences( 1 );
     
@@ -64,6 +76,65 @@ public class GeomNioFloatData extends org.jagatoo.geometry.GeomNioFloatData
         
         if ( dirty && !wasDirty )
             framesSinceDirty = 0;
+        
+        if ( dirty )
+        {
+            // a change through a setter, that doesn't report its range, invalidates everything
+            if ( !rangedChange )
+                wholeDirty = true;
+        }
+        else
+        {
+            wholeDirty = false;
+            dirtyRangeStart = Integer.MAX_VALUE;
+            dirtyRangeEnd = 0;
+        }
+    }
+    
+    /**
+     * Must be invoked before the data is modified by a setter, that reports
+     * the modified range through {@link #endRangedChange(int, int)}.
+     */
+    final void beginRangedChange()
+    {
+        rangedChange = true;
+    }
+    
+    /**
+     * Adds the range of the elements, modified since {@link #beginRangedChange()},
+     * to the dirty range.
+     * 
+     * @param firstElement
+     * @param numElements
+     */
+    final void endRangedChange( int firstElement, int numElements )
+    {
+        rangedChange = false;
+        
+        if ( firstElement < dirtyRangeStart )
+            dirtyRangeStart = firstElement;
+        
+        if ( firstElement + numElements > dirtyRangeEnd )
+            dirtyRangeEnd = firstElement + numElements;
+    }
+    
+    /**
+     * @return the first dirty element or -1, if the whole data needs to be uploaded.
+     */
+    final int getDirtyRangeStart()
+    {
+        if ( wholeDirty || ( dirtyRangeEnd <= dirtyRangeStart ) )
+            return ( -1 );
+        
+        return ( dirtyRangeStart );
+    }
+    
+    /**
+     * @return the index after the last dirty element.
+     */
+    final int getDirtyRangeEnd()
+    {
+        return ( dirtyRangeEnd );
     }
     
     /**
@@ -85,6 +156,53 @@ public class GeomNioFloatData extends org.jagatoo.geometry.GeomNioFloatData
         return ( framesSinceDirty );
     }
     
+    /**
+     * Called by the renderer, when the dirty data is uploaded.
+     * 
+     * @param frame the renderer's running frame counter
+     * 
+     * @return the number of consecutive frames, in which the data has been updated
+     */
+    final int markUpdated( long frame )
+    {
+        if ( frame != lastUpdateFrame )
+        {
+            if ( frame == lastUpdateFrame + 1L )
+                updatedFramesInRow++;
+            else
+                updatedFramesInRow = 1;
+            
+            lastUpdateFrame = frame;
+        }
+        
+        return ( updatedFramesInRow );
+    }
+    
+    /**
+     * @return true, if the buffer is sub-allocated from a {@link SlabAllocator}.
+     */
+    public final boolean isSlabAllocated()
+    {
+        return ( allocation != null );
+    }
+    
+    /**
+     * Releases the buffer. If it has been sub-allocated from a {@link SlabAllocator},
+     * its memory is immediately returned for reuse.<br>
+     * The data must not be used anymore afterwards.
+     */
+    public void freeLocalData()
+    {
+        if ( allocation != null )
+        {
+            slabAllocator.free( allocation );
+            allocation = null;
+            slabAllocator = null;
+        }
+        
+        this.buffer = null;
+    }
+    
     /**
      * {@inheritDoc}
      */
@@ -92,6 +210,9 @@ public class GeomNioFloatData extends org.jagatoo.geometry.GeomNioFloatData
     protected void finalize()
     {
         openGLReferences.prepareObjectForDestroy();
+        
+        if ( allocation != null )
+            freeLocalData();
     }
     
     public void freeOpenGLResources( CanvasPeer canvasPeer )
@@ -109,9 +230,25 @@ public class GeomNioFloatData extends org.jagatoo.geometry.GeomNioFloatData
         return ( new GeomNioFloatData( maxElements, elemSize, stride, reversed ) );
     }
     
+    private GeomNioFloatData( int maxElements, int elemSize, int stride, boolean reversed, SlabAllocator allocator, SlabAllocator.Allocation allocation )
+    {
+        super( maxElements, elemSize, stride, reversed, ( allocation == null ) ? BufferUtils.createFloatBuffer( maxElements * elemSize ) : allocation.getBuffer().asFloatBuffer() );
+        
+        if ( allocation != null )
+        {
+            this.slabAllocator = allocator;
+            this.allocation = allocation;
+        }
+    }
+    
+    private GeomNioFloatData( int maxElements, int elemSize, int stride, boolean reversed, SlabAllocator allocator )
+    {
+        this( maxElements, elemSize, stride, reversed, allocator, ( ( allocator != null ) && ( maxElements * elemSize > 0 ) ) ? allocator.allocate( maxElements * elemSize * 4 ) : null );
+    }
+    
     public GeomNioFloatData( int maxElements, int elemSize, int stride, boolean reversed )
     {
-        super( maxElements, elemSize, stride, reversed );
+        this( maxElements, elemSize, stride, reversed, Geometry.getSlabAllocator() );
     }
     
     public GeomNioFloatData( int maxElements, int elemSize, boolean reversed )
@@ -33,8 +33,10 @@
  */
 package org.xith3d.scenegraph;
 
+import org.jagatoo.util.nio.BufferUtils;
 import org.xith3d.render.CanvasPeer;
 import org.xith3d.render.SceneGraphOpenGLReferences;
+import org.xith3d.utility.memory.SlabAllocator;
 
 /**
  * An implementation of the float data holder which uses a direct
@@ -46,6 +48,16 @@ public class GeomNioIntData extends org.jagatoo.geometry.GeomNioIntData
 {
     private boolean dirty = true;
     private int framesSinceDirty = 0;
+    private long lastUpdateFrame = -1L;
+    private int updatedFramesInRow = 0;
+    
+    private boolean rangedChange = false;
+    private boolean wholeDirty = true;
+    private int dirtyRangeStart = Integer.MAX_VALUE;
+    private int dirtyRangeEnd = 0;
+    
+    private SlabAllocator slabAllocator = null;
+    private SlabAllocator.Allocation allocation = null;
     
     private final SceneGraphOpenGLReferences openGLReferences = new SceneGraphOpenGLReferences( 1 );
     
@@ -66,6 +78,65 @@ public class GeomNioIntData extends org.jagatoo.geometry.GeomNioIntData
         
         if ( dirty && !wasDirty )
             framesSinceDirty = 0;
+        
+        if ( dirty )
+        {
+            // a change through a setter, that doesn't report its range, invalidates everything
+            if ( !rangedChange )
+                wholeDirty = true;
+        }
+        else
+        {
+            wholeDirty = false;
+            dirtyRangeStart = Integer.MAX_VALUE;
+            dirtyRangeEnd = 0;
+        }
+    }
+    
+    /**
+     * Must be invoked before the data is modified by a setter, that reports
+     * the modified range through {@link #endRangedChange(int, int)}.
+     */
+    final void beginRangedChange()
+    {
+        rangedChange = true;
+    }
+    
+    /**
+     * Adds the range of the elements, modified since {@link #beginRangedChange()},
+     * to the dirty range.
+     * 
+     * @param firstElement
+     * @param numElements
+     */
+    final void endRangedChange( int firstElement, int numElements )
+    {
+        rangedChange = false;
+        
+        if ( firstElement < dirtyRangeStart )
+            dirtyRangeStart = firstElement;
+        
+        if ( firstElement + numElements > dirtyRangeEnd )
+            dirtyRangeEnd = firstElement + numElements;
+    }
+    
+    /**
+     * @return the first dirty element or -1, if the whole data needs to be uploaded.
+     */
+    final int getDirtyRangeStart()
+    {
+        if ( wholeDirty || ( dirtyRangeEnd <= dirtyRangeStart ) )
+            return ( -1 );
+        
+        return ( dirtyRangeStart );
+    }
+    
+    /**
+     * @return the index after the last dirty element.
+     */
+    final int getDirtyRangeEnd()
+    {
+        return ( dirtyRangeEnd );
     }
     
     /**
@@ -87,6 +158,51 @@ public class GeomNioIntData extends org.jagatoo.geometry.GeomNioIntData
         return ( framesSinceDirty );
     }
     
+    /**
+     * Called by the renderer, when the dirty data is uploaded.
+     * 
+     * @param frame the renderer's running frame counter
+     * 
+     * @return the number of consecutive frames, in which the data has been updated
+     */
+    final int markUpdated( long frame )
+    {
+        if ( frame != lastUpdateFrame )
+        {
+            if ( frame == lastUpdateFrame + 1L )
+                updatedFramesInRow++;
+            else
+                updatedFramesInRow = 1;
+            
+            lastUpdateFrame = frame;
+        }
+        
+        return ( updatedFramesInRow );
+    }
+    
+    /**
+     * @return true, if the buffer is sub-allocated from a {@link SlabAllocator}.
+     */
+    public final boolean isSlabAllocated()
+    {
+        return ( allocation != null );
+    }
+    
+    /**
+     * Returns the buffer's memory for reuse, if it has been sub-allocated
+     * from a {@link SlabAllocator}.<br>
+     * The data must not be used anymore afterwards.
+     */
+    public void freeLocalData()
+    {
+        if ( allocation != null )
+        {
+            slabAllocator.free( allocation );
+            allocation = null;
+            slabAllocator = null;
+        }
+    }
+    
     /**
      * {@inheritDoc}
      */
@@ -94,6 +210,9 @@ public class GeomNioIntData extends org.jagatoo.geometry.GeomNioIntData
     protected void finalize()
     {
         openGLReferences.prepareObjectForDestroy();
+        
+        if ( allocation != null )
+            freeLocalData();
     }
     
     public void freeOpenGLResources( CanvasPeer canvasPeer )
@@ -111,9 +230,25 @@ public class GeomNioIntData extends org.jagatoo.geometry.GeomNioIntData
         return ( new GeomNioIntData( maxElems, elemSize, stride, reversed ) );
     }
     
+    private GeomNioIntData( int maxElems, int elemSize, int stride, boolean reversed, SlabAllocator allocator, SlabAllocator.Allocation allocation )
+    {
+        super( maxElems, elemSize, stride, reversed, ( allocation == null ) ? BufferUtils.createIntBuffer( maxElems * elemSize ) : allocation.getBuffer().asIntBuffer() );
+        
+        if ( allocation != null )
+        {
+            this.slabAllocator = allocator;
+            this.allocation = allocation;
+        }
+    }
+    
+    private GeomNioIntData( int maxElems, int elemSize, int stride, boolean reversed, SlabAllocator allocator )
+    {
+        this( maxElems, elemSize, stride, reversed, allocator, ( ( allocator != null ) && ( maxElems * elemSize > 0 ) ) ? allocator.allocate( maxElems * elemSize * 4 ) : null );
+    }
+    
     public GeomNioIntData( int maxElems, int elemSize, int stride, boolean reversed )
     {
-        super( maxElems, elemSize, stride, reversed );
+        this( maxElems, elemSize, stride, reversed, Geometry.getSlabAllocator() );
     }
     
     public GeomNioIntData( int maxElems, int elemSize, boolean reversed )
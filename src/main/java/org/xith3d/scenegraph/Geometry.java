@@ -49,6 +49,7 @@ import org.openmali.vecmath2.Vertex3f;
 import org.xith3d.picking.PickPool;
 import org.xith3d.render.CanvasPeer;
 import org.xith3d.render.SceneGraphOpenGLReferences;
+import org.xith3d.utility.memory.SlabAllocator;
 
 /**
  * A Geometry contains mesh data. Usually a Appearance is associated to it, both
@@ -95,7 +96,15 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
          * Use this, if a the texture coordinates are absolutely static.<br>
          * Changes will be expensive.
          */
-        USE_VBO_FOR_TEXTURE_COORDINATES;
+        USE_VBO_FOR_TEXTURE_COORDINATES,
+        
+        /**
+         * Use this, if the Geometry changes (nearly) every frame like
+         * for Morphs, animated models or particles.<br>
+         * The data is kept in VBOs, that are orphaned and refilled
+         * with GL_STREAM_DRAW on each change instead of being reallocated.
+         */
+        USE_STREAMING_VBOS;
         
         
         public final boolean isNone()
@@ -115,17 +124,22 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
         
         public final boolean vboForVertices()
         {
-            return ( ( this == USE_VBOS ) || ( this == USE_VBO_FOR_VERTEX_DATA ) );
+            return ( ( this == USE_VBOS ) || ( this == USE_VBO_FOR_VERTEX_DATA ) || ( this == USE_STREAMING_VBOS ) );
         }
         
         public final boolean vboForTexCoords()
         {
-            return ( ( this == USE_VBOS ) || ( this == USE_VBO_FOR_TEXTURE_COORDINATES ) );
+            return ( ( this == USE_VBOS ) || ( this == USE_VBO_FOR_TEXTURE_COORDINATES ) || ( this == USE_STREAMING_VBOS ) );
         }
         
         public final boolean vbo()
         {
-            return ( ( this == USE_VBOS ) || ( this == USE_VBO_FOR_VERTEX_DATA ) || ( this == USE_VBO_FOR_TEXTURE_COORDINATES ) );
+            return ( ( this == USE_VBOS ) || ( this == USE_VBO_FOR_VERTEX_DATA ) || ( this == USE_VBO_FOR_TEXTURE_COORDINATES ) || ( this == USE_STREAMING_VBOS ) );
+        }
+        
+        public final boolean streaming()
+        {
+            return ( this == USE_STREAMING_VBOS );
         }
         
         public final boolean optForVertices()
@@ -139,6 +153,47 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
         }
     }
     
+    /**
+     * Selects the storage format of the vertex data in VBOs.<br>
+     * The data is packed, when it is uploaded. The scenegraph side always
+     * keeps the full precision float data. Interleaved Geometries and
+     * Geometries, that are not rendered through VBOs, are not compressed.
+     */
+    public enum VertexCompression
+    {
+        /**
+         * All vertex data is stored as 32 bit floats.
+         */
+        NONE,
+        
+        /**
+         * Normals are stored as signed normalized bytes (4 bytes instead of 12)
+         * and colors as unsigned normalized bytes (4 bytes instead of 12 or 16).
+         * This is supported by every OpenGL version.
+         */
+        PACKED_NORMALS_AND_COLORS,
+        
+        /**
+         * Like {@link #PACKED_NORMALS_AND_COLORS}. Additionally coordinates and
+         * texture coordinates are stored as 16 bit half floats, if the
+         * ARB_half_float_vertex extension is supported.<br>
+         * Half floats have a precision of about three decimal digits. So this
+         * is suitable for Geometries, that are modeled close to their origin.
+         */
+        HALF_FLOATS;
+        
+        
+        public final boolean packNormalsAndColors()
+        {
+            return ( this != NONE );
+        }
+        
+        public final boolean halfFloats()
+        {
+            return ( this == HALF_FLOATS );
+        }
+    }
+    
     public static final int COORDINATES = GeometryDataContainer.COORDINATES;
     public static final int NORMALS = GeometryDataContainer.NORMALS;
     public static final int COLORS = GeometryDataContainer.COLORS;
@@ -151,6 +206,8 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
     public static final int USE_COORD_INDEX_ONLY = 4096;
     */
     
+    private static SlabAllocator slabAllocator = null;
+    
     protected final GeometryDataContainer dataContainer;
     
     private final SceneGraphOpenGLReferences openGLReferences_texCoords = new SceneGraphOpenGLReferences( 1 );
@@ -158,8 +215,30 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
     private final SceneGraphOpenGLReferences openGLReferences = new SceneGraphOpenGLReferences( 1 );
     
     private Optimization optimization = Optimization.AUTO;
+    private VertexCompression vertexCompression = VertexCompression.NONE;
     private Bounds cachedBounds = null;
     
+    /**
+     * Sets the SlabAllocator, that the vertex data (coordinates, normals, colors,
+     * texture coordinates, vertex attributes and indices) of Geometries created
+     * from now on is sub-allocated from.<br>
+     * If <code>null</code> (the default), each data allocates its own direct buffer.
+     * 
+     * @param allocator
+     */
+    public static void setSlabAllocator( SlabAllocator allocator )
+    {
+        Geometry.slabAllocator = allocator;
+    }
+    
+    /**
+     * @return the SlabAllocator, that the vertex data of new Geometries is sub-allocated from.
+     */
+    public static SlabAllocator getSlabAllocator()
+    {
+        return ( slabAllocator );
+    }
+    
     /**
      * @return this Geometry's basic type (used by OpenGL).
      */
@@ -280,6 +359,45 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
         return ( optimization );
     }
     
+    /**
+     * Sets the storage format of this Geometry's vertex data in VBOs.
+     * Changing it causes the data to be uploaded again.
+     * 
+     * @param compression
+     */
+    public void setVertexCompression( VertexCompression compression )
+    {
+        if ( compression == null )
+            throw new NullPointerException( "VertexCompression must not be null" );
+        
+        if ( compression == this.vertexCompression )
+            return;
+        
+        this.vertexCompression = compression;
+        
+        setVertexDataDirty( getCoordinatesData() );
+        setVertexDataDirty( getNormalsData() );
+        setVertexDataDirty( getColorData() );
+        for ( int unit = 0; unit < getNumTextureUnits(); unit++ )
+        {
+            setVertexDataDirty( getTexCoordsData( unit ) );
+        }
+    }
+    
+    private static final void setVertexDataDirty( GeomNioFloatData data )
+    {
+        if ( data != null )
+            data.setDirty( true );
+    }
+    
+    /**
+     * @return the storage format of this Geometry's vertex data in VBOs.
+     */
+    public final VertexCompression getVertexCompression()
+    {
+        return ( vertexCompression );
+    }
+    
     /**
      * Marks this Geometry's bounds dirty. This will cause a bounds update
      * when the Geometry is next rendered.
@@ -705,6 +823,35 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
         return ( dataContainer.getValidVertexCount() );
     }
     
+    /**
+     * Prepares the given data for a modification, whose element range
+     * is reported by {@link #endRangedChange(GeomNioFloatData, int, int)}.
+     * 
+     * @param data the data, that is about to be modified (may be null)
+     * 
+     * @return the given data
+     */
+    private static final GeomNioFloatData beginRangedChange( GeomNioFloatData data )
+    {
+        if ( data != null )
+            data.beginRangedChange();
+        
+        return ( data );
+    }
+    
+    /**
+     * Adds the modified element range to the data's dirty range,
+     * so that the renderer only needs to upload this range.
+     * 
+     * @param data
+     * @param firstElement
+     * @param numElements
+     */
+    private static final void endRangedChange( GeomNioFloatData data, int firstElement, int numElements )
+    {
+        if ( data != null )
+            data.endRangedChange( firstElement, numElements );
+    }
     
     /**
      * Sets the coordinates of the specified vertex. The coordinates should
@@ -712,7 +859,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setCoordinate( int vertexIndex, float[] floatArray )
     {
+        final GeomNioFloatData data = beginRangedChange( getCoordinatesData() );
         dataContainer.setCoordinate( vertexIndex, floatArray );
+        endRangedChange( data, vertexIndex, 1 );
         
         setBoundsDirty();
         openGLReferences_geomData.invalidateNames();
@@ -731,7 +880,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setCoordinates( int vertexIndex, float[] floatArray, int startIndex, int length )
     {
+        final GeomNioFloatData data = beginRangedChange( getCoordinatesData() );
         dataContainer.setCoordinates( vertexIndex, floatArray, startIndex, length );
+        endRangedChange( data, vertexIndex, length );
         
         setBoundsDirty();
         openGLReferences_geomData.invalidateNames();
@@ -747,7 +898,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setCoordinates( int vertexIndex, float[] floatArray )
     {
+        final GeomNioFloatData data = beginRangedChange( getCoordinatesData() );
         dataContainer.setCoordinates( vertexIndex, floatArray );
+        endRangedChange( data, vertexIndex, floatArray.length / getCoordinatesSize() );
         
         setBoundsDirty();
         openGLReferences_geomData.invalidateNames();
@@ -762,7 +915,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setCoordinate( int vertexIndex, Tuple3f point3f )
     {
+        final GeomNioFloatData data = beginRangedChange( getCoordinatesData() );
         dataContainer.setCoordinate( vertexIndex, point3f );
+        endRangedChange( data, vertexIndex, 1 );
         
         setBoundsDirty();
         openGLReferences_geomData.invalidateNames();
@@ -779,7 +934,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setCoordinate( int vertexIndex, float x, float y, float z )
     {
+        final GeomNioFloatData data = beginRangedChange( getCoordinatesData() );
         dataContainer.setCoordinate( vertexIndex, x, y, z );
+        endRangedChange( data, vertexIndex, 1 );
         
         setBoundsDirty();
         openGLReferences_geomData.invalidateNames();
@@ -794,7 +951,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setCoordinates( int vertexIndex, Tuple3f[] point3fArray )
     {
+        final GeomNioFloatData data = beginRangedChange( getCoordinatesData() );
         dataContainer.setCoordinates( vertexIndex, point3fArray );
+        endRangedChange( data, vertexIndex, point3fArray.length );
         
         setBoundsDirty();
         openGLReferences_geomData.invalidateNames();
@@ -811,7 +970,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setCoordinates( int vertexIndex, Tuple3f[] point3fArray, int startIndex, int length )
     {
+        final GeomNioFloatData data = beginRangedChange( getCoordinatesData() );
         dataContainer.setCoordinates( vertexIndex, point3fArray, startIndex, length );
+        endRangedChange( data, vertexIndex, length );
         
         setBoundsDirty();
         openGLReferences_geomData.invalidateNames();
@@ -820,7 +981,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
     
     public final void setCoordinates( int vertexIndex, List<Tuple3f> point3fList )
     {
+        final GeomNioFloatData data = beginRangedChange( getCoordinatesData() );
         dataContainer.setCoordinates( vertexIndex, point3fList );
+        endRangedChange( data, vertexIndex, point3fList.size() );
         
         setBoundsDirty();
         openGLReferences_geomData.invalidateNames();
@@ -865,7 +1028,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setNormal( int vertexIndex, float[] floatArray )
     {
+        final GeomNioFloatData data = beginRangedChange( getNormalsData() );
         dataContainer.setNormal( vertexIndex, floatArray );
+        endRangedChange( data, vertexIndex, 1 );
         
         openGLReferences_geomData.invalidateNames();
         openGLReferences.invalidateNames();
@@ -879,7 +1044,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setNormals( int vertexIndex, float[] floatArray )
     {
+        final GeomNioFloatData data = beginRangedChange( getNormalsData() );
         dataContainer.setNormals( vertexIndex, floatArray );
+        endRangedChange( data, vertexIndex, floatArray.length / 3 );
         
         openGLReferences_geomData.invalidateNames();
         openGLReferences.invalidateNames();
@@ -896,7 +1063,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setNormals( int vertexIndex, float[] floatArray, int startIndex, int length )
     {
+        final GeomNioFloatData data = beginRangedChange( getNormalsData() );
         dataContainer.setNormals( vertexIndex, floatArray, startIndex, length );
+        endRangedChange( data, vertexIndex, length );
         
         openGLReferences_geomData.invalidateNames();
         openGLReferences.invalidateNames();
@@ -910,7 +1079,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setNormal( int vertexIndex, Vector3f vector3f )
     {
+        final GeomNioFloatData data = beginRangedChange( getNormalsData() );
         dataContainer.setNormal( vertexIndex, vector3f );
+        endRangedChange( data, vertexIndex, 1 );
         
         openGLReferences_geomData.invalidateNames();
         openGLReferences.invalidateNames();
@@ -926,7 +1097,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setNormal( int vertexIndex, float x, float y, float z )
     {
+        final GeomNioFloatData data = beginRangedChange( getNormalsData() );
         dataContainer.setNormal( vertexIndex, x, y, z );
+        endRangedChange( data, vertexIndex, 1 );
         
         openGLReferences_geomData.invalidateNames();
         openGLReferences.invalidateNames();
@@ -940,7 +1113,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setNormals( int vertexIndex, Vector3f[] vector3fArray )
     {
+        final GeomNioFloatData data = beginRangedChange( getNormalsData() );
         dataContainer.setNormals( vertexIndex, vector3fArray );
+        endRangedChange( data, vertexIndex, vector3fArray.length );
         
         openGLReferences_geomData.invalidateNames();
         openGLReferences.invalidateNames();
@@ -957,7 +1132,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setNormals( int vertexIndex, Vector3f[] vector3fArray, int startIndex, int length )
     {
+        final GeomNioFloatData data = beginRangedChange( getNormalsData() );
         dataContainer.setNormals( vertexIndex, vector3fArray, startIndex, length );
+        endRangedChange( data, vertexIndex, length );
         
         openGLReferences_geomData.invalidateNames();
         openGLReferences.invalidateNames();
@@ -1024,7 +1201,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setColor( int vertexIndex, float[] floatArray )
     {
+        final GeomNioFloatData data = beginRangedChange( getColorData() );
         dataContainer.setColor( vertexIndex, floatArray );
+        endRangedChange( data, vertexIndex, 1 );
         
         openGLReferences_geomData.invalidateNames();
         openGLReferences.invalidateNames();
@@ -1040,7 +1219,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setColors( int vertexIndex, int colorSize, float[] floatArray )
     {
+        final GeomNioFloatData data = beginRangedChange( getColorData() );
         dataContainer.setColors( vertexIndex, colorSize, floatArray );
+        endRangedChange( data, vertexIndex, floatArray.length / colorSize );
         
         openGLReferences_geomData.invalidateNames();
         openGLReferences.invalidateNames();
@@ -1059,7 +1240,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setColors( int vertexIndex, int colorSize, float[] floatArray, int startIndex, int length )
     {
+        final GeomNioFloatData data = beginRangedChange( getColorData() );
         dataContainer.setColors( vertexIndex, colorSize, floatArray, startIndex, length );
+        endRangedChange( data, vertexIndex, length );
         
         openGLReferences_geomData.invalidateNames();
         openGLReferences.invalidateNames();
@@ -1073,7 +1256,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setColor( int vertexIndex, Colorf colorf )
     {
+        final GeomNioFloatData data = beginRangedChange( getColorData() );
         dataContainer.setColor( vertexIndex, colorf );
+        endRangedChange( data, vertexIndex, 1 );
         
         openGLReferences_geomData.invalidateNames();
         openGLReferences.invalidateNames();
@@ -1089,7 +1274,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setColor( int vertexIndex, float r, float g, float b )
     {
+        final GeomNioFloatData data = beginRangedChange( getColorData() );
         dataContainer.setColor( vertexIndex, r, g, b );
+        endRangedChange( data, vertexIndex, 1 );
         
         openGLReferences_geomData.invalidateNames();
         openGLReferences.invalidateNames();
@@ -1106,7 +1293,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setColor( int vertexIndex, float r, float g, float b, float a )
     {
+        final GeomNioFloatData data = beginRangedChange( getColorData() );
         dataContainer.setColor( vertexIndex, r, g, b, a );
+        endRangedChange( data, vertexIndex, 1 );
         
         openGLReferences_geomData.invalidateNames();
         openGLReferences.invalidateNames();
@@ -1120,7 +1309,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setColors( int vertexIndex, Colorf[] colorfArray )
     {
+        final GeomNioFloatData data = beginRangedChange( getColorData() );
         dataContainer.setColors( vertexIndex, colorfArray );
+        endRangedChange( data, vertexIndex, colorfArray.length );
         
         openGLReferences_geomData.invalidateNames();
         openGLReferences.invalidateNames();
@@ -1136,7 +1327,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setColors( int vertexIndex, Colorf[] colorfArray, int startIndex, int length )
     {
+        final GeomNioFloatData data = beginRangedChange( getColorData() );
         dataContainer.setColors( vertexIndex, colorfArray, startIndex, length );
+        endRangedChange( data, vertexIndex, length );
         
         openGLReferences_geomData.invalidateNames();
         openGLReferences.invalidateNames();
@@ -1201,7 +1394,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setTextureCoordinate( int unit, int vertexIndex, float[] floatArray )
     {
+        final GeomNioFloatData data = beginRangedChange( getTexCoordsData( unit ) );
         dataContainer.setTextureCoordinate( unit, vertexIndex, floatArray );
+        endRangedChange( data, vertexIndex, 1 );
         
         openGLReferences_texCoords.invalidateNames();
         openGLReferences.invalidateNames();
@@ -1219,7 +1414,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setTextureCoordinates( int unit, int vertexIndex, int texCoordSize, float[] floatArray )
     {
+        final GeomNioFloatData data = beginRangedChange( getTexCoordsData( unit ) );
         dataContainer.setTextureCoordinates( unit, vertexIndex, texCoordSize, floatArray );
+        endRangedChange( data, vertexIndex, floatArray.length / texCoordSize );
         
         openGLReferences_texCoords.invalidateNames();
         openGLReferences.invalidateNames();
@@ -1238,7 +1435,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setTextureCoordinates( int unit, int vertexIndex, int texCoordSize, float[] floatArray, int startIndex, int length )
     {
+        final GeomNioFloatData data = beginRangedChange( getTexCoordsData( unit ) );
         dataContainer.setTextureCoordinates( unit, vertexIndex, texCoordSize, floatArray, startIndex, length );
+        endRangedChange( data, vertexIndex, length );
         
         openGLReferences_texCoords.invalidateNames();
         openGLReferences.invalidateNames();
@@ -1254,7 +1453,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setTextureCoordinate( int unit, int vertexIndex, float s )
     {
+        final GeomNioFloatData data = beginRangedChange( getTexCoordsData( unit ) );
         dataContainer.setTextureCoordinate( unit, vertexIndex, s );
+        endRangedChange( data, vertexIndex, 1 );
         
         openGLReferences_texCoords.invalidateNames();
         openGLReferences.invalidateNames();
@@ -1271,7 +1472,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setTextureCoordinate( int unit, int vertexIndex, float s, float t )
     {
+        final GeomNioFloatData data = beginRangedChange( getTexCoordsData( unit ) );
         dataContainer.setTextureCoordinate( unit, vertexIndex, s, t );
+        endRangedChange( data, vertexIndex, 1 );
         
         openGLReferences_texCoords.invalidateNames();
         openGLReferences.invalidateNames();
@@ -1289,7 +1492,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setTextureCoordinate( int unit, int vertexIndex, float s, float t, float r )
     {
+        final GeomNioFloatData data = beginRangedChange( getTexCoordsData( unit ) );
         dataContainer.setTextureCoordinate( unit, vertexIndex, s, t, r );
+        endRangedChange( data, vertexIndex, 1 );
         
         openGLReferences_texCoords.invalidateNames();
         openGLReferences.invalidateNames();
@@ -1308,7 +1513,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setTextureCoordinate( int unit, int vertexIndex, float s, float t, float r, float q )
     {
+        final GeomNioFloatData data = beginRangedChange( getTexCoordsData( unit ) );
         dataContainer.setTextureCoordinate( unit, vertexIndex, s, t, r, q );
+        endRangedChange( data, vertexIndex, 1 );
         
         openGLReferences_texCoords.invalidateNames();
         openGLReferences.invalidateNames();
@@ -1324,7 +1531,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setTextureCoordinate( int unit, int vertexIndex, TexCoordf<?> texCoord )
     {
+        final GeomNioFloatData data = beginRangedChange( getTexCoordsData( unit ) );
         dataContainer.setTextureCoordinate( unit, vertexIndex, texCoord );
+        endRangedChange( data, vertexIndex, 1 );
         
         openGLReferences_texCoords.invalidateNames();
         openGLReferences.invalidateNames();
@@ -1340,7 +1549,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setTextureCoordinates( int unit, int vertexIndex, TexCoordf<?>[] texCoordArray )
     {
+        final GeomNioFloatData data = beginRangedChange( getTexCoordsData( unit ) );
         dataContainer.setTextureCoordinates( unit, vertexIndex, texCoordArray );
+        endRangedChange( data, vertexIndex, texCoordArray.length );
         
         openGLReferences_texCoords.invalidateNames();
         openGLReferences.invalidateNames();
@@ -1358,7 +1569,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setTextureCoordinates( int unit, int vertexIndex, TexCoordf<?>[] texCoordArray, int startIndex, int length )
     {
+        final GeomNioFloatData data = beginRangedChange( getTexCoordsData( unit ) );
         dataContainer.setTextureCoordinates( unit, vertexIndex, texCoordArray, startIndex, length );
+        endRangedChange( data, vertexIndex, length );
         
         openGLReferences_texCoords.invalidateNames();
         openGLReferences.invalidateNames();
@@ -1431,7 +1644,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setVertexAttribute( int attribIndex, int vertexIndex, float[] floatArray )
     {
+        final GeomNioFloatData data = beginRangedChange( getVertexAttribData( attribIndex ) );
         dataContainer.setVertexAttribute( attribIndex, vertexIndex, floatArray );
+        endRangedChange( data, vertexIndex, 1 );
     }
     
     /**
@@ -1444,7 +1659,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setVertexAttributes( int attribIndex, int vertexIndex, float[] values, int attribSize )
     {
+        final GeomNioFloatData data = beginRangedChange( getVertexAttribData( attribIndex ) );
         dataContainer.setVertexAttributes( attribIndex, vertexIndex, values, attribSize );
+        endRangedChange( data, vertexIndex, values.length / attribSize );
     }
     
     /**
@@ -1459,7 +1676,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setVertexAttributes( int attribIndex, int vertexIndex, float[] values, int attribsSize, int startIndex, int length )
     {
+        final GeomNioFloatData data = beginRangedChange( getVertexAttribData( attribIndex ) );
         dataContainer.setVertexAttributes( attribIndex, vertexIndex, values, attribsSize, startIndex, length );
+        endRangedChange( data, vertexIndex, length );
     }
     
     /**
@@ -1472,7 +1691,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setVertexAttribute( int attribIndex, int vertexIndex, float value )
     {
+        final GeomNioFloatData data = beginRangedChange( getVertexAttribData( attribIndex ) );
         dataContainer.setVertexAttribute( attribIndex, vertexIndex, value );
+        endRangedChange( data, vertexIndex, 1 );
     }
     
     /**
@@ -1485,7 +1706,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setVertexAttribute( int attribIndex, int vertexIndex, TupleNf<?> value )
     {
+        final GeomNioFloatData data = beginRangedChange( getVertexAttribData( attribIndex ) );
         dataContainer.setVertexAttribute( attribIndex, vertexIndex, value );
+        endRangedChange( data, vertexIndex, 1 );
     }
     
     /**
@@ -1497,7 +1720,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setVertexAttributes( int attribIndex, int vertexIndex, TupleNf<?>[] values )
     {
+        final GeomNioFloatData data = beginRangedChange( getVertexAttribData( attribIndex ) );
         dataContainer.setVertexAttributes( attribIndex, vertexIndex, values );
+        endRangedChange( data, vertexIndex, values.length );
     }
     
     /**
@@ -1511,7 +1736,9 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final void setVertexAttributes( int attribIndex, int vertexIndex, TupleNf<?>[] values, int startIndex, int length )
     {
+        final GeomNioFloatData data = beginRangedChange( getVertexAttribData( attribIndex ) );
         dataContainer.setVertexAttributes( attribIndex, vertexIndex, values, startIndex, length );
+        endRangedChange( data, vertexIndex, length );
     }
     
     public final void getVertexAttribute( int attribIndex, int vertexIndex, float[] floatArray )
@@ -1562,7 +1789,7 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
      */
     public final boolean setTriangle( int i0, int i1, int i2, Triangle triangle )
     {
-        return ( setTriangle( i0, i1, i2, triangle ) );
+        return ( dataContainer.setTriangle( i0, i1, i2, triangle ) );
     }
     
     /**
@@ -1686,6 +1913,51 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
             openGLReferences.prepareObjectForDestroy( canvasPeer );
     }
     
+    /**
+     * Releases the vertex data. Memory sub-allocated from a {@link SlabAllocator}
+     * is immediately returned for reuse instead of waiting for the garbage collector.<br>
+     * Call this after {@link #freeOpenGLResources(CanvasPeer)}, when the Geometry
+     * is not used anymore. It must neither be rendered nor modified afterwards.
+     */
+    public void freeLocalData()
+    {
+        if ( isInterleaved() && ( getInterleavedData() != null ) )
+            getInterleavedData().freeLocalData();
+        
+        if ( getCoordinatesData() != null )
+            getCoordinatesData().freeLocalData();
+        
+        if ( getNormalsData() != null )
+            getNormalsData().freeLocalData();
+        
+        if ( getColorData() != null )
+            getColorData().freeLocalData();
+        
+        if ( hasTextureCoordinates() )
+        {
+            int[] tcsm = getTexCoordSetMap();
+            
+            for ( int i = 0; i < tcsm.length; i++ )
+            {
+                getTexCoordsData( tcsm[i] ).freeLocalData();
+            }
+        }
+        
+        if ( hasVertexAttributes() )
+        {
+            GeomNioFloatData d;
+            
+            for ( int i = 0; i < 16; i++ )
+            {
+                if ( ( d = getVertexAttribData( i ) ) != null )
+                    d.freeLocalData();
+            }
+        }
+        
+        if ( dataContainer.getIndexData() != null )
+            ( (GeomNioIntData)dataContainer.getIndexData() ).freeLocalData();
+    }
+    
     /**
      * {@inheritDoc}
      */
@@ -1699,6 +1971,7 @@ public abstract class Geometry extends NodeComponent implements VertexContainer
         this.dataContainer.copyFrom( o.dataContainer, forceDuplicate );
         
         this.optimization = o.optimization;
+        this.vertexCompression = o.vertexCompression;
         
         this.setBoundsDirty();
     }
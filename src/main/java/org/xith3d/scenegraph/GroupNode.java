@@ -44,6 +44,7 @@ import org.xith3d.render.Clipper;
 import org.xith3d.render.ClipperInfo;
 import org.xith3d.render.ScissorRect;
 import org.xith3d.render.preprocessing.ShadowAtom;
+import org.xith3d.scenegraph.modifications.ScenegraphModificationsListener;
 import org.xith3d.scenegraph.traversal.TraversalCallback;
 import org.xith3d.scenegraph.utils.CopyListener;
 import org.xith3d.utility.logging.X3DLog;
@@ -70,16 +71,24 @@ public abstract class GroupNode extends Node
     
     private ShadowAtom shadowAtom = null;
     
+    /**
+     * The first of the consecutive {@link WorldBoundsStore} slots of the children or -1.
+     */
+    private int childrenWorldBoundsSlot = -1;
+    
     private ScissorRect scissorRect = null;
     private Clipper clipper = null;
     
     private static final Bounds EMPTY_BOUNDS = new BoundingSphere();
     
-    private static BoundingSphere tmpBounds = new BoundingSphere();
-    
     private GroupNode pickHost = null;
     private boolean isPickHost = false;
     
+    /**
+     * Set, if only the world bounds have been combined, after the transform of a child has changed.
+     */
+    boolean untransformedBoundsStale = false;
+    
     /**
      * {@inheritDoc}
      */
@@ -365,6 +374,13 @@ public abstract class GroupNode extends Node
             child.mergeInheritedNodes( this.getInheritedNodeAttributes() );
         }
         
+        if ( getWorldBoundsStore() != null )
+        {
+            // The children's slots are not consecutive anymore.
+            childrenWorldBoundsSlot = -1;
+            getWorldBoundsStore().register( child );
+        }
+        
         if ( getModListener() != null )
             getModListener().onChildAddedToGroup( this, child );
     }
@@ -408,6 +424,12 @@ public abstract class GroupNode extends Node
         System.arraycopy( children, index + 1, children, index, numChildren - index - 1 );
         numChildren--;
         
+        if ( ( child.getWorldBoundsStore() != null ) && ( child.getWorldBoundsStore() == getWorldBoundsStore() ) )
+        {
+            childrenWorldBoundsSlot = -1;
+            child.getWorldBoundsStore().unregister( child );
+        }
+        
         child.setParent( null ); // this will make the child tree not
         // live
         child.setModListener( null );
@@ -537,6 +559,28 @@ public abstract class GroupNode extends Node
         return ( prevChild );
     }
     
+    /**
+     * Sets the listener for this Node and its whole subtree, so that modifications
+     * of subtrees, which had been built before they went live, are reported, too.
+     * 
+     * {@inheritDoc}
+     */
+    @Override
+    public void setModListener( ScenegraphModificationsListener modListener )
+    {
+        // The renderer sets its listener on the root each frame. So the subtree is only walked, if it changes.
+        if ( modListener == getModListener() )
+            return;
+        
+        super.setModListener( modListener );
+        
+        final int n = numChildren();
+        for ( int i = 0; i < n; i++ )
+        {
+            getChild( i ).setModListener( modListener );
+        }
+    }
+    
     /**
      * @return the child at the specified index.
      */
@@ -554,6 +598,24 @@ public abstract class GroupNode extends Node
         return ( children[ index ] );
     }
     
+    /**
+     * Sets the first of the consecutive {@link WorldBoundsStore} slots of the children.
+     * 
+     * @param slot the first slot or -1, if the children's slots are not consecutive
+     */
+    final void setChildrenWorldBoundsSlot( int slot )
+    {
+        this.childrenWorldBoundsSlot = slot;
+    }
+    
+    /**
+     * @return the first of the consecutive {@link WorldBoundsStore} slots of the children or -1.
+     */
+    final int getChildrenWorldBoundsSlot()
+    {
+        return ( childrenWorldBoundsSlot );
+    }
+    
     /**
      * Get the number of children in this group.
      */
@@ -681,6 +743,8 @@ public abstract class GroupNode extends Node
         getWorldBounds().set( untransformedBounds );
         getWorldBounds().transform( getWorldTransform().getMatrix4f() );
         
+        onWorldBoundsUpdated();
+        
         final GroupNode parent = getParent();
         if ( parent != null )
         {
@@ -693,6 +757,84 @@ public abstract class GroupNode extends Node
         ProfileTimer.endProfile();
     }
     
+    /**
+     * Combines the bounds of the given range of children.
+     * This method doesn't modify this group and may be invoked concurrently for distinct ranges.
+     * 
+     * @param untransformedTarget receives the combined (untransformed) bounds, if onlyWorld is false
+     * @param worldTarget receives the combined world bounds
+     * @param first
+     * @param last exclusive
+     * @param onlyWorld
+     * 
+     * @return false, if no child in the range has valid bounds.
+     */
+    final boolean combineBounds( Bounds untransformedTarget, Bounds worldTarget, int first, int last, boolean onlyWorld )
+    {
+        boolean firstValidBounds = true;
+        for ( int i = first; i < last; i++ )
+        {
+            final Node node = getChild( i );
+            if ( !node.isIgnoreBounds() )
+            {
+                if ( firstValidBounds )
+                {
+                    firstValidBounds = false;
+                    
+                    if ( !onlyWorld )
+                    {
+                        untransformedTarget.set( node.getBounds() );
+                    }
+                    
+                    worldTarget.set( node.getWorldBounds() );
+                }
+                else
+                {
+                    if ( !onlyWorld )
+                    {
+                        untransformedTarget.combine( node.getBounds() );
+                    }
+                    
+                    worldTarget.combine( node.getWorldBounds() );
+                }
+            }
+        }
+        
+        return ( !firstValidBounds );
+    }
+    
+    /**
+     * Derives the transformed bounds from the combined children's bounds
+     * and marks the bounds as clean.
+     */
+    final void applyCombinedBounds()
+    {
+        bounds.set( untransformedBounds );
+        if ( this instanceof TransformGroup )
+            bounds.transform( ( (TransformGroup)this ).getTransform().getMatrix4f() );
+        
+        onWorldBoundsUpdated();
+        
+        boundsDirty = false;
+    }
+    
+    /**
+     * Sets empty bounds for a group without children and marks the bounds as clean.
+     */
+    final void applyEmptyBounds()
+    {
+        untransformedBoundsStale = false;
+        untransformedBounds.set( EMPTY_BOUNDS );
+        bounds.set( EMPTY_BOUNDS );
+        getWorldBounds().set( untransformedBounds );
+        if ( getWorldTransform() != null )
+            getWorldBounds().transform( getWorldTransform().getMatrix4f() );
+        
+        onWorldBoundsUpdated();
+        
+        boundsDirty = false;
+    }
+    
     /**
      * {@inheritDoc}
      */
@@ -707,67 +849,29 @@ public abstract class GroupNode extends Node
         
         if ( boundsAutoCompute )
         {
-            if ( numChildren() == 0 )
+            if ( childrenToo )
             {
-                untransformedBounds.set( EMPTY_BOUNDS );
-                bounds.set( EMPTY_BOUNDS );
-                getWorldBounds().set( untransformedBounds );
-                if ( getWorldTransform() != null )
-                    getWorldBounds().transform( getWorldTransform().getMatrix4f() );
-            }
-            else
-            {
-                boolean firstValidBounds = true;
                 final int n = numChildren();
                 for ( int i = 0; i < n; i++ )
                 {
                     final Node node = getChild( i );
                     if ( !node.isIgnoreBounds() )
                     {
-                        if ( childrenToo )
-                        {
-                            node.updateBoundsCheap( onlyDirty, childrenToo, false, onlyWorld );
-                        }
-                        
-                        if ( !onlyWorld )
-                        {
-                            tmpBounds.set( node.untransformedBounds );
-                            if ( this instanceof TransformGroup )
-                                tmpBounds.transform( ( (TransformGroup)this ).getTransform().getMatrix4f() );
-                        }
-                        
-                        if ( firstValidBounds )
-                        {
-                            firstValidBounds = false;
-                            
-                            if ( !onlyWorld )
-                            {
-                                untransformedBounds.set( node.getBounds() );
-                            }
-                            
-                            getWorldBounds().set( node.getWorldBounds() );
-                        }
-                        else
-                        {
-                            if ( !onlyWorld )
-                            {
-                                untransformedBounds.combine( node.getBounds() );
-                            }
-                            
-                            getWorldBounds().combine( node.getWorldBounds() );
-                        }
+                        node.updateBoundsCheap( onlyDirty, childrenToo, false, onlyWorld );
                     }
                 }
-                
-                //if (!onlyWorld)
-                {
-                    bounds.set( untransformedBounds );
-                    if ( this instanceof TransformGroup )
-                        bounds.transform( ( (TransformGroup)this ).getTransform().getMatrix4f() );
-                }
             }
             
-            boundsDirty = false;
+            if ( numChildren() == 0 )
+            {
+                applyEmptyBounds();
+            }
+            else
+            {
+                combineBounds( untransformedBounds, getWorldBounds(), 0, numChildren(), onlyWorld );
+                untransformedBoundsStale = onlyWorld;
+                applyCombinedBounds();
+            }
             
             if ( parentToo )
             {
@@ -43,6 +43,8 @@ public abstract class IndexedGeometryArray extends Geometry
 {
     private int[] index;
     private boolean indexDirty = true;
+    private int indexDirtyStart = 0;
+    private int indexDirtyEnd = Integer.MAX_VALUE;
     
     /**
      * {@inheritDoc}
@@ -78,13 +80,28 @@ public abstract class IndexedGeometryArray extends Geometry
     public final void setIndex( int[] indices )
     {
         System.arraycopy( indices, 0, index, 0, indices.length );
-        indexDirty = true;
+        markIndexDirty( 0, indices.length );
     }
     
     public final void setIndex( int i, int idx )
     {
         index[ i ] = idx;
-        indexDirty = true;
+        markIndexDirty( i, i + 1 );
+    }
+    
+    private final void markIndexDirty( int start, int end )
+    {
+        if ( !indexDirty )
+        {
+            indexDirtyStart = start;
+            indexDirtyEnd = end;
+            indexDirty = true;
+        }
+        else
+        {
+            indexDirtyStart = Math.min( indexDirtyStart, start );
+            indexDirtyEnd = Math.max( indexDirtyEnd, end );
+        }
     }
     
     /**
@@ -107,7 +124,19 @@ public abstract class IndexedGeometryArray extends Geometry
     {
         if ( indexDirty )
         {
-            dataContainer.getIndexData().set( getInitialIndexIndex(), index, getInitialIndexIndex(), getValidIndexCount() );
+            // only copy the modified part of the valid range
+            final int start = Math.max( indexDirtyStart, getInitialIndexIndex() );
+            final int end = Math.min( indexDirtyEnd, getInitialIndexIndex() + getValidIndexCount() );
+            
+            if ( end > start )
+            {
+                final GeomNioIntData indexData = (GeomNioIntData)dataContainer.getIndexData();
+                
+                indexData.beginRangedChange();
+                indexData.set( start, index, start, end - start );
+                indexData.endRangedChange( start, end - start );
+            }
+            
             indexDirty = false;
         }
         
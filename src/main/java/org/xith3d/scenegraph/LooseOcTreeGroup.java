@@ -0,0 +1,598 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.scenegraph;
+
+import java.util.IdentityHashMap;
+import java.util.List;
+
+import org.openmali.spatial.bodies.Frustum;
+import org.openmali.spatial.bodies.Classifier.Classification;
+import org.openmali.spatial.bounds.BoundingBox;
+import org.openmali.spatial.bounds.Bounds;
+import org.openmali.vecmath2.Point3f;
+import org.openmali.vecmath2.Tuple3f;
+import org.xith3d.picking.PickRay;
+import org.xith3d.render.OpenGLCapabilities;
+import org.xith3d.render.preprocessing.FrustumCuller;
+import org.xith3d.render.preprocessing.PlaneMaskClassifier;
+import org.xith3d.render.preprocessing.RenderBinProvider;
+
+/**
+ * A loose OcTree variant of the {@link OcTreeGroup}.<br>
+ * <br>
+ * Each cell's bounds are expanded by the looseness factor, so that a node always fits
+ * into the cell, that contains its center, at the level, which is determined
+ * by its bounding radius only. Hence a node's cell is computed in constant time
+ * and moving a node is a plain reinsertion without any split or merge cascade.<br>
+ * <br>
+ * Moved nodes must be reported through {@link #updateNodePosition(Node)}
+ * or one of the bulk variants. They are reinserted with their current world bounds
+ * right before the next culling.
+ */
+public class LooseOcTreeGroup extends Group implements SpecialCullingNode< LooseOcTreeGroup >
+{
+    public static final int DEFAULT_MAX_LEVEL = 8;
+    public static final float DEFAULT_LOOSENESS = 2f;
+    
+    private static final int MAX_MAX_LEVEL = 16;
+    
+    /**
+     * A cell of the loose OcTree.
+     */
+    private static final class Cell
+    {
+        /**
+         * the loose bounds of this cell
+         */
+        private final BoundingBox bounds = new BoundingBox();
+        private final Cell parent;
+        private final int level;
+        private final int cellX, cellY, cellZ;
+        private final Cell[] children = new Cell[ 8 ];
+        
+        private Entry[] entries = new Entry[ 4 ];
+        private int numNodes = 0;
+        private int numSubtreeNodes = 0;
+        
+        final void addNode( Entry entry )
+        {
+            if ( numNodes == entries.length )
+            {
+                final Entry[] newEntries = new Entry[ entries.length * 2 ];
+                System.arraycopy( entries, 0, newEntries, 0, numNodes );
+                entries = newEntries;
+            }
+            
+            entry.cell = this;
+            entry.index = numNodes;
+            entries[ numNodes++ ] = entry;
+        }
+        
+        final void removeNode( Entry entry )
+        {
+            final int last = --numNodes;
+            
+            if ( entry.index != last )
+            {
+                final Entry moved = entries[ last ];
+                entries[ entry.index ] = moved;
+                moved.index = entry.index;
+            }
+            
+            entries[ last ] = null;
+            entry.cell = null;
+            entry.index = -1;
+        }
+        
+        Cell( Cell parent, int level, int cellX, int cellY, int cellZ )
+        {
+            this.parent = parent;
+            this.level = level;
+            this.cellX = cellX;
+            this.cellY = cellY;
+            this.cellZ = cellZ;
+        }
+    }
+    
+    private static final class Entry
+    {
+        private final Node node;
+        private Cell cell = null;
+        private int index = -1;
+        private boolean pending = false;
+        
+        Entry( Node node )
+        {
+            this.node = node;
+        }
+    }
+    
+    private final float lowerX, lowerY, lowerZ;
+    private final float sizeX, sizeY, sizeZ;
+    private final int maxLevel;
+    private final float looseness;
+    
+    private final Cell rootCell;
+    
+    private final IdentityHashMap< Node, Entry > entries = new IdentityHashMap< Node, Entry >();
+    private Entry[] pendingEntries = new Entry[ 16 ];
+    private int numPendingEntries = 0;
+    
+    private int numReinsertions = 0;
+    
+    /**
+     * The frustum plane, that rejected the last culled cell.
+     * Neighboring cells are likely to be rejected by the same plane.
+     */
+    private int cellCullingPlaneHint = 0;
+    
+    public final int getMaxLevel()
+    {
+        return ( maxLevel );
+    }
+    
+    public final float getLooseness()
+    {
+        return ( looseness );
+    }
+    
+    /**
+     * @return the number of nodes, that have actually changed their cell since the creation of this group.
+     */
+    public final int getNumReinsertions()
+    {
+        return ( numReinsertions );
+    }
+    
+    private final void addPending( Entry entry )
+    {
+        if ( entry.pending )
+            return;
+        
+        if ( numPendingEntries == pendingEntries.length )
+        {
+            final Entry[] newPending = new Entry[ pendingEntries.length * 2 ];
+            System.arraycopy( pendingEntries, 0, newPending, 0, numPendingEntries );
+            pendingEntries = newPending;
+        }
+        
+        entry.pending = true;
+        pendingEntries[ numPendingEntries++ ] = entry;
+    }
+    
+    private final Entry getEntry( Node node )
+    {
+        final Entry entry = entries.get( node );
+        
+        if ( entry == null )
+            throw new Error( "The given Node is not in this group." );
+        
+        return ( entry );
+    }
+    
+    /**
+     * This method must be called after a node's position or size has changed.
+     * The node is reinserted with its then current world bounds before the next culling.
+     * 
+     * @param node
+     */
+    public final void updateNodePosition( Node node )
+    {
+        addPending( getEntry( node ) );
+    }
+    
+    /**
+     * This method must be called after the positions or sizes of the given nodes have changed.
+     * The nodes are reinserted with their then current world bounds before the next culling.
+     * 
+     * @param nodes
+     * @param offset
+     * @param length
+     */
+    public final void updateNodePositions( Node[] nodes, int offset, int length )
+    {
+        for ( int i = offset; i < offset + length; i++ )
+        {
+            addPending( getEntry( nodes[ i ] ) );
+        }
+    }
+    
+    /**
+     * This method must be called after the positions or sizes of the given nodes have changed.
+     * The nodes are reinserted with their then current world bounds before the next culling.
+     * 
+     * @param nodes
+     */
+    public final void updateNodePositions( Node[] nodes )
+    {
+        updateNodePositions( nodes, 0, nodes.length );
+    }
+    
+    /**
+     * This method must be called after the positions or sizes of the given nodes have changed.
+     * The nodes are reinserted with their then current world bounds before the next culling.
+     * 
+     * @param nodes
+     */
+    public final void updateNodePositions( List< ? extends Node > nodes )
+    {
+        final int n = nodes.size();
+        for ( int i = 0; i < n; i++ )
+        {
+            addPending( getEntry( nodes.get( i ) ) );
+        }
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addChild( Node child, int index )
+    {
+        super.addChild( child, index );
+        
+        final Entry entry = new Entry( child );
+        entries.put( child, entry );
+        
+        rootCell.addNode( entry );
+        updateSubtreeCounts( rootCell, null, +1 );
+        
+        addPending( entry );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Node removeChild( int index )
+    {
+        Node node = super.removeChild( index );
+        
+        final Entry entry = entries.remove( node );
+        
+        if ( entry != null )
+        {
+            final Cell cell = entry.cell;
+            cell.removeNode( entry );
+            updateSubtreeCounts( cell, null, -1 );
+            
+            if ( entry.pending )
+            {
+                for ( int i = 0; i < numPendingEntries; i++ )
+                {
+                    if ( pendingEntries[ i ] == entry )
+                    {
+                        pendingEntries[ i ] = pendingEntries[ --numPendingEntries ];
+                        pendingEntries[ numPendingEntries ] = null;
+                        break;
+                    }
+                }
+            }
+        }
+        
+        return ( node );
+    }
+    
+    private static final void updateSubtreeCounts( Cell cell, Cell stopCell, int delta )
+    {
+        while ( cell != stopCell )
+        {
+            cell.numSubtreeNodes += delta;
+            cell = cell.parent;
+        }
+    }
+    
+    private final Cell getChildCell( Cell cell, int childIndex )
+    {
+        Cell child = cell.children[ childIndex ];
+        
+        if ( child == null )
+        {
+            final int level = cell.level + 1;
+            final int cellX = ( cell.cellX << 1 ) | ( childIndex & 1 );
+            final int cellY = ( cell.cellY << 1 ) | ( ( childIndex >> 1 ) & 1 );
+            final int cellZ = ( cell.cellZ << 1 ) | ( ( childIndex >> 2 ) & 1 );
+            
+            child = new Cell( cell, level, cellX, cellY, cellZ );
+            
+            final float scale = 1f / ( 1 << level );
+            final float sx = sizeX * scale;
+            final float sy = sizeY * scale;
+            final float sz = sizeZ * scale;
+            final float ex = sx * ( looseness - 1f ) * 0.5f;
+            final float ey = sy * ( looseness - 1f ) * 0.5f;
+            final float ez = sz * ( looseness - 1f ) * 0.5f;
+            
+            final float lx = lowerX + cellX * sx;
+            final float ly = lowerY + cellY * sy;
+            final float lz = lowerZ + cellZ * sz;
+            
+            child.bounds.set( lx - ex, ly - ey, lz - ez, lx + sx + ex, ly + sy + ey, lz + sz + ez );
+            
+            cell.children[ childIndex ] = child;
+        }
+        
+        return ( child );
+    }
+    
+    /**
+     * Computes the level of the cell, a node with the given bounds belongs to.
+     */
+    private final int computeLevel( Bounds bounds )
+    {
+        final float cx = bounds.getCenterX();
+        final float cy = bounds.getCenterY();
+        final float cz = bounds.getCenterZ();
+        
+        if ( ( cx < lowerX ) || ( cy < lowerY ) || ( cz < lowerZ ) || ( cx >= lowerX + sizeX ) || ( cy >= lowerY + sizeY ) || ( cz >= lowerZ + sizeZ ) )
+            return ( 0 );
+        
+        final float radius = bounds.getMaxCenterDistance();
+        
+        if ( radius <= 0f )
+            return ( maxLevel );
+        
+        // A node fits into a loose cell of size s, if radius <= (looseness - 1) * s / 2.
+        final float minSize = Math.min( sizeX, Math.min( sizeY, sizeZ ) );
+        final float ratio = ( looseness - 1f ) * minSize / ( 2f * radius );
+        
+        if ( ratio < 1f )
+            return ( 0 );
+        
+        return ( Math.min( maxLevel, Math.getExponent( ratio ) ) );
+    }
+    
+    private static final int toCell( float v, float lower, float size, int numCells )
+    {
+        final int c = (int)( ( v - lower ) * numCells / size );
+        
+        return ( Math.max( 0, Math.min( numCells - 1, c ) ) );
+    }
+    
+    private final void reinsert( Entry entry )
+    {
+        final Bounds bounds = entry.node.getWorldBounds();
+        final Cell oldCell = entry.cell;
+        
+        final int level = entry.node.isIgnoreBounds() ? 0 : computeLevel( bounds );
+        final int numCells = 1 << level;
+        final int cellX = ( level == 0 ) ? 0 : toCell( bounds.getCenterX(), lowerX, sizeX, numCells );
+        final int cellY = ( level == 0 ) ? 0 : toCell( bounds.getCenterY(), lowerY, sizeY, numCells );
+        final int cellZ = ( level == 0 ) ? 0 : toCell( bounds.getCenterZ(), lowerZ, sizeZ, numCells );
+        
+        if ( ( oldCell.level == level ) && ( oldCell.cellX == cellX ) && ( oldCell.cellY == cellY ) && ( oldCell.cellZ == cellZ ) )
+            return;
+        
+        // find the common ancestor
+        Cell ancestor = oldCell;
+        while ( ( ancestor.level > level ) || ( ( cellX >> ( level - ancestor.level ) ) != ancestor.cellX ) || ( ( cellY >> ( level - ancestor.level ) ) != ancestor.cellY ) || ( ( cellZ >> ( level - ancestor.level ) ) != ancestor.cellZ ) )
+        {
+            ancestor = ancestor.parent;
+        }
+        
+        // descend to the new cell
+        Cell newCell = ancestor;
+        while ( newCell.level < level )
+        {
+            final int shift = level - newCell.level - 1;
+            final int childIndex = ( ( cellX >> shift ) & 1 ) | ( ( ( cellY >> shift ) & 1 ) << 1 ) | ( ( ( cellZ >> shift ) & 1 ) << 2 );
+            
+            newCell = getChildCell( newCell, childIndex );
+        }
+        
+        oldCell.removeNode( entry );
+        updateSubtreeCounts( oldCell, ancestor, -1 );
+        
+        newCell.addNode( entry );
+        updateSubtreeCounts( newCell, ancestor, +1 );
+        
+        numReinsertions++;
+    }
+    
+    /**
+     * Reinserts all nodes, that have been reported as moved.
+     * This is automatically done before culling.
+     */
+    public final void processPendingUpdates()
+    {
+        for ( int i = 0; i < numPendingEntries; i++ )
+        {
+            final Entry entry = pendingEntries[ i ];
+            pendingEntries[ i ] = null;
+            
+            entry.pending = false;
+            reinsert( entry );
+        }
+        
+        numPendingEntries = 0;
+    }
+    
+    /**
+     * Drops all cells, that don't contain any nodes.
+     * Empty cells are kept by default to avoid reallocations for moving nodes.
+     */
+    public final void trimEmptyCells()
+    {
+        trimEmptyCells( rootCell );
+    }
+    
+    private static final void trimEmptyCells( Cell cell )
+    {
+        for ( int i = 0; i < 8; i++ )
+        {
+            final Cell child = cell.children[ i ];
+            
+            if ( child != null )
+            {
+                if ( child.numSubtreeNodes == 0 )
+                    cell.children[ i ] = null;
+                else
+                    trimEmptyCells( child );
+            }
+        }
+    }
+    
+    private final void cullLooseOcTreeAtoms( Classification parentClassify, int parentPlaneMask, Cell cell, boolean cullingSuppressed, View view, Point3f viewPosition, Frustum frustum, RenderBinProvider binProvider, OpenGLCapabilities glCaps, long frameId, long nanoTime, long nanoStep, PickRay pickRay, boolean isShadowPass, FrustumCuller frustumCuller )
+    {
+        if ( cell.numSubtreeNodes == 0 )
+            return;
+        
+        Classification classify = parentClassify;
+        int planeMask = parentPlaneMask;
+        
+        if ( cell != rootCell )
+        {
+            if ( pickRay != null )
+            {
+                if ( !cell.bounds.intersects( pickRay ) )
+                    return;
+            }
+            else if ( !cullingSuppressed && ( classify != Classification.INSIDE ) )
+            {
+                planeMask = PlaneMaskClassifier.classifyBox( frustum, cell.bounds, ( classify == null ) ? PlaneMaskClassifier.ALL_PLANES : parentPlaneMask, cellCullingPlaneHint );
+                
+                if ( PlaneMaskClassifier.isOutside( planeMask ) )
+                {
+                    cellCullingPlaneHint = PlaneMaskClassifier.getRejectingPlane( planeMask );
+                    
+                    return;
+                }
+                
+                classify = PlaneMaskClassifier.getClassification( planeMask );
+            }
+            else
+            {
+                cullingSuppressed = true;
+            }
+        }
+        
+        for ( int i = 0; i < cell.numNodes; i++ )
+        {
+            frustumCuller.cullNodeAtoms( cell.entries[ i ].node, classify, planeMask, cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
+        }
+        
+        for ( int i = 0; i < 8; i++ )
+        {
+            final Cell child = cell.children[ i ];
+            
+            if ( child != null )
+                cullLooseOcTreeAtoms( classify, planeMask, child, cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+        }
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void cullSpecialNode( LooseOcTreeGroup node, boolean cullingSuppressed, View view, Point3f viewPosition, Frustum frustum, RenderBinProvider binProvider, OpenGLCapabilities glCaps, long frameId, long nanoTime, long nanoStep, PickRay pickRay, boolean isShadowPass, FrustumCuller frustumCuller )
+    {
+        if ( node.getTransformGroup() != null )
+        {
+            throw new Error( "A LooseOcTreeGroup must not be nested into a parent TransformGroup!" );
+        }
+        
+        node.processPendingUpdates();
+        
+        node.cullLooseOcTreeAtoms( null, PlaneMaskClassifier.ALL_PLANES, node.rootCell, cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+    }
+    
+    private static final void dump( Cell cell, String indent )
+    {
+        System.out.println( indent + "Cell " + cell.level + " (" + cell.cellX + ", " + cell.cellY + ", " + cell.cellZ + "): " + cell.numNodes + " nodes, " + cell.numSubtreeNodes + " in subtree" );
+        
+        for ( int i = 0; i < 8; i++ )
+        {
+            if ( cell.children[ i ] != null )
+                dump( cell.children[ i ], indent + "  " );
+        }
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public final void dump()
+    {
+        dump( rootCell, "" );
+    }
+    
+    public LooseOcTreeGroup( float centerX, float centerY, float centerZ, float sizeX, float sizeY, float sizeZ, int maxLevel, float looseness )
+    {
+        super();
+        
+        if ( ( maxLevel < 0 ) || ( maxLevel > MAX_MAX_LEVEL ) )
+            throw new IllegalArgumentException( "maxLevel must be in [0, " + MAX_MAX_LEVEL + "]." );
+        
+        if ( looseness <= 1f )
+            throw new IllegalArgumentException( "looseness must be greater than 1." );
+        
+        this.lowerX = centerX - sizeX * 0.5f;
+        this.lowerY = centerY - sizeY * 0.5f;
+        this.lowerZ = centerZ - sizeZ * 0.5f;
+        this.sizeX = sizeX;
+        this.sizeY = sizeY;
+        this.sizeZ = sizeZ;
+        this.maxLevel = maxLevel;
+        this.looseness = looseness;
+        
+        this.rootCell = new Cell( null, 0, 0, 0, 0 );
+        rootCell.bounds.set( -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE );
+        
+        this.setBounds( new BoundingBox() );
+    }
+    
+    public LooseOcTreeGroup( Tuple3f center, float sizeX, float sizeY, float sizeZ, int maxLevel, float looseness )
+    {
+        this( center.getX(), center.getY(), center.getZ(), sizeX, sizeY, sizeZ, maxLevel, looseness );
+    }
+    
+    public LooseOcTreeGroup( float centerX, float centerY, float centerZ, float size, int maxLevel, float looseness )
+    {
+        this( centerX, centerY, centerZ, size, size, size, maxLevel, looseness );
+    }
+    
+    public LooseOcTreeGroup( Tuple3f center, float size, int maxLevel, float looseness )
+    {
+        this( center.getX(), center.getY(), center.getZ(), size, maxLevel, looseness );
+    }
+    
+    public LooseOcTreeGroup( float centerX, float centerY, float centerZ, float size )
+    {
+        this( centerX, centerY, centerZ, size, DEFAULT_MAX_LEVEL, DEFAULT_LOOSENESS );
+    }
+    
+    public LooseOcTreeGroup( Tuple3f center, float size )
+    {
+        this( center.getX(), center.getY(), center.getZ(), size );
+    }
+}
@@ -49,6 +49,7 @@ import org.xith3d.render.CanvasPeer;
 import org.xith3d.render.Clipper;
 import org.xith3d.render.ClipperInfo;
 import org.xith3d.render.ScissorRect;
+import org.xith3d.render.preprocessing.BoundsAtom;
 import org.xith3d.render.preprocessing.OrderedState;
 import org.xith3d.scenegraph.modifications.ScenegraphModificationsListener;
 import org.xith3d.scenegraph.traversal.DetailedTraversalCallback;
@@ -123,8 +124,10 @@ public abstract class Node extends SceneGraphObject implements SpatialNode
     protected BoundsTypeHint instanceBoundsTypeHint;
     
     private Bounds worldBounds;
+    private long worldBoundsStamp = 0L;
     
     private boolean showBounds = false;
+    private BoundsAtom boundsAtom = null;
     
     protected boolean boundsDirty = false;
     
@@ -147,6 +150,167 @@ public abstract class Node extends SceneGraphObject implements SpatialNode
         return ( treeCell );
     }
     
+    private int cullingPlaneHint = 0;
+    
+    /**
+     * Sets the index of the frustum plane, that rejected this Node the last time it was culled.
+     * 
+     * @param plane
+     */
+    final void setCullingPlaneHint( int plane )
+    {
+        this.cullingPlaneHint = plane;
+    }
+    
+    /**
+     * @return the index of the frustum plane, that rejected this Node the last time it was culled.
+     */
+    final int getCullingPlaneHint()
+    {
+        return ( cullingPlaneHint );
+    }
+    
+    private WorldBoundsStore worldBoundsStore = null;
+    private int worldBoundsSlot = -1;
+    
+    /**
+     * Assigns a slot in a {@link WorldBoundsStore} to this Node.
+     * 
+     * @param store
+     * @param slot
+     */
+    final void setWorldBoundsSlot( WorldBoundsStore store, int slot )
+    {
+        this.worldBoundsStore = store;
+        this.worldBoundsSlot = slot;
+    }
+    
+    /**
+     * @return the {@link WorldBoundsStore}, that holds a copy of this Node's world bounds or null.
+     */
+    public final WorldBoundsStore getWorldBoundsStore()
+    {
+        return ( worldBoundsStore );
+    }
+    
+    /**
+     * @return this Node's slot in its {@link WorldBoundsStore} or -1.
+     */
+    public final int getWorldBoundsSlot()
+    {
+        return ( worldBoundsSlot );
+    }
+    
+    /**
+     * Copies the current world bounds into the {@link WorldBoundsStore}, if any.
+     */
+    final void updateWorldBoundsStore()
+    {
+        if ( worldBoundsStore != null )
+            worldBoundsStore.update( worldBoundsSlot, this );
+    }
+    
+    /**
+     * @return the stamp of the world transform, this Node's world bounds are relative to.
+     */
+    final long getFrameTransformStamp()
+    {
+        if ( this instanceof TransformGroup )
+            return ( ( (TransformGroup)this ).getWorldTransformStamp() );
+        
+        if ( transformGroup == null )
+            return ( 0L );
+        
+        return ( transformGroup.getWorldTransformStamp() );
+    }
+    
+    /**
+     * Marks the world bounds as computed with the current world transform
+     * and copies them into the {@link WorldBoundsStore}.
+     */
+    final void onWorldBoundsUpdated()
+    {
+        worldBoundsStamp = getFrameTransformStamp();
+        
+        updateWorldBoundsStore();
+    }
+    
+    /**
+     * Recomputes the world bounds, if the world transform
+     * has changed since they were computed.<br>
+     * <br>
+     * This is not thread-safe. Worker threads of the parallel culling
+     * may only get here for Nodes of their own subtrees. Everything above these subtrees
+     * is validated by the rendering thread before the workers are started.
+     */
+    final void validateWorldBounds()
+    {
+        final long stamp = getFrameTransformStamp();
+        
+        if ( ( stamp != worldBoundsStamp ) && ( worldBounds != null ) && !isIgnoreBounds() )
+        {
+            if ( ( parent != null ) && !parent.boundsAutoCompute )
+            {
+                worldBounds.set( parent.getWorldBounds() );
+            }
+            else if ( ( this instanceof GroupNode ) && ( (GroupNode)this ).untransformedBoundsStale )
+            {
+                // Only the path down to the moved TransformGroups needs to be combined.
+                final GroupNode group = (GroupNode)this;
+                group.combineBounds( null, worldBounds, 0, group.numChildren(), true );
+            }
+            else
+            {
+                worldBounds.set( untransformedBounds );
+                worldBounds.transform( getWorldTransform().getMatrix4f() );
+            }
+            
+            worldBoundsStamp = stamp;
+            
+            updateWorldBoundsStore();
+        }
+    }
+    
+    private long cullingModStamp = 0L;
+    private long cullingSubtreeModStamp = 0L;
+    
+    /**
+     * Sets the modification stamp of the last change to this Node itself,
+     * that affects the whole subtree (transform, properties, etc.).
+     * 
+     * @param stamp
+     */
+    final void setCullingModStamp( long stamp )
+    {
+        this.cullingModStamp = stamp;
+    }
+    
+    /**
+     * @return the modification stamp of the last change to this Node itself.
+     */
+    final long getCullingModStamp()
+    {
+        return ( cullingModStamp );
+    }
+    
+    /**
+     * Sets the modification stamp of the last change to this Node or any Node below it.
+     * 
+     * @param stamp
+     */
+    final void setCullingSubtreeModStamp( long stamp )
+    {
+        this.cullingSubtreeModStamp = stamp;
+    }
+    
+    /**
+     * @return the modification stamp of the last change to this Node or any Node below it.
+     */
+    final long getCullingSubtreeModStamp()
+    {
+        return ( cullingSubtreeModStamp );
+    }
+    
     public static void setBoundsTypeHint( BoundsTypeHint bth )
     {
         if ( bth == null )
@@ -277,6 +441,8 @@ public abstract class Node extends SceneGraphObject implements SpatialNode
         
         this.ignoreBounds = ignoreBounds;
         
+        updateWorldBoundsStore();
+        
         //setBoundsDirty();
     }
     
@@ -385,6 +551,34 @@ public abstract class Node extends SceneGraphObject implements SpatialNode
     public void setShowBounds( boolean show )
     {
         showBounds = show;
+        
+        if ( !show )
+        {
+            boundsAtom = null;
+        }
+    }
+    
+    /**
+     * Sets the RenderAtom, that is reused to render this Node's bounds
+     * in every frame.
+     * 
+     * Do not use on your own ! For internal use only !
+     * 
+     * @param atom The new atom
+     */
+    final void setBoundsAtom( BoundsAtom atom )
+    {
+        this.boundsAtom = atom;
+    }
+    
+    /**
+     * Do not use on your own ! For internal use only !
+     * 
+     * @return this Node's current bounds RenderAtom
+     */
+    final BoundsAtom getBoundsAtom()
+    {
+        return ( boundsAtom );
     }
     
     /**
@@ -507,6 +701,8 @@ public abstract class Node extends SceneGraphObject implements SpatialNode
     
     public final Bounds getWorldBounds()
     {
+        validateWorldBounds();
+        
         return ( worldBounds );
     }
     
@@ -704,6 +900,7 @@ public abstract class Node extends SceneGraphObject implements SpatialNode
     private final void setAllWorldBounds( Bounds b )
     {
         worldBounds.set( b );
+        onWorldBoundsUpdated();
     }
     
     /**
@@ -726,6 +923,8 @@ public abstract class Node extends SceneGraphObject implements SpatialNode
         worldBounds.set( untransformedBounds );
         worldBounds.transform( getWorldTransform().getMatrix4f() );
         
+        onWorldBoundsUpdated();
+        
         if ( !boundsAutoCompute )
         {
             if ( this instanceof GroupNode )
@@ -793,43 +992,19 @@ public abstract class Node extends SceneGraphObject implements SpatialNode
     }
     
     /**
-     * If this is a TansformGroup, then it will multiply the transform against
-     * the parent transform and store it into the world-transform matrix.
+     * Marks the world transforms of this Node's subtree as dirty.
+     * If this is a TransformGroup, its transform will be multiplied against
+     * the parent transform, when its world-transform is requested next.
+     * The subtree's world transforms and world bounds follow lazily.
      * 
      * <b>Never use this method on your own! It's just for internal use.</b>
      */
     public void updateWorldTransform()
     {
-        ProfileTimer.startProfile( X3DLog.LOG_CHANNEL, "Node::updateWorldTransform" );
-        
         if ( this instanceof TransformGroup )
         {
-            final TransformGroup tg = (TransformGroup)this;
-            final Transform3D t = tg.getWorldTransform();
-            
-            if ( getTransformGroup() == null )
-            {
-                t.set( tg.getTransform() );
-            }
-            else
-            {
-                //getTransformGroup().getWorldTransform().transform( tg.getTransform(), t );
-                t.set( tg.getTransform() );
-                getTransformGroup().getWorldTransform().transform( t );
-            }
+            ( (TransformGroup)this ).setLocalTransformDirty();
         }
-        
-        if ( this instanceof GroupNode )
-        {
-            final GroupNode g = (GroupNode)this;
-            final int n = g.numChildren();
-            for ( int i = 0; i < n; i++ )
-            {
-                g.getChild( i ).updateWorldTransform();
-            }
-        }
-        
-        ProfileTimer.endProfile();
     }
     
     /**
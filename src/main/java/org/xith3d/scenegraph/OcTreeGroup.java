@@ -33,7 +33,6 @@
  */
 package org.xith3d.scenegraph;
 
-import org.openmali.spatial.bodies.Classifier;
 import org.openmali.spatial.bodies.Frustum;
 import org.openmali.spatial.bodies.Classifier.Classification;
 import org.openmali.spatial.bounds.BoundingBox;
@@ -44,6 +43,7 @@ import org.openmali.vecmath2.Tuple3f;
 import org.xith3d.picking.PickRay;
 import org.xith3d.render.OpenGLCapabilities;
 import org.xith3d.render.preprocessing.FrustumCuller;
+import org.xith3d.render.preprocessing.PlaneMaskClassifier;
 import org.xith3d.render.preprocessing.RenderBinProvider;
 
 /**
@@ -55,6 +55,12 @@ public class OcTreeGroup extends Group implements SpecialCullingNode< OcTreeGrou
 {
     private final OcTree<Node> ocTree;
     
+    /**
+     * The frustum plane, that rejected the last culled cell.
+     * Neighboring cells are likely to be rejected by the same plane.
+     */
+    private int cellCullingPlaneHint = 0;
+    
     final OcTree<Node> getOcTree()
     {
         return ( ocTree );
@@ -144,19 +150,26 @@ public class OcTreeGroup extends Group implements SpecialCullingNode< OcTreeGrou
     /**
      * This is a very obvious standard OcTree-culling code.
      */
-    private final void cullOcTreeAtoms( Classification parentClassify, OcCell<Node> cell, boolean cullingSuppressed, View view, Point3f viewPosition, Frustum frustum, RenderBinProvider binProvider, OpenGLCapabilities glCaps, long frameId, long nanoTime, long nanoStep, PickRay pickRay, boolean isShadowPass, FrustumCuller frustumCuller )
+    private final void cullOcTreeAtoms( Classification parentClassify, int parentPlaneMask, OcCell<Node> cell, boolean cullingSuppressed, View view, Point3f viewPosition, Frustum frustum, RenderBinProvider binProvider, OpenGLCapabilities glCaps, long frameId, long nanoTime, long nanoStep, PickRay pickRay, boolean isShadowPass, FrustumCuller frustumCuller )
     {
         //if ( ( cell.getNumNodes() == 0 ) && !cell.hasChildCells() )
         //    return ( 0 );
         
         Classification classify = parentClassify;
+        int planeMask = parentPlaneMask;
         
         if ( !cullingSuppressed && ( classify != Classification.INSIDE ) )
         {
-            classify = Classifier.classifyFrustumBox( frustum, cell );
+            planeMask = PlaneMaskClassifier.classifyBox( frustum, cell, ( classify == null ) ? PlaneMaskClassifier.ALL_PLANES : parentPlaneMask, cellCullingPlaneHint );
             
-            if ( classify == Classification.OUTSIDE )
+            if ( PlaneMaskClassifier.isOutside( planeMask ) )
+            {
+                cellCullingPlaneHint = PlaneMaskClassifier.getRejectingPlane( planeMask );
+                
                 return;
+            }
+            
+            classify = PlaneMaskClassifier.getClassification( planeMask );
         }
         else
         {
@@ -167,8 +180,8 @@ public class OcTreeGroup extends Group implements SpecialCullingNode< OcTreeGrou
         
         for ( int i = 0; i < cell.getNumNodes(); i++ )
         {
-            frustumCuller.cullNodeAtoms( cell.getNode( i ), classify, cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
-            //frustumCuller.cullNodeAtoms( cell.getNode( i ), classify, true, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
+            frustumCuller.cullNodeAtoms( cell.getNode( i ), classify, planeMask, cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
+            //frustumCuller.cullNodeAtoms( cell.getNode( i ), classify, planeMask, true, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
         }
         
         if ( cell.hasChildCells() )
@@ -208,19 +221,26 @@ public class OcTreeGroup extends Group implements SpecialCullingNode< OcTreeGrou
      * A bitmask is modified, if a "dominating" extended cell was culled
      * to avoid unnecessary checks of standard-OcCells.
      */
-    private final byte cullOcTreeAtomsExt( byte result, Classification parentClassify, OcCell<Node> cell, boolean cullingSuppressed, View view, Point3f viewPosition, Frustum frustum, RenderBinProvider binProvider, OpenGLCapabilities glCaps, long frameId, long nanoTime, long nanoStep, PickRay pickRay, boolean isShadowPass, FrustumCuller frustumCuller )
+    private final byte cullOcTreeAtomsExt( byte result, Classification parentClassify, int parentPlaneMask, OcCell<Node> cell, boolean cullingSuppressed, View view, Point3f viewPosition, Frustum frustum, RenderBinProvider binProvider, OpenGLCapabilities glCaps, long frameId, long nanoTime, long nanoStep, PickRay pickRay, boolean isShadowPass, FrustumCuller frustumCuller )
     {
         //if ( ( cell.getNumNodes() == 0 ) && !cell.hasChildCells() )
         //    return;
         
         Classification classify;
+        int planeMask = parentPlaneMask;
         
         if ( !cullingSuppressed && ( parentClassify != Classification.INSIDE ) )
         {
-            classify = Classifier.classifyFrustumBox( frustum, cell );
+            planeMask = PlaneMaskClassifier.classifyBox( frustum, cell, ( parentClassify == null ) ? PlaneMaskClassifier.ALL_PLANES : parentPlaneMask, cellCullingPlaneHint );
             
-            if ( classify == Classification.OUTSIDE )
+            if ( PlaneMaskClassifier.isOutside( planeMask ) )
+            {
+                cellCullingPlaneHint = PlaneMaskClassifier.getRejectingPlane( planeMask );
+                
                 return ( result );
+            }
+            
+            classify = PlaneMaskClassifier.getClassification( planeMask );
         }
         else
         {
@@ -236,8 +256,8 @@ public class OcTreeGroup extends Group implements SpecialCullingNode< OcTreeGrou
         
         for ( int i = 0; i < cell.getNumNodes(); i++ )
         {
-            frustumCuller.cullNodeAtoms( cell.getNode( i ), classify, cs, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
-            //frustumCuller.cullNodeAtoms( cell.getNode( i ), classify, true, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
+            frustumCuller.cullNodeAtoms( cell.getNode( i ), classify, planeMask, cs, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
+            //frustumCuller.cullNodeAtoms( cell.getNode( i ), classify, planeMask, true, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
         }
         
         if ( cell.hasChildCells() )
@@ -254,29 +274,29 @@ public class OcTreeGroup extends Group implements SpecialCullingNode< OcTreeGrou
                 // B8 : OcUpperFrontRight
                 
                 if ( cell.getCellQuUpperBack() != null )
-                    culled |= cullOcTreeAtomsExt( (byte)(B5 | B6), classify, cell.getCellQuUpperBack(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                    culled |= cullOcTreeAtomsExt( (byte)(B5 | B6), classify, planeMask, cell.getCellQuUpperBack(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
                 if ( cell.getCellQuUpperFront() != null )
-                    culled |= cullOcTreeAtomsExt( (byte)(B7 | B8), classify, cell.getCellQuUpperFront(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                    culled |= cullOcTreeAtomsExt( (byte)(B7 | B8), classify, planeMask, cell.getCellQuUpperFront(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
                 if ( cell.getCellQuUpperLeft() != null )
-                    culled |= cullOcTreeAtomsExt( (byte)(B5 | B7), classify, cell.getCellQuUpperLeft(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                    culled |= cullOcTreeAtomsExt( (byte)(B5 | B7), classify, planeMask, cell.getCellQuUpperLeft(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
                 if ( cell.getCellQuUpperRight() != null )
-                    culled |= cullOcTreeAtomsExt( (byte)(B6 | B8), classify, cell.getCellQuUpperRight(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                    culled |= cullOcTreeAtomsExt( (byte)(B6 | B8), classify, planeMask, cell.getCellQuUpperRight(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
                 if ( cell.getCellQuLowerBack() != null )
-                    culled |= cullOcTreeAtomsExt( (byte)(B1 | B2), classify, cell.getCellQuLowerBack(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                    culled |= cullOcTreeAtomsExt( (byte)(B1 | B2), classify, planeMask, cell.getCellQuLowerBack(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
                 if ( cell.getCellQuLowerFront() != null )
-                    culled |= cullOcTreeAtomsExt( (byte)(B3 | B4), classify, cell.getCellQuLowerFront(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                    culled |= cullOcTreeAtomsExt( (byte)(B3 | B4), classify, planeMask, cell.getCellQuLowerFront(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
                 if ( cell.getCellQuLowerLeft() != null )
-                    culled |= cullOcTreeAtomsExt( (byte)(B1 | B3), classify, cell.getCellQuLowerLeft(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                    culled |= cullOcTreeAtomsExt( (byte)(B1 | B3), classify, planeMask, cell.getCellQuLowerLeft(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
                 if ( cell.getCellQuLowerRight() != null )
-                    culled |= cullOcTreeAtomsExt( (byte)(B2 | B4), classify, cell.getCellQuLowerRight(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                    culled |= cullOcTreeAtomsExt( (byte)(B2 | B4), classify, planeMask, cell.getCellQuLowerRight(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
                 if ( cell.getCellQuBackLeft() != null )
-                    culled |= cullOcTreeAtomsExt( (byte)(B1 | B5), classify, cell.getCellQuBackLeft(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                    culled |= cullOcTreeAtomsExt( (byte)(B1 | B5), classify, planeMask, cell.getCellQuBackLeft(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
                 if ( cell.getCellQuBackRight() != null )
-                    culled |= cullOcTreeAtomsExt( (byte)(B2 | B6), classify, cell.getCellQuBackRight(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                    culled |= cullOcTreeAtomsExt( (byte)(B2 | B6), classify, planeMask, cell.getCellQuBackRight(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
                 if ( cell.getCellQuFrontLeft() != null )
-                    culled |= cullOcTreeAtomsExt( (byte)(B3 | B7), classify, cell.getCellQuFrontLeft(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                    culled |= cullOcTreeAtomsExt( (byte)(B3 | B7), classify, planeMask, cell.getCellQuFrontLeft(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
                 if ( cell.getCellQuFrontRight() != null )
-                    culled |= cullOcTreeAtomsExt( (byte)(B4 | B8), classify, cell.getCellQuFrontRight(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                    culled |= cullOcTreeAtomsExt( (byte)(B4 | B8), classify, planeMask, cell.getCellQuFrontRight(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
                 
                 // B1 : OcLowerBackLeft
                 // B2 : OcLowerBackRight
@@ -288,17 +308,17 @@ public class OcTreeGroup extends Group implements SpecialCullingNode< OcTreeGrou
                 // B8 : OcUpperFrontRight
                 
                 if ( cell.getCellHUpper() != null )
-                    culled |= cullOcTreeAtomsExt( (byte)(B5 | B6 | B7 | B8), classify, cell.getCellHUpper(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                    culled |= cullOcTreeAtomsExt( (byte)(B5 | B6 | B7 | B8), classify, planeMask, cell.getCellHUpper(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
                 if ( cell.getCellHLower() != null )
-                    culled |= cullOcTreeAtomsExt( (byte)(B1 | B2 | B3 | B4), classify, cell.getCellHLower(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                    culled |= cullOcTreeAtomsExt( (byte)(B1 | B2 | B3 | B4), classify, planeMask, cell.getCellHLower(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
                 if ( cell.getCellHLeft() != null )
-                    culled |= cullOcTreeAtomsExt( (byte)(B1 | B3 | B5 | B7), classify, cell.getCellHLeft(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                    culled |= cullOcTreeAtomsExt( (byte)(B1 | B3 | B5 | B7), classify, planeMask, cell.getCellHLeft(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
                 if ( cell.getCellHRight() != null )
-                    culled |= cullOcTreeAtomsExt( (byte)(B2 | B4 | B6 | B8), classify, cell.getCellHRight(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                    culled |= cullOcTreeAtomsExt( (byte)(B2 | B4 | B6 | B8), classify, planeMask, cell.getCellHRight(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
                 if ( cell.getCellHBack() != null )
-                    culled |= cullOcTreeAtomsExt( (byte)(B1 | B2 | B5 | B6), classify, cell.getCellHBack(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                    culled |= cullOcTreeAtomsExt( (byte)(B1 | B2 | B5 | B6), classify, planeMask, cell.getCellHBack(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
                 if ( cell.getCellHFront() != null )
-                    culled |= cullOcTreeAtomsExt( (byte)(B3 | B4 | B7 | B8), classify, cell.getCellHFront(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                    culled |= cullOcTreeAtomsExt( (byte)(B3 | B4 | B7 | B8), classify, planeMask, cell.getCellHFront(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
             }
             
             // B1 : OcLowerBackLeft
@@ -311,21 +331,21 @@ public class OcTreeGroup extends Group implements SpecialCullingNode< OcTreeGrou
             // B8 : OcUpperFrontRight
             
             if ( ( (byte)( culled & B1 ) == B0 ) && ( cell.getCellOcLowerBackLeft() != null ) )
-                cullOcTreeAtomsExt( B0, classify, cell.getCellOcLowerBackLeft(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                cullOcTreeAtomsExt( B0, classify, planeMask, cell.getCellOcLowerBackLeft(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
             if ( ( (byte)( culled & B2 ) == B0 ) && ( cell.getCellOcLowerBackRight() != null ) )
-                cullOcTreeAtomsExt( B0, classify, cell.getCellOcLowerBackRight(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                cullOcTreeAtomsExt( B0, classify, planeMask, cell.getCellOcLowerBackRight(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
             if ( ( (byte)( culled & B3 ) == B0 ) && ( cell.getCellOcLowerFrontLeft() != null ) )
-                cullOcTreeAtomsExt( B0, classify, cell.getCellOcLowerFrontLeft(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                cullOcTreeAtomsExt( B0, classify, planeMask, cell.getCellOcLowerFrontLeft(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
             if ( ( (byte)( culled & B4 ) == B0 ) && ( cell.getCellOcLowerFrontRight() != null ) )
-                cullOcTreeAtomsExt( B0, classify, cell.getCellOcLowerFrontRight(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                cullOcTreeAtomsExt( B0, classify, planeMask, cell.getCellOcLowerFrontRight(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
             if ( ( (byte)( culled & B5 ) == B0 ) && ( cell.getCellOcUpperBackLeft() != null ) )
-                cullOcTreeAtomsExt( B0, classify, cell.getCellOcUpperBackLeft(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                cullOcTreeAtomsExt( B0, classify, planeMask, cell.getCellOcUpperBackLeft(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
             if ( ( (byte)( culled & B6 ) == B0 ) && ( cell.getCellOcUpperBackRight() != null ) )
-                cullOcTreeAtomsExt( B0, classify, cell.getCellOcUpperBackRight(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                cullOcTreeAtomsExt( B0, classify, planeMask, cell.getCellOcUpperBackRight(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
             if ( ( (byte)( culled & B7 ) == B0 ) && ( cell.getCellOcUpperFrontLeft() != null ) )
-                cullOcTreeAtomsExt( B0, classify, cell.getCellOcUpperFrontLeft(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                cullOcTreeAtomsExt( B0, classify, planeMask, cell.getCellOcUpperFrontLeft(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
             if ( ( (byte)( culled & B8 ) == B0 ) && ( cell.getCellOcUpperFrontRight() != null ) )
-                cullOcTreeAtomsExt( B0, classify, cell.getCellOcUpperFrontRight(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                cullOcTreeAtomsExt( B0, classify, planeMask, cell.getCellOcUpperFrontRight(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
         }
         
         return ( B0 );
@@ -345,9 +365,9 @@ public class OcTreeGroup extends Group implements SpecialCullingNode< OcTreeGrou
         OcCell<Node> rootCell = _SG_PrivilegedAccess.getOcTree( ocTreeGroup ).getRootCell();
         
         if ( rootCell.usesExtendedCells() )
-            cullOcTreeAtomsExt( B0, null, rootCell, cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+            cullOcTreeAtomsExt( B0, null, PlaneMaskClassifier.ALL_PLANES, rootCell, cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
         else
-            cullOcTreeAtoms( null, rootCell, cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+            cullOcTreeAtoms( null, PlaneMaskClassifier.ALL_PLANES, rootCell, cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
     }
     
     /**
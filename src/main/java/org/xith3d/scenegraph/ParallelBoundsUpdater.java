@@ -0,0 +1,470 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.scenegraph;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+
+import org.openmali.spatial.bounds.BoundingBox;
+import org.openmali.spatial.bounds.BoundingSphere;
+import org.openmali.spatial.bounds.Bounds;
+
+/**
+ * Updates the bounds of a scenegraph in parallel.<br>
+ * <br>
+ * Big child lists (see {@link #setThreshold(int)}) are split into ranges,
+ * which are updated by a pool of worker threads. Each worker combines
+ * the bounds of its range into partial bounds, which are combined
+ * into the group's bounds afterwards. Big subtrees are descended into
+ * the same way.<br>
+ * <br>
+ * Box bounds are the same as computed by {@link Node#updateBounds(boolean)}.
+ * Sphere bounds of split groups may be slightly bigger, since combining spheres
+ * depends on the order, but they still enclose all children.
+ */
+public class ParallelBoundsUpdater
+{
+    private static final class RangeTask implements Callable< Object >
+    {
+        private GroupNode group;
+        private int plannedIndex;
+        private int first;
+        private int last;
+        private boolean onlyDirty;
+        private boolean combine;
+        
+        private Bounds untransformedBounds = null;
+        private Bounds worldBounds = null;
+        private boolean hasValidBounds = false;
+        
+        private static final Bounds newBounds( Bounds template, Bounds current )
+        {
+            if ( template instanceof BoundingBox )
+                return ( ( current instanceof BoundingBox ) ? current : new BoundingBox() );
+            
+            return ( ( current instanceof BoundingSphere ) ? current : new BoundingSphere() );
+        }
+        
+        public void setup( GroupNode group, int plannedIndex, int first, int last, boolean onlyDirty, boolean combine )
+        {
+            this.group = group;
+            this.plannedIndex = plannedIndex;
+            this.first = first;
+            this.last = last;
+            this.onlyDirty = onlyDirty;
+            this.combine = combine;
+            
+            if ( combine )
+            {
+                this.untransformedBounds = newBounds( group.untransformedBounds, untransformedBounds );
+                this.worldBounds = newBounds( group.untransformedBounds, worldBounds );
+            }
+            
+            this.hasValidBounds = false;
+        }
+        
+        public void reset()
+        {
+            this.group = null;
+        }
+        
+        public Object call()
+        {
+            for ( int i = first; i < last; i++ )
+            {
+                final Node node = group.getChild( i );
+                if ( !node.isIgnoreBounds() )
+                {
+                    node.updateBoundsCheap( onlyDirty, true, false, false );
+                }
+            }
+            
+            if ( combine )
+            {
+                hasValidBounds = group.combineBounds( untransformedBounds, worldBounds, first, last, false );
+            }
+            
+            return ( null );
+        }
+    }
+    
+    private static final class PlannedGroup
+    {
+        private GroupNode group;
+        private int parentIndex;
+        private boolean combinePartials;
+        private boolean hasValidBounds;
+    }
+    
+    private static final ThreadFactory WORKER_THREAD_FACTORY = new ThreadFactory()
+    {
+        private int counter = 0;
+        
+        public synchronized Thread newThread( Runnable r )
+        {
+            final Thread thread = new Thread( r, "ParallelBoundsUpdater-Worker-" + ( ++counter ) );
+            thread.setDaemon( true );
+            
+            return ( thread );
+        }
+    };
+    
+    private int threshold = 1024;
+    private int numWorkerThreads = Runtime.getRuntime().availableProcessors();
+    private ExecutorService executor = null;
+    
+    private final ArrayList< RangeTask > tasksPool = new ArrayList< RangeTask >();
+    private final ArrayList< RangeTask > activeTasks = new ArrayList< RangeTask >();
+    private final ArrayList< PlannedGroup > plannedPool = new ArrayList< PlannedGroup >();
+    private int numPlanned = 0;
+    
+    /**
+     * Sets the minimum number of children or Shape3Ds a GroupNode must contain
+     * to be split across the worker threads.
+     * 
+     * @param threshold
+     */
+    public final void setThreshold( int threshold )
+    {
+        if ( threshold < 2 )
+            throw new IllegalArgumentException( "threshold must be at least 2." );
+        
+        this.threshold = threshold;
+    }
+    
+    /**
+     * @return the minimum number of children or Shape3Ds a GroupNode must contain
+     * to be split across the worker threads.
+     */
+    public final int getThreshold()
+    {
+        return ( threshold );
+    }
+    
+    /**
+     * Sets the number of worker threads.
+     * 
+     * @param numThreads
+     */
+    public final void setNumWorkerThreads( int numThreads )
+    {
+        if ( numThreads < 1 )
+            throw new IllegalArgumentException( "numThreads must be positive." );
+        
+        if ( numThreads != this.numWorkerThreads )
+        {
+            this.numWorkerThreads = numThreads;
+            
+            shutdownWorkers();
+        }
+    }
+    
+    /**
+     * @return the number of worker threads.
+     */
+    public final int getNumWorkerThreads()
+    {
+        return ( numWorkerThreads );
+    }
+    
+    /**
+     * Stops the worker threads. They are restarted on demand.
+     */
+    public final void shutdownWorkers()
+    {
+        if ( executor != null )
+        {
+            executor.shutdown();
+            executor = null;
+        }
+    }
+    
+    private final boolean isPlannable( GroupNode group, boolean onlyDirty )
+    {
+        if ( group.isIgnoreBounds() || !group.boundsAutoCompute || ( !group.boundsDirty && onlyDirty ) )
+            return ( false );
+        
+        // These groups maintain their own structures in their bounds update.
+        if ( group instanceof SpecialCullingNode< ? > )
+            return ( false );
+        
+        return ( ( group.numChildren() >= threshold ) || ( group.getTotalNumShapes() >= threshold ) );
+    }
+    
+    private final RangeTask addTask( GroupNode group, int plannedIndex, int first, int last, boolean onlyDirty, boolean combine )
+    {
+        final RangeTask task;
+        if ( activeTasks.size() < tasksPool.size() )
+        {
+            task = tasksPool.get( activeTasks.size() );
+        }
+        else
+        {
+            task = new RangeTask();
+            tasksPool.add( task );
+        }
+        
+        task.setup( group, plannedIndex, first, last, onlyDirty, combine );
+        activeTasks.add( task );
+        
+        return ( task );
+    }
+    
+    /**
+     * Splits the children of the given group into tasks and descends into big child groups.
+     * The PlannedGroups are collected in pre-order.
+     */
+    private void plan( GroupNode group, int parentIndex, boolean onlyDirty )
+    {
+        final PlannedGroup planned;
+        if ( numPlanned < plannedPool.size() )
+        {
+            planned = plannedPool.get( numPlanned );
+        }
+        else
+        {
+            planned = new PlannedGroup();
+            plannedPool.add( planned );
+        }
+        final int index = numPlanned++;
+        
+        planned.group = group;
+        planned.parentIndex = parentIndex;
+        planned.combinePartials = ( group.untransformedBounds instanceof BoundingBox ) || ( group.untransformedBounds instanceof BoundingSphere );
+        planned.hasValidBounds = false;
+        
+        // The tasks transform the children by the world transform above them. It is validated here,
+        // so that the workers only read it.
+        group.getFrameTransformStamp();
+        
+        final int n = group.numChildren();
+        final int chunkSize = Math.max( 64, n / ( numWorkerThreads * 4 ) );
+        
+        int rangeStart = 0;
+        for ( int i = 0; i < n; i++ )
+        {
+            final Node child = group.getChild( i );
+            final boolean descend = ( child instanceof GroupNode ) && isPlannable( (GroupNode)child, onlyDirty );
+            
+            if ( descend || ( i - rangeStart == chunkSize ) )
+            {
+                if ( i > rangeStart )
+                    addTask( group, index, rangeStart, i, onlyDirty, planned.combinePartials );
+                
+                rangeStart = descend ? i + 1 : i;
+            }
+            
+            if ( descend )
+            {
+                plan( (GroupNode)child, index, onlyDirty );
+            }
+        }
+        
+        if ( n > rangeStart )
+            addTask( group, index, rangeStart, n, onlyDirty, planned.combinePartials );
+    }
+    
+    /**
+     * Runs all active tasks by the worker threads and waits for them to finish.
+     */
+    private final void runTasks()
+    {
+        if ( activeTasks.size() == 0 )
+        {
+            return;
+        }
+        
+        if ( activeTasks.size() == 1 )
+        {
+            activeTasks.get( 0 ).call();
+            
+            return;
+        }
+        
+        if ( executor == null )
+        {
+            executor = Executors.newFixedThreadPool( numWorkerThreads, WORKER_THREAD_FACTORY );
+        }
+        
+        try
+        {
+            final List< Future< Object > > futures = executor.invokeAll( activeTasks );
+            
+            for ( int i = 0; i < futures.size(); i++ )
+            {
+                futures.get( i ).get();
+            }
+        }
+        catch ( InterruptedException e )
+        {
+            Thread.currentThread().interrupt();
+            
+            throw new Error( e );
+        }
+        catch ( ExecutionException e )
+        {
+            // Rethrow the worker's exception as if the bounds had been updated on this thread.
+            final Throwable cause = e.getCause();
+            
+            if ( cause instanceof RuntimeException )
+                throw (RuntimeException)cause;
+            
+            if ( cause instanceof Error )
+                throw (Error)cause;
+            
+            throw new Error( cause );
+        }
+    }
+    
+    private static final void combineInto( PlannedGroup planned, Bounds untransformedBounds, Bounds worldBounds )
+    {
+        final GroupNode group = planned.group;
+        
+        if ( planned.hasValidBounds )
+        {
+            group.untransformedBounds.combine( untransformedBounds );
+            group.getWorldBounds().combine( worldBounds );
+        }
+        else
+        {
+            group.untransformedBounds.set( untransformedBounds );
+            group.getWorldBounds().set( worldBounds );
+            planned.hasValidBounds = true;
+        }
+    }
+    
+    /**
+     * Combines the partial bounds of the planned groups bottom-up.
+     */
+    private void combinePlanned()
+    {
+        final int numTasks = activeTasks.size();
+        
+        for ( int i = 0; i < numTasks; i++ )
+        {
+            final RangeTask task = activeTasks.get( i );
+            
+            if ( task.combine && task.hasValidBounds )
+            {
+                combineInto( plannedPool.get( task.plannedIndex ), task.untransformedBounds, task.worldBounds );
+            }
+        }
+        
+        // Pre-order reversed visits children before their parents.
+        for ( int i = numPlanned - 1; i >= 0; i-- )
+        {
+            final PlannedGroup planned = plannedPool.get( i );
+            final GroupNode group = planned.group;
+            
+            if ( group.numChildren() == 0 )
+            {
+                group.applyEmptyBounds();
+            }
+            else
+            {
+                if ( !planned.combinePartials )
+                {
+                    group.combineBounds( group.untransformedBounds, group.getWorldBounds(), 0, group.numChildren(), false );
+                }
+                
+                group.untransformedBoundsStale = false;
+                group.applyCombinedBounds();
+            }
+            
+            if ( planned.parentIndex >= 0 )
+            {
+                final PlannedGroup parent = plannedPool.get( planned.parentIndex );
+                
+                if ( parent.combinePartials && !group.isIgnoreBounds() )
+                {
+                    combineInto( parent, group.getBounds(), group.getWorldBounds() );
+                }
+            }
+        }
+    }
+    
+    /**
+     * Updates the bounds of the given group, its subtree and its parents.
+     * This is equivalent to {@link GroupNode#updateBounds(boolean)},
+     * but big child lists are processed by the worker threads.
+     * 
+     * @param group
+     * @param onlyDirty Only update those nodes which have been marked as dirty.
+     */
+    public void updateBounds( GroupNode group, boolean onlyDirty )
+    {
+        if ( !isPlannable( group, onlyDirty ) )
+        {
+            group.updateBounds( onlyDirty );
+            
+            return;
+        }
+        
+        try
+        {
+            plan( group, -1, onlyDirty );
+            
+            runTasks();
+            
+            combinePlanned();
+        }
+        finally
+        {
+            for ( int i = 0; i < activeTasks.size(); i++ )
+            {
+                activeTasks.get( i ).reset();
+            }
+            activeTasks.clear();
+            
+            for ( int i = 0; i < numPlanned; i++ )
+            {
+                plannedPool.get( i ).group = null;
+            }
+            numPlanned = 0;
+        }
+        
+        final GroupNode parent = group.getParent();
+        if ( parent != null )
+        {
+            parent.boundsDirty = true;
+            parent.updateBoundsCheap( onlyDirty, false, true, false );
+        }
+    }
+}
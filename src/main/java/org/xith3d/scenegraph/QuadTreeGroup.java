@@ -35,7 +35,6 @@ package org.xith3d.scenegraph;
 
 import org.openmali.spatial.AxisIndicator;
 import org.openmali.spatial.PlaneIndicator;
-import org.openmali.spatial.bodies.Classifier;
 import org.openmali.spatial.bodies.Frustum;
 import org.openmali.spatial.bodies.Classifier.Classification;
 import org.openmali.spatial.bounds.BoundingBox;
@@ -46,6 +45,7 @@ import org.openmali.vecmath2.Tuple3f;
 import org.xith3d.picking.PickRay;
 import org.xith3d.render.OpenGLCapabilities;
 import org.xith3d.render.preprocessing.FrustumCuller;
+import org.xith3d.render.preprocessing.PlaneMaskClassifier;
 import org.xith3d.render.preprocessing.RenderBinProvider;
 
 /**
@@ -59,6 +59,12 @@ public class QuadTreeGroup extends Group implements SpecialCullingNode< QuadTree
     
     private final QuadTree<Node> quadTree;
     
+    /**
+     * The frustum plane, that rejected the last culled cell.
+     * Neighboring cells are likely to be rejected by the same plane.
+     */
+    private int cellCullingPlaneHint = 0;
+    
     final QuadTree<Node> getQuadTree()
     {
         return ( quadTree );
@@ -157,19 +163,26 @@ public class QuadTreeGroup extends Group implements SpecialCullingNode< QuadTree
      * A bitmask is modified, if a "dominating" extended cell was culled
      * to avoid unnecessary checks of standard-OcCells.
      */
-    private final byte cullQuadTreeAtomsExt( byte result, Classification parentClassify, QuadCell<Node> cell, boolean cullingSuppressed, View view, Point3f viewPosition, Frustum frustum, RenderBinProvider binProvider, OpenGLCapabilities glCaps, long frameId, long nanoTime, long nanoStep, PickRay pickRay, boolean isShadowPass, FrustumCuller frustumCuller )
+    private final byte cullQuadTreeAtomsExt( byte result, Classification parentClassify, int parentPlaneMask, QuadCell<Node> cell, boolean cullingSuppressed, View view, Point3f viewPosition, Frustum frustum, RenderBinProvider binProvider, OpenGLCapabilities glCaps, long frameId, long nanoTime, long nanoStep, PickRay pickRay, boolean isShadowPass, FrustumCuller frustumCuller )
     {
         //if ( ( cell.getNumNodes() == 0 ) && !cell.hasChildCells() )
         //    return;
         
         Classification classify;
+        int planeMask = parentPlaneMask;
         
         if ( !cullingSuppressed && ( parentClassify != Classification.INSIDE ) )
         {
-            classify = Classifier.classifyFrustumBox( frustum, cell );
+            planeMask = PlaneMaskClassifier.classifyBox( frustum, cell, ( parentClassify == null ) ? PlaneMaskClassifier.ALL_PLANES : parentPlaneMask, cellCullingPlaneHint );
             
-            if ( classify == Classification.OUTSIDE )
+            if ( PlaneMaskClassifier.isOutside( planeMask ) )
+            {
+                cellCullingPlaneHint = PlaneMaskClassifier.getRejectingPlane( planeMask );
+                
                 return ( result );
+            }
+            
+            classify = PlaneMaskClassifier.getClassification( planeMask );
         }
         else
         {
@@ -185,7 +198,7 @@ public class QuadTreeGroup extends Group implements SpecialCullingNode< QuadTree
         
         for ( int i = 0; i < cell.getNumNodes(); i++ )
         {
-            frustumCuller.cullNodeAtoms( cell.getNode( i ), classify, cs, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
+            frustumCuller.cullNodeAtoms( cell.getNode( i ), classify, planeMask, cs, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
         }
         
         if ( cell.hasChildCells() )
@@ -198,13 +211,13 @@ public class QuadTreeGroup extends Group implements SpecialCullingNode< QuadTree
                 // B4 : QuFrontRight
                 
                 if ( cell.getCellHLeft() != null )
-                    culled |= cullQuadTreeAtomsExt( (byte)(B1 | B3), classify, cell.getCellHLeft(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                    culled |= cullQuadTreeAtomsExt( (byte)(B1 | B3), classify, planeMask, cell.getCellHLeft(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
                 if ( cell.getCellHRight() != null )
-                    culled |= cullQuadTreeAtomsExt( (byte)(B2 | B4), classify, cell.getCellHRight(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                    culled |= cullQuadTreeAtomsExt( (byte)(B2 | B4), classify, planeMask, cell.getCellHRight(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
                 if ( cell.getCellHBack() != null )
-                    culled |= cullQuadTreeAtomsExt( (byte)(B1 | B2), classify, cell.getCellHBack(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                    culled |= cullQuadTreeAtomsExt( (byte)(B1 | B2), classify, planeMask, cell.getCellHBack(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
                 if ( cell.getCellHFront() != null )
-                    culled |= cullQuadTreeAtomsExt( (byte)(B3 | B4), classify, cell.getCellHFront(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                    culled |= cullQuadTreeAtomsExt( (byte)(B3 | B4), classify, planeMask, cell.getCellHFront(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
             }
             
             // B1 : QuBackLeft
@@ -213,13 +226,13 @@ public class QuadTreeGroup extends Group implements SpecialCullingNode< QuadTree
             // B4 : QuFrontRight
             
             if ( ( (byte)( culled & B1 ) == B0 ) && ( cell.getCellQuBackLeft() != null ) )
-                cullQuadTreeAtomsExt( B0, classify, cell.getCellQuBackLeft(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                cullQuadTreeAtomsExt( B0, classify, planeMask, cell.getCellQuBackLeft(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
             if ( ( (byte)( culled & B2 ) == B0 ) && ( cell.getCellQuBackRight() != null ) )
-                cullQuadTreeAtomsExt( B0, classify, cell.getCellQuBackRight(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                cullQuadTreeAtomsExt( B0, classify, planeMask, cell.getCellQuBackRight(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
             if ( ( (byte)( culled & B3 ) == B0 ) && ( cell.getCellQuFrontLeft() != null ) )
-                cullQuadTreeAtomsExt( B0, classify, cell.getCellQuFrontLeft(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                cullQuadTreeAtomsExt( B0, classify, planeMask, cell.getCellQuFrontLeft(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
             if ( ( (byte)( culled & B4 ) == B0 ) && ( cell.getCellQuFrontRight() != null ) )
-                cullQuadTreeAtomsExt( B0, classify, cell.getCellQuFrontRight(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+                cullQuadTreeAtomsExt( B0, classify, planeMask, cell.getCellQuFrontRight(), cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
         }
         
         return ( B0 );
@@ -239,7 +252,7 @@ public class QuadTreeGroup extends Group implements SpecialCullingNode< QuadTree
         QuadCell<Node> rootCell = _SG_PrivilegedAccess.getQuadTree( quadTreeGroup ).getRootCell();
         
         //if ( rootCell.usesExtendedCells() )
-            cullQuadTreeAtomsExt( B0, null, rootCell, cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
+            cullQuadTreeAtomsExt( B0, null, PlaneMaskClassifier.ALL_PLANES, rootCell, cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
         //else
         //    cullQuadTreeAtoms( null, rootCell, cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass, frustumCuller );
     }
@@ -147,31 +147,35 @@ public class Shape3D extends Leaf
             final Geometry geom = this.getGeometry();
             if ( geom != null )
             {
-                if ( ( geom.isBoundsDirty() ) || ( !onlyDirty ) )
+                // Geometries may be shared between Shapes, whose bounds are updated in parallel.
+                synchronized ( geom )
                 {
-                    final Bounds b = geom.getCachedBounds();
-                    final Bounds newBounds;
-                    if ( ( b == null ) || ( b.getType() != untransformedBounds.getType() ) )
+                    if ( ( geom.isBoundsDirty() ) || ( !onlyDirty ) )
                     {
-                        if ( bounds instanceof BoundingBox )
-                            newBounds = new BoundingBox();
-                        //else if (bounds instanceof BoundingPolytope)
-                        //    newBounds = new BoundingPolytope();
+                        final Bounds b = geom.getCachedBounds();
+                        final Bounds newBounds;
+                        if ( ( b == null ) || ( b.getType() != untransformedBounds.getType() ) )
+                        {
+                            if ( bounds instanceof BoundingBox )
+                                newBounds = new BoundingBox();
+                            //else if (bounds instanceof BoundingPolytope)
+                            //    newBounds = new BoundingPolytope();
+                            else
+                                //if (bounds instanceof BoundingSphere)
+                                newBounds = new BoundingSphere();
+                        }
                         else
-                            //if (bounds instanceof BoundingSphere)
-                            newBounds = new BoundingSphere();
-                    }
-                    else
-                    {
-                        newBounds = b;
+                        {
+                            newBounds = b;
+                        }
+                        
+                        newBounds.compute( geom );
+                        geom.setCachedBounds( newBounds );
                     }
                     
-                    newBounds.compute( geom );
-                    geom.setCachedBounds( newBounds );
+                    untransformedBounds.set( geom.getCachedBounds() );
+                    bounds.set( geom.getCachedBounds() );
                 }
-                
-                untransformedBounds.set( geom.getCachedBounds() );
-                bounds.set( geom.getCachedBounds() );
             }
         }
         
@@ -0,0 +1,673 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.scenegraph;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.HashMap;
+import java.util.List;
+
+import org.openmali.spatial.TriangleContainer;
+import org.openmali.spatial.bodies.Frustum;
+import org.openmali.vecmath2.Matrix4f;
+import org.openmali.vecmath2.Point3f;
+import org.xith3d.picking.PickRay;
+import org.xith3d.render.OpenGLCapabilities;
+import org.xith3d.render.preprocessing.FrustumCuller;
+import org.xith3d.render.preprocessing.PlaneMaskClassifier;
+import org.xith3d.render.preprocessing.RenderBinProvider;
+import org.xith3d.utility.geometry.GeometryUtils;
+
+/**
+ * A Group, that merges its static descendant shapes into a few large indexed
+ * geometries, when {@link #buildBatches()} is called.<br>
+ * <br>
+ * A child is batched, if its whole subtree only consists of {@link Group}s,
+ * {@link TransformGroup}s and {@link Shape3D}s with opaque triangle geometry.
+ * The shapes of all batched children, that share the same {@link Appearance}
+ * instance and vertex format, are pre-transformed into the space of this group
+ * and merged by {@link GeometryUtils#mergeGeometriesITA(Matrix4f[], Geometry...)}.
+ * Spatially close shapes end up in the same batch and no batch exceeds the
+ * maximum vertex count, so that each batch has tight bounds for culling.<br>
+ * <br>
+ * The batch shapes are appended to the children of this group. They are
+ * rendered instead of the batched children, which stay in the scenegraph
+ * and are still used for picking. A face of a batch shape can be resolved to
+ * its original shape through {@link #getSourceShape(Shape3D, int)}.<br>
+ * <br>
+ * The batched children are expected not to change. Adding or removing
+ * children discards the batches. Call {@link #buildBatches()} again to
+ * rebuild them.
+ */
+public class StaticBatchGroup extends Group implements SpecialCullingNode< StaticBatchGroup >
+{
+    public static final int DEFAULT_MAX_BATCH_VERTICES = 65536;
+    
+    private static final int MORTON_BITS = 10;
+    private static final float MORTON_SCALE = ( 1 << MORTON_BITS ) - 1;
+    
+    private static final int FORMAT_MASK = Geometry.COORDINATES | Geometry.NORMALS | Geometry.COLORS | Geometry.TEXTURE_COORDINATES;
+    
+    private int maxBatchVertices = DEFAULT_MAX_BATCH_VERTICES;
+    
+    private boolean modifyingBatches = false;
+    
+    /**
+     * The batch shapes. They are always the last children of this group.
+     */
+    private Shape3D[] batches = new Shape3D[ 0 ];
+    private int numBatches = 0;
+    
+    /**
+     * The shapes merged into each batch and the index of their first face in the batch.
+     */
+    private Shape3D[][] batchSources = new Shape3D[ 0 ][];
+    private int[][] batchFirstFaces = new int[ 0 ][];
+    private int numBatchedShapes = 0;
+    
+    /**
+     * The children to be traversed in a render pass (the unbatched children and the batches).
+     */
+    private Node[] renderNodes = new Node[ 0 ];
+    private int numRenderNodes = 0;
+    
+    /**
+     * Sets the maximum number of (non-indexed) vertices of one batch.
+     * Takes effect with the next call to {@link #buildBatches()}.
+     * 
+     * @param maxBatchVertices
+     */
+    public void setMaxBatchVertices( int maxBatchVertices )
+    {
+        if ( maxBatchVertices < 3 )
+            throw new IllegalArgumentException( "maxBatchVertices must be at least 3." );
+        
+        this.maxBatchVertices = maxBatchVertices;
+    }
+    
+    public final int getMaxBatchVertices()
+    {
+        return ( maxBatchVertices );
+    }
+    
+    /**
+     * @return true, if the batches are currently built.
+     */
+    public final boolean isBatched()
+    {
+        return ( numBatches > 0 );
+    }
+    
+    /**
+     * @return the number of batch shapes.
+     */
+    public final int getNumBatches()
+    {
+        return ( numBatches );
+    }
+    
+    /**
+     * @param index
+     * 
+     * @return the batch shape at the given index.
+     */
+    public final Shape3D getBatch( int index )
+    {
+        if ( ( index < 0 ) || ( index >= numBatches ) )
+            throw new IndexOutOfBoundsException( "index must be in [0, " + numBatches + ")." );
+        
+        return ( batches[ index ] );
+    }
+    
+    /**
+     * @return the number of original shapes merged into the batches.
+     */
+    public final int getNumBatchedShapes()
+    {
+        return ( numBatchedShapes );
+    }
+    
+    /**
+     * @param node
+     * 
+     * @return true, if the given Node is one of the batch shapes of this group.
+     */
+    public final boolean isBatch( Node node )
+    {
+        return ( indexOfBatch( node ) >= 0 );
+    }
+    
+    private final int indexOfBatch( Node node )
+    {
+        for ( int i = 0; i < numBatches; i++ )
+        {
+            if ( batches[ i ] == node )
+                return ( i );
+        }
+        
+        return ( -1 );
+    }
+    
+    private final int findSource( int batchIndex, int faceIndex )
+    {
+        final int[] firstFaces = batchFirstFaces[ batchIndex ];
+        
+        int i = Arrays.binarySearch( firstFaces, faceIndex );
+        if ( i < 0 )
+            i = -i - 2;
+        
+        return ( i );
+    }
+    
+    /**
+     * Resolves a face of a batch shape (e.g. from a {@link org.xith3d.picking.PickResult})
+     * to the original shape, it was merged from.
+     * 
+     * @param batch the batch shape
+     * @param faceIndex the face index in the batch's geometry
+     * 
+     * @return the original shape or null, if the given shape is no batch of this group.
+     */
+    public final Shape3D getSourceShape( Shape3D batch, int faceIndex )
+    {
+        final int batchIndex = indexOfBatch( batch );
+        if ( batchIndex < 0 )
+            return ( null );
+        
+        return ( batchSources[ batchIndex ][ findSource( batchIndex, faceIndex ) ] );
+    }
+    
+    /**
+     * Resolves a face of a batch shape to the face index in the geometry of the original shape.
+     * 
+     * @param batch the batch shape
+     * @param faceIndex the face index in the batch's geometry
+     * 
+     * @return the face index in the original shape's geometry or -1, if the given shape is no batch of this group.
+     */
+    public final int getSourceFaceIndex( Shape3D batch, int faceIndex )
+    {
+        final int batchIndex = indexOfBatch( batch );
+        if ( batchIndex < 0 )
+            return ( -1 );
+        
+        return ( faceIndex - batchFirstFaces[ batchIndex ][ findSource( batchIndex, faceIndex ) ] );
+    }
+    
+    private static final boolean isBatchable( Shape3D shape )
+    {
+        if ( shape.isUpdatableNode() || shape.isBillboard() || shape.getShowBounds() )
+            return ( false );
+        
+        if ( ( shape instanceof AbstractLODShape3D ) || ( shape instanceof MultiShape3D ) || ( shape instanceof Morph ) )
+            return ( false );
+        
+        final Geometry geom = shape.getGeometry();
+        if ( !( geom instanceof TriangleContainer ) || ( ( geom.getVertexFormat() & Geometry.COORDINATES ) == 0 ) )
+            return ( false );
+        
+        if ( geom.hasVertexAttributes() || ( geom.getNumTextureUnits() > 1 ) )
+            return ( false );
+        
+        if ( ( geom.getNumTextureUnits() == 1 ) && ( geom.getTexCoordSize( 0 ) != 2 ) )
+            return ( false );
+        
+        final Appearance app = shape.getAppearance();
+        if ( ( app != null ) && ( app.getTransparencyAttributes() != null ) && app.getTransparencyAttributes().isEnabled() )
+            return ( false );
+        
+        return ( true );
+    }
+    
+    /**
+     * Collects the renderable shapes of the given subtree.
+     * 
+     * @return false, if the subtree contains anything, that must not be batched.
+     */
+    private static final boolean collectStaticShapes( Node node, List< Shape3D > shapes )
+    {
+        if ( node.isUpdatableNode() )
+            return ( false );
+        
+        if ( node instanceof Shape3D )
+        {
+            if ( !isBatchable( (Shape3D)node ) )
+                return ( false );
+            
+            if ( node.isRenderable() )
+                shapes.add( (Shape3D)node );
+            
+            return ( true );
+        }
+        
+        if ( ( node.getClass() != Group.class ) && ( node.getClass() != TransformGroup.class ) )
+            return ( false );
+        
+        if ( !node.isRenderable() )
+            return ( true );
+        
+        final GroupNode group = (GroupNode)node;
+        for ( int i = 0; i < group.numChildren(); i++ )
+        {
+            if ( !collectStaticShapes( group.getChild( i ), shapes ) )
+                return ( false );
+        }
+        
+        return ( true );
+    }
+    
+    /**
+     * Computes the transformation from the given shape's space into the space of this group.
+     */
+    private final Matrix4f getGroupSpaceTransform( Shape3D shape )
+    {
+        final Matrix4f m = new Matrix4f();
+        m.setIdentity();
+        
+        final Matrix4f tmp = new Matrix4f();
+        
+        for ( GroupNode node = shape.getParent(); node != this; node = node.getParent() )
+        {
+            if ( node instanceof TransformGroup )
+            {
+                tmp.mul( ( (TransformGroup)node ).getTransform().getMatrix4f(), m );
+                m.set( tmp );
+            }
+        }
+        
+        return ( m );
+    }
+    
+    private static final long spreadBits( long v )
+    {
+        v = ( v | ( v << 16 ) ) & 0x030000FFL;
+        v = ( v | ( v << 8 ) ) & 0x0300F00FL;
+        v = ( v | ( v << 4 ) ) & 0x030C30C3L;
+        v = ( v | ( v << 2 ) ) & 0x09249249L;
+        
+        return ( v );
+    }
+    
+    /**
+     * Sorts the given shapes by the Morton codes of their group-space centers,
+     * so that consecutive shapes are spatially close.
+     */
+    private static final void sortSpatially( Shape3D[] shapes, Matrix4f[] transforms )
+    {
+        final int n = shapes.length;
+        
+        final float[] centers = new float[ n * 3 ];
+        final float[] min = { Float.MAX_VALUE, Float.MAX_VALUE, Float.MAX_VALUE };
+        final float[] max = { -Float.MAX_VALUE, -Float.MAX_VALUE, -Float.MAX_VALUE };
+        
+        final Point3f p = new Point3f();
+        
+        for ( int i = 0; i < n; i++ )
+        {
+            final Geometry geom = shapes[ i ].getGeometry();
+            final int numVertices = geom.getVertexCount();
+            
+            float cx = 0f, cy = 0f, cz = 0f;
+            for ( int v = 0; v < numVertices; v++ )
+            {
+                geom.getCoordinate( v, p );
+                transforms[ i ].transform( p );
+                
+                cx += p.getX();
+                cy += p.getY();
+                cz += p.getZ();
+            }
+            
+            if ( numVertices > 0 )
+            {
+                cx /= numVertices;
+                cy /= numVertices;
+                cz /= numVertices;
+            }
+            
+            centers[ i * 3 + 0 ] = cx;
+            centers[ i * 3 + 1 ] = cy;
+            centers[ i * 3 + 2 ] = cz;
+            
+            for ( int k = 0; k < 3; k++ )
+            {
+                min[ k ] = Math.min( min[ k ], centers[ i * 3 + k ] );
+                max[ k ] = Math.max( max[ k ], centers[ i * 3 + k ] );
+            }
+        }
+        
+        // The Morton code goes to the upper and the original index to the lower half of the key.
+        final long[] keys = new long[ n ];
+        for ( int i = 0; i < n; i++ )
+        {
+            long code = 0L;
+            for ( int k = 0; k < 3; k++ )
+            {
+                final float extent = max[ k ] - min[ k ];
+                final long q = ( extent > 0f ) ? (long)( ( centers[ i * 3 + k ] - min[ k ] ) / extent * MORTON_SCALE ) : 0L;
+                
+                code |= spreadBits( q ) << ( 2 - k );
+            }
+            
+            keys[ i ] = ( code << 32 ) | i;
+        }
+        
+        Arrays.sort( keys );
+        
+        final Shape3D[] sortedShapes = shapes.clone();
+        final Matrix4f[] sortedTransforms = transforms.clone();
+        for ( int i = 0; i < n; i++ )
+        {
+            final int j = (int)( keys[ i ] & 0xFFFFFFFFL );
+            
+            shapes[ i ] = sortedShapes[ j ];
+            transforms[ i ] = sortedTransforms[ j ];
+        }
+    }
+    
+    private final void addBatch( Shape3D[] shapes, Matrix4f[] transforms, int first, int last, Appearance app )
+    {
+        final int n = last - first;
+        
+        final Geometry[] geoms = new Geometry[ n ];
+        final Matrix4f[] geomTransforms = new Matrix4f[ n ];
+        final Shape3D[] sources = new Shape3D[ n ];
+        final int[] firstFaces = new int[ n ];
+        
+        int numFaces = 0;
+        for ( int i = 0; i < n; i++ )
+        {
+            sources[ i ] = shapes[ first + i ];
+            geoms[ i ] = sources[ i ].getGeometry();
+            geomTransforms[ i ] = transforms[ first + i ];
+            firstFaces[ i ] = numFaces;
+            
+            numFaces += ( (TriangleContainer)geoms[ i ] ).getTriangleCount();
+        }
+        
+        final IndexedTriangleArray geom = GeometryUtils.mergeGeometriesITA( geomTransforms, geoms );
+        geom.setOptimization( Geometry.Optimization.USE_VBOS );
+        
+        final Shape3D batch = new Shape3D( geom, app );
+        batch.setName( "StaticBatch" );
+        // Picking is done on the original shapes.
+        batch.setPickable( false );
+        
+        if ( numBatches == batches.length )
+        {
+            final int newLength = Math.max( 4, numBatches * 2 );
+            batches = Arrays.copyOf( batches, newLength );
+            batchSources = Arrays.copyOf( batchSources, newLength );
+            batchFirstFaces = Arrays.copyOf( batchFirstFaces, newLength );
+        }
+        
+        batches[ numBatches ] = batch;
+        batchSources[ numBatches ] = sources;
+        batchFirstFaces[ numBatches ] = firstFaces;
+        numBatches++;
+        numBatchedShapes += n;
+        
+        super.addChild( batch, numChildren() );
+    }
+    
+    /**
+     * Removes the batch shapes and renders the children as usual again.
+     */
+    public void clearBatches()
+    {
+        modifyingBatches = true;
+        try
+        {
+            for ( int i = 0; i < numBatches; i++ )
+            {
+                super.removeChild( numChildren() - 1 );
+                
+                batches[ i ] = null;
+                batchSources[ i ] = null;
+                batchFirstFaces[ i ] = null;
+            }
+        }
+        finally
+        {
+            modifyingBatches = false;
+        }
+        
+        numBatches = 0;
+        numBatchedShapes = 0;
+        
+        for ( int i = 0; i < numRenderNodes; i++ )
+            renderNodes[ i ] = null;
+        numRenderNodes = 0;
+    }
+    
+    /**
+     * (Re-)Builds the batches from the current children.
+     * This must be called again, whenever a batched descendant has changed.
+     */
+    public void buildBatches()
+    {
+        clearBatches();
+        
+        final int numChildren = numChildren();
+        
+        if ( renderNodes.length < numChildren )
+            renderNodes = new Node[ numChildren ];
+        
+        // Shapes are grouped by their Appearance instance and vertex format.
+        final HashMap< Appearance, HashMap< Integer, ArrayList< Shape3D > > > appShapeMap = new HashMap< Appearance, HashMap< Integer, ArrayList< Shape3D > > >();
+        final ArrayList< Shape3D > childShapes = new ArrayList< Shape3D >();
+        
+        for ( int i = 0; i < numChildren; i++ )
+        {
+            final Node child = getChild( i );
+            
+            childShapes.clear();
+            if ( !collectStaticShapes( child, childShapes ) )
+            {
+                renderNodes[ numRenderNodes++ ] = child;
+                continue;
+            }
+            
+            for ( int j = 0; j < childShapes.size(); j++ )
+            {
+                final Shape3D shape = childShapes.get( j );
+                final Integer format = Integer.valueOf( shape.getGeometry().getVertexFormat() & FORMAT_MASK );
+                
+                HashMap< Integer, ArrayList< Shape3D > > formatShapeMap = appShapeMap.get( shape.getAppearance() );
+                if ( formatShapeMap == null )
+                {
+                    formatShapeMap = new HashMap< Integer, ArrayList< Shape3D > >();
+                    appShapeMap.put( shape.getAppearance(), formatShapeMap );
+                }
+                
+                ArrayList< Shape3D > mappedShapes = formatShapeMap.get( format );
+                if ( mappedShapes == null )
+                {
+                    mappedShapes = new ArrayList< Shape3D >();
+                    formatShapeMap.put( format, mappedShapes );
+                }
+                
+                mappedShapes.add( shape );
+            }
+        }
+        
+        modifyingBatches = true;
+        try
+        {
+            for ( HashMap< Integer, ArrayList< Shape3D > > formatShapeMap: appShapeMap.values() )
+            {
+                for ( ArrayList< Shape3D > shapesList: formatShapeMap.values() )
+                {
+                    final Shape3D[] shapes = shapesList.toArray( new Shape3D[ shapesList.size() ] );
+                    final Matrix4f[] transforms = new Matrix4f[ shapes.length ];
+                    for ( int i = 0; i < shapes.length; i++ )
+                    {
+                        transforms[ i ] = getGroupSpaceTransform( shapes[ i ] );
+                    }
+                    
+                    sortSpatially( shapes, transforms );
+                    
+                    final Appearance app = shapes[ 0 ].getAppearance();
+                    
+                    int first = 0;
+                    int numVertices = 0;
+                    for ( int i = 0; i < shapes.length; i++ )
+                    {
+                        final int shapeVertices = ( (TriangleContainer)shapes[ i ].getGeometry() ).getTriangleCount() * 3;
+                        
+                        if ( ( i > first ) && ( numVertices + shapeVertices > maxBatchVertices ) )
+                        {
+                            addBatch( shapes, transforms, first, i, app );
+                            
+                            first = i;
+                            numVertices = 0;
+                        }
+                        
+                        numVertices += shapeVertices;
+                    }
+                    
+                    addBatch( shapes, transforms, first, shapes.length, app );
+                }
+            }
+        }
+        finally
+        {
+            modifyingBatches = false;
+        }
+        
+        if ( renderNodes.length < numRenderNodes + numBatches )
+            renderNodes = Arrays.copyOf( renderNodes, numRenderNodes + numBatches );
+        
+        for ( int i = 0; i < numBatches; i++ )
+        {
+            renderNodes[ numRenderNodes++ ] = batches[ i ];
+        }
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void addChild( Node child, int index )
+    {
+        if ( !modifyingBatches && ( numBatches > 0 ) )
+        {
+            clearBatches();
+            
+            index = Math.min( index, numChildren() );
+        }
+        
+        super.addChild( child, index );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public Node removeChild( int index )
+    {
+        if ( !modifyingBatches && ( numBatches > 0 ) )
+        {
+            if ( index >= numChildren() - numBatches )
+                throw new IllegalSceneGraphOperation( "The batch shapes of a StaticBatchGroup cannot be removed. Use clearBatches() instead." );
+            
+            clearBatches();
+        }
+        
+        return ( super.removeChild( index ) );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void removeAllChildren()
+    {
+        clearBatches();
+        
+        super.removeAllChildren();
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void cullSpecialNode( StaticBatchGroup node, boolean cullingSuppressed, View view, Point3f viewPosition, Frustum frustum, RenderBinProvider binProvider, OpenGLCapabilities glCaps, long frameId, long nanoTime, long nanoStep, PickRay pickRay, boolean isShadowPass, FrustumCuller frustumCuller )
+    {
+        if ( ( pickRay == null ) && ( node.numBatches > 0 ) )
+        {
+            for ( int i = 0; i < node.numRenderNodes; i++ )
+            {
+                frustumCuller.cullNodeAtoms( node.renderNodes[ i ], null, PlaneMaskClassifier.ALL_PLANES, cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
+            }
+        }
+        else
+        {
+            // The batches are not pickable. So picking is done on the original shapes.
+            final int numChildren = node.numChildren();
+            for ( int i = 0; i < numChildren; i++ )
+            {
+                frustumCuller.cullNodeAtoms( node.getChild( i ), null, PlaneMaskClassifier.ALL_PLANES, cullingSuppressed, view, viewPosition, frustum, binProvider, glCaps, frameId, nanoTime, nanoStep, pickRay, isShadowPass );
+            }
+        }
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    @Override
+    public void dump()
+    {
+        System.out.println( "StaticBatchGroup: " + numBatches + " batches from " + numBatchedShapes + " shapes, " + ( numRenderNodes - numBatches ) + " unbatched children" );
+    }
+    
+    /**
+     * Creates a new StaticBatchGroup.
+     * 
+     * @param maxBatchVertices the maximum number of (non-indexed) vertices of one batch
+     */
+    public StaticBatchGroup( int maxBatchVertices )
+    {
+        super();
+        
+        setMaxBatchVertices( maxBatchVertices );
+    }
+    
+    /**
+     * Creates a new StaticBatchGroup.
+     */
+    public StaticBatchGroup()
+    {
+        this( DEFAULT_MAX_BATCH_VERTICES );
+    }
+}
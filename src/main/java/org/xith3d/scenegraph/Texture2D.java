@@ -53,6 +53,12 @@ public class Texture2D extends Texture
     private Texture2DCanvas textureCanvas = null;
     private boolean hasTextureCanvas = false;
     
+    private boolean streaming = false;
+    private int residentLevel = 0;
+    
+    private long streamingFrame = -1L;
+    private int requestedLevel = 0;
+    
     /**
      * Was created as draw texture?
      * 
@@ -90,6 +96,80 @@ public class Texture2D extends Texture
         return ( (TextureImage2D)super.getImage( 0 ) );
     }
     
+    /**
+     * Enables or disables progressive mipmap streaming.<br>
+     * A streaming Texture initially only uploads its smallest mipmap level.
+     * The finer levels are uploaded over the following frames, as the
+     * Texture's projected screen size grows, and dropped again under
+     * memory pressure. The images' local data is kept for that purpose,
+     * even if the Texture is marked to free it.
+     * 
+     * @param streaming
+     * 
+     * @see org.xith3d.render.TextureStreamer
+     */
+    public void setStreaming( boolean streaming )
+    {
+        if ( streaming == this.streaming )
+            return;
+        
+        this.streaming = streaming;
+        
+        setResidentLevel( streaming ? getImagesCount() - 1 : 0 );
+    }
+    
+    /**
+     * @return true, if progressive mipmap streaming is enabled.
+     */
+    public final boolean isStreaming()
+    {
+        return ( streaming );
+    }
+    
+    /**
+     * Sets the finest mipmap level, that is uploaded to the graphics card.
+     * Changing it makes the renderer redefine the Texture.
+     * 
+     * @param level
+     */
+    public void setResidentLevel( int level )
+    {
+        level = Math.max( 0, Math.min( level, getImagesCount() - 1 ) );
+        
+        if ( level == residentLevel )
+            return;
+        
+        this.residentLevel = level;
+        
+        setDirty( true );
+        setChanged( true );
+    }
+    
+    /**
+     * @return the finest mipmap level, that is uploaded to the graphics card.
+     *         This is always 0 for a Texture, that is not streaming.
+     */
+    public final int getResidentLevel()
+    {
+        return ( residentLevel );
+    }
+    
+    final void setStreamingRequest( long frame, int level )
+    {
+        this.streamingFrame = frame;
+        this.requestedLevel = level;
+    }
+    
+    final long getStreamingFrame()
+    {
+        return ( streamingFrame );
+    }
+    
+    final int getRequestedLevel()
+    {
+        return ( requestedLevel );
+    }
+    
     public final boolean hasTextureCanvas()
     {
         return ( hasTextureCanvas );
@@ -147,6 +227,8 @@ public class Texture2D extends Texture
         this.hasUpdateList = orgTex.hasUpdateList;
         this.textureCanvas = orgTex.textureCanvas;
         this.hasTextureCanvas = orgTex.hasTextureCanvas;
+        this.streaming = orgTex.streaming;
+        this.residentLevel = orgTex.residentLevel;
     }
     
     /**
@@ -33,6 +33,8 @@
  */
 package org.xith3d.scenegraph;
 
+import java.util.concurrent.atomic.AtomicLong;
+
 import org.openmali.vecmath2.Matrix4f;
 import org.openmali.vecmath2.Point3f;
 import org.openmali.vecmath2.Tuple3f;
@@ -57,6 +59,53 @@ public class TransformGroup extends Group implements Transformable
     private final Transform3D transform = new Transform3D();
     private final Point3f position = new Point3f();
     
+    private static final AtomicLong stampCounter = new AtomicLong( 0L );
+    
+    private boolean localTransformDirty = true;
+    private long parentTransformStamp = 0L;
+    private long worldTransformStamp = 0L;
+    
+    final void setLocalTransformDirty()
+    {
+        this.localTransformDirty = true;
+    }
+    
+    /**
+     * Recomputes the world transform, if this group's transform
+     * or the world transform of its parent TransformGroup has changed.
+     * The check walks up the chain of parent TransformGroups and doesn't write anything.<br>
+     * <br>
+     * This is not thread-safe. Worker threads of the parallel culling and bounds update
+     * may only get here for Nodes of their own subtrees. Everything above these subtrees
+     * is validated by the rendering thread before the workers are started.
+     */
+    private final void validateWorldTransform()
+    {
+        final TransformGroup parentTG = getTransformGroup();
+        final long parentStamp = ( parentTG == null ) ? 0L : parentTG.getWorldTransformStamp();
+        
+        if ( localTransformDirty || ( parentStamp != parentTransformStamp ) )
+        {
+            worldTransform.set( transform );
+            if ( parentTG != null )
+                parentTG.getInlinedWorldTransform().transform( worldTransform );
+            
+            localTransformDirty = false;
+            parentTransformStamp = parentStamp;
+            worldTransformStamp = stampCounter.incrementAndGet();
+        }
+    }
+    
+    /**
+     * @return a stamp, that changes whenever the world transform changes.
+     */
+    final long getWorldTransformStamp()
+    {
+        validateWorldTransform();
+        
+        return ( worldTransformStamp );
+    }
+    
     protected final void onTransformChanged()
     {
         if ( getModListener() != null )
@@ -78,9 +127,24 @@ public class TransformGroup extends Group implements Transformable
         
         //updateTransformGroup();
         updateWorldTransform();
-        boundsDirty = true;
-        if ( ( getParent() != null ) || ( numChildren() > 0 ) )
-            updateBoundsCheap( false, true, true, true );
+        
+        /*
+         * The bounds of the children don't depend on this transform. The world transforms
+         * and world bounds of the subtree are recomputed lazily. So only the transformed
+         * bounds of this group and the world bounds of the parents are updated here.
+         */
+        if ( !isIgnoreBounds() && boundsAutoCompute && ( untransformedBounds != null ) )
+        {
+            bounds.set( untransformedBounds );
+            bounds.transform( transform.getMatrix4f() );
+        }
+        
+        final GroupNode parent = getParent();
+        if ( parent != null )
+        {
+            parent.boundsDirty = true;
+            parent.updateBoundsCheap( false, false, true, true );
+        }
         
         /*
         updateBounds();
@@ -179,6 +243,8 @@ public class TransformGroup extends Group implements Transformable
     
     final Transform3D getInlinedWorldTransform()
     {
+        validateWorldTransform();
+        
         return ( worldTransform );
     }
     
@@ -188,6 +254,8 @@ public class TransformGroup extends Group implements Transformable
     @Override
     public final Transform3D getWorldTransform()
     {
+        validateWorldTransform();
+        
         return ( worldTransform );
     }
     
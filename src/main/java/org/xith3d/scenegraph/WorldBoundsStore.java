@@ -0,0 +1,556 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.scenegraph;
+
+import org.openmali.spatial.bodies.Box;
+import org.openmali.spatial.bodies.Frustum;
+import org.openmali.spatial.bodies.Plane;
+import org.openmali.spatial.bodies.Sphere;
+import org.openmali.spatial.bounds.BoundsType;
+import org.openmali.vecmath2.Point3f;
+import org.openmali.vecmath2.Vector3f;
+import org.xith3d.render.preprocessing.PlaneMaskClassifier;
+
+/**
+ * A structure-of-arrays copy of the world bounds of all Nodes in a {@link BranchGroup}.
+ * The culler can stream over these flat arrays instead of following each Node's
+ * {@link Node#getWorldBounds()} reference and checking its type.<br>
+ * <br>
+ * The children of a group are assigned consecutive slots when the store is enabled,
+ * so that they can be classified in a single pass. Adding or removing children
+ * breaks this for the affected group only.<br>
+ * <br>
+ * The slots are kept up to date by the bounds update of the Nodes.
+ * After a transform change, a Node's slot is only updated, when its world bounds
+ * are validated (see {@link Node#getWorldBounds()}).
+ * 
+ * @see BranchGroup#setWorldBoundsStoreEnabled(boolean)
+ */
+public final class WorldBoundsStore
+{
+    /**
+     * The slot doesn't contain usable bounds (ignored bounds, polytope, BranchGroup or unused slot).
+     */
+    public static final byte TYPE_INVALID = 0;
+    public static final byte TYPE_SPHERE = 1;
+    public static final byte TYPE_AABB = 2;
+    
+    private static final int INITIAL_CAPACITY = 64;
+    
+    private byte[] types = new byte[ INITIAL_CAPACITY ];
+    private float[] centerX = new float[ INITIAL_CAPACITY ];
+    private float[] centerY = new float[ INITIAL_CAPACITY ];
+    private float[] centerZ = new float[ INITIAL_CAPACITY ];
+    private float[] radius = new float[ INITIAL_CAPACITY ];
+    private float[] minX = new float[ INITIAL_CAPACITY ];
+    private float[] minY = new float[ INITIAL_CAPACITY ];
+    private float[] minZ = new float[ INITIAL_CAPACITY ];
+    private float[] maxX = new float[ INITIAL_CAPACITY ];
+    private float[] maxY = new float[ INITIAL_CAPACITY ];
+    private float[] maxZ = new float[ INITIAL_CAPACITY ];
+    
+    private int size = 0;
+    
+    private int[] freeSlots = new int[ 16 ];
+    private int numFreeSlots = 0;
+    
+    private static final float[] grow( float[] array, int capacity )
+    {
+        final float[] newArray = new float[ capacity ];
+        System.arraycopy( array, 0, newArray, 0, array.length );
+        
+        return ( newArray );
+    }
+    
+    private final void ensureCapacity( int capacity )
+    {
+        if ( capacity <= types.length )
+            return;
+        
+        final int newCapacity = Math.max( capacity, ( types.length * 3 ) / 2 + 1 );
+        
+        final byte[] newTypes = new byte[ newCapacity ];
+        System.arraycopy( types, 0, newTypes, 0, types.length );
+        types = newTypes;
+        
+        centerX = grow( centerX, newCapacity );
+        centerY = grow( centerY, newCapacity );
+        centerZ = grow( centerZ, newCapacity );
+        radius = grow( radius, newCapacity );
+        minX = grow( minX, newCapacity );
+        minY = grow( minY, newCapacity );
+        minZ = grow( minZ, newCapacity );
+        maxX = grow( maxX, newCapacity );
+        maxY = grow( maxY, newCapacity );
+        maxZ = grow( maxZ, newCapacity );
+    }
+    
+    /**
+     * @return the number of used slots (including the free ones in between).
+     */
+    public final int getSize()
+    {
+        return ( size );
+    }
+    
+    public final byte getType( int slot )
+    {
+        return ( types[ slot ] );
+    }
+    
+    public final boolean isValid( int slot )
+    {
+        return ( types[ slot ] != TYPE_INVALID );
+    }
+    
+    public final float getCenterX( int slot )
+    {
+        return ( centerX[ slot ] );
+    }
+    
+    public final float getCenterY( int slot )
+    {
+        return ( centerY[ slot ] );
+    }
+    
+    public final float getCenterZ( int slot )
+    {
+        return ( centerZ[ slot ] );
+    }
+    
+    public final float getRadius( int slot )
+    {
+        return ( radius[ slot ] );
+    }
+    
+    public final float getMinX( int slot )
+    {
+        return ( minX[ slot ] );
+    }
+    
+    public final float getMinY( int slot )
+    {
+        return ( minY[ slot ] );
+    }
+    
+    public final float getMinZ( int slot )
+    {
+        return ( minZ[ slot ] );
+    }
+    
+    public final float getMaxX( int slot )
+    {
+        return ( maxX[ slot ] );
+    }
+    
+    public final float getMaxY( int slot )
+    {
+        return ( maxY[ slot ] );
+    }
+    
+    public final float getMaxZ( int slot )
+    {
+        return ( maxZ[ slot ] );
+    }
+    
+    /**
+     * Copies the Node's current world bounds into its slot.
+     * 
+     * @param slot
+     * @param node
+     */
+    final void update( int slot, Node node )
+    {
+        if ( node.isIgnoreBounds() || ( node instanceof BranchGroup ) || ( node.getWorldBounds() == null ) )
+        {
+            types[ slot ] = TYPE_INVALID;
+        }
+        else if ( node.getBoundsType() == BoundsType.SPHERE )
+        {
+            final Sphere sphere = (Sphere)node.getWorldBounds();
+            final Point3f center = sphere.getCenter();
+            final float r = sphere.getRadius();
+            
+            types[ slot ] = TYPE_SPHERE;
+            centerX[ slot ] = center.getX();
+            centerY[ slot ] = center.getY();
+            centerZ[ slot ] = center.getZ();
+            radius[ slot ] = r;
+            minX[ slot ] = center.getX() - r;
+            minY[ slot ] = center.getY() - r;
+            minZ[ slot ] = center.getZ() - r;
+            maxX[ slot ] = center.getX() + r;
+            maxY[ slot ] = center.getY() + r;
+            maxZ[ slot ] = center.getZ() + r;
+        }
+        else if ( node.getBoundsType() == BoundsType.AABB )
+        {
+            final Box box = (Box)node.getWorldBounds();
+            
+            types[ slot ] = TYPE_AABB;
+            minX[ slot ] = box.getLowerX();
+            minY[ slot ] = box.getLowerY();
+            minZ[ slot ] = box.getLowerZ();
+            maxX[ slot ] = box.getUpperX();
+            maxY[ slot ] = box.getUpperY();
+            maxZ[ slot ] = box.getUpperZ();
+            centerX[ slot ] = ( minX[ slot ] + maxX[ slot ] ) * 0.5f;
+            centerY[ slot ] = ( minY[ slot ] + maxY[ slot ] ) * 0.5f;
+            centerZ[ slot ] = ( minZ[ slot ] + maxZ[ slot ] ) * 0.5f;
+            
+            final float dx = maxX[ slot ] - centerX[ slot ];
+            final float dy = maxY[ slot ] - centerY[ slot ];
+            final float dz = maxZ[ slot ] - centerZ[ slot ];
+            radius[ slot ] = (float)Math.sqrt( dx * dx + dy * dy + dz * dz );
+        }
+        else
+        {
+            // Polytopes are not culled at all.
+            types[ slot ] = TYPE_INVALID;
+        }
+    }
+    
+    private final int allocateSlot()
+    {
+        if ( numFreeSlots > 0 )
+            return ( freeSlots[ --numFreeSlots ] );
+        
+        ensureCapacity( size + 1 );
+        
+        return ( size++ );
+    }
+    
+    private final int allocateBlock( int length )
+    {
+        ensureCapacity( size + length );
+        
+        final int first = size;
+        size += length;
+        
+        return ( first );
+    }
+    
+    private final void releaseSlot( int slot )
+    {
+        types[ slot ] = TYPE_INVALID;
+        
+        if ( numFreeSlots == freeSlots.length )
+        {
+            final int[] newFreeSlots = new int[ freeSlots.length * 2 ];
+            System.arraycopy( freeSlots, 0, newFreeSlots, 0, numFreeSlots );
+            freeSlots = newFreeSlots;
+        }
+        
+        freeSlots[ numFreeSlots++ ] = slot;
+    }
+    
+    private final void assign( Node node, int slot )
+    {
+        if ( node.getWorldBoundsStore() != null )
+            node.getWorldBoundsStore().unregister( node );
+        
+        node.setWorldBoundsSlot( this, slot );
+        update( slot, node );
+    }
+    
+    /**
+     * Assigns consecutive slots to the children of the given group and recurses.
+     */
+    private final void registerChildren( GroupNode group )
+    {
+        final int n = group.numChildren();
+        
+        if ( n == 0 )
+        {
+            group.setChildrenWorldBoundsSlot( -1 );
+            
+            return;
+        }
+        
+        final int first = allocateBlock( n );
+        
+        for ( int i = 0; i < n; i++ )
+        {
+            assign( group.getChild( i ), first + i );
+        }
+        
+        group.setChildrenWorldBoundsSlot( first );
+        
+        for ( int i = 0; i < n; i++ )
+        {
+            final Node child = group.getChild( i );
+            
+            if ( child instanceof GroupNode )
+                registerChildren( (GroupNode)child );
+        }
+    }
+    
+    /**
+     * Assigns slots to the given Node and all its descendants.
+     * 
+     * @param node
+     */
+    final void register( Node node )
+    {
+        assign( node, allocateSlot() );
+        
+        if ( node instanceof GroupNode )
+            registerChildren( (GroupNode)node );
+    }
+    
+    /**
+     * Releases the slots of the given Node and all its descendants.
+     * 
+     * @param node
+     */
+    final void unregister( Node node )
+    {
+        if ( node.getWorldBoundsStore() != this )
+            return;
+        
+        // The released slot must not be taken for a foreign Node in the parent's consecutive slots.
+        if ( node.getParent() != null )
+            node.getParent().setChildrenWorldBoundsSlot( -1 );
+        
+        unregisterSubtree( node );
+    }
+    
+    private final void unregisterSubtree( Node node )
+    {
+        if ( node.getWorldBoundsStore() != this )
+            return;
+        
+        releaseSlot( node.getWorldBoundsSlot() );
+        node.setWorldBoundsSlot( null, -1 );
+        
+        if ( node instanceof GroupNode )
+        {
+            final GroupNode group = (GroupNode)node;
+            
+            group.setChildrenWorldBoundsSlot( -1 );
+            
+            final int n = group.numChildren();
+            for ( int i = 0; i < n; i++ )
+            {
+                unregisterSubtree( group.getChild( i ) );
+            }
+        }
+    }
+    
+    /**
+     * Classifies the bounds in the given slot against the planes of the Frustum, that are set in the plane-mask.
+     * The slot must be valid.
+     * 
+     * @param slot
+     * @param frustum
+     * @param planeMask the planes to test
+     * @param firstPlane the plane to test first (usually the last rejecting one)
+     * 
+     * @return the remaining plane-mask or a negative value, if the bounds are outside.
+     * 
+     * @see PlaneMaskClassifier
+     */
+    public final int classify( int slot, Frustum frustum, int planeMask, int firstPlane )
+    {
+        final boolean isBox = ( types[ slot ] == TYPE_AABB );
+        final float cx = centerX[ slot ];
+        final float cy = centerY[ slot ];
+        final float cz = centerZ[ slot ];
+        final float ex = maxX[ slot ] - cx;
+        final float ey = maxY[ slot ] - cy;
+        final float ez = maxZ[ slot ] - cz;
+        
+        int result = planeMask;
+        
+        for ( int i = -1; i < PlaneMaskClassifier.NUM_PLANES; i++ )
+        {
+            final int plane = ( i < 0 ) ? firstPlane : i;
+            
+            if ( ( ( i >= 0 ) && ( plane == firstPlane ) ) || ( ( planeMask & ( 1 << plane ) ) == 0 ) )
+                continue;
+            
+            final Plane p = PlaneMaskClassifier.getPlane( frustum, plane );
+            
+            final float dist = p.distanceTo( cx, cy, cz );
+            final float r;
+            if ( isBox )
+                r = ex * Math.abs( p.getNX() ) + ey * Math.abs( p.getNY() ) + ez * Math.abs( p.getNZ() );
+            else
+                r = radius[ slot ];
+            
+            if ( dist <= -r )
+                return ( -plane - 1 );
+            
+            if ( dist >= r )
+                result &= ~( 1 << plane );
+        }
+        
+        return ( result );
+    }
+    
+    /**
+     * Copies the coefficients (nx, ny, nz, d) of the Frustum's planes into the given array
+     * for {@link #classify(int, int, float[], int, int[], int)}.
+     * 
+     * @param frustum
+     * @param planes an array of at least 4 * {@link PlaneMaskClassifier#NUM_PLANES} floats
+     */
+    public static void loadPlanes( Frustum frustum, float[] planes )
+    {
+        for ( int i = 0; i < PlaneMaskClassifier.NUM_PLANES; i++ )
+        {
+            final Plane p = PlaneMaskClassifier.getPlane( frustum, i );
+            
+            planes[ i * 4 + 0 ] = p.getNX();
+            planes[ i * 4 + 1 ] = p.getNY();
+            planes[ i * 4 + 2 ] = p.getNZ();
+            planes[ i * 4 + 3 ] = p.getD();
+        }
+    }
+    
+    /**
+     * Classifies a range of consecutive slots in a single pass.
+     * Invalid slots get the result {@link Integer#MIN_VALUE}.
+     * 
+     * @param firstSlot
+     * @param length
+     * @param planes the plane coefficients as loaded by {@link #loadPlanes(Frustum, float[])}
+     * @param planeMask the planes to test
+     * @param results receives the remaining plane-masks or negative values for the slots, that are outside
+     * @param offset the offset in the results array
+     */
+    public final void classify( int firstSlot, int length, float[] planes, int planeMask, int[] results, int offset )
+    {
+        for ( int i = 0; i < length; i++ )
+        {
+            final int slot = firstSlot + i;
+            final byte type = types[ slot ];
+            
+            if ( type == TYPE_INVALID )
+            {
+                results[ offset + i ] = Integer.MIN_VALUE;
+                continue;
+            }
+            
+            final float cx = centerX[ slot ];
+            final float cy = centerY[ slot ];
+            final float cz = centerZ[ slot ];
+            final float ex = maxX[ slot ] - cx;
+            final float ey = maxY[ slot ] - cy;
+            final float ez = maxZ[ slot ] - cz;
+            final float sr = radius[ slot ];
+            
+            int result = planeMask;
+            
+            for ( int plane = 0; plane < PlaneMaskClassifier.NUM_PLANES; plane++ )
+            {
+                if ( ( planeMask & ( 1 << plane ) ) == 0 )
+                    continue;
+                
+                final int p = plane * 4;
+                final float nx = planes[ p + 0 ];
+                final float ny = planes[ p + 1 ];
+                final float nz = planes[ p + 2 ];
+                
+                final float dist = nx * cx + ny * cy + nz * cz + planes[ p + 3 ];
+                final float r = ( type == TYPE_AABB ) ? ( ex * Math.abs( nx ) + ey * Math.abs( ny ) + ez * Math.abs( nz ) ) : sr;
+                
+                if ( dist <= -r )
+                {
+                    result = -plane - 1;
+                    break;
+                }
+                
+                if ( dist >= r )
+                    result &= ~( 1 << plane );
+            }
+            
+            results[ offset + i ] = result;
+        }
+    }
+    
+    /**
+     * Conservatively tests the bounds in the given slot against the line through the given ray.
+     * If this returns false, the bounds are definitely not hit.
+     * 
+     * @param slot
+     * @param origin
+     * @param direction
+     * 
+     * @return false, if the bounds are not hit.
+     */
+    public final boolean mayIntersect( int slot, Point3f origin, Vector3f direction )
+    {
+        if ( types[ slot ] == TYPE_INVALID )
+            return ( true );
+        
+        final float dx = direction.getX();
+        final float dy = direction.getY();
+        final float dz = direction.getZ();
+        
+        final float ox = centerX[ slot ] - origin.getX();
+        final float oy = centerY[ slot ] - origin.getY();
+        final float oz = centerZ[ slot ] - origin.getZ();
+        
+        final float dd = dx * dx + dy * dy + dz * dz;
+        if ( dd == 0f )
+            return ( true );
+        
+        // squared distance of the center from the line
+        final float t = ( ox * dx + oy * dy + oz * dz ) / dd;
+        final float px = ox - t * dx;
+        final float py = oy - t * dy;
+        final float pz = oz - t * dz;
+        
+        final float r = radius[ slot ];
+        
+        return ( px * px + py * py + pz * pz <= r * r * 1.0001f );
+    }
+    
+    /**
+     * Releases all slots.
+     */
+    final void clear()
+    {
+        for ( int i = 0; i < size; i++ )
+            types[ i ] = TYPE_INVALID;
+        
+        size = 0;
+        numFreeSlots = 0;
+    }
+    
+    WorldBoundsStore()
+    {
+    }
+}
@@ -41,6 +41,7 @@ import org.openmali.spatial.bounds.Bounds;
 import org.openmali.spatial.octree.OcTree;
 import org.openmali.spatial.quadtree.QuadTree;
 import org.xith3d.render.RenderPassConfig;
+import org.xith3d.render.preprocessing.BoundsAtom;
 import org.xith3d.render.preprocessing.ShadowAtom;
 import org.xith3d.render.preprocessing.ShapeAtom;
 
@@ -64,6 +65,11 @@ public class _SG_PrivilegedAccess
         app.markStaticClean();
     }
     
+    public static void markChangeHandled( Appearance app )
+    {
+        app.markChangeHandled();
+    }
+    
     /*
     public static final boolean isStaticDirty( Appearance app )
     {
@@ -152,6 +158,30 @@ public class _SG_PrivilegedAccess
         return ( ( (GeomNioIntData)geomData ).getFramesSinceDirty() );
     }
     
+    public static final int getDirtyRangeStart( GeomNioData geomData )
+    {
+        if ( geomData instanceof GeomNioFloatData )
+            return ( ( (GeomNioFloatData)geomData ).getDirtyRangeStart() );
+        
+        return ( ( (GeomNioIntData)geomData ).getDirtyRangeStart() );
+    }
+    
+    public static final int getDirtyRangeEnd( GeomNioData geomData )
+    {
+        if ( geomData instanceof GeomNioFloatData )
+            return ( ( (GeomNioFloatData)geomData ).getDirtyRangeEnd() );
+        
+        return ( ( (GeomNioIntData)geomData ).getDirtyRangeEnd() );
+    }
+    
+    public static final int markUpdated( GeomNioData geomData, long frame )
+    {
+        if ( geomData instanceof GeomNioFloatData )
+            return ( ( (GeomNioFloatData)geomData ).markUpdated( frame ) );
+        
+        return ( ( (GeomNioIntData)geomData ).markUpdated( frame ) );
+    }
+    
     public static final void setDirty( GeomNioFloatData geomData, boolean dirty )
     {
         geomData.setDirty( dirty );
@@ -212,6 +242,56 @@ public class _SG_PrivilegedAccess
         return ( shape.getAtom() );
     }
     
+    public static final void setBoundsAtom( Node node, BoundsAtom atom )
+    {
+        node.setBoundsAtom( atom );
+    }
+    
+    public static final BoundsAtom getBoundsAtom( Node node )
+    {
+        return ( node.getBoundsAtom() );
+    }
+    
+    public static final void setCullingPlaneHint( Node node, int plane )
+    {
+        node.setCullingPlaneHint( plane );
+    }
+    
+    public static final int getCullingPlaneHint( Node node )
+    {
+        return ( node.getCullingPlaneHint() );
+    }
+    
+    public static final int getChildrenWorldBoundsSlot( GroupNode group )
+    {
+        return ( group.getChildrenWorldBoundsSlot() );
+    }
+    
+    public static final void validateWorldBounds( Node node )
+    {
+        node.validateWorldBounds();
+    }
+    
+    public static final void setCullingModStamp( Node node, long stamp )
+    {
+        node.setCullingModStamp( stamp );
+    }
+    
+    public static final long getCullingModStamp( Node node )
+    {
+        return ( node.getCullingModStamp() );
+    }
+    
+    public static final void setCullingSubtreeModStamp( Node node, long stamp )
+    {
+        node.setCullingSubtreeModStamp( stamp );
+    }
+    
+    public static final long getCullingSubtreeModStamp( Node node )
+    {
+        return ( node.getCullingSubtreeModStamp() );
+    }
+    
     public static final Transform3D getLeafWorldTransform( Leaf leaf )
     {
         return ( leaf.getLeafWorldTransform() );
@@ -279,6 +359,21 @@ public class _SG_PrivilegedAccess
         texture.setDirty( dirty );
     }
     
+    public static final void setStreamingRequest( Texture2D texture, long frame, int level )
+    {
+        texture.setStreamingRequest( frame, level );
+    }
+    
+    public static final long getStreamingFrame( Texture2D texture )
+    {
+        return ( texture.getStreamingFrame() );
+    }
+    
+    public static final int getRequestedLevel( Texture2D texture )
+    {
+        return ( texture.getRequestedLevel() );
+    }
+    
     public static final void setCachedBounds( Bounds bounds, Geometry geom )
     {
         geom.setCachedBounds( bounds );
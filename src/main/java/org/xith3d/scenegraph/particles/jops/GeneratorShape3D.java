@@ -469,7 +469,7 @@ public class GeneratorShape3D extends Shape3D implements Billboard
         
         final int maxParticles = gb.getNumber();
         IndexedTriangleArray geom = new IndexedTriangleArray( maxParticles * 3 + 0, maxParticles * 3 + 0 );
-        geom.setOptimization( Optimization.NONE );
+        geom.setOptimization( Optimization.USE_STREAMING_VBOS );
         
         setGeometry( geom );
         index = new int[ gb.getNumber() * 3 ];
@@ -0,0 +1,150 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.ui.hud.widgets;
+
+import org.openmali.vecmath2.Colorf;
+import org.xith3d.loop.FPSListener;
+import org.xith3d.render.FrameTimeline;
+import org.xith3d.render.FrameTimeline.Phase;
+import org.xith3d.ui.hud.utils.HUDFont;
+import org.xith3d.ui.text2d.TextAlignment;
+
+/**
+ * Simple overlay Widget to display the average phase timings of a {@link FrameTimeline}.
+ * The text is refreshed each time the FPS count interval is hit,
+ * so add it as an FPSListener to your RenderLoop.
+ */
+public class FrameTimelineDisplay extends Label implements FPSListener
+{
+    private final FrameTimeline timeline;
+    
+    private final StringBuilder sb = new StringBuilder();
+    
+    /**
+     * @return the FrameTimeline, that is displayed
+     */
+    public final FrameTimeline getFrameTimeline()
+    {
+        return ( timeline );
+    }
+    
+    private final void appendMillis( String label, long nanos )
+    {
+        final long hundredths = ( nanos + 5000L ) / 10000L;
+        
+        sb.append( label ).append( ' ' ).append( hundredths / 100L ).append( '.' );
+        if ( hundredths % 100L < 10L )
+            sb.append( '0' );
+        sb.append( hundredths % 100L ).append( " ms\n" );
+    }
+    
+    /**
+     * Refreshes the displayed text from the FrameTimeline.
+     */
+    public void refresh()
+    {
+        sb.setLength( 0 );
+        
+        appendMillis( "frame", timeline.getAverageFrameTime() );
+        
+        final Phase[] phases = Phase.values();
+        for ( int i = 0; i < phases.length; i++ )
+        {
+            appendMillis( phases[ i ].name().toLowerCase(), timeline.getAveragePhaseTime( phases[ i ] ) );
+        }
+        
+        final int n = timeline.getNumFrames();
+        if ( n > 0 )
+        {
+            sb.append( "atoms " ).append( timeline.getAtoms( n - 1 ) );
+            sb.append( ", tris " ).append( timeline.getTriangles( n - 1 ) );
+            sb.append( ", states " ).append( timeline.getStateChanges( n - 1 ) );
+        }
+        
+        setText( sb.toString() );
+    }
+    
+    /**
+     * {@inheritDoc}
+     */
+    public void onFPSCountIntervalHit( float fps )
+    {
+        refresh();
+    }
+    
+    /**
+     * Creates a new FrameTimelineDisplay with the given width and height.
+     * 
+     * @param isHeavyWeight
+     * @param width the new width of this Widget
+     * @param height the new height of this Widget
+     * @param timeline the FrameTimeline to display
+     * @param font the Font to be used for the text
+     * @param color the color to be used
+     */
+    public FrameTimelineDisplay( boolean isHeavyWeight, float width, float height, FrameTimeline timeline, HUDFont font, Colorf color )
+    {
+        super( isHeavyWeight, width, height, "", font, color, TextAlignment.TOP_LEFT );
+        
+        if ( timeline == null )
+            throw new NullPointerException( "timeline must not be null" );
+        
+        this.timeline = timeline;
+    }
+    
+    /**
+     * Creates a new FrameTimelineDisplay with the given width and height.
+     * 
+     * @param isHeavyWeight
+     * @param width the new width of this Widget
+     * @param height the new height of this Widget
+     * @param timeline the FrameTimeline to display
+     */
+    public FrameTimelineDisplay( boolean isHeavyWeight, float width, float height, FrameTimeline timeline )
+    {
+        this( isHeavyWeight, width, height, timeline, null, null );
+    }
+    
+    /**
+     * Creates a new FrameTimelineDisplay with the given width and height.
+     * 
+     * @param width the new width of this Widget
+     * @param height the new height of this Widget
+     * @param timeline the FrameTimeline to display
+     */
+    public FrameTimelineDisplay( float width, float height, FrameTimeline timeline )
+    {
+        this( false, width, height, timeline );
+    }
+}
@@ -34,13 +34,14 @@
 package org.xith3d.utility.geometry;
 
 import java.util.ArrayList;
+import java.util.Arrays;
 import java.util.List;
 
-import org.jagatoo.util.arrays.ArrayUtils;
 import org.openmali.spatial.TriangleContainer;
 import org.openmali.spatial.VertexContainer;
 import org.openmali.spatial.polygons.Triangle;
 import org.openmali.vecmath2.Colorf;
+import org.openmali.vecmath2.Matrix4f;
 import org.openmali.vecmath2.Point3f;
 import org.openmali.vecmath2.TexCoord2f;
 import org.openmali.vecmath2.Tuple3f;
@@ -204,47 +205,41 @@ public class GeometryUtils
         return ( targetTA );
     }
     
-    private static int findVertex( Point3f[] coords, Vector3f[] normals, Colorf[] colors, TexCoord2f[] texCoords, int searchStart, int searchEnd, int sampleIndex )
+    /**
+     * Computes a hash code over all attributes of the given vertex, that
+     * are considered by {@link #isSameVertex(Point3f[], Vector3f[], Colorf[], TexCoord2f[], int, int)}.
+     */
+    private static int hashVertex( Point3f[] coords, Vector3f[] normals, Colorf[] colors, TexCoord2f[] texCoords, int i )
     {
-        int index = ArrayUtils.indexOf( coords, searchStart, searchEnd, coords[ sampleIndex ], false );
-        
-        if ( index < 0 )
-            return ( index );
+        int hash = coords[i].hashCode();
         
         if ( normals != null )
-        {
-            if ( !normals[index].equals( normals[sampleIndex] ) )
-            {
-                if ( index < searchEnd )
-                    return ( findVertex( coords, normals, colors, texCoords, index + 1, searchEnd, sampleIndex ) );
-                
-                return ( -1 );
-            }
-        }
+            hash = hash * 31 + normals[i].hashCode();
         
         if ( colors != null )
-        {
-            if ( !colors[index].equals( colors[sampleIndex] ) )
-            {
-                if ( index < searchEnd )
-                    return ( findVertex( coords, normals, colors, texCoords, index + 1, searchEnd, sampleIndex ) );
-                
-                return ( -1 );
-            }
-        }
+            hash = hash * 31 + colors[i].hashCode();
         
         if ( texCoords != null )
-        {
-            if ( !texCoords[index].equals( texCoords[sampleIndex] ) )
-            {
-                if ( index < searchEnd )
-                    return ( findVertex( coords, normals, colors, texCoords, index + 1, searchEnd, sampleIndex ) );
-                
-                return ( -1 );
-            }
-        }
+            hash = hash * 31 + texCoords[i].hashCode();
+        
+        return ( hash );
+    }
+    
+    private static boolean isSameVertex( Point3f[] coords, Vector3f[] normals, Colorf[] colors, TexCoord2f[] texCoords, int i, int j )
+    {
+        if ( !coords[i].equals( coords[j] ) )
+            return ( false );
+        
+        if ( ( normals != null ) && !normals[i].equals( normals[j] ) )
+            return ( false );
+        
+        if ( ( colors != null ) && !colors[i].equals( colors[j] ) )
+            return ( false );
         
-        return ( index );
+        if ( ( texCoords != null ) && !texCoords[i].equals( texCoords[j] ) )
+            return ( false );
+        
+        return ( true );
     }
     
     /**
@@ -255,6 +250,22 @@ public class GeometryUtils
      * @return the new IndexedTriangleArray.
      */
     public static IndexedTriangleArray mergeGeometriesITA( Geometry... geoms )
+    {
+        return ( mergeGeometriesITA( null, geoms ) );
+    }
+    
+    /**
+     * Merges multiple Geometries into one big IndexedTriangleArray.
+     * The triangles of the source Geometries are written in order, so that
+     * the faces of geoms[i] directly follow the ones of geoms[i - 1].
+     * 
+     * @param transforms if not null, the vertices of geoms[i] are transformed by transforms[i]
+     *                   (normals by its inverse transpose). Null elements are treated as identity.
+     * @param geoms
+     * 
+     * @return the new IndexedTriangleArray.
+     */
+    public static IndexedTriangleArray mergeGeometriesITA( Matrix4f[] transforms, Geometry... geoms )
     {
         if ( geoms.length == 0 )
             return ( null );
@@ -278,12 +289,21 @@ public class GeometryUtils
         
         Triangle triangle = new Triangle( features, 2 );
         
+        Matrix4f normalMatrix = new Matrix4f();
+        
         int offset = 0;
         for ( int i = 0; i < geoms.length; i++ )
         {
             TriangleContainer tc = (TriangleContainer)geoms[i];
             numTriangles = tc.getTriangleCount();
             
+            final Matrix4f transform = ( transforms != null ) ? transforms[i] : null;
+            if ( ( transform != null ) && ( normals != null ) )
+            {
+                normalMatrix.invert( transform );
+                normalMatrix.transpose();
+            }
+            
             for ( int t = 0; t < numTriangles; t++ )
             {
                 tc.getTriangle( t, triangle );
@@ -292,11 +312,27 @@ public class GeometryUtils
                 coords[offset + t * 3 + 1] = new Point3f( triangle.getVertexCoordB() );
                 coords[offset + t * 3 + 2] = new Point3f( triangle.getVertexCoordC() );
                 
+                if ( transform != null )
+                {
+                    transform.transform( coords[offset + t * 3 + 0] );
+                    transform.transform( coords[offset + t * 3 + 1] );
+                    transform.transform( coords[offset + t * 3 + 2] );
+                }
+                
                 if ( normals != null )
                 {
                     normals[offset + t * 3 + 0] = new Vector3f( triangle.getVertexNormalA() );
                     normals[offset + t * 3 + 1] = new Vector3f( triangle.getVertexNormalB() );
                     normals[offset + t * 3 + 2] = new Vector3f( triangle.getVertexNormalC() );
+                    
+                    if ( transform != null )
+                    {
+                        for ( int k = 0; k < 3; k++ )
+                        {
+                            normalMatrix.transform( normals[offset + t * 3 + k] );
+                            normals[offset + t * 3 + k].normalize();
+                        }
+                    }
                 }
                 
                 if ( colors != null )
@@ -314,30 +350,42 @@ public class GeometryUtils
                 }
             }
             
-            offset += geoms[i].getVertexCount();
+            offset += numTriangles * 3;
         }
         
-        int[] index = new int[ numVertices ];
+        /*
+         * Identical vertices are found through an open addressing hash table
+         * over the (non-unique) vertex indices. Unique vertices are numbered
+         * in the order of their first occurrence.
+         */
+        int tableSize = 16;
+        while ( tableSize < numVertices * 2 )
+            tableSize <<= 1;
+        final int[] table = new int[ tableSize ];
+        Arrays.fill( table, -1 );
         
-        index[0] = 0;
-        index[1] = 1;
-        index[2] = 2;
+        int[] index = new int[ numVertices ];
+        int[] uniqueSource = new int[ numVertices ];
         
-        int numUniqueVertices = 3;
+        int numUniqueVertices = 0;
         
-        for ( int i = 3; i < numVertices; i++ )
+        for ( int i = 0; i < numVertices; i++ )
         {
-            int j = findVertex( coords, normals, colors, texCoords, 0, i - 1, i );
+            int slot = hashVertex( coords, normals, colors, texCoords, i );
+            slot = ( slot ^ ( slot >>> 16 ) ) & ( tableSize - 1 );
             
-            if ( j < 0 )
+            while ( ( table[slot] >= 0 ) && !isSameVertex( coords, normals, colors, texCoords, uniqueSource[table[slot]], i ) )
             {
-                index[i] = i;
-                numUniqueVertices++;
+                slot = ( slot + 1 ) & ( tableSize - 1 );
             }
-            else
+            
+            if ( table[slot] < 0 )
             {
-                index[i] = index[j];
+                table[slot] = numUniqueVertices;
+                uniqueSource[numUniqueVertices++] = i;
             }
+            
+            index[i] = table[slot];
         }
         
         Point3f[] uniqueCoords = ( ( features & Geometry.COORDINATES ) != 0 ) ? new Point3f[ numUniqueVertices ] : null;
@@ -345,26 +393,17 @@ public class GeometryUtils
         Colorf[] uniqueColors = ( ( features & Geometry.COLORS ) != 0 ) ? new Colorf[ numUniqueVertices ] : null;
         TexCoord2f[] uniqueTexCoords = ( ( features & Geometry.TEXTURE_COORDINATES ) != 0 ) ? new TexCoord2f[ numUniqueVertices ] : null;
         
-        int j = 0;
-        for ( int i = 0; i < numVertices; i++ )
+        for ( int j = 0; j < numUniqueVertices; j++ )
         {
-            if ( index[i] == i )
-            {
-                for ( int k = 0; k < numVertices; k++ )
-                {
-                    if ( index[k] == i )
-                        index[k] = j;
-                }
-                
-                uniqueCoords[j] = coords[i];
-                if ( normals != null )
-                    uniqueNormals[j] = normals[i];
-                if ( colors != null )
-                    uniqueColors[j] = colors[i];
-                if ( normals != null )
-                    uniqueTexCoords[j] = texCoords[i];
-                j++;
-            }
+            final int i = uniqueSource[j];
+            
+            uniqueCoords[j] = coords[i];
+            if ( normals != null )
+                uniqueNormals[j] = normals[i];
+            if ( colors != null )
+                uniqueColors[j] = colors[i];
+            if ( texCoords != null )
+                uniqueTexCoords[j] = texCoords[i];
         }
         
         IndexedTriangleArray targetITA = new IndexedTriangleArray( numUniqueVertices, numVertices );
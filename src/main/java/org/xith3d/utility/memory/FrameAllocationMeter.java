@@ -0,0 +1,190 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.utility.memory;
+
+import java.lang.management.ManagementFactory;
+
+/**
+ * Measures the heap memory allocated by one thread per frame.
+ * The meter is bound to the thread, that created it, and reads the thread's
+ * allocation counter through the <code>com.sun.management.ThreadMXBean</code>,
+ * so that allocations of other threads (JIT, GC, workers) are not counted.
+ * Reading the counter doesn't allocate itself.
+ * 
+ * Use {@link #beginFrame()} and {@link #endFrame()} around the code to be
+ * measured, e.g. one call of <code>Xith3DEnvironment.render()</code>.
+ */
+public class FrameAllocationMeter
+{
+    private final com.sun.management.ThreadMXBean threadBean;
+    private final long threadId;
+    
+    private long frameStartBytes = -1L;
+    
+    private long lastFrameBytes = 0L;
+    private long maxFrameBytes = 0L;
+    private long totalBytes = 0L;
+    private int numFrames = 0;
+    
+    /**
+     * @return the ThreadMXBean, if it supports measuring allocated memory, null otherwise.
+     */
+    private static com.sun.management.ThreadMXBean getSupportingThreadBean()
+    {
+        final java.lang.management.ThreadMXBean bean = ManagementFactory.getThreadMXBean();
+        
+        if ( !( bean instanceof com.sun.management.ThreadMXBean ) )
+            return ( null );
+        
+        final com.sun.management.ThreadMXBean sunBean = (com.sun.management.ThreadMXBean)bean;
+        
+        if ( !sunBean.isThreadAllocatedMemorySupported() )
+            return ( null );
+        
+        return ( sunBean );
+    }
+    
+    /**
+     * @return true, if the running VM can measure per-thread allocations.
+     */
+    public static boolean isSupported()
+    {
+        return ( getSupportingThreadBean() != null );
+    }
+    
+    /**
+     * Resets all collected statistics.
+     */
+    public final void reset()
+    {
+        frameStartBytes = -1L;
+        lastFrameBytes = 0L;
+        maxFrameBytes = 0L;
+        totalBytes = 0L;
+        numFrames = 0;
+    }
+    
+    /**
+     * Marks the beginning of a measured frame.
+     */
+    public final void beginFrame()
+    {
+        frameStartBytes = threadBean.getThreadAllocatedBytes( threadId );
+    }
+    
+    /**
+     * Marks the end of a measured frame.
+     * 
+     * @return the number of bytes allocated since the last call to {@link #beginFrame()}.
+     */
+    public final long endFrame()
+    {
+        final long endBytes = threadBean.getThreadAllocatedBytes( threadId );
+        
+        if ( frameStartBytes < 0L )
+            throw new IllegalStateException( "beginFrame() has not been called." );
+        
+        lastFrameBytes = endBytes - frameStartBytes;
+        frameStartBytes = -1L;
+        
+        if ( lastFrameBytes > maxFrameBytes )
+            maxFrameBytes = lastFrameBytes;
+        
+        totalBytes += lastFrameBytes;
+        numFrames++;
+        
+        return ( lastFrameBytes );
+    }
+    
+    /**
+     * @return the number of bytes allocated in the last measured frame.
+     */
+    public final long getLastFrameBytes()
+    {
+        return ( lastFrameBytes );
+    }
+    
+    /**
+     * @return the maximum number of bytes allocated in one measured frame.
+     */
+    public final long getMaxFrameBytes()
+    {
+        return ( maxFrameBytes );
+    }
+    
+    /**
+     * @return the number of bytes allocated in all measured frames.
+     */
+    public final long getTotalBytes()
+    {
+        return ( totalBytes );
+    }
+    
+    /**
+     * @return the number of measured frames.
+     */
+    public final int getMeasuredFrames()
+    {
+        return ( numFrames );
+    }
+    
+    /**
+     * @return the average number of bytes allocated per measured frame.
+     */
+    public final float getAverageBytesPerFrame()
+    {
+        if ( numFrames == 0 )
+            return ( 0f );
+        
+        return ( (float)totalBytes / (float)numFrames );
+    }
+    
+    /**
+     * Creates a new FrameAllocationMeter for the current thread.
+     * 
+     * @throws UnsupportedOperationException if the VM can't measure per-thread allocations
+     */
+    public FrameAllocationMeter()
+    {
+        this.threadBean = getSupportingThreadBean();
+        
+        if ( threadBean == null )
+            throw new UnsupportedOperationException( "This VM doesn't support measuring per-thread allocated memory." );
+        
+        if ( !threadBean.isThreadAllocatedMemoryEnabled() )
+            threadBean.setThreadAllocatedMemoryEnabled( true );
+        
+        this.threadId = Thread.currentThread().getId();
+    }
+}
@@ -0,0 +1,451 @@
+/**
+ * Copyright (c) 2003-2009, Xith3D Project Group all rights reserved.
+ * 
+ * Portions based on the Java3D interface, Copyright by Sun Microsystems.
+ * Many thanks to the developers of Java3D and Sun Microsystems for their
+ * innovation and design.
+ * 
+ * Redistribution and use in source and binary forms, with or without
+ * modification, are permitted provided that the following conditions are met:
+ * 
+ * Redistributions of source code must retain the above copyright notice,
+ * this list of conditions and the following disclaimer.
+ * 
+ * Redistributions in binary form must reproduce the above copyright notice,
+ * this list of conditions and the following disclaimer in the documentation
+ * and/or other materials provided with the distribution.
+ * 
+ * Neither the name of the 'Xith3D Project Group' nor the names of its
+ * contributors may be used to endorse or promote products derived from this
+ * software without specific prior written permission.
+ * 
+ * THIS SOFTWARE IS PROVIDED BY THE COPYRIGHT HOLDERS AND CONTRIBUTORS "AS IS"
+ * AND ANY EXPRESS OR IMPLIED WARRANTIES, INCLUDING, BUT NOT LIMITED TO, THE
+ * IMPLIED WARRANTIES OF MERCHANTABILITY AND FITNESS FOR A PARTICULAR PURPOSE
+ * ARE DISCLAIMED. IN NO EVENT SHALL THE COPYRIGHT OWNER OR CONTRIBUTORS BE
+ * LIABLE FOR ANY DIRECT, INDIRECT, INCIDENTAL, SPECIAL, EXEMPLARY, OR
+ * CONSEQUENTIAL DAMAGES (INCLUDING, BUT NOT LIMITED TO, PROCUREMENT OF
+ * SUBSTITUTE GOODS OR SERVICES; LOSS OF USE, DATA, OR PROFITS; OR BUSINESS
+ * INTERRUPTION) HOWEVER CAUSED AND ON ANY THEORY OF LIABILITY, WHETHER IN
+ * CONTRACT, STRICT LIABILITY, OR TORT (INCLUDING NEGLIGENCE OR OTHERWISE) A
+ * RISING IN ANY WAY OUT OF THE USE OF THIS SOFTWARE, EVEN IF ADVISED OF THE
+ * POSSIBILITY OF SUCH DAMAGE
+ */
+package org.xith3d.utility.memory;
+
+import java.io.PrintStream;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+
+/**
+ * Sub-allocates direct memory from large direct ByteBuffer slabs.<br>
+ * <br>
+ * Each slab serves one size class. The chunk sizes are powers of two between
+ * {@link #MIN_CHUNK_SIZE} and the slab size. Requests larger than the slab size
+ * get a dedicated direct buffer. A freed chunk is immediately reused by the
+ * next allocation of its size class. A slab, that becomes completely free, is
+ * released, unless it is the last slab of its size class.<br>
+ * <br>
+ * Allocating thousands of small direct buffers is slow. They are only freed by
+ * the garbage collector and fragment the native memory. Slabs are few, large
+ * and are reused explicitly.<br>
+ * <br>
+ * All methods are thread-safe.
+ */
+public class SlabAllocator
+{
+    public static final int MIN_CHUNK_SIZE = 64;
+    public static final int DEFAULT_SLAB_SIZE = 1024 * 1024;
+    
+    /**
+     * A block of memory served by the SlabAllocator.
+     */
+    public static final class Allocation
+    {
+        private final Slab slab;
+        private final int chunk;
+        private final int size;
+        private final ByteBuffer buffer;
+        private boolean freed = false;
+        
+        /**
+         * @return the allocated memory in native byte order. Its capacity is the requested size.
+         */
+        public final ByteBuffer getBuffer()
+        {
+            return ( buffer );
+        }
+        
+        /**
+         * @return the requested size in bytes.
+         */
+        public final int getSize()
+        {
+            return ( size );
+        }
+        
+        /**
+         * @return true, if this Allocation has been returned to the allocator.
+         */
+        public final boolean isFreed()
+        {
+            return ( freed );
+        }
+        
+        Allocation( Slab slab, int chunk, int size, ByteBuffer buffer )
+        {
+            this.slab = slab;
+            this.chunk = chunk;
+            this.size = size;
+            this.buffer = buffer;
+        }
+    }
+    
+    private static final class Slab
+    {
+        private final ByteBuffer memory;
+        private final int sizeClass;
+        private final int chunkSize;
+        private final int[] freeChunks;
+        private int numFree;
+        
+        final boolean isFull()
+        {
+            return ( numFree == 0 );
+        }
+        
+        final boolean isEmpty()
+        {
+            return ( numFree == freeChunks.length );
+        }
+        
+        final int getNumChunks()
+        {
+            return ( freeChunks.length );
+        }
+        
+        Slab( int slabSize, int sizeClass, int chunkSize )
+        {
+            this.memory = ByteBuffer.allocateDirect( slabSize ).order( ByteOrder.nativeOrder() );
+            this.sizeClass = sizeClass;
+            this.chunkSize = chunkSize;
+            this.freeChunks = new int[ slabSize / chunkSize ];
+            
+            // the lowest chunks are handed out first
+            for ( int i = 0; i < freeChunks.length; i++ )
+            {
+                freeChunks[ i ] = freeChunks.length - 1 - i;
+            }
+            this.numFree = freeChunks.length;
+        }
+    }
+    
+    private static final class SizeClass
+    {
+        /**
+         * all slabs of this size class
+         */
+        private final ArrayList< Slab > slabs = new ArrayList< Slab >();
+        
+        /**
+         * the slabs with free chunks
+         */
+        private final ArrayList< Slab > available = new ArrayList< Slab >();
+    }
+    
+    private final int slabSize;
+    
+    private final SizeClass[] sizeClasses;
+    
+    private int numAllocations = 0;
+    private long requestedBytes = 0L;
+    private long usedChunkBytes = 0L;
+    private int numDedicatedBuffers = 0;
+    private long dedicatedBytes = 0L;
+    private int numSlabs = 0;
+    private long peakReservedBytes = 0L;
+    
+    /**
+     * @return the size of each slab in bytes.
+     */
+    public final int getSlabSize()
+    {
+        return ( slabSize );
+    }
+    
+    private final int getSizeClass( int size )
+    {
+        int sizeClass = 0;
+        int chunkSize = MIN_CHUNK_SIZE;
+        
+        while ( chunkSize < size )
+        {
+            chunkSize <<= 1;
+            sizeClass++;
+        }
+        
+        return ( sizeClass );
+    }
+    
+    /**
+     * Clears a freed chunk, so that each allocation starts zeroed like a new direct buffer.
+     */
+    private static final void zero( ByteBuffer buffer )
+    {
+        final int n = buffer.capacity();
+        
+        int i = 0;
+        for ( ; i + 8 <= n; i += 8 )
+        {
+            buffer.putLong( i, 0L );
+        }
+        for ( ; i < n; i++ )
+        {
+            buffer.put( i, (byte)0 );
+        }
+    }
+    
+    private final void updatePeak()
+    {
+        final long reserved = getReservedBytes();
+        
+        if ( reserved > peakReservedBytes )
+            peakReservedBytes = reserved;
+    }
+    
+    /**
+     * Allocates the given number of bytes.
+     * 
+     * @param size the size in bytes
+     * 
+     * @return the Allocation, that is to be passed to {@link #free(Allocation)}, when the memory is not used anymore.
+     *         Its buffer is zeroed.
+     */
+    public synchronized Allocation allocate( int size )
+    {
+        if ( size < 0 )
+            throw new IllegalArgumentException( "size must not be negative" );
+        
+        numAllocations++;
+        requestedBytes += size;
+        
+        if ( size > slabSize )
+        {
+            numDedicatedBuffers++;
+            dedicatedBytes += size;
+            updatePeak();
+            
+            return ( new Allocation( null, -1, size, ByteBuffer.allocateDirect( size ).order( ByteOrder.nativeOrder() ) ) );
+        }
+        
+        final int sizeClass = getSizeClass( size );
+        final ArrayList< Slab > available = sizeClasses[ sizeClass ].available;
+        
+        final Slab slab;
+        if ( available.isEmpty() )
+        {
+            slab = new Slab( slabSize, sizeClass, MIN_CHUNK_SIZE << sizeClass );
+            sizeClasses[ sizeClass ].slabs.add( slab );
+            available.add( slab );
+            numSlabs++;
+            updatePeak();
+        }
+        else
+        {
+            slab = available.get( available.size() - 1 );
+        }
+        
+        final int chunk = slab.freeChunks[ --slab.numFree ];
+        if ( slab.isFull() )
+            available.remove( available.size() - 1 );
+        
+        usedChunkBytes += slab.chunkSize;
+        
+        final ByteBuffer view = slab.memory.duplicate();
+        view.limit( chunk * slab.chunkSize + size );
+        view.position( chunk * slab.chunkSize );
+        
+        return ( new Allocation( slab, chunk, size, view.slice().order( ByteOrder.nativeOrder() ) ) );
+    }
+    
+    /**
+     * Returns the Allocation's memory to this allocator.
+     * Its buffer must not be used anymore.
+     * 
+     * @param allocation
+     */
+    public synchronized void free( Allocation allocation )
+    {
+        if ( allocation.freed )
+            throw new IllegalStateException( "The Allocation has already been freed." );
+        
+        allocation.freed = true;
+        
+        numAllocations--;
+        requestedBytes -= allocation.size;
+        
+        final Slab slab = allocation.slab;
+        
+        if ( slab == null )
+        {
+            numDedicatedBuffers--;
+            dedicatedBytes -= allocation.size;
+            
+            return;
+        }
+        
+        zero( allocation.buffer );
+        
+        final SizeClass sizeClass = sizeClasses[ slab.sizeClass ];
+        
+        if ( slab.isFull() )
+            sizeClass.available.add( slab );
+        
+        slab.freeChunks[ slab.numFree++ ] = allocation.chunk;
+        usedChunkBytes -= slab.chunkSize;
+        
+        if ( slab.isEmpty() && ( sizeClass.slabs.size() > 1 ) )
+        {
+            sizeClass.slabs.remove( slab );
+            sizeClass.available.remove( slab );
+            numSlabs--;
+        }
+    }
+    
+    /**
+     * @return the number of live allocations.
+     */
+    public synchronized int getNumAllocations()
+    {
+        return ( numAllocations );
+    }
+    
+    /**
+     * @return the number of slabs.
+     */
+    public synchronized int getNumSlabs()
+    {
+        return ( numSlabs );
+    }
+    
+    /**
+     * @return the number of live allocations larger than a slab, that got their own direct buffer.
+     */
+    public synchronized int getNumDedicatedBuffers()
+    {
+        return ( numDedicatedBuffers );
+    }
+    
+    /**
+     * @return the sum of the requested sizes of all live allocations.
+     */
+    public synchronized long getRequestedBytes()
+    {
+        return ( requestedBytes );
+    }
+    
+    /**
+     * @return the direct memory held by this allocator (slabs and dedicated buffers).
+     */
+    public synchronized long getReservedBytes()
+    {
+        return ( (long)numSlabs * slabSize + dedicatedBytes );
+    }
+    
+    /**
+     * @return the maximum of {@link #getReservedBytes()} since the creation of this allocator.
+     */
+    public synchronized long getPeakReservedBytes()
+    {
+        return ( peakReservedBytes );
+    }
+    
+    /**
+     * @return the bytes wasted by rounding the requests up to the chunk sizes.
+     */
+    public synchronized long getInternalFragmentation()
+    {
+        return ( usedChunkBytes + dedicatedBytes - requestedBytes );
+    }
+    
+    /**
+     * @return the bytes of the free chunks in the slabs.
+     */
+    public synchronized long getFreeChunkBytes()
+    {
+        return ( (long)numSlabs * slabSize - usedChunkBytes );
+    }
+    
+    /**
+     * @return the part of the reserved memory, that is not requested by live allocations (0 to 1).
+     */
+    public synchronized float getFragmentation()
+    {
+        final long reserved = getReservedBytes();
+        if ( reserved == 0L )
+            return ( 0f );
+        
+        return ( (float)( reserved - requestedBytes ) / (float)reserved );
+    }
+    
+    /**
+     * Prints the usage statistics overall and per size class.
+     * 
+     * @param out
+     */
+    public synchronized void printStatistics( PrintStream out )
+    {
+        out.println( "SlabAllocator: " + numAllocations + " allocations, " + requestedBytes + " bytes requested, " + getReservedBytes() + " bytes reserved (peak " + peakReservedBytes + "), fragmentation " + Math.round( getFragmentation() * 100f ) + "%" );
+        out.println( "  internal fragmentation: " + getInternalFragmentation() + " bytes, free chunks: " + getFreeChunkBytes() + " bytes" );
+        
+        for ( int sizeClass = 0; sizeClass < sizeClasses.length; sizeClass++ )
+        {
+            final ArrayList< Slab > slabs = sizeClasses[ sizeClass ].slabs;
+            
+            if ( slabs.isEmpty() )
+                continue;
+            
+            int numChunks = 0;
+            int numFree = 0;
+            for ( int i = 0; i < slabs.size(); i++ )
+            {
+                numChunks += slabs.get( i ).getNumChunks();
+                numFree += slabs.get( i ).numFree;
+            }
+            
+            out.println( "  chunk size " + ( MIN_CHUNK_SIZE << sizeClass ) + ": " + slabs.size() + " slabs, " + ( numChunks - numFree ) + " / " + numChunks + " chunks used" );
+        }
+        
+        if ( numDedicatedBuffers > 0 )
+            out.println( "  dedicated buffers: " + numDedicatedBuffers + " (" + dedicatedBytes + " bytes)" );
+    }
+    
+    /**
+     * Creates a new SlabAllocator.
+     * 
+     * @param slabSize the size of each slab in bytes (a power of two, at least {@link #MIN_CHUNK_SIZE})
+     */
+    public SlabAllocator( int slabSize )
+    {
+        if ( ( slabSize < MIN_CHUNK_SIZE ) || ( Integer.bitCount( slabSize ) != 1 ) )
+            throw new IllegalArgumentException( "slabSize must be a power of two and at least " + MIN_CHUNK_SIZE );
+        
+        this.slabSize = slabSize;
+        
+        final int numSizeClasses = Integer.numberOfTrailingZeros( slabSize / MIN_CHUNK_SIZE ) + 1;
+        this.sizeClasses = new SizeClass[ numSizeClasses ];
+        for ( int i = 0; i < numSizeClasses; i++ )
+        {
+            sizeClasses[ i ] = new SizeClass();
+        }
+    }
+    
+    /**
+     * Creates a new SlabAllocator with slabs of {@link #DEFAULT_SLAB_SIZE} bytes.
+     */
+    public SlabAllocator()
+    {
+        this( DEFAULT_SLAB_SIZE );
+    }
+}
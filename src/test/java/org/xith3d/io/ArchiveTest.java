@@ -0,0 +1,53 @@
+package org.xith3d.io;
+
+import java.io.File;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+/**
+ * Checks opening and closing of Archives.
+ */
+public class ArchiveTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public ArchiveTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( ArchiveTest.class );
+    }
+    
+    public void testReadOnlyArchiveCanBeClosed() throws Exception
+    {
+        File file = File.createTempFile( "ArchiveTest", ".xar" );
+        file.delete();
+        
+        try
+        {
+            Archive archive = new Archive( file.getAbsolutePath(), false );
+            archive.close();
+            
+            // Read-only archives are memory mapped and have no RandomAccessFile to close.
+            archive = new Archive( file.getAbsolutePath(), true );
+            assertFalse( archive.exists( "missing" ) );
+            archive.close();
+        }
+        finally
+        {
+            file.delete();
+        }
+    }
+}
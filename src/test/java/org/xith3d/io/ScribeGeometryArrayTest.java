@@ -0,0 +1,57 @@
+package org.xith3d.io;
+
+import java.io.ByteArrayInputStream;
+import java.io.ByteArrayOutputStream;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.openmali.vecmath2.Point3f;
+import org.xith3d.scenegraph.Geometry;
+import org.xith3d.scenegraph.TriangleArray;
+
+/**
+ * Checks, that a GeometryArray written by ScribeGeometryArray can be read back.
+ */
+public class ScribeGeometryArrayTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public ScribeGeometryArrayTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( ScribeGeometryArrayTest.class );
+    }
+    
+    public void testWrittenGeometryIsReadBack() throws Exception
+    {
+        TriangleArray geom = new TriangleArray( 3 );
+        geom.setCoordinate( 0, 1f, 2f, 3f );
+        geom.setCoordinate( 1, 4f, 5f, 6f );
+        geom.setCoordinate( 2, 7f, 8f, 9f );
+        
+        ByteArrayOutputStream bytes = new ByteArrayOutputStream();
+        ScribeOutputStream out = new ScribeOutputStream( bytes );
+        ScribeGeometryArray.writeGeometryArray( out, geom );
+        out.flush();
+        
+        // The version field used to be skipped, which shifted all following fields.
+        Geometry read = ScribeGeometryArray.readGeometryArray( new ScribeInputStream( new ByteArrayInputStream( bytes.toByteArray() ) ) );
+        
+        assertTrue( read instanceof TriangleArray );
+        assertEquals( 3, read.getVertexCount() );
+        assertEquals( new Point3f( 4f, 5f, 6f ), read.getCoordinate( 1, new Point3f() ) );
+    }
+}
@@ -0,0 +1,144 @@
+package org.xith3d.render;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.xith3d.render.headless.HeadlessTestCase;
+import org.xith3d.scenegraph.BranchGroup;
+import org.xith3d.scenegraph.Group;
+import org.xith3d.scenegraph.Transform3D;
+import org.xith3d.scenegraph.TransformGroup;
+import org.xith3d.scenegraph.primitives.Cube;
+import org.xith3d.utility.memory.FrameAllocationMeter;
+
+/**
+ * Renders a headless scene and checks, that the heap memory allocated
+ * per steady-state frame on the rendering thread doesn't grow with the scene.
+ */
+public class FrameAllocationTest 
+    extends HeadlessTestCase
+{
+    private static final int WARM_UP_FRAMES = 300;
+    private static final int MEASURED_FRAMES = 500;
+    
+    private static final int NUM_SHAPES = 200;
+    
+    /**
+     * Even the smallest object allocated for each shape takes 16 bytes per shape and frame,
+     * while one-off allocations (class loading, JIT deoptimization)
+     * are spread over all measured frames and stay below this budget.
+     */
+    private static final float MAX_BYTES_PER_SHAPE_AND_FRAME = 1f;
+    
+    private BranchGroup scene;
+    private final TransformGroup animated = new TransformGroup();
+    private final Transform3D t3d = new Transform3D();
+    
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public FrameAllocationTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( FrameAllocationTest.class );
+    }
+    
+    /**
+     * The baseline scene only holds a single Cube.
+     */
+    @Override
+    protected BranchGroup createScene()
+    {
+        scene = new BranchGroup();
+        scene.addChild( new Cube( 0.4f ) );
+        
+        return ( scene );
+    }
+    
+    private Group createGrid()
+    {
+        Group grid = new Group();
+        
+        for ( int i = 0; i < NUM_SHAPES; i++ )
+        {
+            TransformGroup tg = new TransformGroup( ( i % 20 ) - 10, ( i / 20 ) - 5, 0 );
+            tg.addChild( new Cube( 0.4f ) );
+            
+            if ( ( i % 7 ) == 0 )
+            {
+                tg.setShowBounds( true );
+            }
+            
+            grid.addChild( tg );
+        }
+        
+        animated.addChild( new Cube( 1f ) );
+        animated.setShowBounds( true );
+        grid.addChild( animated );
+        
+        return ( grid );
+    }
+    
+    /**
+     * Warms up the current scene and measures the bytes allocated per frame.
+     * 
+     * @return the average number of bytes allocated per frame
+     */
+    private float measureAverageBytesPerFrame()
+    {
+        for ( int i = 0; i < WARM_UP_FRAMES; i++ )
+        {
+            t3d.rotY( getFrame() * 0.01f );
+            animated.setTransform( t3d );
+            renderFrame();
+        }
+        
+        FrameAllocationMeter meter = new FrameAllocationMeter();
+        
+        for ( int i = 0; i < MEASURED_FRAMES; i++ )
+        {
+            meter.beginFrame();
+            
+            t3d.rotY( getFrame() * 0.01f );
+            animated.setTransform( t3d );
+            renderFrame();
+            
+            meter.endFrame();
+        }
+        
+        return ( meter.getAverageBytesPerFrame() );
+    }
+    
+    /**
+     * Compares the bytes allocated per frame with those of the baseline scene
+     * after a grid of transformed shapes, some showing their bounds, has been added.
+     */
+    public void testFrameAllocationDoesNotGrowWithTheScene()
+    {
+        if ( !FrameAllocationMeter.isSupported() )
+        {
+            System.err.println( "FrameAllocationTest skipped: the JVM can't measure the bytes allocated by a thread." );
+            
+            return;
+        }
+        
+        final float baselineBytes = measureAverageBytesPerFrame();
+        
+        scene.addChild( createGrid() );
+        
+        final float sceneBytes = measureAverageBytesPerFrame();
+        
+        final float bytesPerShape = ( sceneBytes - baselineBytes ) / NUM_SHAPES;
+        
+        assertTrue( "A steady-state frame allocated " + sceneBytes + " bytes on average compared to " + baselineBytes + " bytes for the baseline scene.", bytesPerShape <= MAX_BYTES_PER_SHAPE_AND_FRAME );
+    }
+}
@@ -0,0 +1,142 @@
+package org.xith3d.render;
+
+import java.io.StringWriter;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.xith3d.base.Xith3DEnvironment;
+import org.xith3d.render.FrameTimeline.Phase;
+import org.xith3d.render.config.DisplayMode;
+import org.xith3d.render.config.DisplayMode.FullscreenMode;
+import org.xith3d.render.config.FSAA;
+import org.xith3d.render.config.OpenGLLayer;
+import org.xith3d.scenegraph.BranchGroup;
+import org.xith3d.scenegraph.TransformGroup;
+import org.xith3d.scenegraph.primitives.Cube;
+
+/**
+ * Checks the ring buffer of the FrameTimeline and its recording
+ * of headlessly rendered frames.
+ */
+public class FrameTimelineTest
+    extends TestCase
+{
+    private static final int NUM_SHAPES = 50;
+    
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public FrameTimelineTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( FrameTimelineTest.class );
+    }
+    
+    public void testRingBufferKeepsTheLastFrames()
+    {
+        FrameTimeline timeline = new FrameTimeline( 4, 2 );
+        
+        for ( int i = 0; i < 10; i++ )
+        {
+            timeline.addPhaseTime( Phase.CULL, i );
+            timeline.addPhaseTime( Phase.DRAW, 100 );
+            timeline.addRenderPassCullTime( i );
+            timeline.addRenderPassCullTime( i );
+            timeline.addRenderPassCullTime( i );
+            timeline.endFrame( i, i * 1000L, i, 10L * i, 2 * i );
+        }
+        
+        assertEquals( 4, timeline.getNumFrames() );
+        assertEquals( 10L, timeline.getTotalFrames() );
+        assertEquals( 6L, timeline.getFrameId( 0 ) );
+        assertEquals( 9L, timeline.getFrameId( 3 ) );
+        assertEquals( 9L, timeline.getPhaseTime( 3, Phase.CULL ) );
+        assertEquals( 109L, timeline.getFrameTime( 3 ) );
+        assertEquals( 2, timeline.getNumRenderPasses( 3 ) );
+        assertEquals( 9L, timeline.getRenderPassCullTime( 3, 1 ) );
+        assertEquals( 90L, timeline.getTriangles( 3 ) );
+        assertEquals( 18, timeline.getStateChanges( 3 ) );
+        assertEquals( 7L, timeline.getAveragePhaseTime( Phase.CULL ) );
+        
+        try
+        {
+            timeline.getFrameId( 4 );
+            fail();
+        }
+        catch ( IndexOutOfBoundsException e )
+        {
+        }
+    }
+    
+    public void testDisabledTimelineRecordsNothing()
+    {
+        FrameTimeline timeline = new FrameTimeline( 4 );
+        timeline.setEnabled( false );
+        
+        timeline.addPhaseTime( Phase.CULL, 5L );
+        timeline.endFrame( 1L, 0L, 0, 0L, 0 );
+        
+        assertEquals( 0, timeline.getNumFrames() );
+    }
+    
+    public void testRenderedFramesAreRecorded() throws Exception
+    {
+        Xith3DEnvironment env = new Xith3DEnvironment( 0f, 0f, 30f, 0f, 0f, 0f, 0f, 1f, 0f );
+        Canvas3D canvas = Canvas3DFactory.create( OpenGLLayer.HEADLESS, new DisplayMode( OpenGLLayer.HEADLESS, null, 640, 480, 32, 60 ), FullscreenMode.WINDOWED, false, FSAA.OFF, "FrameTimelineTest" );
+        env.addCanvas( canvas );
+        
+        BranchGroup scene = new BranchGroup();
+        for ( int i = 0; i < NUM_SHAPES; i++ )
+        {
+            TransformGroup tg = new TransformGroup( ( i % 10 ) - 5, ( i / 10 ) - 2, 0 );
+            tg.addChild( new Cube( 0.3f ) );
+            scene.addChild( tg );
+        }
+        env.addPerspectiveBranch( scene );
+        
+        try
+        {
+            final FrameTimeline timeline = env.getRenderer().getFrameTimeline();
+            
+            for ( int i = 0; i < 3; i++ )
+            {
+                env.render( i * 16000000L, 16000000L );
+            }
+            
+            assertEquals( 3, timeline.getNumFrames() );
+            assertEquals( NUM_SHAPES, timeline.getAtoms( 2 ) );
+            assertEquals( NUM_SHAPES * 12L, timeline.getTriangles( 2 ) );
+            assertTrue( timeline.getStateChanges( 2 ) > 0 );
+            assertEquals( 1, timeline.getNumRenderPasses( 2 ) );
+            assertTrue( timeline.getPhaseTime( 2, Phase.CULL ) > 0L );
+            assertTrue( timeline.getPhaseTime( 2, Phase.DRAW ) > 0L );
+            
+            StringWriter csv = new StringWriter();
+            timeline.dumpCSV( csv );
+            String[] lines = csv.toString().split( "\n" );
+            assertEquals( 4, lines.length );
+            assertTrue( lines[ 0 ].startsWith( "frame_id,nano_time,updaters_ns," ) );
+            assertEquals( lines[ 0 ].split( "," ).length, lines[ 3 ].split( "," ).length );
+            
+            StringWriter json = new StringWriter();
+            timeline.dumpJSON( json );
+            assertTrue( json.toString().trim().startsWith( "[" ) );
+            assertTrue( json.toString().contains( "\"atoms\": " + NUM_SHAPES ) );
+        }
+        finally
+        {
+            env.destroy();
+        }
+    }
+}
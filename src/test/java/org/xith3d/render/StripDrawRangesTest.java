@@ -0,0 +1,57 @@
+package org.xith3d.render;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.xith3d.scenegraph.TriangleStripArray;
+
+/**
+ * Checks the strip ranges passed to glMultiDrawArrays.
+ */
+public class StripDrawRangesTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public StripDrawRangesTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( StripDrawRangesTest.class );
+    }
+    
+    public void testOneRangePerStrip()
+    {
+        TriangleStripArray geom = new TriangleStripArray( 12, new int[] { 4, 5, 3 } );
+        StripDrawRanges ranges = new StripDrawRanges( 1 );
+        
+        assertEquals( 3, ranges.compute( geom ) );
+        assertEquals( 0, ranges.getFirsts()[ 0 ] );
+        assertEquals( 4, ranges.getCounts()[ 0 ] );
+        assertEquals( 4, ranges.getFirsts()[ 1 ] );
+        assertEquals( 5, ranges.getCounts()[ 1 ] );
+        assertEquals( 9, ranges.getFirsts()[ 2 ] );
+        assertEquals( 3, ranges.getCounts()[ 2 ] );
+    }
+    
+    public void testRangesAreClampedToValidVertices()
+    {
+        TriangleStripArray geom = new TriangleStripArray( 12, new int[] { 4, 5, 3 } );
+        geom.setValidVertexCount( 6 );
+        StripDrawRanges ranges = new StripDrawRanges();
+        
+        assertEquals( 2, ranges.compute( geom ) );
+        assertEquals( 4, ranges.getFirsts()[ 1 ] );
+        assertEquals( 2, ranges.getCounts()[ 1 ] );
+    }
+}
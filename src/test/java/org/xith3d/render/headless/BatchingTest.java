@@ -0,0 +1,236 @@
+package org.xith3d.render.headless;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.openmali.vecmath2.Point3f;
+import org.xith3d.render.headless.CommandLog.CommandType;
+import org.xith3d.scenegraph.Appearance;
+import org.xith3d.scenegraph.BranchGroup;
+import org.xith3d.scenegraph.Geometry;
+import org.xith3d.scenegraph.GroupNode;
+import org.xith3d.scenegraph.IndexedGeometryArray;
+import org.xith3d.scenegraph.Material;
+import org.xith3d.scenegraph.Shape3D;
+import org.xith3d.scenegraph.Transform3D;
+import org.xith3d.scenegraph.TransformGroup;
+import org.xith3d.scenegraph.TriangleArray;
+import org.xith3d.scenegraph.TriangleStripArray;
+import org.xith3d.scenegraph.primitives.Cube;
+
+/**
+ * Checks the merging of consecutive shapes sharing their states, but not
+ * their Geometry, into batches by means of the headless CommandLog.
+ */
+public class BatchingTest
+    extends HeadlessTestCase
+{
+    private static final int NUM_CUBES = 20;
+    
+    private BranchGroup scene;
+    private Appearance app;
+    
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public BatchingTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( BatchingTest.class );
+    }
+    
+    @Override
+    protected BranchGroup createScene()
+    {
+        scene = new BranchGroup();
+        
+        app = new Appearance();
+        app.setMaterial( new Material() );
+        
+        return ( scene );
+    }
+    
+    /**
+     * Adds NUM_CUBES cubes with their own Geometry at x = -10, -9, ..., NUM_CUBES - 11 to the given group.
+     */
+    private static void addCubes( GroupNode group, Appearance app )
+    {
+        for ( int i = 0; i < NUM_CUBES; i++ )
+        {
+            TransformGroup tg = new TransformGroup( i - 10f, 0f, 0f );
+            tg.addChild( new Cube( 0.3f, app ) );
+            group.addChild( tg );
+        }
+    }
+    
+    private static int indexOf( CommandLog log, CommandType type, int start )
+    {
+        for ( int i = start; i < log.getSize(); i++ )
+        {
+            if ( log.getType( i ) == type )
+            {
+                return ( i );
+            }
+        }
+        
+        return ( -1 );
+    }
+    
+    private static long countTriangles( CommandLog log )
+    {
+        return ( log.getArgument1( indexOf( log, CommandType.END_FRAME, 0 ) ) );
+    }
+    
+    /**
+     * @return the transform of the last SET_MATRIX command before the given command index.
+     */
+    private static Transform3D getMatrix( CommandLog log, int before )
+    {
+        for ( int i = before - 1; i >= 0; i-- )
+        {
+            if ( log.getType( i ) == CommandType.SET_MATRIX )
+            {
+                return ( (Transform3D)log.getObject( i ) );
+            }
+        }
+        
+        return ( null );
+    }
+    
+    private static float sumX( Geometry geom, int numVertices )
+    {
+        final Point3f p = new Point3f();
+        
+        float sum = 0f;
+        for ( int i = 0; i < numVertices; i++ )
+        {
+            sum += geom.getCoordinate( i, p ).getX();
+        }
+        
+        return ( sum );
+    }
+    
+    public void testRunIsDrawnWithOneDraw()
+    {
+        addCubes( scene, app );
+        
+        CommandLog log = renderFrame();
+        final long batchedTriangles = countTriangles( log );
+        
+        assertEquals( 1, log.getFrameCount( CommandType.SETUP_BATCH ) );
+        assertEquals( NUM_CUBES, log.getArgument0( indexOf( log, CommandType.SETUP_BATCH, 0 ) ) );
+        assertEquals( 1, log.getFrameCount( CommandType.DRAW ) );
+        
+        canvas.getRenderOptions().setBatchingEnabled( false );
+        log = renderFrame();
+        
+        assertEquals( 0, log.getFrameCount( CommandType.SETUP_BATCH ) );
+        assertEquals( NUM_CUBES, log.getFrameCount( CommandType.DRAW ) );
+        assertEquals( batchedTriangles, countTriangles( log ) );
+    }
+    
+    public void testDifferingTransformsArePreTransformed()
+    {
+        addCubes( scene, app );
+        
+        final CommandLog log = renderFrame();
+        final int setup = indexOf( log, CommandType.SETUP_BATCH, 0 );
+        final Geometry batch = (Geometry)log.getObject( setup );
+        final int numVertices = (int)log.getArgument1( setup );
+        
+        assertSame( Transform3D.IDENTITY, getMatrix( log, setup ) );
+        
+        // The cubes are centered around their translations -10, -9, ..., 9.
+        final float sumOfTranslations = -10f;
+        assertEquals( ( numVertices / NUM_CUBES ) * sumOfTranslations, sumX( batch, numVertices ), 0.01f );
+    }
+    
+    public void testSharedTransformIsKept()
+    {
+        TransformGroup tg = new TransformGroup( 3f, 0f, 0f );
+        for ( int i = 0; i < NUM_CUBES; i++ )
+        {
+            tg.addChild( new Cube( 0.3f, app ) );
+        }
+        scene.addChild( tg );
+        
+        final CommandLog log = renderFrame();
+        final int setup = indexOf( log, CommandType.SETUP_BATCH, 0 );
+        final Geometry batch = (Geometry)log.getObject( setup );
+        
+        final Transform3D transform = getMatrix( log, setup );
+        assertFalse( transform == Transform3D.IDENTITY );
+        assertEquals( 3f, transform.getMatrix4f().m03(), 0.0001f );
+        
+        // The vertices are copied untransformed.
+        assertEquals( 0f, sumX( batch, (int)log.getArgument1( setup ) ), 0.01f );
+    }
+    
+    public void testStripsAreMergedAsTriangles()
+    {
+        TriangleStripArray strips = new TriangleStripArray( 8, new int[] { 4, 4 } );
+        strips.setCoordinates( 0, new float[] { 0f, 0f, 0f,  1f, 0f, 0f,  0f, 1f, 0f,  1f, 1f, 0f,
+                                                0f, 2f, 0f,  1f, 2f, 0f,  0f, 3f, 0f,  1f, 3f, 0f } );
+        TriangleArray triangles = new TriangleArray( 6 );
+        triangles.setCoordinates( 0, new float[] { 2f, 0f, 0f,  3f, 0f, 0f,  2f, 1f, 0f,
+                                                   3f, 0f, 0f,  3f, 1f, 0f,  2f, 1f, 0f } );
+        
+        scene.addChild( new Shape3D( strips, app ) );
+        scene.addChild( new Shape3D( triangles, app ) );
+        
+        final CommandLog log = renderFrame();
+        final int setup = indexOf( log, CommandType.SETUP_BATCH, 0 );
+        
+        assertEquals( 2, log.getArgument0( setup ) );
+        assertEquals( 1, log.getFrameCount( CommandType.DRAW ) );
+        // two triangles per strip plus the two of the TriangleArray
+        assertEquals( 6, log.getArgument0( indexOf( log, CommandType.DRAW, 0 ) ) );
+    }
+    
+    public void testRunsOfAFrameShareOneGeometry()
+    {
+        Appearance otherApp = new Appearance();
+        otherApp.setMaterial( new Material( 16f ) );
+        
+        addCubes( scene, app );
+        
+        TransformGroup tg = new TransformGroup( 0f, 2f, 0f );
+        addCubes( tg, otherApp );
+        scene.addChild( tg );
+        
+        final CommandLog log = renderFrame();
+        
+        // The opaque sorting policy decides, how often the two appearances alternate.
+        // Runs of a single shape are drawn on their own.
+        final int numRuns = log.getFrameCount( CommandType.SETUP_BATCH );
+        assertTrue( numRuns >= 2 );
+        
+        final IndexedGeometryArray batch = (IndexedGeometryArray)log.getObject( indexOf( log, CommandType.SETUP_BATCH, 0 ) );
+        
+        int numShapes = log.getFrameCount( CommandType.DRAW ) - numRuns;
+        long precedingIndices = 0L;
+        long runIndices = 0L;
+        for ( int setup = indexOf( log, CommandType.SETUP_BATCH, 0 ); setup >= 0; setup = indexOf( log, CommandType.SETUP_BATCH, setup + 1 ) )
+        {
+            assertSame( batch, log.getObject( setup ) );
+            numShapes += (int)log.getArgument0( setup );
+            
+            precedingIndices += runIndices;
+            runIndices = log.getArgument1( indexOf( log, CommandType.DRAW, setup ) );
+        }
+        
+        assertEquals( 2 * NUM_CUBES, numShapes );
+        
+        // Each run is appended to the preceding ones of the frame.
+        assertEquals( precedingIndices, batch.getInitialIndexIndex() );
+    }
+}
@@ -0,0 +1,132 @@
+package org.xith3d.render.headless;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.xith3d.render.headless.CommandLog.CommandType;
+import org.xith3d.scenegraph.BranchGroup;
+import org.xith3d.scenegraph.Geometry.Optimization;
+import org.xith3d.scenegraph.GeomNioFloatData;
+import org.xith3d.scenegraph.IndexedTriangleArray;
+import org.xith3d.scenegraph.Shape3D;
+
+/**
+ * Checks, that only the modified element range of a Geometry
+ * is re-uploaded into its VBOs.
+ */
+public class DirtyRangeUploadTest
+    extends HeadlessTestCase
+{
+    private static final int GRID_SIZE = 32;
+    
+    private IndexedTriangleArray geometry;
+    
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public DirtyRangeUploadTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( DirtyRangeUploadTest.class );
+    }
+    
+    @Override
+    protected BranchGroup createScene()
+    {
+        // a flat grid of quads
+        final int numQuads = ( GRID_SIZE - 1 ) * ( GRID_SIZE - 1 );
+        geometry = new IndexedTriangleArray( GRID_SIZE * GRID_SIZE, numQuads * 6 );
+        
+        for ( int y = 0; y < GRID_SIZE; y++ )
+        {
+            for ( int x = 0; x < GRID_SIZE; x++ )
+            {
+                geometry.setCoordinate( y * GRID_SIZE + x, x * 0.2f - 3f, y * 0.2f - 3f, 0f );
+            }
+        }
+        
+        int[] index = new int[ numQuads * 6 ];
+        int i = 0;
+        for ( int y = 0; y < GRID_SIZE - 1; y++ )
+        {
+            for ( int x = 0; x < GRID_SIZE - 1; x++ )
+            {
+                final int v = y * GRID_SIZE + x;
+                index[ i++ ] = v;
+                index[ i++ ] = v + 1;
+                index[ i++ ] = v + GRID_SIZE + 1;
+                index[ i++ ] = v;
+                index[ i++ ] = v + GRID_SIZE + 1;
+                index[ i++ ] = v + GRID_SIZE;
+            }
+        }
+        geometry.setIndex( index );
+        geometry.setOptimization( Optimization.USE_VBOS );
+        
+        BranchGroup scene = new BranchGroup();
+        scene.addChild( new Shape3D( geometry ) );
+        
+        return ( scene );
+    }
+    
+    /**
+     * Renders a frame.
+     * 
+     * @return the number of uploaded bytes of the given data or -1, if it hasn't been uploaded.
+     */
+    private long renderFrame( Object data )
+    {
+        final CommandLog log = renderFrame();
+        
+        for ( int i = 0; i < log.getSize(); i++ )
+        {
+            if ( ( ( log.getType( i ) == CommandType.UPLOAD_VBO ) || ( log.getType( i ) == CommandType.STREAM_VBO ) ) && ( log.getObject( i ) == data ) )
+            {
+                return ( log.getArgument1( i ) );
+            }
+        }
+        
+        return ( -1L );
+    }
+    
+    public void testOnlyModifiedVerticesAreUploaded()
+    {
+        final GeomNioFloatData coords = geometry.getCoordinatesData();
+        final long fullSize = renderFrame( coords );
+        assertEquals( -1L, renderFrame( coords ) );
+        
+        geometry.setCoordinate( 10, 0f, 0f, 1f );
+        geometry.setCoordinate( 12, 0f, 0f, 1f );
+        assertEquals( 3L * 3L * 4L, renderFrame( coords ) );
+        
+        geometry.setCoordinates( 0, new float[ GRID_SIZE * GRID_SIZE * 3 ] );
+        assertEquals( fullSize, renderFrame( coords ) );
+    }
+    
+    public void testUnrangedChangeUploadsEverything()
+    {
+        final GeomNioFloatData coords = geometry.getCoordinatesData();
+        final long fullSize = renderFrame( coords );
+        
+        geometry.setCoordinate( 10, 0f, 0f, 1f );
+        coords.set( 20, 0L, 1f, 1f, 1f );
+        assertEquals( fullSize, renderFrame( coords ) );
+    }
+    
+    public void testOnlyModifiedIndicesAreUploaded()
+    {
+        renderFrame( null );
+        
+        geometry.setIndex( 5, 0 );
+        assertEquals( 4L, renderFrame( geometry.getIndexData() ) );
+    }
+}
@@ -0,0 +1,140 @@
+package org.xith3d.render.headless;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.xith3d.render.GPUMemoryBudget;
+import org.xith3d.render.GPUMemoryBudget.ResourceType;
+import org.xith3d.render.headless.CommandLog.CommandType;
+import org.xith3d.scenegraph.BranchGroup;
+import org.xith3d.scenegraph.Shape3D;
+import org.xith3d.scenegraph.TriangleArray;
+import org.xith3d.scenegraph.Geometry.Optimization;
+
+/**
+ * Checks the residency tracking of the GPUMemoryBudget and the eviction
+ * and re-upload of the least recently rendered VBOs.
+ */
+public class GPUMemoryBudgetTest
+    extends HeadlessTestCase
+{
+    private static final int NUM_SHAPES = 10;
+    private static final int NUM_VERTICES = 30;
+    
+    private Shape3D[] shapes;
+    
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public GPUMemoryBudgetTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( GPUMemoryBudgetTest.class );
+    }
+    
+    @Override
+    protected void setUp()
+    {
+        super.setUp();
+        
+        // Batched shapes would share the batcher's VBOs instead of their own.
+        canvas.getRenderOptions().setBatchingEnabled( false );
+    }
+    
+    @Override
+    protected BranchGroup createScene()
+    {
+        BranchGroup scene = new BranchGroup();
+        shapes = new Shape3D[ NUM_SHAPES ];
+        for ( int s = 0; s < NUM_SHAPES; s++ )
+        {
+            TriangleArray geometry = new TriangleArray( NUM_VERTICES );
+            for ( int i = 0; i < NUM_VERTICES; i++ )
+            {
+                geometry.setCoordinate( i, s - 5f + ( i % 3 ) * 0.1f, ( i / 3 ) * 0.01f, 0f );
+            }
+            geometry.setOptimization( Optimization.USE_VBOS );
+            
+            shapes[ s ] = new Shape3D( geometry );
+            scene.addChild( shapes[ s ] );
+        }
+        
+        return ( scene );
+    }
+    
+    private void setFirstHalfVisible( boolean visible )
+    {
+        for ( int s = 0; s < NUM_SHAPES / 2; s++ )
+        {
+            shapes[ s ].setVisible( visible );
+        }
+    }
+    
+    public void testResidencyIsTracked()
+    {
+        renderFrame();
+        
+        final GPUMemoryBudget budget = canvas.getPeer().getGPUMemoryBudget();
+        
+        assertEquals( NUM_SHAPES, budget.getNumResidentResources( ResourceType.VBO ) );
+        assertEquals( NUM_SHAPES * NUM_VERTICES * 3 * 4L, budget.getResidentBytes( ResourceType.VBO ) );
+        assertEquals( budget.getResidentBytes(), budget.getResidentBytes( ResourceType.VBO ) );
+        assertEquals( 0, budget.getEvictionCount() );
+    }
+    
+    public void testUnlimitedBudgetEvictsNothing()
+    {
+        renderFrame();
+        setFirstHalfVisible( false );
+        
+        for ( int i = 0; i < 3; i++ )
+        {
+            renderFrame();
+        }
+        
+        final GPUMemoryBudget budget = canvas.getPeer().getGPUMemoryBudget();
+        
+        assertEquals( 0, budget.getEvictionCount() );
+        assertEquals( NUM_SHAPES, budget.getNumResidentResources() );
+    }
+    
+    public void testLeastRecentlyRenderedResourcesAreEvictedAndReuploaded()
+    {
+        renderFrame();
+        
+        final GPUMemoryBudget budget = canvas.getPeer().getGPUMemoryBudget();
+        final long shapeBytes = budget.getResidentBytes() / NUM_SHAPES;
+        budget.setBudget( budget.getResidentBytes() / 2L );
+        
+        // The hidden shapes are kept for one frame and evicted, when the next frame starts.
+        setFirstHalfVisible( false );
+        renderFrame();
+        assertEquals( 0, budget.getEvictionCount() );
+        
+        renderFrame();
+        assertEquals( NUM_SHAPES / 2, budget.getEvictionCount( ResourceType.VBO ) );
+        assertEquals( NUM_SHAPES / 2 * shapeBytes, budget.getEvictedBytes() );
+        assertTrue( budget.getResidentBytes() <= budget.getBudget() );
+        assertEquals( NUM_SHAPES - NUM_SHAPES / 2, budget.getNumResidentResources() );
+        
+        setFirstHalfVisible( true );
+        CommandLog log = renderFrame();
+        assertEquals( NUM_SHAPES / 2, log.getFrameCount( CommandType.UPLOAD_VBO ) );
+        assertEquals( NUM_SHAPES / 2, budget.getReuploadCount() );
+        assertEquals( NUM_SHAPES, budget.getNumResidentResources() );
+        
+        // All shapes have been rendered in the previous frame. So nothing can be evicted.
+        renderFrame();
+        assertEquals( NUM_SHAPES / 2, budget.getEvictionCount() );
+        assertEquals( NUM_SHAPES * shapeBytes, budget.getResidentBytes() );
+    }
+}
@@ -0,0 +1,93 @@
+package org.xith3d.render.headless;
+
+import junit.framework.TestCase;
+
+import org.xith3d.base.Xith3DEnvironment;
+import org.xith3d.render.Canvas3D;
+import org.xith3d.render.Canvas3DFactory;
+import org.xith3d.render.RenderPass;
+import org.xith3d.render.config.DisplayMode;
+import org.xith3d.render.config.DisplayMode.FullscreenMode;
+import org.xith3d.render.config.FSAA;
+import org.xith3d.render.config.OpenGLLayer;
+import org.xith3d.scenegraph.BranchGroup;
+
+/**
+ * Base class of the tests, that render a scene into a headless Canvas3D
+ * and check the recorded CommandLog.
+ */
+public abstract class HeadlessTestCase
+    extends TestCase
+{
+    /**
+     * The time step of the rendered frames in nanoseconds.
+     */
+    protected static final long FRAME_STEP = 16000000L;
+    
+    protected Xith3DEnvironment env;
+    protected Canvas3D canvas;
+    protected RenderPass renderPass;
+    private long frame = 0L;
+    
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public HeadlessTestCase( String testName )
+    {
+        super( testName );
+    }
+    
+    /**
+     * Creates the scene, that is added as a perspective branch to the environment.
+     *
+     * @return the scene of the test.
+     */
+    protected abstract BranchGroup createScene();
+    
+    @Override
+    protected void setUp()
+    {
+        env = new Xith3DEnvironment( 0f, 0f, 30f, 0f, 0f, 0f, 0f, 1f, 0f );
+        canvas = Canvas3DFactory.create( OpenGLLayer.HEADLESS, new DisplayMode( OpenGLLayer.HEADLESS, null, 640, 480, 32, 60 ), FullscreenMode.WINDOWED, false, FSAA.OFF, getClass().getSimpleName() );
+        env.addCanvas( canvas );
+        
+        renderPass = env.addPerspectiveBranch( createScene() );
+    }
+    
+    @Override
+    protected void tearDown()
+    {
+        env.destroy();
+    }
+    
+    /**
+     * @return the number of frames rendered so far.
+     */
+    protected final long getFrame()
+    {
+        return ( frame );
+    }
+    
+    /**
+     * @return the CommandLog of the last rendered frame.
+     */
+    protected final CommandLog getCommandLog()
+    {
+        return ( ( (CanvasPeerImplHeadless)canvas.getPeer() ).getCommandLog() );
+    }
+    
+    /**
+     * Renders the next frame.
+     *
+     * @return the CommandLog of the rendered frame.
+     */
+    protected CommandLog renderFrame()
+    {
+        env.render( frame * FRAME_STEP, FRAME_STEP );
+        frame++;
+        
+        return ( getCommandLog() );
+    }
+}
@@ -0,0 +1,160 @@
+package org.xith3d.render.headless;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.xith3d.render.headless.CommandLog.CommandType;
+import org.xith3d.scenegraph.Appearance;
+import org.xith3d.scenegraph.BranchGroup;
+import org.xith3d.scenegraph.Geometry;
+import org.xith3d.scenegraph.Material;
+import org.xith3d.scenegraph.PolygonAttributes;
+import org.xith3d.scenegraph.Shape3D;
+import org.xith3d.scenegraph.TransformGroup;
+import org.xith3d.scenegraph.primitives.Cube;
+
+/**
+ * Checks the grouping of shapes sharing Geometry and states
+ * into instanced batches by means of the headless CommandLog.
+ */
+public class InstancingTest 
+    extends HeadlessTestCase
+{
+    private static final int NUM_TREES = 100;
+    private static final int NUM_ROCKS = 10;
+    
+    private Appearance treeApp;
+    private Shape3D markedTree;
+    
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public InstancingTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( InstancingTest.class );
+    }
+    
+    @Override
+    protected void setUp()
+    {
+        super.setUp();
+        
+        // The rocks and (without instancing) the trees would otherwise be merged into batches.
+        canvas.getRenderOptions().setBatchingEnabled( false );
+    }
+    
+    @Override
+    protected BranchGroup createScene()
+    {
+        BranchGroup scene = new BranchGroup();
+        
+        // a forest of shapes sharing one Geometry and one Appearance
+        final Geometry treeGeom = new Cube( 0.3f ).getGeometry();
+        treeApp = new Appearance();
+        treeApp.setMaterial( new Material() );
+        
+        for ( int i = 0; i < NUM_TREES; i++ )
+        {
+            TransformGroup tg = new TransformGroup( ( i % 10 ) - 5, ( i / 10 ) - 5, 0 );
+            Shape3D tree = new Shape3D( treeGeom, treeApp );
+            tg.addChild( tree );
+            scene.addChild( tg );
+            
+            if ( i == NUM_TREES / 2 )
+            {
+                markedTree = tree;
+            }
+        }
+        
+        // shapes with their own Geometry, far behind the forest
+        for ( int i = 0; i < NUM_ROCKS; i++ )
+        {
+            TransformGroup tg = new TransformGroup( i - 5, 0, -20 );
+            tg.addChild( new Cube( 0.3f ) );
+            scene.addChild( tg );
+        }
+        
+        return ( scene );
+    }
+    
+    private static int countInstances( CommandLog log )
+    {
+        int instances = 0;
+        
+        for ( int i = 0; i < log.getSize(); i++ )
+        {
+            if ( log.getType( i ) == CommandType.SETUP_INSTANCES )
+            {
+                instances += (int)log.getArgument0( i );
+            }
+        }
+        
+        return ( instances );
+    }
+    
+    private static long countTriangles( CommandLog log )
+    {
+        for ( int i = 0; i < log.getSize(); i++ )
+        {
+            if ( log.getType( i ) == CommandType.END_FRAME )
+            {
+                return ( log.getArgument1( i ) );
+            }
+        }
+        
+        return ( -1L );
+    }
+    
+    public void testSharedGeometryIsInstanced()
+    {
+        CommandLog log = renderFrame();
+        
+        assertEquals( NUM_TREES, countInstances( log ) );
+        assertEquals( 1, log.getFrameCount( CommandType.SETUP_INSTANCES ) );
+        assertEquals( NUM_TREES + NUM_ROCKS, log.getFrameCount( CommandType.DRAW ) );
+    }
+    
+    public void testFallbackToIndividualDraws()
+    {
+        CommandLog log = renderFrame();
+        final long instancedTriangles = countTriangles( log );
+        
+        canvas.getRenderOptions().setInstancingEnabled( false );
+        log = renderFrame();
+        
+        assertEquals( 0, log.getFrameCount( CommandType.SETUP_INSTANCES ) );
+        assertEquals( NUM_TREES + NUM_ROCKS, log.getFrameCount( CommandType.DRAW ) );
+        assertEquals( instancedTriangles, countTriangles( log ) );
+    }
+    
+    public void testInstanceShowingBoundsDrawsItsBounds()
+    {
+        markedTree.setShowBounds( true );
+        
+        CommandLog log = renderFrame();
+        
+        assertEquals( NUM_TREES, countInstances( log ) );
+        assertEquals( 1, log.getFrameCount( CommandType.DRAW_BOUNDS ) );
+        assertEquals( NUM_TREES + NUM_ROCKS, log.getFrameCount( CommandType.DRAW ) );
+    }
+    
+    public void testSwitchedFaceCullingDrawsEachInstanceTwice()
+    {
+        treeApp.setPolygonAttributes( new PolygonAttributes( PolygonAttributes.POLYGON_FILL, PolygonAttributes.CULL_SWITCH ) );
+        
+        CommandLog log = renderFrame();
+        
+        assertEquals( NUM_TREES, countInstances( log ) );
+        assertEquals( 2 * NUM_TREES + NUM_ROCKS, log.getFrameCount( CommandType.DRAW ) );
+    }
+}
@@ -0,0 +1,91 @@
+package org.xith3d.render.headless;
+
+import java.awt.image.BufferedImage;
+import java.io.File;
+import java.io.IOException;
+
+import javax.imageio.ImageIO;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.xith3d.render.headless.CommandLog.CommandType;
+import org.xith3d.scenegraph.BranchGroup;
+import org.xith3d.scenegraph.primitives.Cube;
+
+/**
+ * Checks, that a screenshot taken on the headless OpenGLLayer is recorded
+ * and written as a blank image of the canvas size.
+ */
+public class ScreenshotTest
+    extends HeadlessTestCase
+{
+    private File file;
+    
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public ScreenshotTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( ScreenshotTest.class );
+    }
+    
+    @Override
+    protected BranchGroup createScene()
+    {
+        BranchGroup scene = new BranchGroup();
+        scene.addChild( new Cube( 1f ) );
+        
+        return ( scene );
+    }
+    
+    @Override
+    protected void setUp()
+    {
+        super.setUp();
+        
+        try
+        {
+            file = File.createTempFile( "headless-screenshot", ".png" );
+        }
+        catch ( IOException e )
+        {
+            throw new RuntimeException( e );
+        }
+    }
+    
+    @Override
+    protected void tearDown()
+    {
+        file.delete();
+        
+        super.tearDown();
+    }
+    
+    public void testScreenshotIsWritten() throws IOException
+    {
+        canvas.takeScreenshot( file, false );
+        
+        CommandLog log = renderFrame();
+        
+        assertEquals( 1, log.getFrameCount( CommandType.SCREENSHOT ) );
+        
+        final BufferedImage image = ImageIO.read( file );
+        
+        assertNotNull( image );
+        assertEquals( canvas.getWidth(), image.getWidth() );
+        assertEquals( canvas.getHeight(), image.getHeight() );
+        
+        assertEquals( 0, renderFrame().getFrameCount( CommandType.SCREENSHOT ) );
+    }
+}
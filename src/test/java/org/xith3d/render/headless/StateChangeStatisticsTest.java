@@ -0,0 +1,118 @@
+package org.xith3d.render.headless;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.openmali.vecmath2.Colorf;
+import org.xith3d.render.DefaultRenderer;
+import org.xith3d.render.StateChangeStatistics;
+import org.xith3d.render.preprocessing.sorting.FrontToBackRenderBinSorter;
+import org.xith3d.render.preprocessing.sorting.RenderBinSorter;
+import org.xith3d.render.preprocessing.sorting.StatePriorities;
+import org.xith3d.render.preprocessing.sorting.StateRenderBinSorter;
+import org.xith3d.render.states.StateTypes;
+import org.xith3d.render.states.StateUnit;
+import org.xith3d.render.states.units.MaterialStateUnit;
+import org.xith3d.scenegraph.Appearance;
+import org.xith3d.scenegraph.BranchGroup;
+import org.xith3d.scenegraph.Material;
+import org.xith3d.scenegraph.TransformGroup;
+import org.xith3d.scenegraph.primitives.Cube;
+
+/**
+ * Checks the counts of issued and skipped state changes
+ * for differently sorted scenes.
+ */
+public class StateChangeStatisticsTest 
+    extends HeadlessTestCase
+{
+    private static final int NUM_SHAPES = 100;
+    
+    
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public StateChangeStatisticsTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( StateChangeStatisticsTest.class );
+    }
+    
+    private static Appearance createAppearance( Colorf color )
+    {
+        Appearance app = new Appearance();
+        Material material = new Material();
+        material.setDiffuseColor( color );
+        app.setMaterial( material );
+        
+        return ( app );
+    }
+    
+    @Override
+    protected BranchGroup createScene()
+    {
+        final Appearance red = createAppearance( Colorf.RED );
+        final Appearance blue = createAppearance( Colorf.BLUE );
+        
+        // a row of shapes going into the depth, alternating between two appearances
+        BranchGroup scene = new BranchGroup();
+        for ( int i = 0; i < NUM_SHAPES; i++ )
+        {
+            TransformGroup tg = new TransformGroup( 0f, 0f, -i * 0.5f );
+            tg.addChild( new Cube( 0.2f, ( i % 2 == 0 ) ? red : blue ) );
+            scene.addChild( tg );
+        }
+        
+        return ( scene );
+    }
+    
+    @Override
+    protected void setUp()
+    {
+        super.setUp();
+        
+        canvas.getRenderOptions().setInstancingEnabled( false );
+        
+        // resort each frame
+        ( (DefaultRenderer)env.getRenderer() ).setCullingCacheEnabled( false );
+    }
+    
+    private StateChangeStatistics renderFrame( RenderBinSorter sorter )
+    {
+        env.getRenderer().setOpaqueSorter( sorter );
+        renderFrame();
+        
+        return ( env.getRenderer().getStateChangeStatistics() );
+    }
+    
+    public void testEveryStateIsIssuedOrSkipped()
+    {
+        StateChangeStatistics stats = renderFrame( new StateRenderBinSorter() );
+        
+        assertEquals( NUM_SHAPES * StateUnit.MAX_STATE_TYPES, stats.getNumIssued() + stats.getNumSkipped() );
+        assertEquals( stats.getNumIssued(), env.getRenderer().getNumStateChanges() );
+        assertEquals( stats.getNumSkipped(), env.getRenderer().getNumSkippedStateChanges() );
+        
+        assertEquals( 1, stats.getNumRenderPasses() );
+        assertEquals( stats.getNumIssued(), stats.getNumIssuedInRenderPass( 0 ) );
+        assertEquals( stats.getNumSkipped(), stats.getNumSkippedInRenderPass( 0 ) );
+    }
+    
+    public void testSortingByMaterialSavesStateChanges()
+    {
+        final int interleaved = renderFrame( new FrontToBackRenderBinSorter() ).getNumIssued( MaterialStateUnit.STATE_TYPE );
+        final int sorted = renderFrame( new StateRenderBinSorter( new StatePriorities( StateTypes.MATERIAL ) ) ).getNumIssued( MaterialStateUnit.STATE_TYPE );
+        
+        assertEquals( NUM_SHAPES, interleaved );
+        assertEquals( 2, sorted );
+    }
+}
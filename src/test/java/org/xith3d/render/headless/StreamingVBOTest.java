@@ -0,0 +1,108 @@
+package org.xith3d.render.headless;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.xith3d.render.headless.CommandLog.CommandType;
+import org.xith3d.scenegraph.BranchGroup;
+import org.xith3d.scenegraph.Geometry;
+import org.xith3d.scenegraph.Geometry.Optimization;
+import org.xith3d.scenegraph.primitives.Cube;
+
+/**
+ * Checks, that VBO data changing on consecutive frames is streamed
+ * instead of being reallocated as a static buffer.
+ */
+public class StreamingVBOTest
+    extends HeadlessTestCase
+{
+    private Geometry geometry;
+    private float[] coords;
+    
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public StreamingVBOTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( StreamingVBOTest.class );
+    }
+    
+    @Override
+    protected BranchGroup createScene()
+    {
+        Cube cube = new Cube( 1f );
+        geometry = cube.getGeometry();
+        coords = new float[ geometry.getVertexCount() * 3 ];
+        
+        BranchGroup scene = new BranchGroup();
+        scene.addChild( cube );
+        
+        return ( scene );
+    }
+    
+    /**
+     * Renders a frame, optionally moving all of the cube's coordinates before.
+     * 
+     * @return the type of the coordinates' upload command or null, if they haven't been uploaded
+     */
+    private CommandType renderFrame( boolean modify )
+    {
+        if ( modify )
+        {
+            geometry.getCoordinates( 0, coords );
+            for ( int i = 0; i < coords.length; i += 3 )
+            {
+                coords[ i ] += 0.01f;
+            }
+            geometry.setCoordinates( 0, coords );
+        }
+        
+        final CommandLog log = renderFrame();
+        
+        for ( int i = 0; i < log.getSize(); i++ )
+        {
+            if ( ( ( log.getType( i ) == CommandType.UPLOAD_VBO ) || ( log.getType( i ) == CommandType.STREAM_VBO ) ) && ( log.getObject( i ) == geometry.getCoordinatesData() ) )
+            {
+                return ( log.getType( i ) );
+            }
+        }
+        
+        return ( null );
+    }
+    
+    public void testFrequentlyUpdatedDataIsStreamed()
+    {
+        geometry.setOptimization( Optimization.USE_VBOS );
+        
+        assertEquals( CommandType.UPLOAD_VBO, renderFrame( false ) );
+        assertNull( renderFrame( false ) );
+        
+        assertEquals( CommandType.UPLOAD_VBO, renderFrame( true ) );
+        assertEquals( CommandType.UPLOAD_VBO, renderFrame( true ) );
+        assertEquals( CommandType.STREAM_VBO, renderFrame( true ) );
+        assertEquals( CommandType.STREAM_VBO, renderFrame( true ) );
+        
+        // a single change after a pause is uploaded statically again
+        assertNull( renderFrame( false ) );
+        assertEquals( CommandType.UPLOAD_VBO, renderFrame( true ) );
+    }
+    
+    public void testStreamingOptimizationAlwaysStreams()
+    {
+        geometry.setOptimization( Optimization.USE_STREAMING_VBOS );
+        
+        assertEquals( CommandType.STREAM_VBO, renderFrame( false ) );
+        assertNull( renderFrame( false ) );
+        assertEquals( CommandType.STREAM_VBO, renderFrame( true ) );
+    }
+}
@@ -0,0 +1,206 @@
+package org.xith3d.render.headless;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.jagatoo.opengl.enums.TextureFormat;
+import org.jagatoo.opengl.enums.TextureImageFormat;
+import org.xith3d.render.TextureStreamer;
+import org.xith3d.render.headless.CommandLog.CommandType;
+import org.xith3d.scenegraph.BranchGroup;
+import org.xith3d.scenegraph.Texture2D;
+import org.xith3d.scenegraph.TextureImage2D;
+import org.xith3d.scenegraph.TransformGroup;
+import org.xith3d.scenegraph.primitives.Cube;
+
+/**
+ * Checks the progressive mipmap streaming of Texture2Ds
+ * by means of the headless CommandLog.
+ */
+public class TextureStreamingTest
+    extends HeadlessTestCase
+{
+    private static final int TEXTURE_SIZE = 256;
+    private static final int NUM_LEVELS = 9;
+    
+    private Texture2D texture;
+    private TransformGroup transform;
+    
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TextureStreamingTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TextureStreamingTest.class );
+    }
+    
+    private static Texture2D createMipmappedTexture()
+    {
+        Texture2D texture = new Texture2D( TextureFormat.RGB );
+        
+        int size = TEXTURE_SIZE;
+        for ( int level = 0; level < NUM_LEVELS; level++ )
+        {
+            texture.setImage( level, new TextureImage2D( TextureImageFormat.RGB, size, size, false ) );
+            size /= 2;
+        }
+        
+        return ( texture );
+    }
+    
+    private static long getLevelBytes( int level )
+    {
+        final int size = TEXTURE_SIZE >> level;
+        
+        return ( size * size * 3L );
+    }
+    
+    @Override
+    protected BranchGroup createScene()
+    {
+        texture = createMipmappedTexture();
+        texture.setStreaming( true );
+        
+        BranchGroup scene = new BranchGroup();
+        transform = new TransformGroup( 0f, 0f, -200f );
+        transform.addChild( new Cube( 2f, texture ) );
+        scene.addChild( transform );
+        
+        return ( scene );
+    }
+    
+    @Override
+    protected void setUp()
+    {
+        super.setUp();
+        
+        canvas.getPeer().getTextureStreamer().setMaxLevelUploadsPerFrame( 1 );
+    }
+    
+    private static long getUploadedTextureBytes( CommandLog log )
+    {
+        for ( int i = 0; i < log.getSize(); i++ )
+        {
+            if ( log.getType( i ) == CommandType.UPLOAD_TEXTURE )
+            {
+                return ( log.getArgument1( i ) );
+            }
+        }
+        
+        return ( -1L );
+    }
+    
+    /**
+     * Renders frames until the resident level doesn't change any more.
+     * 
+     * @return the number of upgraded levels
+     */
+    private int renderUntilStable()
+    {
+        int upgrades = 0;
+        
+        for ( int i = 0; i < NUM_LEVELS + 1; i++ )
+        {
+            final int residentLevel = texture.getResidentLevel();
+            
+            CommandLog log = renderFrame();
+            
+            if ( texture.getResidentLevel() == residentLevel )
+            {
+                assertEquals( 0, log.getFrameCount( CommandType.UPLOAD_TEXTURE ) );
+                
+                return ( upgrades );
+            }
+            
+            // one level per frame
+            assertEquals( residentLevel - 1, texture.getResidentLevel() );
+            assertEquals( 1, log.getFrameCount( CommandType.UPLOAD_TEXTURE ) );
+            upgrades++;
+        }
+        
+        fail( "The resident level doesn't converge." );
+        
+        return ( -1 );
+    }
+    
+    public void testRequiredLevel()
+    {
+        Texture2D texture = createMipmappedTexture();
+        
+        assertEquals( 0, TextureStreamer.getRequiredLevel( texture, Float.MAX_VALUE ) );
+        assertEquals( 0, TextureStreamer.getRequiredLevel( texture, TEXTURE_SIZE ) );
+        assertEquals( 1, TextureStreamer.getRequiredLevel( texture, 100f ) );
+        assertEquals( NUM_LEVELS - 1, TextureStreamer.getRequiredLevel( texture, 0.1f ) );
+    }
+    
+    public void testSmallestLevelIsUploadedFirst()
+    {
+        assertEquals( NUM_LEVELS - 1, texture.getResidentLevel() );
+        
+        CommandLog log = renderFrame();
+        
+        assertEquals( 1, log.getFrameCount( CommandType.UPLOAD_TEXTURE ) );
+        assertEquals( getLevelBytes( NUM_LEVELS - 1 ), getUploadedTextureBytes( log ) );
+    }
+    
+    public void testLevelsAreUpgradedAsTheTextureComesCloser()
+    {
+        renderFrame();
+        
+        assertTrue( renderUntilStable() > 0 );
+        final int farLevel = texture.getResidentLevel();
+        assertTrue( farLevel > 0 );
+        
+        // The new position is observed in the next frame and applied in the following ones.
+        transform.getTransform().setTranslation( 0f, 0f, 20f );
+        transform.updateTransform();
+        renderFrame();
+        
+        assertTrue( renderUntilStable() > 0 );
+        assertTrue( texture.getResidentLevel() < farLevel );
+        
+        final int upgrades = canvas.getPeer().getTextureStreamer().getUpgradeCount();
+        assertEquals( NUM_LEVELS - 1 - texture.getResidentLevel(), upgrades );
+    }
+    
+    public void testFineLevelsAreDroppedUnderMemoryPressure()
+    {
+        transform.getTransform().setTranslation( 0f, 0f, 20f );
+        transform.updateTransform();
+        
+        renderFrame();
+        renderUntilStable();
+        final int nearLevel = texture.getResidentLevel();
+        
+        canvas.getPeer().getGPUMemoryBudget().setBudget( 1L );
+        
+        transform.getTransform().setTranslation( 0f, 0f, -200f );
+        transform.updateTransform();
+        
+        // The far position is observed in the first frame and applied in the second one.
+        renderFrame();
+        renderFrame();
+        
+        assertTrue( texture.getResidentLevel() > nearLevel );
+        assertEquals( 1, canvas.getPeer().getTextureStreamer().getDowngradeCount() );
+        
+        // No upgrades would fit into the budget.
+        transform.getTransform().setTranslation( 0f, 0f, 20f );
+        transform.updateTransform();
+        
+        final int level = texture.getResidentLevel();
+        renderFrame();
+        renderFrame();
+        assertEquals( level, texture.getResidentLevel() );
+    }
+}
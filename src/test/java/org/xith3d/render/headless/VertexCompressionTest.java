@@ -0,0 +1,123 @@
+package org.xith3d.render.headless;
+
+import java.nio.ByteBuffer;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.xith3d.render.VertexPacking;
+import org.xith3d.render.VertexPacking.Format;
+import org.xith3d.render.headless.CommandLog.CommandType;
+import org.xith3d.scenegraph.BranchGroup;
+import org.xith3d.scenegraph.Geometry.Optimization;
+import org.xith3d.scenegraph.Geometry.VertexCompression;
+import org.xith3d.scenegraph.Shape3D;
+import org.xith3d.scenegraph.TriangleArray;
+
+/**
+ * Checks the packing of vertex data and the VBO sizes
+ * of Geometries with a VertexCompression hint.
+ */
+public class VertexCompressionTest
+    extends HeadlessTestCase
+{
+    private static final int NUM_VERTICES = 300;
+    
+    private TriangleArray geometry;
+    
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public VertexCompressionTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( VertexCompressionTest.class );
+    }
+    
+    @Override
+    protected BranchGroup createScene()
+    {
+        geometry = new TriangleArray( NUM_VERTICES );
+        for ( int i = 0; i < NUM_VERTICES; i++ )
+        {
+            geometry.setCoordinate( i, ( i % 3 ) * 0.1f, ( i / 3 ) * 0.01f, 0f );
+            geometry.setNormal( i, 0f, 0f, 1f );
+            geometry.setColor( i, 1f, 0.5f, 0f );
+            geometry.setTextureCoordinate( 0, i, ( i % 3 ) * 0.5f, 0f );
+        }
+        geometry.setOptimization( Optimization.USE_VBOS );
+        
+        BranchGroup scene = new BranchGroup();
+        scene.addChild( new Shape3D( geometry ) );
+        
+        return ( scene );
+    }
+    
+    private long renderAndCountUploadedBytes()
+    {
+        final CommandLog log = renderFrame();
+        
+        long bytes = 0L;
+        for ( int i = 0; i < log.getSize(); i++ )
+        {
+            if ( log.getType( i ) == CommandType.UPLOAD_VBO )
+                bytes += log.getArgument1( i );
+        }
+        
+        return ( bytes );
+    }
+    
+    public void testHalfFloatConversion()
+    {
+        assertEquals( (short)0x3C00, VertexPacking.toHalfFloat( 1f ) );
+        assertEquals( (short)0x3800, VertexPacking.toHalfFloat( 0.5f ) );
+        assertEquals( (short)0xC000, VertexPacking.toHalfFloat( -2f ) );
+        assertEquals( (short)0x0000, VertexPacking.toHalfFloat( 0f ) );
+        assertEquals( (short)0x7BFF, VertexPacking.toHalfFloat( 65504f ) );
+        assertEquals( (short)0x7C00, VertexPacking.toHalfFloat( 1.0e6f ) );
+        assertEquals( (short)0x0002, VertexPacking.toHalfFloat( 1.0e-7f ) );
+    }
+    
+    public void testPackedNormalsAndColors()
+    {
+        assertEquals( NUM_VERTICES * ( 12 + 12 + 12 + 8 ), renderAndCountUploadedBytes() );
+        
+        geometry.setVertexCompression( VertexCompression.PACKED_NORMALS_AND_COLORS );
+        
+        assertEquals( NUM_VERTICES * ( 12 + 4 + 4 + 8 ), renderAndCountUploadedBytes() );
+        
+        ByteBuffer packed = VertexPacking.pack( Format.NORMALIZED_BYTE, geometry.getNormalsData() );
+        assertEquals( NUM_VERTICES * 4, packed.limit() );
+        assertEquals( 0, packed.get( 4 ) );
+        assertEquals( 127, packed.get( 6 ) );
+        
+        packed = VertexPacking.pack( Format.NORMALIZED_UNSIGNED_BYTE, geometry.getColorData() );
+        assertEquals( (byte)255, packed.get( 0 ) );
+        assertEquals( (byte)128, packed.get( 1 ) );
+        assertEquals( (byte)0, packed.get( 2 ) );
+        assertEquals( (byte)255, packed.get( 3 ) );
+    }
+    
+    public void testHalfFloats()
+    {
+        geometry.setVertexCompression( VertexCompression.HALF_FLOATS );
+        
+        assertEquals( NUM_VERTICES * ( 8 + 4 + 4 + 4 ), renderAndCountUploadedBytes() );
+        
+        // static data isn't uploaded again
+        assertEquals( 0L, renderAndCountUploadedBytes() );
+        
+        geometry.setCoordinate( 0, 1f, 1f, 0f );
+        
+        assertEquals( NUM_VERTICES * 8, renderAndCountUploadedBytes() );
+    }
+}
@@ -0,0 +1,199 @@
+package org.xith3d.render.preprocessing;
+
+import java.util.HashSet;
+import java.util.Set;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.xith3d.render.DefaultRenderer;
+import org.xith3d.render.headless.HeadlessTestCase;
+import org.xith3d.scenegraph.Appearance;
+import org.xith3d.scenegraph.BranchGroup;
+import org.xith3d.scenegraph.Group;
+import org.xith3d.scenegraph.Material;
+import org.xith3d.scenegraph.NodeComponent;
+import org.xith3d.scenegraph.PolygonAttributes;
+import org.xith3d.scenegraph.Transform3D;
+import org.xith3d.scenegraph.TransformGroup;
+import org.xith3d.scenegraph.primitives.Cube;
+
+/**
+ * Checks, that the CullingCache re-culls subtrees after a scenegraph modification.
+ */
+public class CullingCacheTest
+    extends HeadlessTestCase
+{
+    private static final int GRID_SIZE = 10;
+    private static final String MARKED = "marked";
+    
+    private TransformGroup markedTG;
+    private Appearance markedApp;
+    private Appearance offScreenApp;
+    private int numReports = 0;
+    
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public CullingCacheTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( CullingCacheTest.class );
+    }
+    
+    @Override
+    protected BranchGroup createScene()
+    {
+        // rows, that are large enough to get their own cache entries
+        BranchGroup scene = new BranchGroup();
+        for ( int y = 0; y < GRID_SIZE; y++ )
+        {
+            Group row = new Group();
+            for ( int x = 0; x < GRID_SIZE; x++ )
+            {
+                TransformGroup tg = new TransformGroup( ( x - GRID_SIZE / 2 ) * 2f, ( y - GRID_SIZE / 2 ) * 2f, 0f );
+                Cube cube = new Cube( 0.5f );
+                tg.addChild( cube );
+                row.addChild( tg );
+                
+                if ( ( x == GRID_SIZE / 2 ) && ( y == GRID_SIZE / 2 ) )
+                {
+                    markedApp = new Appearance();
+                    markedApp.setMaterial( new Material() );
+                    cube.setAppearance( markedApp );
+                    cube.setName( MARKED );
+                    markedTG = tg;
+                }
+            }
+            scene.addChild( row );
+        }
+        
+        // behind the camera
+        offScreenApp = new Appearance();
+        offScreenApp.setMaterial( new Material() );
+        TransformGroup offScreenTG = new TransformGroup( 0f, 0f, 100f );
+        offScreenTG.addChild( new Cube( 0.5f, offScreenApp ) );
+        scene.addChild( offScreenTG );
+        
+        return ( scene );
+    }
+    
+    @Override
+    protected void setUp()
+    {
+        super.setUp();
+        
+        ( (DefaultRenderer)env.getRenderer() ).setCullingCacheEnabled( true );
+        
+        renderFrame();
+        renderFrame();
+        
+        assertTrue( "The culling cache isn't used.", getCullingCache().isBinsReused( renderPass ) );
+        
+        // counts the NodeComponent changes reported by the scenegraph
+        numReports = 0;
+        env.getRenderer().addScenegraphModificationListener( new CullingCache()
+        {
+            @Override
+            public void onNodeComponentChanged( NodeComponent comp )
+            {
+                numReports++;
+            }
+        } );
+    }
+    
+    private CullingCache getCullingCache()
+    {
+        return ( ( (DefaultRenderer)env.getRenderer() ).getFrustumCuller().getCullingCache() );
+    }
+    
+    private static Set< String > collectNames( RenderBin bin )
+    {
+        Set< String > names = new HashSet< String >();
+        for ( int i = 0; i < bin.size(); i++ )
+        {
+            names.add( bin.getAtom( i ).getNode().getName() );
+        }
+        
+        return ( names );
+    }
+    
+    public void testMovedTransformGroupIsReculled()
+    {
+        assertTrue( collectNames( renderPass.getRenderBinProvider().getOpaqueBin() ).contains( MARKED ) );
+        
+        // behind the camera
+        markedTG.setTransform( new Transform3D( 0f, 0f, 100f ) );
+        renderFrame();
+        
+        assertFalse( getCullingCache().isBinsReused( renderPass ) );
+        assertFalse( collectNames( renderPass.getRenderBinProvider().getOpaqueBin() ).contains( MARKED ) );
+        
+        markedTG.setTransform( new Transform3D( 0f, 0f, 0f ) );
+        renderFrame();
+        
+        assertTrue( collectNames( renderPass.getRenderBinProvider().getOpaqueBin() ).contains( MARKED ) );
+    }
+    
+    public void testNodeComponentChangeIsReculled()
+    {
+        markedApp.getMaterial().setDiffuseColor( 1f, 0f, 0f );
+        renderFrame();
+        
+        assertFalse( getCullingCache().isBinsReused( renderPass ) );
+        assertTrue( collectNames( renderPass.getRenderBinProvider().getOpaqueBin() ).contains( MARKED ) );
+        
+        // only the marked row is culled again
+        assertEquals( GRID_SIZE - 1, getCullingCache().getNumReplays() );
+        
+        renderFrame();
+        
+        assertTrue( getCullingCache().isBinsReused( renderPass ) );
+    }
+    
+    public void testOffScreenComponentChangeKeepsTheCache()
+    {
+        offScreenApp.getMaterial().setDiffuseColor( 1f, 0f, 0f );
+        offScreenApp.setPolygonAttributes( new PolygonAttributes( PolygonAttributes.POLYGON_LINE, PolygonAttributes.CULL_NONE ) );
+        renderFrame();
+        
+        assertTrue( getCullingCache().isBinsReused( renderPass ) );
+    }
+    
+    public void testChangeIsReportedOncePerFrame()
+    {
+        for ( int i = 0; i < 100; i++ )
+        {
+            markedApp.getMaterial().setDiffuseColor( i / 100f, 0f, 0f );
+        }
+        
+        assertEquals( 1, numReports );
+        
+        renderFrame();
+        markedApp.getMaterial().setDiffuseColor( 0f, 1f, 0f );
+        
+        assertEquals( 2, numReports );
+    }
+    
+    public void testAppearanceChangeIsReculled()
+    {
+        markedApp.setPolygonAttributes( new PolygonAttributes( PolygonAttributes.POLYGON_LINE, PolygonAttributes.CULL_NONE ) );
+        renderFrame();
+        
+        assertFalse( getCullingCache().isBinsReused( renderPass ) );
+        
+        markedApp.setPolygonAttributes( null );
+        renderFrame();
+        
+        assertFalse( getCullingCache().isBinsReused( renderPass ) );
+    }
+}
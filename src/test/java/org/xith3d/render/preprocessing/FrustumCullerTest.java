@@ -0,0 +1,116 @@
+package org.xith3d.render.preprocessing;
+
+import java.util.IdentityHashMap;
+import java.util.Map;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.xith3d.render.DefaultRenderer;
+import org.xith3d.render.headless.HeadlessTestCase;
+import org.xith3d.scenegraph.BranchGroup;
+import org.xith3d.scenegraph.Group;
+import org.xith3d.scenegraph.TransformGroup;
+import org.xith3d.scenegraph.primitives.Cube;
+
+/**
+ * Checks, that the parallel culling finds the same RenderAtoms as the serial culling.
+ */
+public class FrustumCullerTest
+    extends HeadlessTestCase
+{
+    private static final int GRID_SIZE = 20;
+    
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public FrustumCullerTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( FrustumCullerTest.class );
+    }
+    
+    @Override
+    protected BranchGroup createScene()
+    {
+        // rows of cubes reaching far out of the view frustum
+        BranchGroup scene = new BranchGroup();
+        for ( int y = 0; y < GRID_SIZE; y++ )
+        {
+            Group row = new Group();
+            for ( int x = 0; x < GRID_SIZE; x++ )
+            {
+                TransformGroup tg = new TransformGroup( ( x - GRID_SIZE / 2 ) * 4f, ( y - GRID_SIZE / 2 ) * 4f, 0f );
+                tg.addChild( new Cube( 0.5f ) );
+                row.addChild( tg );
+            }
+            scene.addChild( row );
+        }
+        
+        return ( scene );
+    }
+    
+    private FrustumCuller getFrustumCuller()
+    {
+        return ( ( (DefaultRenderer)env.getRenderer() ).getFrustumCuller() );
+    }
+    
+    private Map< Object, Object > renderAndCollectAtoms()
+    {
+        renderFrame();
+        
+        final RenderBin bin = renderPass.getRenderBinProvider().getOpaqueBin();
+        
+        Map< Object, Object > nodes = new IdentityHashMap< Object, Object >();
+        for ( int i = 0; i < bin.size(); i++ )
+        {
+            assertNull( "A node has been added twice.", nodes.put( bin.getAtom( i ).getNode(), bin ) );
+        }
+        
+        return ( nodes );
+    }
+    
+    private void enableParallelCulling()
+    {
+        getFrustumCuller().setParallelCullingEnabled( true );
+        getFrustumCuller().setParallelCullingThreshold( 10 );
+        getFrustumCuller().setNumWorkerThreads( 3 );
+    }
+    
+    public void testParallelCullingFindsTheSerialAtoms()
+    {
+        final Map< Object, Object > serial = renderAndCollectAtoms();
+        
+        assertTrue( serial.size() > 0 );
+        assertTrue( serial.size() < GRID_SIZE * GRID_SIZE );
+        
+        enableParallelCulling();
+        final Map< Object, Object > parallel = renderAndCollectAtoms();
+        
+        assertEquals( serial.keySet(), parallel.keySet() );
+        
+        getFrustumCuller().shutdownWorkers();
+    }
+    
+    public void testCullingCacheFallsBackToSerialCulling()
+    {
+        final Map< Object, Object > serial = renderAndCollectAtoms();
+        
+        enableParallelCulling();
+        ( (DefaultRenderer)env.getRenderer() ).setCullingCacheEnabled( true );
+        
+        assertEquals( serial.keySet(), renderAndCollectAtoms().keySet() );
+        assertEquals( serial.keySet(), renderAndCollectAtoms().keySet() );
+        
+        getFrustumCuller().shutdownWorkers();
+    }
+}
@@ -0,0 +1,147 @@
+package org.xith3d.render.preprocessing;
+
+import java.util.Random;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.openmali.spatial.bodies.Box;
+import org.openmali.spatial.bodies.Classifier;
+import org.openmali.spatial.bodies.Frustum;
+import org.openmali.spatial.bodies.Sphere;
+import org.openmali.spatial.bodies.Classifier.Classification;
+import org.xith3d.scenegraph.View;
+
+/**
+ * Checks, that the plane-mask classification matches the full classification
+ * of the Frustum.
+ */
+public class PlaneMaskClassifierTest
+    extends TestCase
+{
+    private static final int NUM_BODIES = 2000;
+    
+    private Frustum frustum;
+    private final Random random = new Random( 4711L );
+    
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public PlaneMaskClassifierTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( PlaneMaskClassifierTest.class );
+    }
+    
+    @Override
+    protected void setUp()
+    {
+        View view = new View();
+        view.lookAt( 0f, 0f, 30f, 0f, 0f, 0f, 0f, 1f, 0f );
+        view.setBackClipDistance( 100f );
+        
+        frustum = view.getFrustum( 640f, 480f );
+    }
+    
+    private float nextCoord( float range )
+    {
+        return ( ( random.nextFloat() * 2f - 1f ) * range );
+    }
+    
+    private Sphere nextSphere()
+    {
+        return ( new Sphere( nextCoord( 60f ), nextCoord( 60f ), nextCoord( 100f ), random.nextFloat() * 10f ) );
+    }
+    
+    private Box nextBox()
+    {
+        final float x = nextCoord( 60f );
+        final float y = nextCoord( 60f );
+        final float z = nextCoord( 100f );
+        
+        return ( new Box( x, y, z, x + random.nextFloat() * 10f, y + random.nextFloat() * 10f, z + random.nextFloat() * 10f ) );
+    }
+    
+    public void testSphereMatchesFullClassification()
+    {
+        for ( int i = 0; i < NUM_BODIES; i++ )
+        {
+            final Sphere sphere = nextSphere();
+            final Classification expected = Classifier.classifyFrustumSphere( frustum, sphere );
+            
+            for ( int first = 0; first < PlaneMaskClassifier.NUM_PLANES; first++ )
+            {
+                final int result = PlaneMaskClassifier.classifySphere( frustum, sphere, PlaneMaskClassifier.ALL_PLANES, first );
+                
+                assertEquals( expected, PlaneMaskClassifier.getClassification( result ) );
+            }
+        }
+    }
+    
+    public void testBoxMatchesFullClassification()
+    {
+        for ( int i = 0; i < NUM_BODIES; i++ )
+        {
+            final Box box = nextBox();
+            final Classification expected = Classifier.classifyFrustumBox( frustum, box );
+            
+            for ( int first = 0; first < PlaneMaskClassifier.NUM_PLANES; first++ )
+            {
+                final int result = PlaneMaskClassifier.classifyBox( frustum, box, PlaneMaskClassifier.ALL_PLANES, first );
+                
+                assertEquals( expected, PlaneMaskClassifier.getClassification( result ) );
+            }
+        }
+    }
+    
+    public void testParentPlaneMaskKeepsChildClassification()
+    {
+        int numMasked = 0;
+        
+        for ( int i = 0; i < NUM_BODIES; i++ )
+        {
+            final Sphere parent = nextSphere();
+            final int parentResult = PlaneMaskClassifier.classifySphere( frustum, parent, PlaneMaskClassifier.ALL_PLANES, PlaneMaskClassifier.PLANE_NEAR );
+            
+            if ( PlaneMaskClassifier.isOutside( parentResult ) )
+                continue;
+            
+            if ( parentResult != PlaneMaskClassifier.ALL_PLANES )
+                numMasked++;
+            
+            final float childRadius = parent.getRadius() * random.nextFloat();
+            final float offset = parent.getRadius() - childRadius;
+            final Sphere child = new Sphere( parent.getCenterX() + offset * random.nextFloat(), parent.getCenterY(), parent.getCenterZ(), childRadius );
+            
+            final int childResult = PlaneMaskClassifier.classifySphere( frustum, child, parentResult, PlaneMaskClassifier.PLANE_NEAR );
+            
+            assertEquals( Classifier.classifyFrustumSphere( frustum, child ), PlaneMaskClassifier.getClassification( childResult ) );
+        }
+        
+        assertTrue( numMasked > 0 );
+    }
+    
+    public void testRejectingPlaneIsTestedFirst()
+    {
+        // behind the near and the right plane
+        final Sphere sphere = new Sphere( 200f, 0f, 50f, 1f );
+        
+        final int nearResult = PlaneMaskClassifier.classifySphere( frustum, sphere, PlaneMaskClassifier.ALL_PLANES, PlaneMaskClassifier.PLANE_NEAR );
+        final int rightResult = PlaneMaskClassifier.classifySphere( frustum, sphere, PlaneMaskClassifier.ALL_PLANES, PlaneMaskClassifier.PLANE_RIGHT );
+        
+        assertTrue( PlaneMaskClassifier.isOutside( nearResult ) );
+        assertTrue( PlaneMaskClassifier.isOutside( rightResult ) );
+        assertEquals( PlaneMaskClassifier.PLANE_NEAR, PlaneMaskClassifier.getRejectingPlane( nearResult ) );
+        assertEquals( PlaneMaskClassifier.PLANE_RIGHT, PlaneMaskClassifier.getRejectingPlane( rightResult ) );
+    }
+}
@@ -0,0 +1,144 @@
+package org.xith3d.render.preprocessing.sorting;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.xith3d.render.preprocessing.RenderAtom;
+import org.xith3d.render.preprocessing.RenderBin;
+import org.xith3d.render.preprocessing.RenderBinType;
+import org.xith3d.render.preprocessing.ShapeAtom;
+import org.xith3d.render.states.StateTypes;
+import org.xith3d.scenegraph.Appearance;
+import org.xith3d.scenegraph.Material;
+import org.xith3d.scenegraph.PolygonAttributes;
+import org.xith3d.scenegraph.Shape3D;
+import org.xith3d.scenegraph.TriangleArray;
+
+/**
+ * Checks, that the radix sorted orders equal the comparator's order.
+ */
+public class StateRenderBinSorterTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public StateRenderBinSorterTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( StateRenderBinSorterTest.class );
+    }
+    
+    private static ShapeAtom[] createAtoms( int n )
+    {
+        Material[] materials = new Material[ 7 ];
+        for ( int i = 0; i < materials.length; i++ )
+        {
+            materials[ i ] = new Material( 1f + i );
+        }
+        
+        ShapeAtom[] atoms = new ShapeAtom[ n ];
+        for ( int i = 0; i < n; i++ )
+        {
+            Appearance app = new Appearance();
+            app.setMaterial( materials[ ( i * 5 ) % materials.length ] );
+            if ( i % 3 == 0 )
+                app.setPolygonAttributes( new PolygonAttributes( PolygonAttributes.POLYGON_LINE, PolygonAttributes.CULL_NONE, 0f ) );
+            
+            atoms[ i ] = new ShapeAtom( new Shape3D( new TriangleArray( 3 ), app ), null );
+        }
+        
+        return ( atoms );
+    }
+    
+    private static void fill( RenderBin bin, ShapeAtom[] atoms, int offset, int step )
+    {
+        bin.clear();
+        for ( int i = 0; i < atoms.length; i++ )
+        {
+            bin.addAtom( atoms[ ( offset + i * step ) % atoms.length ], null, 0L );
+        }
+    }
+    
+    private static void assertComparatorOrder( StateRenderBinSorter sorter, RenderBin bin )
+    {
+        for ( int i = 1; i < bin.size(); i++ )
+        {
+            RenderAtom< ? > prev = bin.getAtoms().get( i - 1 );
+            RenderAtom< ? > atom = bin.getAtoms().get( i );
+            
+            assertTrue( "atoms " + ( i - 1 ) + " and " + i + " are out of order", sorter.compare( prev, atom ) <= 0 );
+        }
+    }
+    
+    public void testRadixOrderMatchesComparator()
+    {
+        StateRenderBinSorter sorter = new StateRenderBinSorter( new StatePriorities( StateTypes.MATERIAL, StateTypes.POLYGON_ATTRIBUTES ) );
+        RenderBin bin = new RenderBin( RenderBinType.MAIN_OPAQUE, "test", 64 );
+        
+        fill( bin, createAtoms( 40 ), 3, 7 );
+        sorter.sortRenderBin( bin, null );
+        
+        assertEquals( 40, bin.size() );
+        assertComparatorOrder( sorter, bin );
+    }
+    
+    public void testIncrementalOrderMatchesComparator()
+    {
+        StateRenderBinSorter sorter = new StateRenderBinSorter( new StatePriorities( StateTypes.MATERIAL, StateTypes.POLYGON_ATTRIBUTES ) );
+        RenderBin bin = new RenderBin( RenderBinType.MAIN_OPAQUE, "test", 64 );
+        bin.setPersistent( true );
+        
+        ShapeAtom[] atoms = createAtoms( 40 );
+        
+        fill( bin, atoms, 0, 1 );
+        sorter.sortRenderBin( bin, null );
+        assertComparatorOrder( sorter, bin );
+        
+        // an unrelated order of the next frame, with the last atom's material changed
+        Appearance app = ( (Shape3D)atoms[ 39 ].getNode() ).getAppearance();
+        app.setMaterial( new Material( 100f ) );
+        atoms[ 39 ].updateStateUnits( app, null );
+        fill( bin, atoms, 11, 3 );
+        sorter.sortRenderBin( bin, null );
+        
+        assertEquals( 40, bin.size() );
+        assertComparatorOrder( sorter, bin );
+    }
+    
+    public void testStateIdOverflowFallsBackToComparator()
+    {
+        // 16 priorities leave 3 bits per state ID.
+        StatePriorities priorities = new StatePriorities( StateTypes.MATERIAL, StateTypes.POLYGON_ATTRIBUTES, StateTypes.COLORING, StateTypes.SHADER_PROGRAM, StateTypes.TEXTURE_UNIT0, StateTypes.TEXTURE_UNIT1, StateTypes.TEXTURE_UNIT2, StateTypes.TEXTURE_UNIT3, StateTypes.TEXTURE_UNIT4, StateTypes.TEXTURE_UNIT5, StateTypes.TEXTURE_UNIT6, StateTypes.TEXTURE_UNIT7, StateTypes.LINE_ATTRIBUTES, StateTypes.POINT_ATTRIBUTES, StateTypes.RENDERING_ATTRIBUTES, StateTypes.FOG );
+        StateRenderBinSorter sorter = new StateRenderBinSorter( priorities );
+        RenderBin bin = new RenderBin( RenderBinType.MAIN_OPAQUE, "test", 64 );
+        
+        ShapeAtom[] atoms = new ShapeAtom[ 20 ];
+        boolean overflow = false;
+        for ( int i = 0; i < atoms.length; i++ )
+        {
+            Appearance app = new Appearance();
+            app.setMaterial( new Material( 200f + i ) );
+            atoms[ i ] = new ShapeAtom( new Shape3D( new TriangleArray( 3 ), app ), null );
+            
+            overflow |= ( priorities.packStateKey( atoms[ i ].getStateType(), atoms[ i ].getSortableStates() ) == StatePriorities.OVERFLOW_KEY );
+        }
+        assertTrue( overflow );
+        
+        fill( bin, atoms, 5, 7 );
+        sorter.sortRenderBin( bin, null );
+        
+        assertEquals( 20, bin.size() );
+        assertComparatorOrder( sorter, bin );
+    }
+}
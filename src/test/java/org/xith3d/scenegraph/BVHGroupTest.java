@@ -0,0 +1,134 @@
+package org.xith3d.scenegraph;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.xith3d.render.headless.HeadlessTestCase;
+import org.xith3d.render.preprocessing.RenderBin;
+import org.xith3d.scenegraph.primitives.Cube;
+
+/**
+ * Checks, that a BVHGroup culls the same shapes as a flat Group.
+ */
+public class BVHGroupTest
+    extends HeadlessTestCase
+{
+    private static final int GRID_SIZE = 20;
+    
+    private BranchGroup scene;
+    private Group flatGrid;
+    private final List< TransformGroup > flatTGs = new ArrayList< TransformGroup >();
+    
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public BVHGroupTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( BVHGroupTest.class );
+    }
+    
+    private static void fillGrid( Group grid, List< TransformGroup > tgs )
+    {
+        for ( int i = 0; i < GRID_SIZE * GRID_SIZE; i++ )
+        {
+            // every third cube is behind the camera
+            TransformGroup tg = new TransformGroup( ( ( i % GRID_SIZE ) - GRID_SIZE / 2 ) * 4f, ( ( i / GRID_SIZE ) - GRID_SIZE / 2 ) * 4f, ( ( i % 3 ) == 0 ) ? 50f : 0f );
+            Cube cube = new Cube( 0.5f );
+            cube.setName( String.valueOf( i ) );
+            tg.addChild( cube );
+            grid.addChild( tg );
+            tgs.add( tg );
+        }
+    }
+    
+    private static void moveEveryFifth( List< TransformGroup > tgs )
+    {
+        for ( int i = 0; i < tgs.size(); i += 5 )
+        {
+            final Transform3D t3d = new Transform3D( tgs.get( i ).getTransform() );
+            t3d.setTranslation( -t3d.getTranslation().getX() + 30f, t3d.getTranslation().getY(), 0f );
+            tgs.get( i ).setTransform( t3d );
+        }
+    }
+    
+    @Override
+    protected BranchGroup createScene()
+    {
+        scene = new BranchGroup();
+        flatGrid = new Group();
+        fillGrid( flatGrid, flatTGs );
+        scene.addChild( flatGrid );
+        
+        return ( scene );
+    }
+    
+    private void showGrid( Group grid )
+    {
+        scene.removeAllChildren();
+        scene.addChild( grid );
+    }
+    
+    private Set< String > renderAndCollectNames()
+    {
+        renderFrame();
+        
+        final RenderBin bin = renderPass.getRenderBinProvider().getOpaqueBin();
+        
+        Set< String > names = new HashSet< String >();
+        for ( int i = 0; i < bin.size(); i++ )
+        {
+            names.add( bin.getAtom( i ).getNode().getName() );
+        }
+        
+        return ( names );
+    }
+    
+    public void testBVHCullsTheShapesOfAFlatGroup()
+    {
+        final Set< String > flat = renderAndCollectNames();
+        
+        assertTrue( flat.size() > 0 );
+        assertTrue( flat.size() < GRID_SIZE * GRID_SIZE );
+        
+        BVHGroup bvh = new BVHGroup();
+        fillGrid( bvh, new ArrayList< TransformGroup >() );
+        showGrid( bvh );
+        
+        assertEquals( flat, renderAndCollectNames() );
+    }
+    
+    public void testBVHFollowsMovedChildren()
+    {
+        BVHGroup bvh = new BVHGroup();
+        List< TransformGroup > bvhTGs = new ArrayList< TransformGroup >();
+        fillGrid( bvh, bvhTGs );
+        showGrid( bvh );
+        renderFrame();
+        
+        moveEveryFifth( flatTGs );
+        moveEveryFifth( bvhTGs );
+        
+        showGrid( flatGrid );
+        final Set< String > flat = renderAndCollectNames();
+        
+        showGrid( bvh );
+        
+        assertEquals( flat, renderAndCollectNames() );
+        assertTrue( ( bvh.getNumRefits() > 0 ) || ( bvh.getNumRebuilds() > 1 ) );
+    }
+}
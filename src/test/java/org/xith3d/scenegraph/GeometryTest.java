@@ -0,0 +1,47 @@
+package org.xith3d.scenegraph;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.openmali.spatial.polygons.Triangle;
+import org.openmali.vecmath2.Point3f;
+
+/**
+ * Checks the Triangle accessors of Geometry.
+ */
+public class GeometryTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public GeometryTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( GeometryTest.class );
+    }
+    
+    public void testSetTriangleAppliesTheTriangle()
+    {
+        TriangleArray geom = new TriangleArray( 3 );
+        
+        Triangle triangle = new Triangle();
+        triangle.setVertexCoords( new Point3f( 1f, 2f, 3f ), new Point3f( 4f, 5f, 6f ), new Point3f( 7f, 8f, 9f ) );
+        
+        // This used to call itself recursively and overflow the stack.
+        assertTrue( geom.setTriangle( 0, 1, 2, triangle ) );
+        
+        assertEquals( new Point3f( 1f, 2f, 3f ), geom.getCoordinate( 0, new Point3f() ) );
+        assertEquals( new Point3f( 7f, 8f, 9f ), geom.getCoordinate( 2, new Point3f() ) );
+    }
+}
@@ -0,0 +1,147 @@
+package org.xith3d.scenegraph;
+
+import java.util.ArrayList;
+import java.util.HashSet;
+import java.util.List;
+import java.util.Set;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.xith3d.render.headless.HeadlessTestCase;
+import org.xith3d.render.preprocessing.RenderBin;
+import org.xith3d.scenegraph.primitives.Cube;
+
+/**
+ * Checks, that a LooseOcTreeGroup culls the same shapes as a flat Group.
+ */
+public class LooseOcTreeGroupTest
+    extends HeadlessTestCase
+{
+    private static final int GRID_SIZE = 20;
+    
+    private BranchGroup scene;
+    private Group flatGrid;
+    private final List< TransformGroup > flatTGs = new ArrayList< TransformGroup >();
+    
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public LooseOcTreeGroupTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( LooseOcTreeGroupTest.class );
+    }
+    
+    private static void fillGrid( Group grid, List< TransformGroup > tgs )
+    {
+        for ( int i = 0; i < GRID_SIZE * GRID_SIZE; i++ )
+        {
+            // every third cube is behind the camera
+            TransformGroup tg = new TransformGroup( ( ( i % GRID_SIZE ) - GRID_SIZE / 2 ) * 4f, ( ( i / GRID_SIZE ) - GRID_SIZE / 2 ) * 4f, ( ( i % 3 ) == 0 ) ? 50f : 0f );
+            Cube cube = new Cube( 0.5f );
+            cube.setName( String.valueOf( i ) );
+            tg.addChild( cube );
+            grid.addChild( tg );
+            tgs.add( tg );
+        }
+    }
+    
+    /**
+     * @return the moved TransformGroups
+     */
+    private static List< TransformGroup > moveEveryFifth( List< TransformGroup > tgs )
+    {
+        List< TransformGroup > moved = new ArrayList< TransformGroup >();
+        
+        for ( int i = 0; i < tgs.size(); i += 5 )
+        {
+            final Transform3D t3d = new Transform3D( tgs.get( i ).getTransform() );
+            t3d.setTranslation( -t3d.getTranslation().getX() + 30f, t3d.getTranslation().getY(), 0f );
+            tgs.get( i ).setTransform( t3d );
+            moved.add( tgs.get( i ) );
+        }
+        
+        return ( moved );
+    }
+    
+    private static LooseOcTreeGroup createOcTree()
+    {
+        return ( new LooseOcTreeGroup( 0f, 0f, 0f, 200f ) );
+    }
+    
+    @Override
+    protected BranchGroup createScene()
+    {
+        scene = new BranchGroup();
+        flatGrid = new Group();
+        fillGrid( flatGrid, flatTGs );
+        scene.addChild( flatGrid );
+        
+        return ( scene );
+    }
+    
+    private void showGrid( Group grid )
+    {
+        scene.removeAllChildren();
+        scene.addChild( grid );
+    }
+    
+    private Set< String > renderAndCollectNames()
+    {
+        renderFrame();
+        
+        final RenderBin bin = renderPass.getRenderBinProvider().getOpaqueBin();
+        
+        Set< String > names = new HashSet< String >();
+        for ( int i = 0; i < bin.size(); i++ )
+        {
+            names.add( bin.getAtom( i ).getNode().getName() );
+        }
+        
+        return ( names );
+    }
+    
+    public void testOcTreeCullsTheShapesOfAFlatGroup()
+    {
+        final Set< String > flat = renderAndCollectNames();
+        
+        assertTrue( flat.size() > 0 );
+        assertTrue( flat.size() < GRID_SIZE * GRID_SIZE );
+        
+        LooseOcTreeGroup ocTree = createOcTree();
+        fillGrid( ocTree, new ArrayList< TransformGroup >() );
+        showGrid( ocTree );
+        
+        assertEquals( flat, renderAndCollectNames() );
+    }
+    
+    public void testOcTreeFollowsReinsertedNodes()
+    {
+        LooseOcTreeGroup ocTree = createOcTree();
+        List< TransformGroup > ocTreeTGs = new ArrayList< TransformGroup >();
+        fillGrid( ocTree, ocTreeTGs );
+        showGrid( ocTree );
+        renderFrame();
+        
+        moveEveryFifth( flatTGs );
+        ocTree.updateNodePositions( moveEveryFifth( ocTreeTGs ) );
+        
+        showGrid( flatGrid );
+        final Set< String > flat = renderAndCollectNames();
+        
+        showGrid( ocTree );
+        
+        assertEquals( flat, renderAndCollectNames() );
+        assertTrue( ocTree.getNumReinsertions() > 0 );
+    }
+}
@@ -0,0 +1,161 @@
+package org.xith3d.scenegraph;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.openmali.spatial.bounds.BoundingBox;
+import org.openmali.spatial.bounds.BoundingSphere;
+import org.openmali.spatial.bounds.Bounds;
+import org.xith3d.scenegraph.primitives.Cube;
+
+/**
+ * Checks, that the ParallelBoundsUpdater computes the bounds of the serial update.
+ */
+public class ParallelBoundsUpdaterTest
+    extends TestCase
+{
+    private static final int NUM_ROWS = 8;
+    private static final int ROW_SIZE = 50;
+    
+    private static final float EPSILON = 0.0001f;
+    
+    private BoundsTypeHint oldBoundsTypeHint;
+    private ParallelBoundsUpdater updater;
+    
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public ParallelBoundsUpdaterTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( ParallelBoundsUpdaterTest.class );
+    }
+    
+    @Override
+    protected void setUp()
+    {
+        oldBoundsTypeHint = Node.getBoundsTypeHint();
+        
+        updater = new ParallelBoundsUpdater();
+        updater.setThreshold( 10 );
+        updater.setNumWorkerThreads( 3 );
+    }
+    
+    @Override
+    protected void tearDown()
+    {
+        updater.shutdownWorkers();
+        
+        Node.setBoundsTypeHint( oldBoundsTypeHint );
+    }
+    
+    private static Group createTree( List< TransformGroup > tgs )
+    {
+        Group root = new Group();
+        
+        for ( int r = 0; r < NUM_ROWS; r++ )
+        {
+            Group row = new Group();
+            for ( int i = 0; i < ROW_SIZE; i++ )
+            {
+                TransformGroup tg = new TransformGroup( i * 1.5f, r * 2f, ( i % 4 ) * -3f );
+                tg.addChild( new Cube( 0.5f + ( i % 3 ) * 0.25f ) );
+                row.addChild( tg );
+                tgs.add( tg );
+            }
+            root.addChild( row );
+        }
+        
+        return ( root );
+    }
+    
+    private static void moveEverySeventh( List< TransformGroup > tgs )
+    {
+        for ( int i = 0; i < tgs.size(); i += 7 )
+        {
+            tgs.get( i ).setTransform( new Transform3D( -20f - i, 5f, 10f ) );
+        }
+    }
+    
+    private static void assertSameBox( Bounds expected, Bounds actual )
+    {
+        final BoundingBox e = (BoundingBox)expected;
+        final BoundingBox a = (BoundingBox)actual;
+        
+        assertEquals( e.getLowerX(), a.getLowerX(), EPSILON );
+        assertEquals( e.getLowerY(), a.getLowerY(), EPSILON );
+        assertEquals( e.getLowerZ(), a.getLowerZ(), EPSILON );
+        assertEquals( e.getUpperX(), a.getUpperX(), EPSILON );
+        assertEquals( e.getUpperY(), a.getUpperY(), EPSILON );
+        assertEquals( e.getUpperZ(), a.getUpperZ(), EPSILON );
+    }
+    
+    private static void assertSameBoxes( Group expected, Group actual )
+    {
+        assertSameBox( expected.getWorldBounds(), actual.getWorldBounds() );
+        
+        for ( int i = 0; i < expected.numChildren(); i++ )
+        {
+            assertSameBox( expected.getChild( i ).getWorldBounds(), actual.getChild( i ).getWorldBounds() );
+        }
+    }
+    
+    public void testBoxBoundsEqualTheSerialBounds()
+    {
+        Node.setBoundsTypeHint( BoundsTypeHint.AABB );
+        
+        List< TransformGroup > serialTGs = new ArrayList< TransformGroup >();
+        List< TransformGroup > parallelTGs = new ArrayList< TransformGroup >();
+        Group serial = createTree( serialTGs );
+        Group parallel = createTree( parallelTGs );
+        
+        serial.updateBounds( false );
+        updater.updateBounds( parallel, false );
+        
+        assertSameBoxes( serial, parallel );
+        
+        moveEverySeventh( serialTGs );
+        moveEverySeventh( parallelTGs );
+        
+        serial.updateBounds( true );
+        updater.updateBounds( parallel, true );
+        
+        assertSameBoxes( serial, parallel );
+    }
+    
+    public void testSphereBoundsEncloseAllShapes()
+    {
+        Node.setBoundsTypeHint( BoundsTypeHint.SPHERE );
+        
+        List< TransformGroup > tgs = new ArrayList< TransformGroup >();
+        Group parallel = createTree( tgs );
+        
+        updater.updateBounds( parallel, false );
+        
+        final BoundingSphere sphere = (BoundingSphere)parallel.getWorldBounds();
+        
+        for ( int i = 0; i < tgs.size(); i++ )
+        {
+            final BoundingSphere s = (BoundingSphere)tgs.get( i ).getWorldBounds();
+            
+            final float dx = s.getCenterX() - sphere.getCenterX();
+            final float dy = s.getCenterY() - sphere.getCenterY();
+            final float dz = s.getCenterZ() - sphere.getCenterZ();
+            
+            assertTrue( (float)Math.sqrt( dx * dx + dy * dy + dz * dz ) + s.getRadius() <= sphere.getRadius() + EPSILON );
+        }
+    }
+}
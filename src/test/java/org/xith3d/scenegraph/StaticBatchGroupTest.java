@@ -0,0 +1,157 @@
+package org.xith3d.scenegraph;
+
+import junit.framework.Test;
+import junit.framework.TestSuite;
+
+import org.openmali.spatial.TriangleContainer;
+import org.xith3d.render.headless.CommandLog;
+import org.xith3d.render.headless.HeadlessTestCase;
+import org.xith3d.render.headless.CommandLog.CommandType;
+import org.xith3d.scenegraph.primitives.Cube;
+
+/**
+ * Checks, that a StaticBatchGroup draws its static children in a few batches.
+ */
+public class StaticBatchGroupTest
+    extends HeadlessTestCase
+{
+    private static final int NUM_SHAPES = 40;
+    
+    private StaticBatchGroup group;
+    
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public StaticBatchGroupTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( StaticBatchGroupTest.class );
+    }
+    
+    @Override
+    protected void setUp()
+    {
+        super.setUp();
+        
+        // The unbatched children are to be drawn one by one.
+        canvas.getRenderOptions().setBatchingEnabled( false );
+    }
+    
+    @Override
+    protected BranchGroup createScene()
+    {
+        BranchGroup scene = new BranchGroup();
+        group = new StaticBatchGroup();
+        
+        // two Appearances, so that two batches are built
+        final Appearance firstApp = new Appearance();
+        firstApp.setMaterial( new Material() );
+        final Appearance secondApp = new Appearance();
+        secondApp.setMaterial( new Material() );
+        
+        for ( int i = 0; i < NUM_SHAPES; i++ )
+        {
+            TransformGroup tg = new TransformGroup( ( i % 8 ) * 2f - 8f, ( i / 8 ) * 2f - 5f, 0f );
+            tg.addChild( new Cube( 0.5f, ( ( i % 2 ) == 0 ) ? firstApp : secondApp ) );
+            group.addChild( tg );
+        }
+        
+        scene.addChild( group );
+        
+        return ( scene );
+    }
+    
+    private static long countTriangles( CommandLog log )
+    {
+        for ( int i = 0; i < log.getSize(); i++ )
+        {
+            if ( log.getType( i ) == CommandType.END_FRAME )
+            {
+                return ( log.getArgument1( i ) );
+            }
+        }
+        
+        return ( -1L );
+    }
+    
+    public void testBatchesKeepTheTrianglesWithFewerDraws()
+    {
+        CommandLog log = renderFrame();
+        final int unbatchedDraws = log.getFrameCount( CommandType.DRAW );
+        final long unbatchedTriangles = countTriangles( log );
+        
+        assertEquals( NUM_SHAPES, unbatchedDraws );
+        assertTrue( unbatchedTriangles > 0L );
+        
+        group.buildBatches();
+        
+        assertEquals( 2, group.getNumBatches() );
+        assertEquals( NUM_SHAPES, group.getNumBatchedShapes() );
+        
+        log = renderFrame();
+        
+        assertEquals( group.getNumBatches(), log.getFrameCount( CommandType.DRAW ) );
+        assertEquals( unbatchedTriangles, countTriangles( log ) );
+    }
+    
+    public void testMaxBatchVerticesSplitsBatches()
+    {
+        final int cubeVertices = ( (TriangleContainer)( (Shape3D)( (GroupNode)group.getChild( 0 ) ).getChild( 0 ) ).getGeometry() ).getTriangleCount() * 3;
+        
+        group.setMaxBatchVertices( cubeVertices * 4 );
+        group.buildBatches();
+        
+        assertEquals( NUM_SHAPES / 4, group.getNumBatches() );
+        
+        for ( int i = 0; i < group.getNumBatches(); i++ )
+        {
+            assertTrue( ( (TriangleContainer)group.getBatch( i ).getGeometry() ).getTriangleCount() * 3 <= cubeVertices * 4 );
+        }
+    }
+    
+    public void testFacesResolveToTheSourceShapes()
+    {
+        group.buildBatches();
+        
+        for ( int i = 0; i < group.getNumBatches(); i++ )
+        {
+            final Shape3D batch = group.getBatch( i );
+            final int numFaces = ( (TriangleContainer)batch.getGeometry() ).getTriangleCount();
+            
+            for ( int face = 0; face < numFaces; face++ )
+            {
+                final Shape3D source = group.getSourceShape( batch, face );
+                
+                assertNotNull( source );
+                assertSame( batch.getAppearance(), source.getAppearance() );
+                
+                final int sourceFace = group.getSourceFaceIndex( batch, face );
+                
+                assertTrue( sourceFace >= 0 );
+                assertTrue( sourceFace < ( (TriangleContainer)source.getGeometry() ).getTriangleCount() );
+            }
+        }
+        
+        assertNull( group.getSourceShape( new Shape3D(), 0 ) );
+    }
+    
+    public void testAddingAChildDiscardsTheBatches()
+    {
+        group.buildBatches();
+        renderFrame();
+        
+        group.addChild( new Cube( 0.5f ) );
+        
+        assertEquals( 0, group.getNumBatches() );
+        assertEquals( NUM_SHAPES + 1, renderFrame().getFrameCount( CommandType.DRAW ) );
+    }
+}
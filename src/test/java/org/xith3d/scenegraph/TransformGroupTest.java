@@ -0,0 +1,83 @@
+package org.xith3d.scenegraph;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.openmali.spatial.bounds.Bounds;
+import org.openmali.vecmath2.Point3f;
+import org.openmali.vecmath2.Vector3f;
+import org.xith3d.scenegraph.primitives.Cube;
+
+/**
+ * Checks the lazily evaluated world transforms and world bounds.
+ */
+public class TransformGroupTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public TransformGroupTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( TransformGroupTest.class );
+    }
+    
+    private static float getWorldX( TransformGroup tg )
+    {
+        final Vector3f translation = new Vector3f();
+        tg.getWorldTransform().getTranslation( translation );
+        
+        return ( translation.getX() );
+    }
+    
+    private static float getCenterX( Node node )
+    {
+        final Point3f center = new Point3f();
+        final Bounds bounds = node.getWorldBounds();
+        bounds.getCenter( center );
+        
+        return ( center.getX() );
+    }
+    
+    public void testWorldTransformIsRecomputedAfterTheParentMoves()
+    {
+        TransformGroup parent = new TransformGroup( 0f, 0f, 0f );
+        TransformGroup child = new TransformGroup( 1f, 0f, 0f );
+        parent.addChild( child );
+        
+        assertEquals( 1f, getWorldX( child ), 0.0001f );
+        
+        parent.setTransform( new Transform3D( 5f, 0f, 0f ) );
+        
+        assertEquals( 6f, getWorldX( child ), 0.0001f );
+    }
+    
+    public void testWorldBoundsAreRecomputedAfterTheParentMoves()
+    {
+        BranchGroup root = new BranchGroup();
+        TransformGroup parent = new TransformGroup( 0f, 0f, 0f );
+        TransformGroup child = new TransformGroup( 1f, 0f, 0f );
+        Cube cube = new Cube( 1f );
+        child.addChild( cube );
+        parent.addChild( child );
+        root.addChild( parent );
+        
+        assertEquals( 1f, getCenterX( cube ), 0.0001f );
+        
+        parent.setTransform( new Transform3D( 5f, 0f, 0f ) );
+        
+        assertEquals( 6f, getCenterX( cube ), 0.0001f );
+        assertEquals( 6f, getCenterX( child ), 0.0001f );
+    }
+}
@@ -0,0 +1,125 @@
+package org.xith3d.scenegraph;
+
+import java.util.ArrayList;
+import java.util.List;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.openmali.spatial.bounds.BoundingSphere;
+import org.xith3d.scenegraph.primitives.Cube;
+
+/**
+ * Checks, that the WorldBoundsStore mirrors the Nodes' world bounds.
+ */
+public class WorldBoundsStoreTest
+    extends TestCase
+{
+    private static final int NUM_CHILDREN = 20;
+    
+    private static final float EPSILON = 0.0001f;
+    
+    private BranchGroup root;
+    private Group grid;
+    private final List< TransformGroup > tgs = new ArrayList< TransformGroup >();
+    
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public WorldBoundsStoreTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( WorldBoundsStoreTest.class );
+    }
+    
+    @Override
+    protected void setUp()
+    {
+        root = new BranchGroup();
+        grid = new Group();
+        
+        for ( int i = 0; i < NUM_CHILDREN; i++ )
+        {
+            TransformGroup tg = new TransformGroup( i * 2f, -i, 0f );
+            tg.addChild( new Cube( 0.5f ) );
+            grid.addChild( tg );
+            tgs.add( tg );
+        }
+        
+        root.addChild( grid );
+        root.updateBounds( false );
+        
+        root.setWorldBoundsStoreEnabled( true );
+    }
+    
+    private static void assertMirrored( Node node )
+    {
+        final WorldBoundsStore store = node.getWorldBoundsStore();
+        final int slot = node.getWorldBoundsSlot();
+        final BoundingSphere sphere = (BoundingSphere)node.getWorldBounds();
+        
+        assertNotNull( store );
+        assertEquals( WorldBoundsStore.TYPE_SPHERE, store.getType( slot ) );
+        assertEquals( sphere.getCenterX(), store.getCenterX( slot ), EPSILON );
+        assertEquals( sphere.getCenterY(), store.getCenterY( slot ), EPSILON );
+        assertEquals( sphere.getCenterZ(), store.getCenterZ( slot ), EPSILON );
+        assertEquals( sphere.getRadius(), store.getRadius( slot ), EPSILON );
+    }
+    
+    public void testSlotsMirrorTheWorldBounds()
+    {
+        assertMirrored( grid );
+        
+        for ( int i = 0; i < NUM_CHILDREN; i++ )
+        {
+            assertMirrored( tgs.get( i ) );
+            assertMirrored( tgs.get( i ).getChild( 0 ) );
+        }
+    }
+    
+    public void testChildrenHaveConsecutiveSlots()
+    {
+        final int first = grid.getChildrenWorldBoundsSlot();
+        
+        assertTrue( first >= 0 );
+        
+        for ( int i = 0; i < NUM_CHILDREN; i++ )
+        {
+            assertEquals( first + i, grid.getChild( i ).getWorldBoundsSlot() );
+        }
+    }
+    
+    public void testSlotFollowsMovedNode()
+    {
+        final Node cube = tgs.get( 3 ).getChild( 0 );
+        final WorldBoundsStore store = cube.getWorldBoundsStore();
+        
+        tgs.get( 3 ).setTransform( new Transform3D( 100f, 0f, 0f ) );
+        
+        assertMirrored( cube );
+        assertEquals( 100f, store.getCenterX( cube.getWorldBoundsSlot() ), EPSILON );
+    }
+    
+    public void testAddedNodeGetsASlot()
+    {
+        TransformGroup tg = new TransformGroup( -50f, 0f, 0f );
+        tg.addChild( new Cube( 0.5f ) );
+        grid.addChild( tg );
+        root.updateBounds( true );
+        
+        assertSame( grid.getWorldBoundsStore(), tg.getWorldBoundsStore() );
+        assertMirrored( tg );
+        assertMirrored( tg.getChild( 0 ) );
+        assertMirrored( grid );
+    }
+}
@@ -0,0 +1,216 @@
+package org.xith3d.utility.memory;
+
+import java.lang.management.ManagementFactory;
+import java.nio.ByteBuffer;
+import java.nio.ByteOrder;
+import java.util.ArrayList;
+import java.util.List;
+
+import javax.management.ObjectName;
+
+import junit.framework.Test;
+import junit.framework.TestCase;
+import junit.framework.TestSuite;
+
+import org.openmali.vecmath2.Point3f;
+import org.xith3d.scenegraph.Geometry;
+import org.xith3d.scenegraph.IndexedTriangleArray;
+import org.xith3d.scenegraph.TriangleArray;
+
+/**
+ * Checks the sub-allocation, reuse and statistics of the SlabAllocator.
+ */
+public class SlabAllocatorTest
+    extends TestCase
+{
+    /**
+     * Create the test case
+     *
+     * @param testName name of the test case
+     */
+    public SlabAllocatorTest( String testName )
+    {
+        super( testName );
+    }
+
+    /**
+     * @return the suite of tests being tested
+     */
+    public static Test suite()
+    {
+        return new TestSuite( SlabAllocatorTest.class );
+    }
+    
+    public void testFreedChunksAreReused()
+    {
+        SlabAllocator allocator = new SlabAllocator( 4096 );
+        
+        SlabAllocator.Allocation a = allocator.allocate( 100 );
+        ByteBuffer buffer = a.getBuffer();
+        assertEquals( 100, buffer.capacity() );
+        assertTrue( buffer.isDirect() );
+        assertEquals( ByteOrder.nativeOrder(), buffer.order() );
+        assertEquals( 1, allocator.getNumSlabs() );
+        assertEquals( 100L, allocator.getRequestedBytes() );
+        assertEquals( 28L, allocator.getInternalFragmentation() );
+        
+        buffer.putInt( 0, 42 );
+        allocator.free( a );
+        assertTrue( a.isFreed() );
+        assertEquals( 0, allocator.getNumAllocations() );
+        
+        SlabAllocator.Allocation b = allocator.allocate( 120 );
+        assertEquals( 1, allocator.getNumSlabs() );
+        assertEquals( 0, b.getBuffer().getInt( 0 ) );
+        
+        try
+        {
+            allocator.free( a );
+            fail();
+        }
+        catch ( IllegalStateException e )
+        {
+        }
+    }
+    
+    public void testEmptySlabsAreReleased()
+    {
+        SlabAllocator allocator = new SlabAllocator( 4096 );
+        
+        // 32 chunks of 128 bytes fit into one slab
+        SlabAllocator.Allocation[] allocs = new SlabAllocator.Allocation[ 33 ];
+        for ( int i = 0; i < allocs.length; i++ )
+        {
+            allocs[ i ] = allocator.allocate( 128 );
+        }
+        
+        assertEquals( 2, allocator.getNumSlabs() );
+        assertEquals( 8192L, allocator.getPeakReservedBytes() );
+        
+        for ( int i = 0; i < allocs.length; i++ )
+        {
+            allocator.free( allocs[ i ] );
+        }
+        
+        assertEquals( 1, allocator.getNumSlabs() );
+        assertEquals( 4096L, allocator.getReservedBytes() );
+        assertEquals( 1f, allocator.getFragmentation(), 0.0001f );
+        
+        SlabAllocator.Allocation big = allocator.allocate( 10000 );
+        assertEquals( 1, allocator.getNumDedicatedBuffers() );
+        assertEquals( 14096L, allocator.getReservedBytes() );
+        allocator.free( big );
+        assertEquals( 0, allocator.getNumDedicatedBuffers() );
+    }
+    
+    public void testGeometryDataIsSubAllocated()
+    {
+        SlabAllocator allocator = new SlabAllocator();
+        Geometry.setSlabAllocator( allocator );
+        
+        try
+        {
+            TriangleArray geom = new TriangleArray( 30 );
+            geom.setCoordinate( 29, 1f, 2f, 3f );
+            geom.setNormal( 0, 0f, 0f, 1f );
+            
+            assertTrue( geom.getCoordinatesData().isSlabAllocated() );
+            assertTrue( geom.getNormalsData().isSlabAllocated() );
+            assertEquals( 2, allocator.getNumAllocations() );
+            assertEquals( 2L * 30L * 3L * 4L, allocator.getRequestedBytes() );
+            
+            Point3f p = new Point3f();
+            geom.getCoordinate( 29, p );
+            assertEquals( new Point3f( 1f, 2f, 3f ), p );
+            
+            geom.freeLocalData();
+            
+            assertEquals( 0, allocator.getNumAllocations() );
+        }
+        finally
+        {
+            Geometry.setSlabAllocator( null );
+        }
+    }
+    
+    public void testIndexDataIsSubAllocated()
+    {
+        SlabAllocator allocator = new SlabAllocator();
+        Geometry.setSlabAllocator( allocator );
+        
+        try
+        {
+            IndexedTriangleArray geom = new IndexedTriangleArray( 4, 6 );
+            geom.setIndex( new int[] { 0, 1, 2, 2, 1, 3 } );
+            
+            assertTrue( geom.getIndexData().isSlabAllocated() );
+            assertEquals( 1, geom.getIndexData().getBuffer().get( 1 ) );
+            assertEquals( 3, geom.getIndexData().getBuffer().get( 5 ) );
+            
+            geom.freeLocalData();
+            
+            assertFalse( geom.getIndexData().isSlabAllocated() );
+            assertEquals( 0, allocator.getNumAllocations() );
+        }
+        finally
+        {
+            Geometry.setSlabAllocator( null );
+        }
+    }
+    
+    /**
+     * @return the number of direct buffers allocated by the JVM or -1, if it isn't available.
+     */
+    private static long getDirectBufferCount()
+    {
+        try
+        {
+            return ( ( (Number)ManagementFactory.getPlatformMBeanServer().getAttribute( new ObjectName( "java.nio:type=BufferPool,name=direct" ), "Count" ) ).longValue() );
+        }
+        catch ( Exception e )
+        {
+            return ( -1L );
+        }
+    }
+    
+    public void testNoDirectBufferPerGeometry()
+    {
+        if ( getDirectBufferCount() < 0L )
+        {
+            System.err.println( "SlabAllocatorTest.testNoDirectBufferPerGeometry skipped: The direct buffer pool is not available." );
+            return;
+        }
+        
+        SlabAllocator allocator = new SlabAllocator();
+        Geometry.setSlabAllocator( allocator );
+        
+        try
+        {
+            // keeps the Geometries reachable, so that no buffer is collected in between
+            final List< Geometry > geoms = new ArrayList< Geometry >();
+            
+            final long before = getDirectBufferCount();
+            
+            for ( int i = 0; i < 500; i++ )
+            {
+                IndexedTriangleArray geom = new IndexedTriangleArray( 24, 36 );
+                geom.setNormal( 0, 0f, 0f, 1f );
+                geoms.add( geom );
+            }
+            
+            final long after = getDirectBufferCount();
+            
+            assertEquals( 1500, allocator.getNumAllocations() );
+            assertTrue( after - before <= allocator.getNumSlabs() + allocator.getNumDedicatedBuffers() );
+            
+            for ( int i = 0; i < geoms.size(); i++ )
+            {
+                geoms.get( i ).freeLocalData();
+            }
+        }
+        finally
+        {
+            Geometry.setSlabAllocator( null );
+        }
+    }
+}